@@ -0,0 +1,193 @@
+package brooklyn.catalog;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor which records at compile time the types a catalog would otherwise find by scanning
+ * the classpath, so that scanning can be skipped for JARs which contain these indexes:
+ * <ul>
+ * <li>{@link #ANNOTATED_INDEX} lists types annotated with {@link Catalog}, or with a supertype which is
+ *     (as found when scanning for annotations);
+ * <li>{@link #TYPES_INDEX} lists the concrete entity and policy types (as found when scanning for types);
+ * <li>{@link #CLASSES_INDEX} lists all the types compiled, so that a catalog can tell whether other classes
+ *     (e.g. compiled from Groovy, or in a separate compilation) were added without being indexed.
+ * </ul>
+ * Each is a resource alongside the compiled classes, with one binary class name per line.
+ * <p>
+ * This is registered as a service, so is found when compiling anything with the Brooklyn API on the classpath,
+ * but does nothing unless enabled with the compiler option <code>-A{@value #ENABLED_OPTION}=true</code>.
+ * Brooklyn's own modules do not enable it: they are built with groovy-eclipse-compiler, which is not known
+ * to run annotation processors, so this is for projects compiled with javac.
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(CatalogIndexProcessor.ENABLED_OPTION)
+public class CatalogIndexProcessor extends AbstractProcessor {
+
+    public static final String ENABLED_OPTION = "brooklyn.catalog.index";
+
+    public static final String ANNOTATED_INDEX = "META-INF/brooklyn/catalog-annotated.txt";
+    public static final String TYPES_INDEX = "META-INF/brooklyn/catalog-types.txt";
+    public static final String CLASSES_INDEX = "META-INF/brooklyn/catalog-classes.txt";
+
+    private static final String ENTITY_TYPE = "brooklyn.entity.Entity";
+    private static final String POLICY_TYPE = "brooklyn.policy.Policy";
+
+    private final Set<String> annotated = new TreeSet<String>();
+    private final Set<String> types = new TreeSet<String>();
+    private final Set<String> classes = new TreeSet<String>();
+    private final Map<String, Boolean> annotatedCache = new HashMap<String, Boolean>();
+    private boolean enabled;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        enabled = "true".equalsIgnoreCase(processingEnv.getOptions().get(ENABLED_OPTION));
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        // claiming no annotations means the compiler never calls this processor
+        return enabled ? super.getSupportedAnnotationTypes() : Collections.<String>emptySet();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (!enabled) return false;
+        if (roundEnv.processingOver()) {
+            write(ANNOTATED_INDEX, annotated, Kind.ANNOTATED);
+            write(TYPES_INDEX, types, Kind.TYPES);
+            write(CLASSES_INDEX, classes, Kind.CLASSES);
+        } else {
+            for (Element element : roundEnv.getRootElements()) {
+                visit(element);
+            }
+        }
+        // never claim annotations, so other processors still see them
+        return false;
+    }
+
+    private void visit(Element element) {
+        if (!element.getKind().isClass() && !element.getKind().isInterface()) return;
+        TypeElement type = (TypeElement) element;
+        String name = processingEnv.getElementUtils().getBinaryName(type).toString();
+        classes.add(name);
+        if (isAnnotated(type)) annotated.add(name);
+        if (isConcreteEntityOrPolicy(type)) types.add(name);
+        for (Element enclosed : type.getEnclosedElements()) {
+            visit(enclosed);
+        }
+    }
+
+    private boolean isAnnotated(TypeElement type) {
+        String name = type.getQualifiedName().toString();
+        Boolean result = annotatedCache.get(name);
+        if (result == null) {
+            result = type.getAnnotation(Catalog.class) != null;
+            if (!result) {
+                for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(type.asType())) {
+                    if (supertype instanceof DeclaredType && isAnnotated((TypeElement) ((DeclaredType) supertype).asElement())) {
+                        result = true;
+                        break;
+                    }
+                }
+            }
+            annotatedCache.put(name, result);
+        }
+        return result;
+    }
+
+    /** as per the classes a catalog includes when scanning for types: not abstract, and not inner classes */
+    private boolean isConcreteEntityOrPolicy(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) return false;
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) return false;
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) return false;
+        return isSubtypeOf(type, ENTITY_TYPE) || isSubtypeOf(type, POLICY_TYPE);
+    }
+
+    private boolean isSubtypeOf(TypeElement type, String supertypeName) {
+        TypeElement supertype = processingEnv.getElementUtils().getTypeElement(supertypeName);
+        if (supertype == null) return false;
+        Types typeUtils = processingEnv.getTypeUtils();
+        return typeUtils.isAssignable(typeUtils.erasure(type.asType()), typeUtils.erasure(supertype.asType()));
+    }
+
+    private enum Kind { ANNOTATED, TYPES, CLASSES }
+
+    private boolean belongsIn(TypeElement type, Kind kind) {
+        switch (kind) {
+        case ANNOTATED: return isAnnotated(type);
+        case TYPES: return isConcreteEntityOrPolicy(type);
+        default: return true;
+        }
+    }
+
+    private void write(String path, Set<String> names, Kind kind) {
+        // keep entries from an earlier compilation to the same place (e.g. an incremental build) which are still valid
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", path);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty() || names.contains(line)) continue;
+                    TypeElement type = processingEnv.getElementUtils().getTypeElement(line.replace('$', '.'));
+                    if (type != null && belongsIn(type, kind)) names.add(line);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // no earlier index
+        } catch (IllegalArgumentException e) {
+            // no earlier index
+        }
+
+        try {
+            FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", path);
+            Writer writer = index.openWriter();
+            try {
+                for (String name : names) {
+                    writer.write(name);
+                    writer.write("\n");
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Unable to write Brooklyn catalog index "+path+" (catalog will scan instead): "+e);
+        }
+    }
+
+}
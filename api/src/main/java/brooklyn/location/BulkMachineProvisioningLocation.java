@@ -0,0 +1,26 @@
+package brooklyn.location;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A {@link MachineProvisioningLocation} that can provision several machines with a single request
+ * (e.g. a node group in a cloud), which is typically much faster than calling {@link #obtain(Map)}
+ * once per machine.
+ */
+public interface BulkMachineProvisioningLocation<T extends MachineLocation> extends MachineProvisioningLocation<T> {
+
+    /**
+     * Obtain up to the given number of machines in this location, all with the same details.
+     * <p>
+     * If only some of the machines could be provisioned then those that succeeded are returned
+     * (and the others are cleaned up); callers wanting exactly {@code count} should obtain the
+     * remainder individually. Each machine returned should be released with {@link #release(MachineLocation)}.
+     *
+     * @param count The number of machines desired
+     * @param flags Details of the desired machines, as for {@link #obtain(Map)}
+     * @return the machines obtained; never empty
+     * @throws NoMachinesAvailableException if no machines could be obtained
+     */
+    Collection<T> obtain(int count, Map<?,?> flags) throws NoMachinesAvailableException;
+}
@@ -1,8 +1,11 @@
 package brooklyn.catalog.internal;
 
+import java.io.File;
 import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -16,6 +19,7 @@ import brooklyn.catalog.CatalogItem;
 import brooklyn.entity.Application;
 import brooklyn.entity.Entity;
 import brooklyn.entity.basic.ApplicationBuilder;
+import brooklyn.entity.basic.ConfigKeys;
 import brooklyn.management.internal.ManagementContextInternal;
 import brooklyn.policy.Policy;
 import brooklyn.util.exceptions.Exceptions;
@@ -26,6 +30,7 @@ import brooklyn.util.javalang.UrlClassLoader;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 
 public class CatalogClasspathDo {
 
@@ -88,72 +93,125 @@ public class CatalogClasspathDo {
         if (scanMode==null || scanMode==CatalogScanningModes.NONE)
             return;
         
-        ReflectionScanner scanner = null;
         if (!catalog.isLocal()) {
             log.warn("Scanning not supported for remote catalogs; ignoring scan request in "+catalog);
         } else if (classpath.getEntries()==null || classpath.getEntries().isEmpty()) {
-            // no entries; check if we are local, and if so scan the default classpath
-            if (!catalog.isLocal()) {
-                log.warn("Scanning not supported for remote catalogs; ignoring scan request in "+catalog);
-            } else {                
-                // scan default classpath:
-                ClassLoader baseCL = null;
-                Iterable<URL> baseCP = null;
-                if (catalog.mgmt instanceof ManagementContextInternal) {
-                    baseCL = ((ManagementContextInternal)catalog.mgmt).getBaseClassLoader();
+            // no entries; scan the default classpath
+            ClassLoader baseCL = null;
+            Iterable<URL> baseCP = null;
+            if (catalog.mgmt instanceof ManagementContextInternal) {
+                baseCL = ((ManagementContextInternal)catalog.mgmt).getBaseClassLoader();
+                baseCP = ((ManagementContextInternal)catalog.mgmt).getBaseClassPathForScanning();
+            }
+            if (baseCP==null) {
+                // the urls the scanner would use by default
+                baseCP = ClasspathHelper.forPackage("", baseCL!=null ? new ClassLoader[] { baseCL } : new ClassLoader[0]);
+            }
+            if (!loadFromIndexesOrScan(baseCL, baseCP, prefix)) {
+                try {
+                    ((ManagementContextInternal)catalog.mgmt).setBaseClassPathForScanning(ClasspathHelper.forJavaClassPath());
+                    log.info("Catalog scan of default classloader returned nothing; reverting to java.class.path");
                     baseCP = ((ManagementContextInternal)catalog.mgmt).getBaseClassPathForScanning();
-                }
-                scanner = new ReflectionScanner(baseCL, catalog.getRootClassLoader(), baseCP, prefix);
-                if (scanner.getSubTypesOf(Entity.class).isEmpty()) {
-                    try {
-                        ((ManagementContextInternal)catalog.mgmt).setBaseClassPathForScanning(ClasspathHelper.forJavaClassPath());
-                        log.info("Catalog scan of default classloader returned nothing; reverting to java.class.path");
-                        baseCP = ((ManagementContextInternal)catalog.mgmt).getBaseClassPathForScanning();
-                        scanner = new ReflectionScanner(baseCL, catalog.getRootClassLoader(), baseCP, prefix);
-                    } catch (Exception e) {
-                        log.info("Catalog scan is empty, and unable to use java.class.path (base classpath is "+baseCP+")");
-                        Exceptions.propagateIfFatal(e);
-                    }
+                    loadFromIndexesOrScan(baseCL, baseCP, prefix);
+                } catch (Exception e) {
+                    log.info("Catalog scan is empty, and unable to use java.class.path (base classpath is "+baseCP+")");
+                    Exceptions.propagateIfFatal(e);
                 }
             }
         } else {
             // scan specified jars:
-            scanner = new ReflectionScanner(getLocalClassLoader(), catalog.getRootClassLoader(), null, prefix);
+            loadFromIndexesOrScan(getLocalClassLoader(), Arrays.asList(urls), prefix);
+        }
+        
+        isLoaded = true;
+    }
+
+    /** adds to the catalog the classes listed in the {@link CatalogClasspathIndex indexes} of the given classpath entries,
+     * if every entry has one; otherwise scans all the entries (or uses the remembered result of an earlier scan of them),
+     * as types in an unindexed entry may extend or be annotated through types in an indexed one;
+     * returns false if there were no indexes and a scan found no entities, i.e. the classpath is likely not the one wanted */
+    private boolean loadFromIndexesOrScan(ClassLoader classLoaderToSearch, Iterable<URL> entries, String prefix) {
+        List<URL> urls = Lists.newArrayList(entries);
+        if (urls.isEmpty()) return false;
+        
+        List<String> classNames = Lists.newArrayList();
+        for (URL entry: urls) {
+            List<String> index = CatalogClasspathIndex.read(entry, scanMode);
+            if (index==null) {
+                classNames = null;
+                break;
+            }
+            classNames.addAll(index);
+        }
+        
+        ReflectionScanner scanner = null;
+        CatalogClasspathScanCache scanCache = getScanCache();
+        String cacheKey = null;
+        String source = "all "+urls.size()+" classpath entries indexed";
+        if (classNames==null) {
+            source = "from cache";
+            if (scanCache!=null) {
+                cacheKey = scanCache.key(urls, scanMode);
+                classNames = scanCache.get(cacheKey);
+            }
+            if (classNames==null) scanner = new ReflectionScanner(classLoaderToSearch, catalog.getRootClassLoader(), urls, prefix);
         }
         
-        if (scanner!=null) {
+        if (scanner==null) {
             int count = 0;
-            if (scanMode==CatalogScanningModes.ANNOTATIONS) {
-                Set<Class<?>> catalogClasses = scanner.getTypesAnnotatedWith(Catalog.class);
-                for (Class<?> c: catalogClasses) {
-                    try {
-                        addCatalogEntry(c);
-                    } catch (Exception e) {
-                        log.warn("Failed to add catalog entry for "+c+"; continuing scan...", e);
-                    }
-                    count++;
-                }
-            } else if (scanMode==CatalogScanningModes.TYPES) {
-                Iterable<Class<? extends Entity>> entities = this.excludeInvalidClasses(scanner.getSubTypesOf(Entity.class));
-                for (Class<?> c: entities) { 
-                    if (Application.class.isAssignableFrom(c))
-                        addCatalogEntry(new CatalogTemplateItemDto(), c);
-                    else
-                        addCatalogEntry(new CatalogEntityItemDto(), c);
-                    count++;
-                }
-                Iterable<Class<? extends Policy>> policies = this.excludeInvalidClasses(scanner.getSubTypesOf(Policy.class));
-                for (Class<?> c: policies) {
-                    addCatalogEntry(new CatalogPolicyItemDto(), c);
+            for (String className: classNames) {
+                try {
+                    addCatalogEntry(catalog.getRootClassLoader().loadClass(className));
                     count++;
+                } catch (Exception e) {
+                    log.warn("Failed to add catalog entry for "+className+" (from index or cached scan); continuing...", e);
                 }
-            } else {
-                throw new IllegalStateException("Unsupported catalog scan mode "+scanMode+" for "+this);
             }
-            log.info("Classpath scan for catalog "+catalog+" complete; "+count+" entities detected (by "+scanMode+")");
+            log.info("Classpath scan for catalog "+catalog+" complete; "+count+" entities detected (by "+scanMode+", "+source+")");
+            return true;
         }
         
-        isLoaded = true;
+        if (scanner.getSubTypesOf(Entity.class).isEmpty()) return false;
+        
+        List<String> scannedClassNames = Lists.newArrayList();
+        if (scanMode==CatalogScanningModes.ANNOTATIONS) {
+            Set<Class<?>> catalogClasses = scanner.getTypesAnnotatedWith(Catalog.class);
+            for (Class<?> c: catalogClasses) {
+                try {
+                    addCatalogEntry(c);
+                    scannedClassNames.add(c.getName());
+                } catch (Exception e) {
+                    log.warn("Failed to add catalog entry for "+c+"; continuing scan...", e);
+                }
+            }
+        } else if (scanMode==CatalogScanningModes.TYPES) {
+            Iterable<Class<? extends Entity>> entities = this.excludeInvalidClasses(scanner.getSubTypesOf(Entity.class));
+            for (Class<?> c: entities) { 
+                if (Application.class.isAssignableFrom(c))
+                    addCatalogEntry(new CatalogTemplateItemDto(), c);
+                else
+                    addCatalogEntry(new CatalogEntityItemDto(), c);
+                scannedClassNames.add(c.getName());
+            }
+            Iterable<Class<? extends Policy>> policies = this.excludeInvalidClasses(scanner.getSubTypesOf(Policy.class));
+            for (Class<?> c: policies) {
+                addCatalogEntry(new CatalogPolicyItemDto(), c);
+                scannedClassNames.add(c.getName());
+            }
+        } else {
+            throw new IllegalStateException("Unsupported catalog scan mode "+scanMode+" for "+this);
+        }
+        if (scanCache!=null) scanCache.put(cacheKey, scannedClassNames);
+        log.info("Classpath scan for catalog "+catalog+" complete; "+scannedClassNames.size()+" entities detected (by "+scanMode+")");
+        return true;
+    }
+
+    /** returns the cache of scan results to use, if enabled by {@link ManagementContextInternal#BROOKLYN_CATALOG_SCAN_CACHE} */
+    protected CatalogClasspathScanCache getScanCache() {
+        if (catalog.mgmt==null || !Boolean.TRUE.equals(catalog.mgmt.getConfig().getConfig(ManagementContextInternal.BROOKLYN_CATALOG_SCAN_CACHE)))
+            return null;
+        String dataDir = catalog.mgmt.getConfig().getConfig(ConfigKeys.BROOKLYN_DATA_DIR);
+        return new CatalogClasspathScanCache(new File(dataDir, "catalog-scan"));
     }
 
     /** removes inner classes (non-static nesteds) and others; 
@@ -0,0 +1,134 @@
+package brooklyn.catalog.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import brooklyn.catalog.CatalogIndexProcessor;
+import brooklyn.catalog.internal.CatalogClasspathDo.CatalogScanningModes;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+/**
+ * Reads the indexes written at compile time by {@link CatalogIndexProcessor} into classpath entries
+ * (JARs or directories), listing the classes which scanning that entry would find.
+ * <p>
+ * An index is only used if it covers every class in the entry, according to the entry's
+ * {@link CatalogIndexProcessor#CLASSES_INDEX}: an entry which also has classes the processor did not see
+ * (e.g. compiled from Groovy, or by a separate compilation, or merged from other JARs) is scanned instead.
+ */
+class CatalogClasspathIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogClasspathIndex.class);
+
+    /** returns the names of the classes in the given classpath entry to include in the catalog for the given mode,
+     * or null if the entry has no complete index (or it cannot be read), in which case the entry should be scanned */
+    static List<String> read(URL entry, CatalogScanningModes mode) {
+        String index;
+        if (mode==CatalogScanningModes.ANNOTATIONS) index = CatalogIndexProcessor.ANNOTATED_INDEX;
+        else if (mode==CatalogScanningModes.TYPES) index = CatalogIndexProcessor.TYPES_INDEX;
+        else return null;
+
+        if (!"file".equals(entry.getProtocol())) return null;
+        try {
+            File file = new File(entry.toURI());
+            if (file.isDirectory()) {
+                File indexFile = new File(file, index);
+                if (!indexFile.isFile()) return null;
+                File classesFile = new File(file, CatalogIndexProcessor.CLASSES_INDEX);
+                Set<String> covered = classesFile.isFile() ? ImmutableSet.copyOf(withoutBlankLines(Files.readLines(classesFile, Charsets.UTF_8)))
+                        : ImmutableSet.<String>of();
+                String uncovered = findUncoveredClass(file, "", covered);
+                if (uncovered!=null) {
+                    log.debug("Catalog index in "+entry+" does not cover "+uncovered+" (not compiled with the index processor); will scan it");
+                    return null;
+                }
+                return withoutBlankLines(Files.readLines(indexFile, Charsets.UTF_8));
+            } else if (file.isFile()) {
+                JarFile jar = new JarFile(file);
+                try {
+                    ZipEntry indexEntry = jar.getEntry(index);
+                    if (indexEntry==null) return null;
+                    ZipEntry classesEntry = jar.getEntry(CatalogIndexProcessor.CLASSES_INDEX);
+                    Set<String> covered = classesEntry!=null ? ImmutableSet.copyOf(readLines(jar, classesEntry)) : ImmutableSet.<String>of();
+                    for (Enumeration<? extends ZipEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                        String className = toTopLevelClassName(entries.nextElement().getName());
+                        if (className!=null && !covered.contains(className)) {
+                            log.debug("Catalog index in "+entry+" does not cover "+className+" (not compiled with the index processor); will scan it");
+                            return null;
+                        }
+                    }
+                    return readLines(jar, indexEntry);
+                } finally {
+                    jar.close();
+                }
+            }
+        } catch (URISyntaxException e) {
+            log.debug("Unable to check "+entry+" for a catalog index; will scan it: "+e);
+        } catch (IllegalArgumentException e) {
+            log.debug("Unable to check "+entry+" for a catalog index; will scan it: "+e);
+        } catch (IOException e) {
+            log.debug("Unable to read catalog index from "+entry+"; will scan it: "+e);
+        }
+        return null;
+    }
+
+    private static List<String> readLines(JarFile jar, ZipEntry entry) throws IOException {
+        InputStreamReader reader = new InputStreamReader(jar.getInputStream(entry), Charsets.UTF_8);
+        try {
+            return withoutBlankLines(CharStreams.readLines(reader));
+        } finally {
+            Closeables.closeQuietly(reader);
+        }
+    }
+
+    /** returns the name of a top-level class under the given directory which is not covered, or null if all are */
+    private static String findUncoveredClass(File dir, String path, Set<String> covered) {
+        File[] files = dir.listFiles();
+        if (files==null) return null;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                String result = findUncoveredClass(file, path+file.getName()+"/", covered);
+                if (result!=null) return result;
+            } else {
+                String className = toTopLevelClassName(path+file.getName());
+                if (className!=null && !covered.contains(className)) return className;
+            }
+        }
+        return null;
+    }
+
+    /** returns the class name for the given resource path if it is a top-level class (nested classes being
+     * covered by their top-level class), otherwise null */
+    private static String toTopLevelClassName(String path) {
+        if (!path.endsWith(".class") || path.startsWith("META-INF/")) return null;
+        String name = path.substring(0, path.length()-".class".length()).replace('/', '.');
+        if (name.contains("$") || name.endsWith("package-info")) return null;
+        return name;
+    }
+
+    private static List<String> withoutBlankLines(List<String> lines) {
+        List<String> result = Lists.newArrayListWithCapacity(lines.size());
+        for (String line : lines) {
+            if (!line.trim().isEmpty()) result.add(line.trim());
+        }
+        return ImmutableList.copyOf(result);
+    }
+
+}
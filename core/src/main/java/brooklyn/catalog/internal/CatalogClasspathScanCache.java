@@ -0,0 +1,93 @@
+package brooklyn.catalog.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import brooklyn.catalog.internal.CatalogClasspathDo.CatalogScanningModes;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Remembers the names of the classes found by scanning a classpath for the catalog, in files named
+ * by a hash of the scan mode and of the JARs scanned (their URLs, sizes and modification times),
+ * so that a restart with the same JARs need not scan them again.
+ * <p>
+ * Only classpaths consisting entirely of JAR files are cached; a directory (such as an IDE's or build's
+ * <code>classes</code> directory) can change without any cheap way to tell, so is always scanned.
+ */
+class CatalogClasspathScanCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogClasspathScanCache.class);
+
+    private final File dir;
+
+    CatalogClasspathScanCache(File dir) {
+        this.dir = dir;
+    }
+
+    /** returns the key under which a scan of the given URLs is remembered, or null if it cannot be remembered */
+    String key(Iterable<URL> urls, CatalogScanningModes mode) {
+        if (urls == null) return null;
+        Hasher hasher = Hashing.sha1().newHasher().putString(mode.name(), Charsets.UTF_8);
+        for (URL url : urls) {
+            File jar = toJarFile(url);
+            if (jar == null) return null;
+            hasher.putString(url.toExternalForm(), Charsets.UTF_8)
+                    .putLong(jar.length())
+                    .putLong(jar.lastModified());
+        }
+        return hasher.hash().toString();
+    }
+
+    private static File toJarFile(URL url) {
+        if (!"file".equals(url.getProtocol()) || !url.getPath().endsWith(".jar")) return null;
+        try {
+            File file = new File(url.toURI());
+            return file.isFile() ? file : null;
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** returns the class names remembered under the given key, or null if none */
+    List<String> get(String key) {
+        if (key == null) return null;
+        File file = new File(dir, key+".txt");
+        if (!file.isFile()) return null;
+        try {
+            return Files.readLines(file, Charsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Unable to read catalog scan cache "+file+"; will scan classpath: "+e);
+            return null;
+        }
+    }
+
+    void put(String key, List<String> classNames) {
+        if (key == null) return;
+        File file = new File(dir, key+".txt");
+        try {
+            dir.mkdirs();
+            // write then rename, so that a concurrent or interrupted startup never sees a partial list
+            File tmp = File.createTempFile(key, ".tmp", dir);
+            Files.write(Joiner.on("\n").join(classNames), tmp, Charsets.UTF_8);
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to write catalog scan cache "+file+": "+e);
+        }
+    }
+
+}
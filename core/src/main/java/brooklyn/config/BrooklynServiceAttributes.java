@@ -22,6 +22,10 @@ public class BrooklynServiceAttributes {
     /** used to hold the instance of ManagementContext which should be used */
     public static final String BROOKLYN_MANAGEMENT_CONTEXT = ManagementContext.class.getName();
 
+    /** used to hold an {@link java.util.concurrent.atomic.AtomicBoolean} which is set once the launcher has finished
+     * starting the server (management context, catalog, locations and applications); absent if not started by a launcher */
+    public static final String BROOKLYN_STARTUP_COMPLETE = "brooklyn.startup.complete";
+
     /** poor-man's security, to specify a user to be automatically logged in
      * (e.g. to bypass security, during dev/test); 'admin' is usually a sensible choice.
      * if not specified (the default) username+password is required. */
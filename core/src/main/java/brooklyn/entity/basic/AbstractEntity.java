@@ -427,6 +427,7 @@ public abstract class AbstractEntity implements EntityLocal, EntityInternal {
     public void setDisplayName(String newDisplayName) {
         displayName.set(newDisplayName);
         displayNameAutoGenerated = false;
+        getManagementSupport().getEntityChangeListener().onDisplayNameChanged();
     }
     
     /**
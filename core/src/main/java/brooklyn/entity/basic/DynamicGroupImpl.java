@@ -12,12 +12,16 @@ import brooklyn.entity.Entity;
 import brooklyn.event.Sensor;
 import brooklyn.event.SensorEvent;
 import brooklyn.event.SensorEventListener;
+import brooklyn.management.EntityManager;
 import brooklyn.management.internal.CollectionChangeListener;
+import brooklyn.management.internal.LocalEntityManager;
 import brooklyn.management.internal.ManagementContextInternal;
 import brooklyn.util.GroovyJavaMethods;
 
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 
 public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup {
     public static final Logger log = LoggerFactory.getLogger(DynamicGroupImpl.class);
@@ -135,6 +139,28 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
         setChangeListener = null;
     }
     
+    /**
+     * Returns the entities that could match {@link #ENTITY_FILTER}, for use when rescanning. 
+     * <p>
+     * Where the filter is one of the indexable {@link EntityPredicates} (e.g. 
+     * {@link EntityPredicates#isInstanceOf(Class)} or {@link EntityPredicates#isChildOf(Entity)}), 
+     * only the indexed candidates are returned; otherwise this is all managed entities.
+     */
+    protected Iterable<Entity> getCandidateEntities() {
+        Predicate<? super Entity> entityFilter = getConfig(ENTITY_FILTER);
+        EntityManager entityManager = getManagementContext().getEntityManager();
+        
+        if (entityFilter instanceof EntityPredicates.InstanceOfPredicate && entityManager instanceof LocalEntityManager) {
+            Class<?> type = ((EntityPredicates.InstanceOfPredicate)entityFilter).getType();
+            return ((LocalEntityManager)entityManager).getEntitiesOfType(type);
+        } else if (entityFilter instanceof EntityPredicates.ChildOfPredicate) {
+            Entity parent = ((EntityPredicates.ChildOfPredicate)entityFilter).getParent();
+            return ImmutableList.copyOf(Iterables.filter(parent.getChildren(), EntityPredicates.managed()));
+        } else {
+            return entityManager.getEntities();
+        }
+    }
+    
     public void rescanEntities() {
         synchronized (memberChangeMutex) {
             if (!isRunning() || !getManagementSupport().isDeployed()) {
@@ -153,7 +179,7 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
             Collection<Entity> currentMembers = super.getMembers();
             Collection<Entity> toRemove = new LinkedHashSet<Entity>(currentMembers);
             
-            for (Entity it : getManagementContext().getEntityManager().getEntities()) {
+            for (Entity it : getCandidateEntities()) {
                 if (acceptsEntity(it)) {
                     toRemove.remove(it);
                     if (!currentMembers.contains(it)) {
@@ -1,5 +1,7 @@
 package brooklyn.entity.basic;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import javax.annotation.Nullable;
 
 import brooklyn.entity.Entity;
@@ -33,6 +35,27 @@ public class EntityPredicates {
         };
     }
     
+    /**
+     * Create a predicate that matches any entity that is an instance of the given type.
+     * <p>
+     * Unlike {@link com.google.common.base.Predicates#instanceOf(Class)}, the type is exposed (see
+     * {@link InstanceOfPredicate#getType()}) so that callers such as {@link DynamicGroup} can look up
+     * candidates in the entity manager's type index rather than testing every entity.
+     */
+    public static InstanceOfPredicate isInstanceOf(Class<?> type) {
+        return new InstanceOfPredicate(type);
+    }
+    
+    /**
+     * Create a predicate that matches any entity whose parent is the given entity.
+     * <p>
+     * The parent is exposed (see {@link ChildOfPredicate#getParent()}) so that callers such as 
+     * {@link DynamicGroup} need only consider that entity's children.
+     */
+    public static ChildOfPredicate isChildOf(Entity parent) {
+        return new ChildOfPredicate(parent);
+    }
+    
     public static <T> Predicate<Entity> managed() {
         return new Predicate<Entity>() {
             @Override
@@ -41,4 +64,48 @@ public class EntityPredicates {
             }
         };
     }
+
+    public static class InstanceOfPredicate implements Predicate<Entity> {
+        private final Class<?> type;
+        
+        protected InstanceOfPredicate(Class<?> type) {
+            this.type = checkNotNull(type, "type");
+        }
+        
+        public Class<?> getType() {
+            return type;
+        }
+        
+        @Override
+        public boolean apply(@Nullable Entity input) {
+            return type.isInstance(input);
+        }
+        
+        @Override
+        public String toString() {
+            return "isInstanceOf("+type.getName()+")";
+        }
+    }
+    
+    public static class ChildOfPredicate implements Predicate<Entity> {
+        private final Entity parent;
+        
+        protected ChildOfPredicate(Entity parent) {
+            this.parent = checkNotNull(parent, "parent");
+        }
+        
+        public Entity getParent() {
+            return parent;
+        }
+        
+        @Override
+        public boolean apply(@Nullable Entity input) {
+            return (input != null) && Objects.equal(input.getParent(), parent);
+        }
+        
+        @Override
+        public String toString() {
+            return "isChildOf("+parent+")";
+        }
+    }
 }
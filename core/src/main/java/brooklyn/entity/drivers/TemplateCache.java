@@ -0,0 +1,117 @@
+package brooklyn.entity.drivers;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import brooklyn.util.exceptions.Exceptions;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+
+/**
+ * A cache of parsed freemarker templates, shared across a management context, so that when many entities
+ * are started from the same template (e.g. the nodes of a large cluster) it is parsed only once.
+ * <p>
+ * Templates are keyed by URL and the hash of their contents: the caller supplies the contents
+ * (which may have changed, e.g. for a file or http URL), and the entry for that URL is replaced
+ * whenever the contents differ from those last parsed.
+ * <p>
+ * Parsed templates are thread-safe, so can be processed concurrently by many drivers.
+ */
+public class TemplateCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TemplateCache.class);
+
+    private static class CachedTemplate {
+        final HashCode contentsHash;
+        final Template template;
+
+        CachedTemplate(HashCode contentsHash, Template template) {
+            this.contentsHash = contentsHash;
+            this.template = template;
+        }
+    }
+
+    private final Configuration configuration = new Configuration();
+    private final ConcurrentMap<String, CachedTemplate> templates = Maps.newConcurrentMap();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns the parsed template for the given URL, parsing the contents only if they differ from
+     * those last parsed for that URL.
+     */
+    public Template getTemplate(String url, String contents) {
+        checkNotNull(url, "url");
+        checkNotNull(contents, "contents");
+
+        HashCode hash = Hashing.md5().hashString(contents, Charsets.UTF_8);
+        CachedTemplate cached = templates.get(url);
+        if (cached != null && cached.contentsHash.equals(hash)) {
+            hits.incrementAndGet();
+            return cached.template;
+        }
+
+        misses.incrementAndGet();
+        if (cached != null && LOG.isDebugEnabled()) LOG.debug("Contents of template {} changed; re-parsing", url);
+        try {
+            Template template = new Template(url, new StringReader(contents), configuration);
+            // concurrent parses of the same contents are harmless; last one wins
+            templates.put(url, new CachedTemplate(hash, template));
+            return template;
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /**
+     * Renders the template at the given URL (whose current contents are supplied) with the given substitutions.
+     */
+    public String process(String url, String contents, Map<String, ?> substitutions) {
+        Template template = getTemplate(url, contents);
+        try {
+            StringWriter out = new StringWriter();
+            template.process(substitutions, out);
+            return out.toString();
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /** Discards the cached template for the given URL, if any. */
+    public void invalidate(String url) {
+        templates.remove(url);
+    }
+
+    /** Discards all cached templates. */
+    public void clear() {
+        templates.clear();
+    }
+
+    public int size() {
+        return templates.size();
+    }
+
+    /** The number of lookups that were satisfied without parsing. */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** The number of lookups that required the template to be parsed. */
+    public long getMissCount() {
+        return misses.get();
+    }
+}
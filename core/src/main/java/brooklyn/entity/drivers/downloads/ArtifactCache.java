@@ -0,0 +1,195 @@
+package brooklyn.entity.drivers.downloads;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import brooklyn.config.ConfigKey;
+import brooklyn.config.StringConfigMap;
+import brooklyn.entity.basic.ConfigKeys;
+import brooklyn.util.ResourceUtils;
+import brooklyn.util.exceptions.Exceptions;
+import brooklyn.util.stream.Streams;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * A content-addressed cache of install artifacts on the management node.
+ * <p>
+ * Each artifact is fetched once (from the first of its targets that works), its SHA-256 computed
+ * (and checked, if a checksum is expected), and stored under that checksum. Drivers then copy it to
+ * their machines over ssh, rather than every machine downloading it independently (see
+ * {@code AbstractSoftwareProcessSshDriver.downloadCommands}). Concurrent requests for the same
+ * artifact share a single fetch.
+ * <p>
+ * Only remote targets (http, https and ftp) are fetched; other targets (e.g. the local-repo {@code file://}
+ * URL, which refers to the target machine's file system) are left to the machine.
+ */
+public class ArtifactCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ArtifactCache.class);
+
+    public static final ConfigKey<Boolean> ENABLED = ConfigKeys.newBooleanConfigKey(
+            DownloadProducerFromProperties.DOWNLOAD_CONF_PREFIX+"artifactCache.enabled",
+            "Whether to fetch install artifacts once on the management node and copy them to each machine, " +
+            "rather than each machine downloading them", false);
+
+    public static final ConfigKey<String> DIR = ConfigKeys.newStringConfigKey(
+            DownloadProducerFromProperties.DOWNLOAD_CONF_PREFIX+"artifactCache.dir",
+            "Directory on the management node in which to store cached install artifacts", "~/.brooklyn/artifacts");
+
+    /** An artifact in the cache. */
+    public static class Artifact {
+        private final File file;
+        private final String sha256;
+        private final String sourceUrl;
+
+        public Artifact(File file, String sha256, String sourceUrl) {
+            this.file = file;
+            this.sha256 = sha256;
+            this.sourceUrl = sourceUrl;
+        }
+        public File getFile() {
+            return file;
+        }
+        /** Lower-case hex SHA-256 of the contents. */
+        public String getSha256() {
+            return sha256;
+        }
+        /** The target the artifact was fetched from. */
+        public String getSourceUrl() {
+            return sourceUrl;
+        }
+        @Override
+        public String toString() {
+            return "Artifact["+sourceUrl+" ("+sha256+")]";
+        }
+    }
+
+    private final StringConfigMap config;
+
+    /** Fetches in progress or done, keyed by the targets requested */
+    private final ConcurrentMap<String, FutureTask<Artifact>> artifacts = Maps.newConcurrentMap();
+
+    public ArtifactCache(StringConfigMap config) {
+        this.config = checkNotNull(config, "config");
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(config.getConfig(ENABLED));
+    }
+
+    public File getDir() {
+        String dir = config.getConfig(DIR);
+        if (dir.startsWith("~")) dir = System.getProperty("user.home")+dir.substring(1);
+        return new File(dir);
+    }
+
+    /**
+     * Returns the artifact for the given targets, fetching it (once) if necessary.
+     *
+     * @param targets Where to download the artifact from, tried in order
+     * @param expectedSha256 The expected checksum, or null if not known
+     * @return the artifact, or null if none of the targets could be fetched (or matched the checksum)
+     */
+    @Nullable
+    public Artifact get(final List<String> targets, @Nullable final String expectedSha256) {
+        String key = Joiner.on(" ").join(targets) + (expectedSha256 != null ? " sha256="+expectedSha256 : "");
+        FutureTask<Artifact> task = new FutureTask<Artifact>(new Callable<Artifact>() {
+            @Override public Artifact call() {
+                return fetch(targets, expectedSha256);
+            }});
+        FutureTask<Artifact> existing = artifacts.putIfAbsent(key, task);
+        if (existing != null) {
+            task = existing;
+        } else {
+            task.run();
+        }
+
+        try {
+            Artifact result = task.get();
+            // don't remember failures; let later callers try again
+            if (result == null) artifacts.remove(key, task);
+            return result;
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        } catch (ExecutionException e) {
+            artifacts.remove(key, task);
+            throw Exceptions.propagate(e.getCause());
+        }
+    }
+
+    protected Artifact fetch(List<String> targets, @Nullable String expectedSha256) {
+        for (String target : targets) {
+            if (!isRemote(target)) continue;
+            try {
+                Artifact result = fetch(target);
+                if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(result.getSha256())) {
+                    LOG.warn("Checksum mismatch for artifact from "+target+": expected "+expectedSha256+", got "+result.getSha256()+"; ignoring");
+                    continue;
+                }
+                LOG.info("Cached artifact {} as {}", target, result.getFile());
+                return result;
+            } catch (Exception e) {
+                LOG.debug("Failed to fetch artifact from "+target+" (continuing): "+e);
+            }
+        }
+        LOG.info("Could not cache artifact from any of {}; machines will download it themselves", targets);
+        return null;
+    }
+
+    protected Artifact fetch(String target) throws Exception {
+        File dir = getDir();
+        dir.mkdirs();
+        File tmp = File.createTempFile("download", ".tmp", dir);
+        try {
+            InputStream in = new ResourceUtils(this).getResourceFromUrl(target);
+            OutputStream out = new FileOutputStream(tmp);
+            Hasher hasher = Hashing.sha256().newHasher();
+            try {
+                byte[] buf = new byte[64*1024];
+                int n;
+                while ((n = in.read(buf)) >= 0) {
+                    out.write(buf, 0, n);
+                    hasher.putBytes(buf, 0, n);
+                }
+            } finally {
+                Streams.closeQuietly(in);
+                Streams.closeQuietly(out);
+            }
+            HashCode hash = hasher.hash();
+            File file = new File(dir, hash.toString());
+            if (file.exists()) {
+                // same content already cached, e.g. from another URL
+                tmp.delete();
+            } else {
+                Files.move(tmp, file);
+            }
+            return new Artifact(file, hash.toString(), target);
+        } finally {
+            if (tmp.exists()) tmp.delete();
+        }
+    }
+
+    protected boolean isRemote(String target) {
+        return target.toLowerCase().matches("^(https?|ftp)://.*");
+    }
+}
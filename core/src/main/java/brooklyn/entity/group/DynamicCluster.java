@@ -22,6 +22,7 @@ import brooklyn.event.AttributeSensor;
 import brooklyn.event.basic.BasicAttributeSensor;
 import brooklyn.event.basic.BasicConfigKey;
 import brooklyn.event.basic.BasicNotificationSensor;
+import brooklyn.location.BulkMachineProvisioningLocation;
 import brooklyn.util.flags.SetFromFlag;
 
 import com.google.common.base.Function;
@@ -39,6 +40,29 @@ public interface DynamicCluster extends AbstractGroup, Cluster {
     public static final ConfigKey<Boolean> QUARANTINE_FAILED_ENTITIES = new BasicConfigKey<Boolean>(
             Boolean.class, "dynamiccluster.quarantineFailedEntities", "Whether to guarantine entities that fail to start, or to try to clean them up", false);
 
+    @SetFromFlag("maxConcurrentChildStarts")
+    public static final ConfigKey<Integer> MAX_CONCURRENT_CHILD_STARTS = new BasicConfigKey<Integer>(
+            Integer.class, "dynamiccluster.maxConcurrentChildStarts", "The maximum number of new members to start at the same time when growing (null or 0 for no limit)", null);
+
+    /**
+     * If the cluster's location is a {@link BulkMachineProvisioningLocation}, whether to obtain all the
+     * machines for new members in one request, and then start each member on its machine. The request uses
+     * the flags the members would use to obtain their own machines (for members which are
+     * {@link brooklyn.entity.trait.MachineProvisioned}), overridden by {@link #BULK_PROVISIONING_FLAGS};
+     * if the members' flags differ (e.g. in the ports to open) then they provision individually instead.
+     * Any shortfall is also provisioned individually by the members, as normal.
+     * <p>
+     * Machines obtained this way are released by the cluster when it removes the member (the record of 
+     * which machines to release is not persisted).
+     */
+    @SetFromFlag("bulkProvisioning")
+    public static final ConfigKey<Boolean> BULK_PROVISIONING = new BasicConfigKey<Boolean>(
+            Boolean.class, "dynamiccluster.bulkProvisioning", "Whether to obtain machines for all new members in one request, if the location supports it", false);
+
+    @SetFromFlag("bulkProvisioningFlags")
+    public static final ConfigKey<Map> BULK_PROVISIONING_FLAGS = new BasicConfigKey<Map>(
+            Map.class, "dynamiccluster.bulkProvisioningFlags", "Flags passed to the location when obtaining machines for new members in bulk, in addition to those of the members", ImmutableMap.of());
+
     public static final AttributeSensor<Lifecycle> SERVICE_STATE = Attributes.SERVICE_STATE;
 
     public static final BasicNotificationSensor<Entity> ENTITY_QUARANTINED = new BasicNotificationSensor<Entity>(Entity.class, "dynamiccluster.entityQuarantined", "Entity failed to start, and has been quarantined");
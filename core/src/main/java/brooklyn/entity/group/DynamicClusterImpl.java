@@ -5,6 +5,7 @@ import groovy.lang.Closure;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -23,13 +24,20 @@ import brooklyn.entity.basic.EntityFactoryForLocation;
 import brooklyn.entity.basic.Lifecycle;
 import brooklyn.entity.proxying.EntitySpec;
 import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.entity.trait.MachineProvisioned;
 import brooklyn.entity.trait.Startable;
+import brooklyn.location.BulkMachineProvisioningLocation;
 import brooklyn.location.Location;
+import brooklyn.location.MachineLocation;
+import brooklyn.location.MachineProvisioningLocation;
+import brooklyn.location.NoMachinesAvailableException;
+import brooklyn.location.basic.LocationConfigKeys;
 import brooklyn.management.Task;
 import brooklyn.policy.Policy;
 import brooklyn.util.GroovyJavaMethods;
 import brooklyn.util.collections.MutableList;
 import brooklyn.util.exceptions.Exceptions;
+import brooklyn.util.time.Time;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
@@ -48,6 +56,12 @@ public class DynamicClusterImpl extends AbstractGroupImpl implements DynamicClus
     // Mutex for synchronizing during re-size operations
     private final Object mutex = new Object[0];
     
+    // Machines obtained by bulk provisioning, to be released when the member is removed
+    private final Map<Entity, MachineLocation> bulkProvisionedMachines = Maps.newConcurrentMap();
+    
+    // How often to check for a member start finishing, when waiting to start another
+    private static final long START_POLL_PERIOD_MILLIS = 100;
+    
     private static final Function<Collection<Entity>, Entity> defaultRemovalStrategy = new Function<Collection<Entity>, Entity>() {
         @Override public Entity apply(Collection<Entity> contenders) {
             // choose newest entity that is stoppable
@@ -209,12 +223,8 @@ public class DynamicClusterImpl extends AbstractGroupImpl implements DynamicClus
         for (int i = 0; i < delta; i++) {
             addedEntities.add(addNode());
         }
-        Map<Entity, Task<?>> tasks = Maps.newLinkedHashMap();
-        for (Entity entity: addedEntities) {
-            Map<String,?> args = ImmutableMap.of("locations", ImmutableList.of(getLocation()));
-            tasks.put(entity, entity.invoke(Startable.START, args));
-        }
-        Map<Entity, Throwable> errors = waitForTasksOnEntityStart(tasks);
+        Map<Entity, Location> startLocations = chooseStartLocations(addedEntities);
+        Map<Entity, Throwable> errors = startNodes(startLocations);
         
         if (!errors.isEmpty()) {
             if (isQuarantineEnabled()) {
@@ -227,6 +237,126 @@ public class DynamicClusterImpl extends AbstractGroupImpl implements DynamicClus
         return MutableList.<Entity>builder().addAll(addedEntities).removeAll(errors.keySet()).build();
     }
     
+    /**
+     * Returns the location in which to start each of the given new members: normally the cluster's location,
+     * but if {@link #BULK_PROVISIONING} is enabled then a machine from a single bulk request, where possible.
+     */
+    protected Map<Entity, Location> chooseStartLocations(Collection<Entity> entities) {
+        Map<Entity, Location> result = Maps.newLinkedHashMap();
+        Location location = getLocation();
+        
+        Map<String,Object> bulkFlags = null;
+        if (entities.size() > 1 && Boolean.TRUE.equals(getConfig(BULK_PROVISIONING)) && location instanceof BulkMachineProvisioningLocation) {
+            bulkFlags = getBulkProvisioningFlags(entities, (BulkMachineProvisioningLocation<?>)location);
+        }
+        
+        if (bulkFlags != null) {
+            Collection<? extends MachineLocation> machines;
+            try {
+                machines = ((BulkMachineProvisioningLocation<?>)location).obtain(entities.size(), bulkFlags);
+            } catch (NoMachinesAvailableException e) {
+                logger.warn("Cluster "+this+" failed to obtain "+entities.size()+" machines in bulk from "+location+"; members will provision individually: "+e);
+                machines = ImmutableList.of();
+            }
+            if (machines.size() < entities.size()) {
+                logger.warn("Cluster {} obtained only {} of {} machines in bulk from {}; remaining members will provision individually", 
+                        new Object[] {this, machines.size(), entities.size(), location});
+            }
+            
+            Iterator<? extends MachineLocation> machineIter = machines.iterator();
+            for (Entity entity : entities) {
+                if (machineIter.hasNext()) {
+                    MachineLocation machine = machineIter.next();
+                    bulkProvisionedMachines.put(entity, machine);
+                    result.put(entity, machine);
+                } else {
+                    result.put(entity, location);
+                }
+            }
+            // Should not happen (more machines than requested), but don't leak them 
+            while (machineIter.hasNext()) {
+                releaseMachineQuietly(machineIter.next());
+            }
+        } else {
+            for (Entity entity : entities) {
+                result.put(entity, location);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the flags for obtaining machines for all the given new members in one request: those each member 
+     * would use to obtain its own machine (see {@link MachineProvisioned}), overridden by {@link #BULK_PROVISIONING_FLAGS}.
+     * Returns null if the members would ask for different machines (e.g. with different inbound ports), 
+     * in which case they must provision individually.
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<String,Object> getBulkProvisioningFlags(Collection<Entity> entities, MachineProvisioningLocation<?> location) {
+        Map<String,Object> memberFlags = null;
+        for (Entity entity : entities) {
+            Map<String,Object> flags = Maps.newLinkedHashMap();
+            if (entity instanceof MachineProvisioned) {
+                flags.putAll(((MachineProvisioned)entity).getProvisioningFlagsFor(location));
+            }
+            // identifies the member, so always differs (and cannot apply to a shared request)
+            flags.remove(LocationConfigKeys.CALLER_CONTEXT.getName());
+            
+            if (memberFlags == null) {
+                memberFlags = flags;
+            } else if (!memberFlags.equals(flags)) {
+                logger.info("Cluster {} not obtaining machines in bulk from {}, as new members need different provisioning flags ({} and {}); members will provision individually",
+                        new Object[] {this, location, Entities.sanitize(memberFlags), Entities.sanitize(flags)});
+                return null;
+            }
+        }
+        Map<String,Object> result = Maps.newLinkedHashMap();
+        if (memberFlags != null) result.putAll(memberFlags);
+        result.putAll(getConfig(BULK_PROVISIONING_FLAGS));
+        return result;
+    }
+
+    /**
+     * Starts each new member in the given location, with at most {@link #MAX_CONCURRENT_CHILD_STARTS} 
+     * starting at a time; returns the members that failed to start.
+     */
+    protected Map<Entity, Throwable> startNodes(Map<Entity, Location> startLocations) {
+        Integer maxConcurrent = getConfig(MAX_CONCURRENT_CHILD_STARTS);
+        Map<Entity, Throwable> errors = Maps.newLinkedHashMap();
+        Map<Entity, Task<?>> inFlight = Maps.newLinkedHashMap();
+        
+        for (Map.Entry<Entity, Location> entry : startLocations.entrySet()) {
+            if (maxConcurrent != null && maxConcurrent > 0 && inFlight.size() >= maxConcurrent) {
+                // wait for whichever start finishes first before starting another
+                errors.putAll(waitForTasksOnEntityStart(removeFinishedStarts(inFlight)));
+            }
+            Entity entity = entry.getKey();
+            Map<String,?> args = ImmutableMap.of("locations", ImmutableList.of(entry.getValue()));
+            inFlight.put(entity, entity.invoke(Startable.START, args));
+        }
+        errors.putAll(waitForTasksOnEntityStart(inFlight));
+        return errors;
+    }
+    
+    /**
+     * Waits until at least one of the in-flight member starts has finished, then removes and returns those which have.
+     * Polls, as tasks do not notify on completion, rather than using a thread per start to wait.
+     */
+    private Map<Entity, Task<?>> removeFinishedStarts(Map<Entity, Task<?>> inFlight) {
+        Map<Entity, Task<?>> finished = Maps.newLinkedHashMap();
+        while (true) {
+            for (Iterator<Map.Entry<Entity, Task<?>>> i = inFlight.entrySet().iterator(); i.hasNext(); ) {
+                Map.Entry<Entity, Task<?>> entry = i.next();
+                if (entry.getValue().isDone()) {
+                    finished.put(entry.getKey(), entry.getValue());
+                    i.remove();
+                }
+            }
+            if (!finished.isEmpty()) return finished;
+            Time.sleep(START_POLL_PERIOD_MILLIS);
+        }
+    }
+    
     private void shrink(int delta) {
         Collection<Entity> removedEntities = Lists.newArrayList();
         
@@ -251,6 +381,8 @@ public class DynamicClusterImpl extends AbstractGroupImpl implements DynamicClus
             emit(ENTITY_QUARANTINED, entity);
             getQuarantineGroup().addMember(entity);
             removeMember(entity);
+            // kept for inspection, but not holding on to a machine obtained for it by the cluster
+            releaseBulkProvisionedMachine(entity);
         }
     }
     
@@ -356,6 +488,24 @@ public class DynamicClusterImpl extends AbstractGroupImpl implements DynamicClus
     protected void discardNode(Entity entity) {
         removeMember(entity);
         Entities.unmanage(entity);
+        releaseBulkProvisionedMachine(entity);
+    }
+    
+    /**
+     * Releases the machine (if any) obtained for this member by bulk provisioning; see {@link #BULK_PROVISIONING}.
+     */
+    protected void releaseBulkProvisionedMachine(Entity entity) {
+        MachineLocation machine = bulkProvisionedMachines.remove(entity);
+        if (machine != null) releaseMachineQuietly(machine);
+    }
+    
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void releaseMachineQuietly(MachineLocation machine) {
+        try {
+            ((MachineProvisioningLocation)getLocation()).release(machine);
+        } catch (Exception e) {
+            logger.warn("Cluster "+this+" failed to release machine "+machine+"; continuing", e);
+        }
     }
     
     protected void stopAndRemoveNode(Entity member) {
@@ -372,6 +522,7 @@ public class DynamicClusterImpl extends AbstractGroupImpl implements DynamicClus
             }
         } finally {
             Entities.unmanage(member);
+            releaseBulkProvisionedMachine(member);
         }
     }
 }
@@ -0,0 +1,19 @@
+package brooklyn.entity.trait;
+
+import java.util.Map;
+
+import brooklyn.location.MachineProvisioningLocation;
+
+/**
+ * An entity which obtains its own machine when started in a {@link MachineProvisioningLocation},
+ * and can say what it would ask for, so that a machine can instead be provisioned for it in advance
+ * (e.g. by a cluster obtaining machines for several members at once).
+ */
+public interface MachineProvisioned {
+
+    /**
+     * Returns the flags this entity would pass to {@link MachineProvisioningLocation#obtain(Map)}
+     * when obtaining its machine from the given location.
+     */
+    Map<String,Object> getProvisioningFlagsFor(MachineProvisioningLocation<?> location);
+}
@@ -2,6 +2,7 @@ package brooklyn.location.basic;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -11,6 +12,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,7 +31,9 @@ import brooklyn.util.text.WildcardGlobs;
 import brooklyn.util.text.WildcardGlobs.PhraseTreatment;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Closeables;
 
 @SuppressWarnings({"rawtypes","unchecked"})
 public class BasicLocationRegistry implements LocationRegistry {
@@ -51,6 +55,9 @@ public class BasicLocationRegistry implements LocationRegistry {
     private final Map<String,LocationDefinition> definedLocations = new LinkedHashMap<String, LocationDefinition>();
 
     protected final Map<String,LocationResolver> resolvers = new LinkedHashMap<String, LocationResolver>();
+    /** locations resolved here which hold resources (such as machines or threads), to be closed with the registry;
+     * weakly held, so that locations no longer used can still be garbage collected */
+    private final Set<Closeable> closeableLocations = Collections.newSetFromMap(new WeakHashMap<Closeable, Boolean>());
 
     public BasicLocationRegistry(ManagementContext mgmt) {
         this.mgmt = checkNotNull(mgmt, "mgmt");
@@ -177,7 +184,13 @@ public class BasicLocationRegistry implements LocationRegistry {
             LocationResolver resolver = getSpecResolver(spec);
 
             if (resolver != null) {
-                return resolver.newLocationFromString(locationFlags, spec, this);
+                Location result = resolver.newLocationFromString(locationFlags, spec, this);
+                if (result instanceof Closeable) {
+                    synchronized (closeableLocations) {
+                        closeableLocations.add((Closeable) result);
+                    }
+                }
+                return result;
             }
 
             throw new NoSuchElementException("No resolver found for '"+spec+"'");
@@ -217,6 +230,18 @@ public class BasicLocationRegistry implements LocationRegistry {
         return false;
     }
 
+    /** closes the locations resolved by this registry which are {@link Closeable}, e.g. when the management context terminates */
+    public void close() {
+        List<Closeable> toClose;
+        synchronized (closeableLocations) {
+            toClose = ImmutableList.copyOf(closeableLocations);
+            closeableLocations.clear();
+        }
+        for (Closeable location : toClose) {
+            Closeables.closeQuietly(location);
+        }
+    }
+
     /** @deprecated use resolve */
     public List<Location> getLocationsById(Iterable<?> specs) {
         return resolve(specs);
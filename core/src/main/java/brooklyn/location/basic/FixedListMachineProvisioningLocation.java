@@ -6,21 +6,35 @@ import java.io.Closeable;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.Nullable;
+
+import brooklyn.entity.rebind.BasicLocationRebindSupport;
+import brooklyn.entity.rebind.RebindContext;
+import brooklyn.entity.rebind.RebindSupport;
+import brooklyn.location.BulkMachineProvisioningLocation;
 import brooklyn.location.Location;
 import brooklyn.location.MachineLocation;
-import brooklyn.location.MachineProvisioningLocation;
 import brooklyn.location.NoMachinesAvailableException;
+import brooklyn.mementos.LocationMemento;
 import brooklyn.util.collections.MutableMap;
 import brooklyn.util.flags.SetFromFlag;
 import brooklyn.util.text.WildcardGlobs;
 import brooklyn.util.text.WildcardGlobs.PhraseTreatment;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -33,15 +47,24 @@ import com.google.common.io.Closeables;
  * 
  * This can be extended to have a mechanism to make more machines to be available
  * (override provisionMore and canProvisionMore).
+ * <p>
+ * Machines are claimed without locking: available machines are held in a concurrent free-list,
+ * and a machine is claimed by atomically adding it to the in-use set. Adding and removing machines
+ * is (rarely) done under a lock. Machines can be requested by their location properties with the
+ * {@value #CONSTRAINTS} flag, which is answered from an index of the machines' values for each
+ * property used.
  */
 public class FixedListMachineProvisioningLocation<T extends MachineLocation> extends AbstractLocation 
-implements MachineProvisioningLocation<T>, Closeable {
+implements BulkMachineProvisioningLocation<T>, Closeable {
+
+    /**
+     * Flag for {@link #obtain(Map)}: a map of location property name to required value, e.g.
+     * {@code osFamily: "ubuntu", size: "large"}; for a property whose value is a collection 
+     * (e.g. {@code tags}), the required value must be contained in the collection.
+     * Machines' properties are assumed not to change once they are in the pool.
+     */
+    public static final String CONSTRAINTS = "constraints";
 
-    // TODO Synchronization looks very wrong for accessing machines/inUse 
-    // e.g. removeChildLocation doesn't synchronize when doing machines.remove(...),
-    // and getMachines() returns the real sets risking 
-    // ConcurrentModificationException in the caller if it iterates over them etc.
-    
     private Object lock;
     
     @SetFromFlag
@@ -53,13 +76,24 @@ implements MachineProvisioningLocation<T>, Closeable {
     @SetFromFlag
     protected Set<T> pendingRemoval;
     
+    /** Machines available, in the order they became available; a machine being removed concurrently
+     * may still be there (and fail to be claimed) */
+    private transient FreeList<T> freeList;
+    
+    /** For each property used in {@link #CONSTRAINTS}, the machines with each value of that property */
+    private transient ConcurrentMap<String, ConcurrentMap<String, Set<T>>> index;
+    
+    private transient AtomicLong obtainCount;
+    private transient AtomicLong obtainNanos;
+    
     public FixedListMachineProvisioningLocation() {
         this(Maps.newLinkedHashMap());
     }
     public FixedListMachineProvisioningLocation(Map properties) {
         super(properties);
 
-        for (MachineLocation location: machines) {
+        // the free-list (then in-use) preserves the order the machines were supplied in
+        for (MachineLocation location: ImmutableList.copyOf(Iterables.concat(freeList, inUse))) {
             // FIXME Bad casting
             Location machine = (Location) location;
             Location parent = machine.getParent();
@@ -80,11 +114,55 @@ implements MachineProvisioningLocation<T>, Closeable {
     protected void configure(Map properties) {
         if (lock == null) {
             lock = new Object();
-            machines = Sets.newLinkedHashSet();
-            inUse = Sets.newLinkedHashSet();
-            pendingRemoval = Sets.newLinkedHashSet();
+            machines = newConcurrentSet();
+            inUse = newConcurrentSet();
+            pendingRemoval = newConcurrentSet();
+            index = Maps.newConcurrentMap();
+            obtainCount = new AtomicLong();
+            obtainNanos = new AtomicLong();
         }
         super.configure(properties);
+        resetFreeList();
+    }
+    
+    @Override
+    public RebindSupport<LocationMemento> getRebindSupport() {
+        return new BasicLocationRebindSupport(this) {
+            @Override protected void doReconsruct(RebindContext rebindContext, LocationMemento memento) {
+                super.doReconsruct(rebindContext, memento);
+                resetFreeList();
+            }
+        };
+    }
+    
+    /** Rebuilds the free-list and index, e.g. after the machine sets have been set from flags. */
+    protected void resetFreeList() {
+        synchronized (lock) {
+            // flags may have supplied (ordered, non-concurrent) sets; the free-list keeps their order
+            FreeList<T> newFreeList = new FreeList<T>();
+            for (T machine : machines) {
+                if (!inUse.contains(machine)) newFreeList.add(machine);
+            }
+            freeList = newFreeList;
+            if (!isConcurrentSet(machines)) machines = newConcurrentSet(machines);
+            if (!isConcurrentSet(inUse)) inUse = newConcurrentSet(inUse);
+            if (!isConcurrentSet(pendingRemoval)) pendingRemoval = newConcurrentSet(pendingRemoval);
+            index.clear();
+        }
+    }
+    
+    private static <T> Set<T> newConcurrentSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+    }
+    
+    private static <T> Set<T> newConcurrentSet(Collection<? extends T> contents) {
+        Set<T> result = newConcurrentSet();
+        result.addAll(contents);
+        return result;
+    }
+    
+    private static boolean isConcurrentSet(Set<?> set) {
+        return set.getClass().equals(newConcurrentSet().getClass());
     }
     
     public FixedListMachineProvisioningLocation<T> newSubLocation(Map<?,?> newFlags) {
@@ -108,18 +186,18 @@ implements MachineProvisioningLocation<T>, Closeable {
             if (existingParent != null && !existingParent.equals(this))
                 throw new IllegalStateException("Machine "+machine+" must not have a parent location to be added to "+toString()+", but parent is already set to '"+existingParent+"'");
             addChildLocation((Location)machine);
-            
-            machines.add(machine);
         }
     }
     
     public void removeMachine(T machine) {
         synchronized (lock) {
-            if (inUse.contains(machine)) {
-                pendingRemoval.add(machine);
-            } else {
+            // mark first, so a concurrent claim either sees this or is seen below
+            pendingRemoval.add(machine);
+            if (!inUse.contains(machine)) {
+                freeList.remove(machine);
                 machines.remove(machine);
                 pendingRemoval.remove(machine);
+                unindex(machine);
                 removeChildLocation((Location)machine);
             }
         }
@@ -142,11 +220,31 @@ implements MachineProvisioningLocation<T>, Closeable {
     public Set<T> getAllMachines() {
         return ImmutableSet.copyOf(machines);
     }   
+    
+    /** The number of machines currently available (i.e. the depth of the pool). */
+    public int getAvailableCount() {
+        return Math.max(0, machines.size() - inUse.size());
+    }
+    
+    /** The number of machines obtained from this location. */
+    public long getObtainCount() {
+        return obtainCount.get();
+    }
+    
+    /** The mean time taken to claim a machine, in nanoseconds (excluding any {@link #provisionMore(int)}). */
+    public long getMeanObtainLatencyNanos() {
+        long count = obtainCount.get();
+        return (count == 0) ? 0 : obtainNanos.get() / count;
+    }
      
     @Override
     public void addChild(Location child) {
         super.addChild(child);
-        machines.add((T)child);
+        T machine = (T) child;
+        if (machines.add(machine)) {
+            index(machine);
+            if (!inUse.contains(machine)) freeList.add(machine);
+        }
     }
 
     @Override
@@ -155,6 +253,7 @@ implements MachineProvisioningLocation<T>, Closeable {
             throw new IllegalStateException("Child location "+child+" is in use; cannot remove from "+this);
         }
         machines.remove(child);
+        unindex((T) child);
         return super.removeChild(child);
     }
 
@@ -167,52 +266,241 @@ implements MachineProvisioningLocation<T>, Closeable {
     
     @Override
     public T obtain(Map<?,?> flags) throws NoMachinesAvailableException {
-        T machine;
         T desiredMachine = (T) flags.get("desiredMachine");
+        Map<?,?> constraints = (Map<?,?>) flags.get(CONSTRAINTS);
         
-        synchronized (lock) {
-            Set<T> a = getAvailable();
-            if (a.isEmpty()) {
-                if (canProvisionMore()) {
-                    provisionMore(1);
-                    a = getAvailable();
+        if (desiredMachine != null) {
+            long startTime = System.nanoTime();
+            if (!machines.contains(desiredMachine) || pendingRemoval.contains(desiredMachine)) {
+                throw new IllegalStateException("Desired machine "+desiredMachine+" not available in "+toString()+"; machine unknown");
+            }
+            if (!claim(desiredMachine)) {
+                throw new IllegalStateException("Desired machine "+desiredMachine+" not available in "+toString()+"; "+
+                        (inUse.contains(desiredMachine) ? "machine in use" : "machine unknown"));
+            }
+            freeList.remove(desiredMachine);
+            recordObtain(startTime);
+            return desiredMachine;
+        }
+        
+        Collection<T> result = claimMachines(1, constraints);
+        if (result.isEmpty())
+            throw new NoMachinesAvailableException("No machines available in "+toString()+
+                    (constraints != null && !constraints.isEmpty() ? " matching "+constraints : ""));
+        return result.iterator().next();
+    }
+
+    /**
+     * Obtains up to the given number of machines, each claimed atomically (and without locking), 
+     * provisioning more if permitted; supports the {@value #CONSTRAINTS} flag.
+     */
+    @Override
+    public Collection<T> obtain(int count, Map<?,?> flags) throws NoMachinesAvailableException {
+        if (flags.containsKey("desiredMachine")) 
+            throw new IllegalArgumentException("Flag desiredMachine not supported when obtaining multiple machines from "+this);
+        Map<?,?> constraints = (Map<?,?>) flags.get(CONSTRAINTS);
+        
+        List<T> result = claimMachines(count, constraints);
+        if (result.isEmpty())
+            throw new NoMachinesAvailableException("No machines available in "+toString()+
+                    (constraints != null && !constraints.isEmpty() ? " matching "+constraints : ""));
+        return result;
+    }
+    
+    protected List<T> claimMachines(int count, @Nullable Map<?,?> constraints) {
+        List<T> result = Lists.newArrayListWithCapacity(count);
+        claimAvailable(count, constraints, result);
+        if (result.size() < count && canProvisionMore()) {
+            synchronized (lock) {
+                provisionMore(count - result.size());
+            }
+            claimAvailable(count, constraints, result);
+        }
+        return result;
+    }
+    
+    protected void claimAvailable(int count, @Nullable Map<?,?> constraints, List<T> result) {
+        if (constraints != null && !constraints.isEmpty()) {
+            for (T machine : getCandidates(constraints)) {
+                if (result.size() >= count) return;
+                long startTime = System.nanoTime();
+                if (matches(machine, constraints) && claim(machine)) {
+                    freeList.remove(machine);
+                    recordObtain(startTime);
+                    result.add(machine);
                 }
-                if (a.isEmpty())
-                    throw new NoMachinesAvailableException("No machines available in "+toString());
             }
-            if (desiredMachine != null) {
-                if (a.contains(desiredMachine)) {
-                    machine = desiredMachine;
-                } else {
-                    throw new IllegalStateException("Desired machine "+desiredMachine+" not available in "+toString()+"; "+
-                            (inUse.contains(desiredMachine) ? "machine in use" : "machine unknown"));
+            return;
+        }
+        
+        while (result.size() < count) {
+            long startTime = System.nanoTime();
+            T machine = freeList.poll();
+            if (machine == null) break;
+            // free-list entries can be stale (removed machines); claim fails for those
+            if (claim(machine)) {
+                recordObtain(startTime);
+                result.add(machine);
+            }
+        }
+        if (result.size() < count && getAvailableCount() > 0) {
+            // should not happen, unless subclasses modify the machines directly; fall back to checking each
+            for (T machine : machines) {
+                if (result.size() >= count) return;
+                long startTime = System.nanoTime();
+                if (claim(machine)) {
+                    freeList.remove(machine);
+                    recordObtain(startTime);
+                    result.add(machine);
                 }
-            } else {
-                machine = a.iterator().next();
             }
-            inUse.add(machine);
         }
-        return machine;
+    }
+    
+    /** Atomically marks the machine as in use, returning false if it was in use (or is no longer in the pool). */
+    protected boolean claim(T machine) {
+        if (!inUse.add(machine)) return false;
+        if (machines.contains(machine) && !pendingRemoval.contains(machine)) return true;
+        
+        // lost a race with removeMachine
+        inUse.remove(machine);
+        if (pendingRemoval.contains(machine)) removeMachine(machine);
+        return false;
+    }
+    
+    private void recordObtain(long startTime) {
+        obtainNanos.addAndGet(System.nanoTime() - startTime);
+        obtainCount.incrementAndGet();
     }
 
     @Override
     public void release(T machine) {
-        synchronized (lock) {
-            if (inUse.contains(machine) == false)
-                throw new IllegalStateException("Request to release machine "+machine+", but this machine is not currently allocated");
-            inUse.remove(machine);
-            
-            if (pendingRemoval.contains(machine)) {
-                removeMachine(machine);
+        if (!inUse.remove(machine))
+            throw new IllegalStateException("Request to release machine "+machine+", but this machine is not currently allocated");
+        
+        if (pendingRemoval.contains(machine)) {
+            removeMachine(machine);
+        } else {
+            freeList.add(machine);
+        }
+    }
+    
+    /** The machines in the index entry for the most selective of the given constraints. */
+    protected Collection<T> getCandidates(Map<?,?> constraints) {
+        Collection<T> result = null;
+        for (Map.Entry<?,?> constraint : constraints.entrySet()) {
+            Set<T> matching = getIndex(constraint.getKey().toString()).get(String.valueOf(constraint.getValue()));
+            if (matching == null) return ImmutableSet.of();
+            if (result == null || matching.size() < result.size()) result = matching;
+        }
+        return result;
+    }
+    
+    protected boolean matches(T machine, Map<?,?> constraints) {
+        for (Map.Entry<?,?> constraint : constraints.entrySet()) {
+            if (!getIndexValues(machine, constraint.getKey().toString()).contains(String.valueOf(constraint.getValue()))) return false;
+        }
+        return true;
+    }
+    
+    private ConcurrentMap<String, Set<T>> getIndex(String property) {
+        ConcurrentMap<String, Set<T>> result = index.get(property);
+        if (result == null) {
+            synchronized (lock) {
+                result = index.get(property);
+                if (result == null) {
+                    result = Maps.newConcurrentMap();
+                    for (T machine : machines) {
+                        index(result, machine, property);
+                    }
+                    index.put(property, result);
+                }
+            }
+        }
+        return result;
+    }
+    
+    private void index(T machine) {
+        for (Map.Entry<String, ConcurrentMap<String, Set<T>>> entry : index.entrySet()) {
+            index(entry.getValue(), machine, entry.getKey());
+        }
+    }
+    
+    private void index(ConcurrentMap<String, Set<T>> propertyIndex, T machine, String property) {
+        for (String value : getIndexValues(machine, property)) {
+            Set<T> set = propertyIndex.get(value);
+            if (set == null) {
+                propertyIndex.putIfAbsent(value, FixedListMachineProvisioningLocation.<T>newConcurrentSet());
+                set = propertyIndex.get(value);
+            }
+            set.add(machine);
+        }
+    }
+    
+    private void unindex(T machine) {
+        for (ConcurrentMap<String, Set<T>> propertyIndex : index.values()) {
+            for (Set<T> set : propertyIndex.values()) {
+                set.remove(machine);
             }
         }
     }
+    
+    private static Collection<String> getIndexValues(MachineLocation machine, String property) {
+        Object value = machine.getLocationProperty(property);
+        if (value == null) return ImmutableList.of();
+        if (value instanceof Iterable) {
+            List<String> result = Lists.newArrayList();
+            for (Object v : (Iterable<?>) value) result.add(String.valueOf(v));
+            return result;
+        }
+        return ImmutableList.of(String.valueOf(value));
+    }
 
     @Override
     public Map<String,Object> getProvisioningFlags(Collection<String> tags) {
         return Maps.<String,Object>newLinkedHashMap();
     }
     
+    /**
+     * The available machines, in the order they became available, each at most once: membership (with the sequence
+     * number it was added at) is in a concurrent map, and the order in a concurrent sorted map of those sequence numbers,
+     * so adding, removing and taking the first are all atomic and logarithmic, without locking.
+     */
+    private static class FreeList<T> implements Iterable<T> {
+        private final AtomicLong sequence = new AtomicLong();
+        private final ConcurrentMap<T, Long> members = new ConcurrentHashMap<T, Long>();
+        private final ConcurrentSkipListMap<Long, T> order = new ConcurrentSkipListMap<Long, T>();
+
+        /** Adds the machine at the end, unless already present. */
+        void add(T machine) {
+            Long seq = sequence.incrementAndGet();
+            if (members.putIfAbsent(machine, seq) == null) order.put(seq, machine);
+        }
+
+        void remove(T machine) {
+            Long seq = members.remove(machine);
+            if (seq != null) order.remove(seq, machine);
+        }
+
+        /** Removes and returns the machine available longest, or null if there are none. */
+        @Nullable
+        T poll() {
+            while (true) {
+                Map.Entry<Long, T> first = order.firstEntry();
+                if (first == null) return null;
+                // whoever removes the membership owns the machine; the entry is removed either way (stale if not ours)
+                boolean ours = members.remove(first.getValue(), first.getKey());
+                order.remove(first.getKey(), first.getValue());
+                if (ours) return first.getValue();
+            }
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return order.values().iterator();
+        }
+    }
+
     /**
      * Facilitates fluent/programmatic style for constructing a fixed pool of machines.
      * <pre>
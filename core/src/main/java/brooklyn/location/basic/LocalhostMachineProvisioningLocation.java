@@ -6,6 +6,7 @@ import static brooklyn.util.GroovyJavaMethods.truth;
 import java.net.InetAddress;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +23,7 @@ import brooklyn.util.flags.TypeCoercions;
 import brooklyn.util.mutex.MutexSupport;
 import brooklyn.util.mutex.WithMutexes;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -45,7 +47,11 @@ public class LocalhostMachineProvisioningLocation extends FixedListMachineProvis
     @SetFromFlag
     InetAddress address;
 
-    private static Set<Integer> portsInUse = Sets.newLinkedHashSet();
+    private static final PortAllocator portsInUse = new PortAllocator();
+
+    /** How long a failed bind probe is remembered, so that scans over a range do not re-probe ports held by other processes */
+    private static final long PORT_UNAVAILABLE_CACHE_MILLIS = 1000;
+    private static final ConcurrentMap<Integer, Long> portsUnavailableUntil = Maps.newConcurrentMap();
 
     private static HostGeoInfo cachedHostGeoInfo;
         
@@ -118,17 +124,16 @@ public class LocalhostMachineProvisioningLocation extends FixedListMachineProvis
        }
     }
 
-    public static synchronized boolean obtainSpecificPort(InetAddress localAddress, int portNumber) {
-        if (portsInUse.contains(portNumber)) {
+    public static boolean obtainSpecificPort(InetAddress localAddress, int portNumber) {
+        if (!portsInUse.claim(portNumber)) {
             return false;
-        } else {
-            //see if it is available?
-            if (!checkPortAvailable(localAddress, portNumber)) {
-                return false;
-            }
-            portsInUse.add(portNumber);
-            return true;
         }
+        //see if it is available?
+        if (!checkPortAvailableCached(localAddress, portNumber)) {
+            portsInUse.release(portNumber);
+            return false;
+        }
+        return true;
     }
     /** checks the actual availability of the port on localhost, ie by binding to it; cf {@link NetworkUtils#isPortAvailable(int)} */
     public static boolean checkPortAvailable(InetAddress localAddress, int portNumber) {
@@ -138,18 +143,33 @@ public class LocalhostMachineProvisioningLocation extends FixedListMachineProvis
         }
         return NetworkUtils.isPortAvailable(portNumber);
     }
+    /** as {@link #checkPortAvailable(InetAddress, int)}, but remembering ports found unavailable for a short while */
+    protected static boolean checkPortAvailableCached(InetAddress localAddress, int portNumber) {
+        Long until = portsUnavailableUntil.get(portNumber);
+        if (until != null) {
+            if (System.currentTimeMillis() < until) return false;
+            portsUnavailableUntil.remove(portNumber, until);
+        }
+        if (checkPortAvailable(localAddress, portNumber)) return true;
+        portsUnavailableUntil.put(portNumber, System.currentTimeMillis() + PORT_UNAVAILABLE_CACHE_MILLIS);
+        return false;
+    }
     public static int obtainPort(PortRange range) {
         return obtainPort(getLocalhostInetAddress(), range);
     }
-    public static int obtainPort(InetAddress localAddress, PortRange range) {
-        for (int p: range)
-            if (obtainSpecificPort(localAddress, p)) return p;
-        if (LOG.isDebugEnabled()) LOG.debug("unable to find port in {} on {}; returning -1", range, localAddress);
-        return -1;
+    public static int obtainPort(final InetAddress localAddress, PortRange range) {
+        int result = portsInUse.claimFirst(range, new Predicate<Integer>() {
+            @Override public boolean apply(Integer port) {
+                return checkPortAvailableCached(localAddress, port);
+            }});
+        if (result == -1 && LOG.isDebugEnabled()) LOG.debug("unable to find port in {} on {}; returning -1", range, localAddress);
+        return result;
     }
 
-    public static synchronized void releasePort(InetAddress localAddress, int portNumber) {
-        portsInUse.remove((Object) portNumber);
+    public static void releasePort(InetAddress localAddress, int portNumber) {
+        portsInUse.release(portNumber);
+        // we (probably) held it, so any failed probe is stale
+        portsUnavailableUntil.remove(portNumber);
     }
 
     public void release(SshMachineLocation machine) {
@@ -0,0 +1,230 @@
+package brooklyn.location.basic;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import brooklyn.location.PortRange;
+import brooklyn.location.basic.PortRanges.AggregatePortRange;
+import brooklyn.location.basic.PortRanges.LinearPortRange;
+import brooklyn.location.basic.PortRanges.SinglePort;
+import brooklyn.util.flags.TypeCoercions;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+
+/**
+ * The ports in use on a machine, held as a bitset so that ports can be claimed and released
+ * concurrently without locking, and so that the next free port in a range can be found a word
+ * (64 ports) at a time rather than by testing each port in turn.
+ * <p>
+ * This is also a {@link java.util.Set} of the ports in use, where {@link #add(Integer)} claims
+ * a port (returning false if it was already in use) and {@link #remove(Object)} releases it.
+ */
+public class PortAllocator extends AbstractSet<Integer> implements Serializable {
+
+    private static final long serialVersionUID = -2962718163735658612L;
+
+    private static final int WORD_BITS = 64;
+
+    private final AtomicLongArray words = new AtomicLongArray(PortRanges.MAX_PORT / WORD_BITS + 1);
+    private final AtomicInteger count = new AtomicInteger();
+
+    public PortAllocator() {
+    }
+
+    public PortAllocator(Collection<Integer> portsInUse) {
+        for (Integer port : portsInUse) {
+            claim(port);
+        }
+    }
+
+    /**
+     * Returns an allocator with the given ports in use, where each can be anything coercible to an integer;
+     * so that (with {@link TypeCoercions}) a machine's "usedPorts" flag can be given as any collection.
+     */
+    public static PortAllocator fromCollection(Collection<?> portsInUse) {
+        PortAllocator result = new PortAllocator();
+        for (Object port : portsInUse) {
+            result.claim(TypeCoercions.coerce(port, Integer.class));
+        }
+        return result;
+    }
+
+    public boolean isInUse(int port) {
+        if (!isValid(port)) return false;
+        return (words.get(port / WORD_BITS) & bit(port)) != 0;
+    }
+
+    /** Marks the given port as in use, returning false if it already was. */
+    public boolean claim(int port) {
+        checkValid(port);
+        int index = port / WORD_BITS;
+        long mask = bit(port);
+        while (true) {
+            long word = words.get(index);
+            if ((word & mask) != 0) return false;
+            if (words.compareAndSet(index, word, word | mask)) {
+                count.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /** Marks the given port as free, returning false if it already was. */
+    public boolean release(int port) {
+        if (!isValid(port)) return false;
+        int index = port / WORD_BITS;
+        long mask = bit(port);
+        while (true) {
+            long word = words.get(index);
+            if ((word & mask) == 0) return false;
+            if (words.compareAndSet(index, word, word & ~mask)) {
+                count.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Claims the first port in the given range (in the range's order) which is not in use and
+     * which satisfies the given check (e.g. that the port can actually be bound); returns -1 if
+     * there is no such port.
+     * <p>
+     * The check is called only for ports which have been claimed, so concurrent callers never
+     * check the same port; ports failing the check are released again.
+     */
+    public int claimFirst(PortRange range, Predicate<? super Integer> check) {
+        if (range instanceof SinglePort) {
+            return claimIfAvailable(((SinglePort)range).port, check) ? ((SinglePort)range).port : -1;
+        }
+        if (range instanceof LinearPortRange) {
+            LinearPortRange linear = (LinearPortRange) range;
+            if (linear.delta == 1) return claimFirstAscending(linear.start, linear.end, check);
+        }
+        if (range instanceof AggregatePortRange) {
+            for (PortRange r : ((AggregatePortRange)range).ranges) {
+                int result = claimFirst(r, check);
+                if (result != -1) return result;
+            }
+            return -1;
+        }
+        for (int port : range) {
+            if (claimIfAvailable(port, check)) return port;
+        }
+        return -1;
+    }
+
+    public int claimFirst(PortRange range) {
+        return claimFirst(range, Predicates.alwaysTrue());
+    }
+
+    protected boolean claimIfAvailable(int port, Predicate<? super Integer> check) {
+        if (!isValid(port) || !claim(port)) return false;
+        if (check.apply(port)) return true;
+        release(port);
+        return false;
+    }
+
+    protected int claimFirstAscending(int start, int end, Predicate<? super Integer> check) {
+        int port = Math.max(start, 0);
+        end = Math.min(end, PortRanges.MAX_PORT);
+        while (port <= end) {
+            int free = nextFree(port, end);
+            if (free == -1) return -1;
+            if (claimIfAvailable(free, check)) return free;
+            port = free + 1;
+        }
+        return -1;
+    }
+
+    /** Returns the first port from {@code from} to {@code to} inclusive that is not in use, or -1. */
+    protected int nextFree(int from, int to) {
+        int index = from / WORD_BITS;
+        // treat the ports before 'from' in the first word as in use
+        long word = words.get(index) | (bit(from) - 1);
+        while (true) {
+            if (word != -1L) {
+                int port = index * WORD_BITS + Long.numberOfTrailingZeros(~word);
+                return (port <= to) ? port : -1;
+            }
+            index++;
+            if (index * WORD_BITS > to) return -1;
+            word = words.get(index);
+        }
+    }
+
+    @Override
+    public boolean add(Integer port) {
+        return claim(port);
+    }
+
+    @Override
+    public boolean remove(Object port) {
+        return (port instanceof Integer) && release((Integer)port);
+    }
+
+    @Override
+    public boolean contains(Object port) {
+        return (port instanceof Integer) && isInUse((Integer)port);
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    /** Iterates over the ports in use, in ascending order (weakly consistent, as for concurrent collections). */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            int next = nextInUse(0);
+            int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next != -1;
+            }
+            @Override
+            public Integer next() {
+                if (next == -1) throw new NoSuchElementException();
+                last = next;
+                next = (next < PortRanges.MAX_PORT) ? nextInUse(next+1) : -1;
+                return last;
+            }
+            @Override
+            public void remove() {
+                if (last == -1) throw new IllegalStateException();
+                release(last);
+                last = -1;
+            }
+        };
+    }
+
+    protected int nextInUse(int from) {
+        int index = from / WORD_BITS;
+        long word = words.get(index) & ~(bit(from) - 1);
+        while (true) {
+            if (word != 0) return index * WORD_BITS + Long.numberOfTrailingZeros(word);
+            index++;
+            if (index >= words.length()) return -1;
+            word = words.get(index);
+        }
+    }
+
+    private static long bit(int port) {
+        return 1L << (port % WORD_BITS);
+    }
+
+    private static boolean isValid(int port) {
+        return port >= 0 && port <= PortRanges.MAX_PORT;
+    }
+
+    private static void checkValid(int port) {
+        if (!isValid(port)) throw new IllegalArgumentException("Invalid port "+port);
+    }
+}
@@ -99,8 +99,9 @@ public class SshMachineLocation extends AbstractLocation implements MachineLocat
     @SetFromFlag
     transient WithMutexes mutexSupport;
     
+    /** the ports in use; the flag can be given as any collection of port numbers, which is copied */
     @SetFromFlag
-    private Set<Integer> usedPorts;
+    private PortAllocator usedPorts;
 
     /** any property that should be passed as ssh config (connection-time) 
      *  can be prefixed with this and . and will be passed through (with the prefix removed),
@@ -162,7 +163,6 @@ public class SshMachineLocation extends AbstractLocation implements MachineLocat
 
     public SshMachineLocation(Map properties) {
         super(properties);
-        usedPorts = (usedPorts != null) ? Sets.newLinkedHashSet(usedPorts) : Sets.<Integer>newLinkedHashSet();
         vanillaSshToolPool = buildVanillaPool();
     }
 
@@ -193,6 +193,7 @@ public class SshMachineLocation extends AbstractLocation implements MachineLocat
     }
 
     public void configure(Map properties) {
+        PortAllocator oldUsedPorts = usedPorts;
         super.configure(properties);
 
         // TODO Note that check for addresss!=null is done automatically in super-constructor, in FlagUtils.checkRequiredFields
@@ -202,6 +203,16 @@ public class SshMachineLocation extends AbstractLocation implements MachineLocat
         	mutexSupport = new MutexSupport();
         }
         
+        Object usedPortsFlag = properties.get("usedPorts");
+        if (usedPorts == null) {
+            usedPorts = (oldUsedPorts != null) ? oldUsedPorts : new PortAllocator();
+            if (usedPortsFlag != null) 
+                throw new IllegalArgumentException("Invalid usedPorts for "+this+": expected a collection of port numbers, but was "+usedPortsFlag);
+        } else if (usedPorts == usedPortsFlag) {
+            // don't share the caller's allocator (e.g. another machine's), so ports claimed here are only claimed here
+            usedPorts = new PortAllocator(usedPorts);
+        }
+        
         boolean deferConstructionChecks = (properties.containsKey("deferConstructionChecks") && TypeCoercions.coerce(properties.get("deferConstructionChecks"), Boolean.class));
         if (!deferConstructionChecks) {
 	        if (properties.containsKey("username")) {
@@ -587,6 +598,21 @@ public class SshMachineLocation extends AbstractLocation implements MachineLocat
             }});
     }
 
+    /**
+     * Copies several files to this machine, over a single session where the ssh tool supports it
+     * (see {@link SshTool#copyFilesToServer(Map, Map)}); the map is from destination path to local file.
+     */
+    public int copyFilesTo(final Map<String,?> props, final Map<String, File> filesByDestination) {
+        Preconditions.checkNotNull(address, "Host address must be specified for scp");
+        for (File src : filesByDestination.values()) {
+            Preconditions.checkArgument(src.exists(), "File %s must exist for scp", src.getPath());
+        }
+        return execSsh(props, new Function<SshTool,Integer>() {
+            public Integer apply(SshTool ssh) {
+                return ssh.copyFilesToServer(props, filesByDestination);
+            }});
+    }
+
     // FIXME the return code is not a reliable indicator of success or failure
     public int copyFrom(String remote, String local) {
         return copyFrom(MutableMap.<String,Object>of(), remote, local);
@@ -655,19 +681,13 @@ public class SshMachineLocation extends AbstractLocation implements MachineLocat
      */
     public boolean obtainSpecificPort(int portNumber) {
 	    // TODO Does not yet check if the port really is free on this machine
-        if (usedPorts.contains(portNumber)) {
-            return false;
-        } else {
-            usedPorts.add(portNumber);
-            return true;
-        }
+        return usedPorts.add(portNumber);
     }
 
     public int obtainPort(PortRange range) {
-        for (int p: range)
-            if (obtainSpecificPort(p)) return p;
-         if (LOG.isDebugEnabled()) LOG.debug("unable to find port in {} on {}; returning -1", range, this);
-         return -1;
+        int result = usedPorts.claimFirst(range);
+        if (result == -1 && LOG.isDebugEnabled()) LOG.debug("unable to find port in {} on {}; returning -1", range, this);
+        return result;
     }
 
     public void releasePort(int portNumber) {
@@ -25,6 +25,8 @@ import brooklyn.entity.basic.AbstractEffector;
 import brooklyn.entity.basic.EntityInternal;
 import brooklyn.entity.drivers.BasicEntityDriverManager;
 import brooklyn.entity.drivers.EntityDriverManager;
+import brooklyn.entity.drivers.TemplateCache;
+import brooklyn.entity.drivers.downloads.ArtifactCache;
 import brooklyn.entity.drivers.downloads.BasicDownloadsManager;
 import brooklyn.entity.drivers.downloads.DownloadResolverManager;
 import brooklyn.entity.rebind.RebindManager;
@@ -73,10 +75,15 @@ public abstract class AbstractManagementContext implements ManagementContextInte
 
     private final BrooklynStorage storage = new BrooklynStorageImpl(datagrid);
 
+    private final TemplateCache templateCache = new TemplateCache();
+
+    private final ArtifactCache artifactCache;
+
     public AbstractManagementContext(BrooklynProperties brooklynProperties){
        this.configMap = brooklynProperties;
        this.entityDriverManager = new BasicEntityDriverManager();
        this.downloadsManager = BasicDownloadsManager.newDefault(configMap);
+       this.artifactCache = new ArtifactCache(configMap);
     }
     
     static {
@@ -102,6 +109,13 @@ public abstract class AbstractManagementContext implements ManagementContextInte
         running = false;
         rebindManager.stop();
         
+        // release what locations hold (e.g. pre-provisioned machines and their threads); machines in use are unaffected
+        BasicLocationRegistry registry;
+        synchronized (this) {
+            registry = locationRegistry;
+        }
+        if (registry != null) registry.close();
+        
         // Don't unmanage everything; different entities get given their events at different times 
         // so can cause problems (e.g. a group finds out that a member is unmanaged, before the
         // group itself has been told that it is unmanaged).
@@ -121,6 +135,16 @@ public abstract class AbstractManagementContext implements ManagementContextInte
         return rebindManager;
     }
 
+    @Override
+    public TemplateCache getTemplateCache() {
+        return templateCache;
+    }
+
+    @Override
+    public ArtifactCache getArtifactCache() {
+        return artifactCache;
+    }
+
     public long getTotalEffectorInvocations() {
         return totalEffectorInvocationCount.get();
     }
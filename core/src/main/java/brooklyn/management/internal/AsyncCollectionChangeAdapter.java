@@ -2,6 +2,9 @@ package brooklyn.management.internal;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +14,8 @@ import brooklyn.util.exceptions.Exceptions;
 import brooklyn.util.task.BasicExecutionManager;
 import brooklyn.util.task.SingleThreadedScheduler;
 
+import com.google.common.collect.Lists;
+
 public class AsyncCollectionChangeAdapter<Item> implements CollectionChangeListener<Item> {
 	
     protected static final Logger LOG = LoggerFactory.getLogger(AsyncCollectionChangeAdapter.class);
@@ -52,6 +57,42 @@ public class AsyncCollectionChangeAdapter<Item> implements CollectionChangeListe
     	});
     }
 
+    /**
+     * Notifies the delegate of each of the added items, in order, using a single task.
+     */
+    public void onItemsAdded(Collection<? extends Item> items) {
+    	final List<Item> itemsCopy = Lists.<Item>newArrayList(items);
+    	executor.submit(MutableMap.of("tag", delegate), new Runnable() {
+    		public void run() {
+    			for (Item item : itemsCopy) {
+    				try {
+    					delegate.onItemAdded(item);
+    				} catch (Throwable t) {
+    					LOG.warn("Error notifying listener of itemAdded("+item+")", t);
+    				}
+    			}
+    		}
+    	});
+    }
+    
+    /**
+     * Notifies the delegate of each of the removed items, in order, using a single task.
+     */
+    public void onItemsRemoved(Collection<? extends Item> items) {
+    	final List<Item> itemsCopy = Lists.<Item>newArrayList(items);
+    	executor.submit(MutableMap.of("tag", delegate), new Runnable() {
+    		public void run() {
+    			for (Item item : itemsCopy) {
+    				try {
+    					delegate.onItemRemoved(item);
+    				} catch (Throwable t) {
+    					LOG.warn("Error notifying listener of itemRemoved("+item+")", t);
+    				}
+    			}
+    		}
+    	});
+    }
+
     @Override
     public int hashCode() {
         return delegate.hashCode();
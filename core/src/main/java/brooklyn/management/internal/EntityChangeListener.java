@@ -13,6 +13,7 @@ public interface EntityChangeListener {
         @Override public void onPoliciesChanged() {}
         @Override public void onEffectorStarting(Effector<?> effector) {}
         @Override public void onEffectorCompleted(Effector<?> effector) {}
+        @Override public void onDisplayNameChanged() {}
     };
     
     void onAttributeChanged(AttributeSensor<?> attribute);
@@ -28,4 +29,6 @@ public interface EntityChangeListener {
     void onEffectorStarting(Effector<?> effector);
     
     void onEffectorCompleted(Effector<?> effector);
+
+    void onDisplayNameChanged();
 }
@@ -0,0 +1,22 @@
+package brooklyn.management.internal;
+
+import brooklyn.entity.Entity;
+
+/**
+ * Notified by {@link LocalEntityManager} as entities are managed, unmanaged and renamed.
+ * <p>
+ * Unlike entity-set listeners, these are called synchronously (in the thread changing the entity,
+ * possibly holding locks), so implementations must be quick and must not block or call back into
+ * the entity manager.
+ */
+public interface EntityManagementListener {
+
+    /** Called for each entity (proxy) when it becomes managed, parents before children. */
+    void onManaged(Entity entity);
+
+    /** Called for each entity (proxy) when it is no longer managed. */
+    void onUnmanaged(Entity entity);
+
+    /** Called when the display name of a managed entity (proxy) changes. */
+    void onRenamed(Entity entity);
+}
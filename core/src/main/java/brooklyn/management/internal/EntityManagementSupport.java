@@ -14,6 +14,7 @@ import brooklyn.entity.basic.AbstractEntity;
 import brooklyn.entity.basic.Entities;
 import brooklyn.entity.basic.EntityInternal;
 import brooklyn.event.AttributeSensor;
+import brooklyn.management.EntityManager;
 import brooklyn.management.ExecutionContext;
 import brooklyn.management.ManagementContext;
 import brooklyn.management.SubscriptionContext;
@@ -342,5 +343,13 @@ public class EntityManagementSupport {
         public void onEffectorCompleted(Effector<?> effector) {
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
+        @Override
+        public void onDisplayNameChanged() {
+            getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
+            EntityManager entityManager = getManagementContext().getEntityManager();
+            if (entityManager instanceof LocalEntityManager) {
+                ((LocalEntityManager) entityManager).onEntityRenamed(entity);
+            }
+        }
     }
 }
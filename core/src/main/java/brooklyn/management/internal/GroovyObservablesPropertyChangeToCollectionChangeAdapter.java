@@ -4,6 +4,7 @@ import groovy.util.ObservableList;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.List;
 
 public class GroovyObservablesPropertyChangeToCollectionChangeAdapter implements PropertyChangeListener {
     @SuppressWarnings("rawtypes")
@@ -27,8 +28,22 @@ public class GroovyObservablesPropertyChangeToCollectionChangeAdapter implements
                 delegate.onItemAdded(value);
             }
         } else if(evt instanceof ObservableList.MultiElementAddedEvent ) {
-            for(Object value: ((ObservableList.MultiElementAddedEvent)evt).getValues()){
-                delegate.onItemAdded(value);
+            List<?> values = ((ObservableList.MultiElementAddedEvent)evt).getValues();
+            if (delegate instanceof AsyncCollectionChangeAdapter) {
+                ((AsyncCollectionChangeAdapter) delegate).onItemsAdded(values);
+            } else {
+                for(Object value: values){
+                    delegate.onItemAdded(value);
+                }
+            }
+        } else if(evt instanceof ObservableList.MultiElementRemovedEvent ) {
+            List<?> values = ((ObservableList.MultiElementRemovedEvent)evt).getValues();
+            if (delegate instanceof AsyncCollectionChangeAdapter) {
+                ((AsyncCollectionChangeAdapter) delegate).onItemsRemoved(values);
+            } else {
+                for(Object value: values){
+                    delegate.onItemRemoved(value);
+                }
             }
         }
     }
@@ -4,16 +4,22 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import groovy.util.ObservableList;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import brooklyn.config.ConfigKey;
 import brooklyn.entity.Application;
 import brooklyn.entity.Entity;
 import brooklyn.entity.basic.AbstractEntity;
+import brooklyn.entity.basic.ConfigKeys;
 import brooklyn.entity.basic.EntityInternal;
 import brooklyn.entity.proxying.BasicEntityTypeRegistry;
 import brooklyn.entity.proxying.EntityProxy;
@@ -23,11 +29,13 @@ import brooklyn.entity.proxying.EntityTypeRegistry;
 import brooklyn.entity.proxying.InternalEntityFactory;
 import brooklyn.entity.trait.Startable;
 import brooklyn.management.EntityManager;
+import brooklyn.management.Task;
 import brooklyn.management.internal.ManagementTransitionInfo.ManagementTransitionMode;
 import brooklyn.util.exceptions.Exceptions;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -35,6 +43,12 @@ public class LocalEntityManager implements EntityManager {
 
     private static final Logger log = LoggerFactory.getLogger(LocalEntityManager.class);
 
+    public static final ConfigKey<Integer> MANAGEMENT_PARALLELISM = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.entityManager.managementParallelism", 
+            "The number of sibling entities whose management may be started or stopped concurrently, when managing "+
+            "or unmanaging an entity and its descendants (parents are always processed before their children)", 
+            1);
+
     private final LocalManagementContext managementContext;
     private final BasicEntityTypeRegistry entityTypeRegistry;
     private final InternalEntityFactory entityFactory;
@@ -45,17 +59,23 @@ public class LocalEntityManager implements EntityManager {
     /** Entities that are in the process of being managed, but where management is not yet complete */
     protected final Map<String,Entity> preManagedEntitiesById = new WeakHashMap<String, Entity>();
     
-    /** Proxies of the managed entities */
-    protected final Map<String,Entity> entityProxiesById = Maps.newLinkedHashMap();
+    /** Proxies of the managed entities; concurrent so that lookups do not need to synchronize on the manager */
+    protected final ConcurrentMap<String,Entity> entityProxiesById = Maps.newConcurrentMap();
     
-    /** Real managed entities */
-    protected final Map<String,Entity> entitiesById = Maps.newLinkedHashMap();
+    /** Real managed entities; concurrent so that lookups do not need to synchronize on the manager */
+    protected final ConcurrentMap<String,Entity> entitiesById = Maps.newConcurrentMap();
     
-    /** Proxies of the managed entities */
+    /** Proxies of the managed entities, for notifying entity-set listeners; updated once per managed/unmanaged tree */
     protected final ObservableList entities = new ObservableList();
     
-    /** Proxies of the managed entities that are applications */
-    protected final Set<Application> applications = Sets.newLinkedHashSet();
+    /** Proxies of the managed entities that are applications (rarely changed, so copy-on-write) */
+    protected final Set<Application> applications = Sets.newCopyOnWriteArraySet();
+
+    /** Proxies of the managed entities, indexed by the class of the proxy; see {@link #getEntitiesOfType(Class)} */
+    protected final ConcurrentMap<Class<?>, Set<Entity>> entityProxiesByType = Maps.newConcurrentMap();
+
+    /** Notified synchronously as entities are managed, unmanaged and renamed */
+    private final Set<EntityManagementListener> managementListeners = Sets.newCopyOnWriteArraySet();
 
     public LocalEntityManager(LocalManagementContext managementContext) {
         this.managementContext = checkNotNull(managementContext, "managementContext");
@@ -87,17 +107,40 @@ public class LocalEntityManager implements EntityManager {
         return createEntity(EntitySpecs.spec(config, type));
     }
 
+    /**
+     * Returns an unmodifiable, weakly consistent view of the (proxies of the) managed entities.
+     * <p>
+     * The view is not copied, and iterating over it never throws {@link java.util.ConcurrentModificationException};
+     * entities managed or unmanaged during the iteration may or may not be included. Callers needing 
+     * a stable snapshot should copy it.
+     */
     @Override
-    public synchronized Collection<Entity> getEntities() {
-        return ImmutableList.copyOf(entityProxiesById.values());
+    public Collection<Entity> getEntities() {
+        return Collections.unmodifiableCollection(entityProxiesById.values());
     }
     
     @Override
-    public synchronized Entity getEntity(String id) {
+    public Entity getEntity(String id) {
         return entityProxiesById.get(id);
     }
     
-    synchronized Collection<Application> getApplications() {
+    /**
+     * Returns the (proxies of the) managed entities that are instances of the given type.
+     * <p>
+     * Uses an index by class, so the cost is proportional to the number of distinct entity classes 
+     * plus the number of matches, rather than to the number of managed entities.
+     */
+    public Collection<Entity> getEntitiesOfType(Class<?> type) {
+        ImmutableList.Builder<Entity> result = ImmutableList.builder();
+        for (Map.Entry<Class<?>, Set<Entity>> entry : entityProxiesByType.entrySet()) {
+            if (type.isAssignableFrom(entry.getKey())) {
+                result.addAll(entry.getValue());
+            }
+        }
+        return result.build();
+    }
+    
+    Collection<Application> getApplications() {
         return ImmutableList.copyOf(applications);
     }
     
@@ -138,15 +181,23 @@ public class LocalEntityManager implements EntityManager {
         }
         
         final ManagementTransitionInfo info = new ManagementTransitionInfo(managementContext, ManagementTransitionMode.NORMAL);
-        recursively(e, new Predicate<EntityInternal>() { public boolean apply(EntityInternal it) {
-            if (it.getManagementSupport().isDeployed()) {
-                return false;
-            } else {
-                preManageNonRecursive(it);
-                it.getManagementSupport().onManagementStarting(info); 
-                return manageNonRecursive(it);
-            }
-        } });
+        final List<Entity> newlyManaged = Collections.synchronizedList(Lists.<Entity>newArrayList());
+        try {
+            recursively(e, new Predicate<EntityInternal>() { public boolean apply(EntityInternal it) {
+                if (it.getManagementSupport().isDeployed()) {
+                    return false;
+                } else {
+                    preManageNonRecursive(it);
+                    it.getManagementSupport().onManagementStarting(info); 
+                    boolean result = manageNonRecursive(it);
+                    if (result) newlyManaged.add(toProxyEntityIfAvailable(it));
+                    return result;
+                }
+            } });
+        } finally {
+            // notify entity-set listeners once for the whole tree, rather than once per entity
+            onEntitiesAdded(newlyManaged);
+        }
         
         recursively(e, new Predicate<EntityInternal>() { public boolean apply(EntityInternal it) {
             if (it.getManagementSupport().isFullyManaged()) {
@@ -170,14 +221,60 @@ public class LocalEntityManager implements EntityManager {
             return true;
         } });
         
-        recursively(e, new Predicate<EntityInternal>() { public boolean apply(EntityInternal it) {
-            if (shouldSkipUnmanagement(it)) return false;
-            boolean result = unmanageNonRecursive(it);            
-            it.getManagementSupport().onManagementStopped(info);
-            managementContext.getRebindManager().getChangeListener().onUnmanaged(it);
-            if (managementContext.gc != null) managementContext.gc.onUnmanaged(it);
-            return result; 
-        } });
+        final List<Entity> newlyUnmanaged = Collections.synchronizedList(Lists.<Entity>newArrayList());
+        try {
+            recursively(e, new Predicate<EntityInternal>() { public boolean apply(EntityInternal it) {
+                if (shouldSkipUnmanagement(it)) return false;
+                newlyUnmanaged.add(toProxyEntityIfAvailable(it));
+                boolean result = unmanageNonRecursive(it);            
+                it.getManagementSupport().onManagementStopped(info);
+                managementContext.getRebindManager().getChangeListener().onUnmanaged(it);
+                if (managementContext.gc != null) managementContext.gc.onUnmanaged(it);
+                return result; 
+            } });
+        } finally {
+            // notify entity-set listeners once for the whole tree, rather than once per entity
+            onEntitiesRemoved(newlyUnmanaged);
+        }
+    }
+    
+    private synchronized void onEntitiesAdded(List<Entity> proxies) {
+        if (!proxies.isEmpty()) entities.addAll(proxies);
+        for (EntityManagementListener listener : managementListeners) {
+            for (Entity proxy : proxies) {
+                try {
+                    listener.onManaged(proxy);
+                } catch (Exception e) {
+                    log.warn("Error notifying "+listener+" of management of "+proxy+" (continuing)", e);
+                }
+            }
+        }
+    }
+    
+    private synchronized void onEntitiesRemoved(List<Entity> proxies) {
+        if (!proxies.isEmpty()) entities.removeAll(proxies);
+        for (EntityManagementListener listener : managementListeners) {
+            for (Entity proxy : proxies) {
+                try {
+                    listener.onUnmanaged(proxy);
+                } catch (Exception e) {
+                    log.warn("Error notifying "+listener+" of unmanagement of "+proxy+" (continuing)", e);
+                }
+            }
+        }
+    }
+    
+    /** Notifies {@link EntityManagementListener}s that the display name of a managed entity has changed */
+    void onEntityRenamed(Entity e) {
+        Entity proxy = toProxyEntityIfAvailable(e);
+        if (!entityProxiesById.containsKey(proxy.getId())) return;
+        for (EntityManagementListener listener : managementListeners) {
+            try {
+                listener.onRenamed(proxy);
+            } catch (Exception ex) {
+                log.warn("Error notifying "+listener+" of renaming of "+proxy+" (continuing)", ex);
+            }
+        }
     }
     
     /**
@@ -209,14 +306,80 @@ public class LocalEntityManager implements EntityManager {
         }
     }
 
+    /**
+     * Applies the action to the given entity and then to the children of each entity for which the action 
+     * returned true, so a parent is always processed before its children.
+     * <p>
+     * If {@link #MANAGEMENT_PARALLELISM} is greater than one, the tree is walked one depth at a time, with
+     * the entities at each depth (which are independent of each other) processed concurrently in up to that 
+     * many batches. Otherwise it is walked depth-first in the calling thread.
+     */
     private void recursively(Entity e, Predicate<EntityInternal> action) {
+        int parallelism = getManagementParallelism();
+        if (parallelism <= 1) {
+            recursivelySerially(e, action);
+        } else {
+            List<Entity> level = ImmutableList.of(e);
+            while (!level.isEmpty()) {
+                level = applyToLevel(level, action, parallelism);
+            }
+        }
+    }
+
+    private void recursivelySerially(Entity e, Predicate<EntityInternal> action) {
         boolean success = action.apply( (EntityInternal)e );
         if (!success) {
             return; // Don't manage children if action false/unnecessary for parent
         }
         for (Entity child : e.getChildren()) {
-            recursively(child, action);
+            recursivelySerially(child, action);
+        }
+    }
+
+    /**
+     * Applies the action to each of the given entities, returning the children of those for which it returned true.
+     */
+    private List<Entity> applyToLevel(List<Entity> level, final Predicate<EntityInternal> action, int parallelism) {
+        if (level.size() == 1) {
+            return applyToBatch(level, action);
+        }
+        
+        int batchSize = (level.size() + parallelism - 1) / parallelism;
+        List<Task<List<Entity>>> tasks = Lists.newArrayList();
+        for (final List<Entity> batch : Lists.partition(level, batchSize)) {
+            tasks.add(managementContext.getExecutionManager().submit(new Callable<List<Entity>>() {
+                public List<Entity> call() {
+                    return applyToBatch(batch, action);
+                }}));
         }
+        
+        List<Entity> result = Lists.newArrayList();
+        Throwable error = null;
+        for (Task<List<Entity>> task : tasks) {
+            try {
+                result.addAll(task.get());
+            } catch (Throwable t) {
+                // wait for all batches, so none is still running when we return
+                if (error == null) error = t;
+            }
+        }
+        if (error != null) throw Exceptions.propagate(error);
+        return result;
+    }
+    
+    private List<Entity> applyToBatch(List<Entity> batch, Predicate<EntityInternal> action) {
+        List<Entity> result = Lists.newArrayList();
+        for (Entity it : batch) {
+            if (action.apply( (EntityInternal)it )) {
+                result.addAll(it.getChildren());
+            }
+        }
+        return result;
+    }
+
+    private int getManagementParallelism() {
+        Integer result = managementContext.getConfig().getConfig(MANAGEMENT_PARALLELISM);
+        return (result != null) ? result : 1;
     }
 
     /**
@@ -279,7 +442,12 @@ public class LocalEntityManager implements EntityManager {
             if ((e instanceof Application) && (e.getParent()==null)) {
                 applications.add((Application)proxyE);
             }
-            entities.add(proxyE);
+            Set<Entity> ofType = entityProxiesByType.get(proxyE.getClass());
+            if (ofType == null) {
+                ofType = Sets.newSetFromMap(Maps.<Entity,Boolean>newConcurrentMap());
+                entityProxiesByType.put(proxyE.getClass(), ofType);
+            }
+            ofType.add(proxyE);
             return true;
         }
     }
@@ -293,7 +461,8 @@ public class LocalEntityManager implements EntityManager {
         
         e.clearParent();
         if (e instanceof Application) applications.remove(proxyE);
-        entities.remove(proxyE);
+        Set<Entity> ofType = entityProxiesByType.get(proxyE.getClass());
+        if (ofType != null) ofType.remove(proxyE);
         entityProxiesById.remove(e.getId());
         Object old = entitiesById.remove(e.getId());
         
@@ -320,6 +489,18 @@ public class LocalEntityManager implements EntityManager {
         AsyncCollectionChangeAdapter<Entity> wrappedListener = new AsyncCollectionChangeAdapter<Entity>(managementContext.getExecutionManager(), listener);
         entities.removePropertyChangeListener(new GroovyObservablesPropertyChangeToCollectionChangeAdapter(wrappedListener));
     }
+
+    /**
+     * Adds a listener to be notified, synchronously, as entities are managed, unmanaged and renamed.
+     * See {@link EntityManagementListener} for the constraints on listeners.
+     */
+    public void addEntityManagementListener(EntityManagementListener listener) {
+        managementListeners.add(checkNotNull(listener, "listener"));
+    }
+
+    public void removeEntityManagementListener(EntityManagementListener listener) {
+        managementListeners.remove(listener);
+    }
     
     private boolean shouldSkipUnmanagement(Entity e) {
         if (e==null) {
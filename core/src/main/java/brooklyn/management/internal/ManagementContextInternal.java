@@ -8,6 +8,8 @@ import brooklyn.config.ConfigKey;
 import brooklyn.entity.Effector;
 import brooklyn.entity.Entity;
 import brooklyn.entity.basic.ConfigKeys;
+import brooklyn.entity.drivers.TemplateCache;
+import brooklyn.entity.drivers.downloads.ArtifactCache;
 import brooklyn.internal.storage.BrooklynStorage;
 import brooklyn.management.ManagementContext;
 import brooklyn.management.Task;
@@ -20,6 +22,10 @@ public interface ManagementContextInternal extends ManagementContext {
     public static final ConfigKey<String> BROOKLYN_CATALOG_URL = ConfigKeys.newStringConfigKey("brooklyn.catalog.url",
             "The URL of a catalog.xml descriptor; absent for default (~/.brooklyn/catalog.xml), " +
             "or empty for no URL (use default scanner)", "file://~/.brooklyn/catalog.xml");
+
+    public static final ConfigKey<Boolean> BROOKLYN_CATALOG_SCAN_CACHE = ConfigKeys.newBooleanConfigKey("brooklyn.catalog.scanCache",
+            "Whether to remember the results of scanning the classpath for the catalog (under the data dir), " +
+            "so that restarts with the same JARs need not scan them again", false);
     
     ClassLoader getBaseClassLoader();
 
@@ -40,4 +46,10 @@ public interface ManagementContextInternal extends ManagementContext {
     <T> Task<T> invokeEffector(final Entity entity, final Effector<T> eff, @SuppressWarnings("rawtypes") final Map parameters);
 
     BrooklynStorage getStorage();
+
+    /** Parsed templates, shared by all entities (e.g. for drivers rendering their config files). */
+    TemplateCache getTemplateCache();
+
+    /** Install artifacts fetched by the management node, for copying to machines (if enabled). */
+    ArtifactCache getArtifactCache();
 }
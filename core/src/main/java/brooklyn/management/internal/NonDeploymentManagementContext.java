@@ -19,6 +19,8 @@ import brooklyn.entity.Effector;
 import brooklyn.entity.Entity;
 import brooklyn.entity.basic.AbstractEntity;
 import brooklyn.entity.drivers.EntityDriverManager;
+import brooklyn.entity.drivers.TemplateCache;
+import brooklyn.entity.drivers.downloads.ArtifactCache;
 import brooklyn.entity.drivers.downloads.DownloadResolverManager;
 import brooklyn.entity.rebind.ChangeListener;
 import brooklyn.entity.rebind.RebindManager;
@@ -151,6 +153,18 @@ public class NonDeploymentManagementContext implements ManagementContextInternal
         return initialManagementContext.getStorage();
     }
     
+    @Override
+    public TemplateCache getTemplateCache() {
+        checkInitialManagementContextReal();
+        return initialManagementContext.getTemplateCache();
+    }
+    
+    @Override
+    public ArtifactCache getArtifactCache() {
+        checkInitialManagementContextReal();
+        return initialManagementContext.getArtifactCache();
+    }
+    
     @Override
     public RebindManager getRebindManager() {
         // There was a race where EffectorUtils on invoking an effector calls:
@@ -239,6 +239,19 @@ public abstract class SshAbstractTool implements SshTool {
         }
     }
 
+    /**
+     * Copies each file in turn; implementations that can copy several files over one session should override.
+     */
+    @Override
+    public int copyFilesToServer(Map<String,?> props, Map<String, File> filesByRemotePath) {
+        int result = 0;
+        for (Entry<String, File> entry : filesByRemotePath.entrySet()) {
+            int fileResult = copyToServer(props, entry.getValue(), entry.getKey());
+            if (fileResult != 0) result = fileResult;
+        }
+        return result;
+    }
+
     protected SshException propagate(Exception e, String message) throws SshException {
         throw new SshException("(" + toString() + ") " + message + ":" + e.getMessage(), e);
     }
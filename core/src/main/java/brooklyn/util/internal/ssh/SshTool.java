@@ -73,6 +73,7 @@ public interface SshTool {
     public static final ConfigKey<String> PROP_PERMISSIONS = newConfigKey("permissions", "Default permissions for files copied/created on remote machine; must be four-digit octal string, default '0644'", "0644");
     public static final ConfigKey<Long> PROP_LAST_MODIFICATION_DATE = newConfigKey("lastModificationDate", "Last-modification-date to be set on files copied/created (should be UTC/1000, ie seconds since 1970; defaults to current)", 0L);
     public static final ConfigKey<Long> PROP_LAST_ACCESS_DATE = newConfigKey("lastAccessDate", "Last-access-date to be set on files copied/created (should be UTC/1000, ie seconds since 1970; defaults to lastModificationDate)", 0L);
+    public static final ConfigKey<Boolean> PROP_COMPRESS = newConfigKey("compress", "When copying several files, whether to gzip them in transit (decompressing them on the remote machine with gunzip); not supported by all SshTool implementations", false);
 
     // TODO Could define the following in SshMachineLocation, or some such?
     //public static ConfigKey<String> PROP_LOG_PREFIX = newStringKey("logPrefix", "???", ???);
@@ -168,6 +169,21 @@ public interface SshTool {
      */
     public int copyToServer(Map<String,?> props, byte[] contents, String pathAndFileOnRemoteServer);
 
+    /**
+     * Copies several files to the server, as though calling {@link #copyToServer(Map, File, String)} for each,
+     * but where the implementation supports it doing so over a single session (so avoiding the set-up costs of
+     * each transfer, which dominate when copying many small files).
+     * <p>
+     * The map is from the path on the remote server to the local file. The properties apply to every file; 
+     * additionally supported is:
+     * <ul>
+     *   <li>'compress' - see {@link PROP_COMPRESS}
+     * </ul>
+     * 
+     * @return exit code (not supported by all SshTool implementations, sometimes just returning 0)
+     */
+    public int copyFilesToServer(Map<String,?> props, Map<String, File> filesByRemotePath);
+
     /**
      * Copies the file to the server at the given path.
      * If path is null, empty, '.', '..', or ends with '/' then file name is used.
@@ -8,14 +8,17 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
 import net.schmizz.sshj.connection.ConnectionException;
 import net.schmizz.sshj.connection.channel.direct.PTYMode;
@@ -24,6 +27,8 @@ import net.schmizz.sshj.connection.channel.direct.Session.Command;
 import net.schmizz.sshj.connection.channel.direct.Session.Shell;
 import net.schmizz.sshj.connection.channel.direct.SessionChannel;
 import net.schmizz.sshj.sftp.FileAttributes;
+import net.schmizz.sshj.sftp.OpenMode;
+import net.schmizz.sshj.sftp.RemoteFile;
 import net.schmizz.sshj.sftp.SFTPClient;
 import net.schmizz.sshj.transport.TransportException;
 import net.schmizz.sshj.xfer.InMemorySourceFile;
@@ -41,6 +46,7 @@ import brooklyn.util.ssh.CommonCommands;
 import brooklyn.util.stream.InputStreamSupplier;
 import brooklyn.util.stream.StreamGobbler;
 import brooklyn.util.text.Identifiers;
+import brooklyn.util.text.StringEscapes.BashStringEscapes;
 import brooklyn.util.time.Time;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -51,6 +57,7 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
 import com.google.common.io.Files;
 import com.google.common.net.HostAndPort;
@@ -226,6 +233,54 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         return 0; // TODO Can we assume put will have thrown exception if failed? Rather than exit code != 0?
     }
 
+    /**
+     * Copies all the files over a single sftp session. If 'compress' is set, each file is gzipped locally,
+     * sent as {@code <path>.gz}, and then all are decompressed with a single remote gunzip command.
+     */
+    @Override
+    public int copyFilesToServer(Map<String,?> props, Map<String, File> filesByRemotePath) {
+        if (filesByRemotePath.isEmpty()) return 0;
+        boolean compress = getOptionalVal(props, PROP_COMPRESS);
+        if (!compress) {
+            acquire(new PutFilesAction(props, filesByRemotePath));
+            return 0; // as for copyToServer, failures will have thrown
+        }
+        
+        Map<String, File> compressedFiles = Maps.newLinkedHashMap();
+        try {
+            for (Map.Entry<String, File> entry : filesByRemotePath.entrySet()) {
+                compressedFiles.put(entry.getKey()+".gz", gzipToTempFile(entry.getValue()));
+            }
+            acquire(new PutFilesAction(props, compressedFiles));
+        } finally {
+            for (File file : compressedFiles.values()) {
+                file.delete();
+            }
+        }
+        
+        StringBuilder gunzip = new StringBuilder("gunzip -f");
+        for (String path : compressedFiles.keySet()) {
+            gunzip.append(" ").append(BashStringEscapes.wrapBash(path));
+        }
+        return execCommands(ImmutableMap.<String,Object>of(), ImmutableList.of(gunzip.toString()));
+    }
+    
+    private File gzipToTempFile(File file) {
+        try {
+            localTempDir.mkdirs();
+            File result = File.createTempFile("sshcopy", ".gz", localTempDir);
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(result));
+            try {
+                Files.copy(file, out);
+            } finally {
+                out.close();
+            }
+            return result;
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
 
     @Override
     public int copyFromServer(Map<String,?> props, String pathAndFileOnRemoteServer, File localFile) {
@@ -513,6 +568,68 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         }
     };
 
+    private class PutFilesAction implements SshAction<Void> {
+        /** Size of each write request; must be within the server's maximum sftp packet size */
+        private static final int WRITE_CHUNK_SIZE = 32*1024;
+        
+        private final Map<String, File> filesByRemotePath;
+        private final FileAttributes attributes;
+        private SFTPClient sftp;
+        
+        PutFilesAction(Map<String,?> props, Map<String, File> filesByRemotePath) {
+            String permissions = getOptionalVal(props, PROP_PERMISSIONS, "0644");
+            long lastModificationDate = getOptionalVal(props, PROP_LAST_MODIFICATION_DATE, 0L);
+            long lastAccessDate = getOptionalVal(props, PROP_LAST_ACCESS_DATE, 0L);
+            if (lastAccessDate <= 0 ^ lastModificationDate <= 0) {
+                lastAccessDate = Math.max(lastAccessDate, lastModificationDate);
+                lastModificationDate = Math.max(lastAccessDate, lastModificationDate);
+            }
+            FileAttributes.Builder attributesBuilder = new FileAttributes.Builder()
+                    .withPermissions(Integer.parseInt(permissions, 8));
+            if (lastAccessDate > 0) {
+                attributesBuilder.withAtimeMtime(lastAccessDate, lastModificationDate);
+            }
+            this.attributes = attributesBuilder.build();
+            this.filesByRemotePath = checkNotNull(filesByRemotePath, "filesByRemotePath");
+        }
+
+        @Override
+        public void clear() {
+            closeWhispering(sftp, this);
+            sftp = null;
+        }
+
+        @Override
+        public Void create() throws Exception {
+            sftp = acquire(sftpConnection);
+            byte[] buf = new byte[WRITE_CHUNK_SIZE];
+            for (Map.Entry<String, File> entry : filesByRemotePath.entrySet()) {
+                // open-write-setattr-close on the one session: no stat of the destination (as sftp.put does),
+                // and permissions and times set by one request, which applies even if the file already existed
+                RemoteFile remoteFile = sftp.open(entry.getKey(), EnumSet.of(OpenMode.WRITE, OpenMode.CREAT, OpenMode.TRUNC));
+                InputStream in = new FileInputStream(entry.getValue());
+                try {
+                    long offset = 0;
+                    int n;
+                    while ((n = in.read(buf)) > 0) {
+                        remoteFile.write(offset, buf, 0, n);
+                        offset += n;
+                    }
+                    remoteFile.setAttributes(attributes);
+                } finally {
+                    Closeables.closeQuietly(in);
+                    remoteFile.close();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "PutFiles(paths="+filesByRemotePath.keySet()+")";
+        }
+    };
+
     @VisibleForTesting
     Predicate<String> causalChainHasMessageContaining(final Exception from) {
         return new Predicate<String>() {
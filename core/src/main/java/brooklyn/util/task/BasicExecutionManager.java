@@ -10,11 +10,14 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -103,6 +106,9 @@ public class BasicExecutionManager implements ExecutionManager {
     
     private ConcurrentMap<String,Task> tasksById = new ConcurrentHashMap<String,Task>();
 
+    /** Tasks with each tag in order of submit time, so the recent tasks of a busy tag can be read without copying all of them */
+    private ConcurrentMap<Object,ConcurrentNavigableMap<SubmitTimeKey,Task>> tasksByTagBySubmitTime = new ConcurrentHashMap<Object,ConcurrentNavigableMap<SubmitTimeKey,Task>>();
+
     @Deprecated
     private ConcurrentMap<Object, TaskPreprocessor> preprocessorByTag = new ConcurrentHashMap<Object, TaskPreprocessor>();
 
@@ -165,6 +171,7 @@ public class BasicExecutionManager implements ExecutionManager {
      * a reference to it as a tag.
      */
     public void deleteTag(Object tag) {
+        tasksByTagBySubmitTime.remove(tag);
         Set<Task> tasks = tasksByTag.remove(tag);
         if (tasks != null) {
             for (Task task : tasks) {
@@ -179,6 +186,8 @@ public class BasicExecutionManager implements ExecutionManager {
             for (Object tag : tags) {
                 Set<Task> tasks = getMutableTasksWithTagOrNull(tag);
                 if (tasks != null) tasks.remove(task);
+                Map<SubmitTimeKey,Task> index = tasksByTagBySubmitTime.get(tag);
+                if (index != null) index.remove(new SubmitTimeKey(task));
             }
         }
         tasksById.remove(task.getId());
@@ -216,6 +225,49 @@ public class BasicExecutionManager implements ExecutionManager {
         return tasksByTag.get(tag);
     }
 
+    private ConcurrentNavigableMap<SubmitTimeKey,Task> getMutableTasksWithTagBySubmitTime(Object tag) {
+        ConcurrentNavigableMap<SubmitTimeKey,Task> result = tasksByTagBySubmitTime.get(tag);
+        if (result == null) {
+            tasksByTagBySubmitTime.putIfAbsent(tag, new ConcurrentSkipListMap<SubmitTimeKey,Task>());
+            result = tasksByTagBySubmitTime.get(tag);
+        }
+        return result;
+    }
+
+    /** Orders tasks by submit time, then by id so that tasks submitted in the same millisecond are distinct */
+    private static class SubmitTimeKey implements Comparable<SubmitTimeKey> {
+        private final long submitTimeUtc;
+        /** null sorts before all ids, for range bounds */
+        private final String id;
+
+        SubmitTimeKey(Task<?> task) {
+            this(task.getSubmitTimeUtc(), task.getId());
+        }
+
+        SubmitTimeKey(long submitTimeUtc, String id) {
+            this.submitTimeUtc = submitTimeUtc;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(SubmitTimeKey o) {
+            if (submitTimeUtc != o.submitTimeUtc) return submitTimeUtc < o.submitTimeUtc ? -1 : 1;
+            if (id == null) return (o.id == null) ? 0 : -1;
+            if (o.id == null) return 1;
+            return id.compareTo(o.id);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof SubmitTimeKey) && compareTo((SubmitTimeKey)obj) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int)(submitTimeUtc ^ (submitTimeUtc >>> 32)) * 31 + (id == null ? 0 : id.hashCode());
+        }
+    }
+
     @Override
     public Task getTask(String id) {
         return tasksById.get(id);
@@ -229,6 +281,21 @@ public class BasicExecutionManager implements ExecutionManager {
         }
     }
     
+    /**
+     * Returns the tasks with the given tag submitted in the given time range (inclusive), ordered by submit time.
+     * <p>
+     * This is a live view, which is not copied or locked, so callers can cheaply page through (or stop part way through)
+     * the tasks of a busy tag. Tasks submitted or deleted while iterating may or may not be included.
+     */
+    public Iterable<Task<?>> getTasksWithTagBySubmitTime(Object tag, long fromTimeUtc, long toTimeUtc, boolean newestFirst) {
+        NavigableMap<SubmitTimeKey,Task> result = tasksByTagBySubmitTime.get(tag);
+        if (result == null) return Collections.emptyList();
+        result = result.tailMap(new SubmitTimeKey(fromTimeUtc, null), true);
+        if (toTimeUtc < Long.MAX_VALUE) result = result.headMap(new SubmitTimeKey(toTimeUtc+1, null), false);
+        if (newestFirst) result = result.descendingMap();
+        return (Collection)Collections.unmodifiableCollection(result.values());
+    }
+
     @Override
     public Set<Task<?>> getTasksWithAnyTag(Iterable<?> tags) {
         Set result = new LinkedHashSet<Task>();
@@ -407,8 +474,10 @@ public class BasicExecutionManager implements ExecutionManager {
         if (flags.get("tag")!=null) ((BasicTask)task).tags.add(flags.remove("tag"));
         if (flags.get("tags")!=null) ((BasicTask)task).tags.addAll((Collection)flags.remove("tags"));
 
+        SubmitTimeKey submitTimeKey = new SubmitTimeKey(task);
         for (Object tag: ((BasicTask)task).tags) {
             getMutableTasksWithTag(tag).add(task);
+            getMutableTasksWithTagBySubmitTime(tag).put(submitTimeKey, task);
         }
         
         List tagLinkedPreprocessors = new ArrayList();
@@ -0,0 +1,180 @@
+package brooklyn.catalog.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.catalog.Catalog;
+import brooklyn.catalog.CatalogIndexProcessor;
+import brooklyn.catalog.internal.CatalogClasspathDo.CatalogScanningModes;
+import brooklyn.entity.Entity;
+import brooklyn.entity.basic.AbstractEntity;
+import brooklyn.management.internal.LocalManagementContext;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+
+public class CatalogClasspathIndexTest {
+
+    @Catalog(name="Indexed Entity")
+    public static class IndexedEntity extends AbstractEntity {
+    }
+
+    @Catalog(name="Unindexed Entity")
+    public static class UnindexedEntity extends AbstractEntity {
+    }
+
+    // declares Entity directly, so that a scan of this class alone links it to Entity
+    public static class IndexedBaseEntity extends AbstractEntity implements Entity {
+    }
+
+    public static class UnindexedSubEntity extends IndexedBaseEntity {
+    }
+
+    private File dir;
+    private LocalManagementContext mgmt;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        dir = Files.createTempDir();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (dir != null) Files.deleteRecursively(dir);
+        if (mgmt != null) mgmt.terminate();
+    }
+
+    @Test
+    public void testReadsIndexFromDirectory() throws Exception {
+        File classes = new File(dir, "classes");
+        File index = new File(classes, CatalogIndexProcessor.ANNOTATED_INDEX);
+        Files.createParentDirs(index);
+        Files.write("a.B\n\na.C$D\n", index, Charsets.UTF_8);
+
+        Assert.assertEquals(CatalogClasspathIndex.read(classes.toURI().toURL(), CatalogScanningModes.ANNOTATIONS), 
+                ImmutableList.of("a.B", "a.C$D"));
+        // no index for the other mode, so must be scanned
+        Assert.assertNull(CatalogClasspathIndex.read(classes.toURI().toURL(), CatalogScanningModes.TYPES));
+    }
+
+    @Test
+    public void testReadsIndexFromJar() throws Exception {
+        File jar = new File(dir, "some.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        out.putNextEntry(new ZipEntry(CatalogIndexProcessor.TYPES_INDEX));
+        out.write("a.B\n".getBytes(Charsets.UTF_8));
+        out.closeEntry();
+        out.close();
+
+        Assert.assertEquals(CatalogClasspathIndex.read(jar.toURI().toURL(), CatalogScanningModes.TYPES), ImmutableList.of("a.B"));
+        Assert.assertNull(CatalogClasspathIndex.read(jar.toURI().toURL(), CatalogScanningModes.ANNOTATIONS));
+    }
+
+    @Test
+    public void testIndexNotCoveringAllClassesIsIgnored() throws Exception {
+        File classes = new File(dir, "classes");
+        writeIndex(classes, CatalogIndexProcessor.ANNOTATED_INDEX, "a.B");
+        writeIndex(classes, CatalogIndexProcessor.CLASSES_INDEX, "a.B");
+        writeClass(classes, "a/B.class");
+        writeClass(classes, "a/B$Nested.class");
+        Assert.assertEquals(CatalogClasspathIndex.read(classes.toURI().toURL(), CatalogScanningModes.ANNOTATIONS), ImmutableList.of("a.B"));
+
+        // e.g. compiled from groovy, so not seen by the index processor
+        writeClass(classes, "a/C.class");
+        Assert.assertNull(CatalogClasspathIndex.read(classes.toURI().toURL(), CatalogScanningModes.ANNOTATIONS));
+    }
+
+    @Test
+    public void testJarIndexNotCoveringAllClassesIsIgnored() throws Exception {
+        File jar = new File(dir, "some.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        out.putNextEntry(new ZipEntry(CatalogIndexProcessor.TYPES_INDEX));
+        out.write("a.B\n".getBytes(Charsets.UTF_8));
+        out.closeEntry();
+        out.putNextEntry(new ZipEntry(CatalogIndexProcessor.CLASSES_INDEX));
+        out.write("a.B\n".getBytes(Charsets.UTF_8));
+        out.closeEntry();
+        out.putNextEntry(new ZipEntry("a/B.class"));
+        out.closeEntry();
+        out.putNextEntry(new ZipEntry("other/C.class"));
+        out.closeEntry();
+        out.close();
+
+        Assert.assertNull(CatalogClasspathIndex.read(jar.toURI().toURL(), CatalogScanningModes.TYPES));
+    }
+
+    @Test
+    public void testLoadsCatalogFromIndexedAndUnindexedEntries() throws Exception {
+        File indexed = new File(dir, "indexed");
+        copyClass(IndexedEntity.class, indexed);
+        writeIndex(indexed, CatalogIndexProcessor.ANNOTATED_INDEX, IndexedEntity.class.getName());
+        writeIndex(indexed, CatalogIndexProcessor.CLASSES_INDEX, IndexedEntity.class.getName());
+        File unindexed = new File(dir, "unindexed");
+        copyClass(UnindexedEntity.class, unindexed);
+
+        CatalogDo catalog = new CatalogDo(CatalogDto.newNamedInstance("Mixed", null));
+        catalog.setClasspathScanForEntities(CatalogScanningModes.ANNOTATIONS);
+        catalog.addToClasspath(indexed.toURI().toURL().toString(), unindexed.toURI().toURL().toString());
+        mgmt = new LocalManagementContext();
+        catalog.load(mgmt, null);
+
+        Assert.assertEquals(catalog.getCache().get(IndexedEntity.class.getName()).getName(), "Indexed Entity");
+        Assert.assertEquals(catalog.getCache().get(UnindexedEntity.class.getName()).getName(), "Unindexed Entity");
+    }
+
+    @Test
+    public void testTypesScanFindsUnindexedSubclassOfIndexedClass() throws Exception {
+        File indexed = new File(dir, "indexed");
+        copyClass(IndexedBaseEntity.class, indexed);
+        writeIndex(indexed, CatalogIndexProcessor.TYPES_INDEX, IndexedBaseEntity.class.getName());
+        writeIndex(indexed, CatalogIndexProcessor.CLASSES_INDEX, IndexedBaseEntity.class.getName());
+        File unindexed = new File(dir, "unindexed");
+        copyClass(UnindexedSubEntity.class, unindexed);
+
+        CatalogDo catalog = new CatalogDo(CatalogDto.newNamedInstance("Mixed", null));
+        catalog.setClasspathScanForEntities(CatalogScanningModes.TYPES);
+        catalog.addToClasspath(indexed.toURI().toURL().toString(), unindexed.toURI().toURL().toString());
+        mgmt = new LocalManagementContext();
+        catalog.load(mgmt, null);
+
+        Assert.assertNotNull(catalog.getCache().get(IndexedBaseEntity.class.getName()));
+        Assert.assertNotNull(catalog.getCache().get(UnindexedSubEntity.class.getName()));
+    }
+
+    private static void writeIndex(File classes, String index, String contents) throws Exception {
+        File file = new File(classes, index);
+        Files.createParentDirs(file);
+        Files.write(contents+"\n", file, Charsets.UTF_8);
+    }
+
+    private static void writeClass(File classes, String path) throws Exception {
+        File file = new File(classes, path);
+        Files.createParentDirs(file);
+        Files.write(new byte[0], file);
+    }
+
+    private static void copyClass(Class<?> c, File classes) throws Exception {
+        String path = c.getName().replace('.', '/')+".class";
+        URL url = c.getClassLoader().getResource(path);
+        File file = new File(classes, path);
+        Files.createParentDirs(file);
+        Files.copy(Resources.newInputStreamSupplier(url), file);
+    }
+
+    @Test
+    public void testEntryWithoutIndexIsScanned() throws Exception {
+        Assert.assertNull(CatalogClasspathIndex.read(dir.toURI().toURL(), CatalogScanningModes.ANNOTATIONS));
+        Assert.assertNull(CatalogClasspathIndex.read(new File(dir, "missing.jar").toURI().toURL(), CatalogScanningModes.ANNOTATIONS));
+    }
+
+}
@@ -0,0 +1,64 @@
+package brooklyn.catalog.internal;
+
+import java.io.File;
+import java.net.URL;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.catalog.internal.CatalogClasspathDo.CatalogScanningModes;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+public class CatalogClasspathScanCacheTest {
+
+    private File dir;
+    private File jar;
+    private CatalogClasspathScanCache cache;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        dir = Files.createTempDir();
+        jar = new File(dir, "some.jar");
+        Files.write("not really a jar", jar, Charsets.UTF_8);
+        cache = new CatalogClasspathScanCache(new File(dir, "cache"));
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (dir != null) Files.deleteRecursively(dir);
+    }
+
+    @Test
+    public void testRemembersClassNamesForSameJars() throws Exception {
+        List<URL> urls = ImmutableList.of(jar.toURI().toURL());
+        String key = cache.key(urls, CatalogScanningModes.ANNOTATIONS);
+        Assert.assertNotNull(key);
+        Assert.assertNull(cache.get(key));
+
+        cache.put(key, ImmutableList.of("a.B", "c.D"));
+        Assert.assertEquals(cache.get(cache.key(urls, CatalogScanningModes.ANNOTATIONS)), ImmutableList.of("a.B", "c.D"));
+        Assert.assertNull(cache.get(cache.key(urls, CatalogScanningModes.TYPES)));
+    }
+
+    @Test
+    public void testChangedJarIsScannedAgain() throws Exception {
+        List<URL> urls = ImmutableList.of(jar.toURI().toURL());
+        String key = cache.key(urls, CatalogScanningModes.ANNOTATIONS);
+        cache.put(key, ImmutableList.of("a.B"));
+
+        Files.write("a different jar", jar, Charsets.UTF_8);
+        Assert.assertNotEquals(cache.key(urls, CatalogScanningModes.ANNOTATIONS), key);
+    }
+
+    @Test
+    public void testDirectoriesAreNotCached() throws Exception {
+        Assert.assertNull(cache.key(ImmutableList.of(jar.toURI().toURL(), dir.toURI().toURL()), CatalogScanningModes.ANNOTATIONS));
+    }
+
+}
@@ -78,6 +78,31 @@ public class DynamicGroupTest {
         assertEquals(group.getMembers(), [e1])
     }
     
+    @Test
+    public void testCanUseIndexedInstanceOfPredicateAsFilter() {
+        group.setEntityFilter(EntityPredicates.isInstanceOf(TestEntity.class))
+        assertEquals(group.getMembers() as Set, [e1, e2] as Set)
+        
+        TestEntity e3 = app.createAndManageChild(EntitySpecs.spec(TestEntity.class))
+        executeUntilSucceeds(timeout:TIMEOUT_MS) {
+            assertEquals(group.getMembers() as Set, [e1, e2, e3] as Set)
+        }
+        
+        Entities.unmanage(e3)
+        executeUntilSucceeds(timeout:TIMEOUT_MS) {
+            assertEquals(group.getMembers() as Set, [e1, e2] as Set)
+        }
+    }
+    
+    @Test
+    public void testCanUseIndexedChildOfPredicateAsFilter() {
+        TestEntity grandchild = e1.addChild(EntitySpecs.spec(TestEntity.class))
+        Entities.manage(grandchild)
+        
+        group.setEntityFilter(EntityPredicates.isChildOf(e1))
+        assertEquals(group.getMembers(), [grandchild])
+    }
+    
     @Test
     public void testGroupWithMatchingFilterReturnsEverythingThatMatches() {
         group.setEntityFilter( { true } )
@@ -0,0 +1,54 @@
+package brooklyn.entity.drivers;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import freemarker.template.Template;
+
+public class TemplateCacheTest {
+
+    private TemplateCache cache;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        cache = new TemplateCache();
+    }
+
+    @Test
+    public void testProcessesTemplate() throws Exception {
+        String result = cache.process("classpath://my.conf", "name=${name}", ImmutableMap.of("name", "peter"));
+        assertEquals(result, "name=peter");
+    }
+
+    @Test
+    public void testReusesParsedTemplateForSameContents() throws Exception {
+        Template template1 = cache.getTemplate("classpath://my.conf", "name=${name}");
+        Template template2 = cache.getTemplate("classpath://my.conf", "name=${name}");
+        assertSame(template2, template1);
+        assertEquals(cache.getMissCount(), 1);
+        assertEquals(cache.getHitCount(), 1);
+    }
+
+    @Test
+    public void testReparsesWhenContentsChange() throws Exception {
+        Template template1 = cache.getTemplate("file:///tmp/my.conf", "name=${name}");
+        Template template2 = cache.getTemplate("file:///tmp/my.conf", "othername=${name}");
+        assertNotSame(template2, template1);
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.process("file:///tmp/my.conf", "othername=${name}", ImmutableMap.of("name", "peter")), "othername=peter");
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        Template template1 = cache.getTemplate("classpath://my.conf", "name=${name}");
+        cache.invalidate("classpath://my.conf");
+        assertEquals(cache.size(), 0);
+        assertNotSame(cache.getTemplate("classpath://my.conf", "name=${name}"), template1);
+    }
+}
@@ -0,0 +1,83 @@
+package brooklyn.entity.drivers.downloads;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.net.URL;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.config.BrooklynProperties;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.mockwebserver.MockResponse;
+import com.google.mockwebserver.MockWebServer;
+
+public class ArtifactCacheTest {
+
+    private static final String CONTENTS = "pretend this is a tarball";
+    
+    private File dir;
+    private MockWebServer server;
+    private URL url;
+    private ArtifactCache cache;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        dir = Files.createTempDir();
+        server = new MockWebServer();
+        for (int i = 0; i < 10; i++) {
+            server.enqueue(new MockResponse().setResponseCode(200).setBody(CONTENTS));
+        }
+        server.play();
+        url = server.getUrl("/myartifact.tar.gz");
+        
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(ArtifactCache.ENABLED, true);
+        brooklynProperties.put(ArtifactCache.DIR, dir.getAbsolutePath());
+        cache = new ArtifactCache(brooklynProperties);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (server != null) server.shutdown();
+        if (dir != null) FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void testFetchesOnceAndStoresByChecksum() throws Exception {
+        String sha256 = Hashing.sha256().hashString(CONTENTS, Charsets.UTF_8).toString();
+        List<String> targets = ImmutableList.of(url.toString());
+        
+        ArtifactCache.Artifact artifact = cache.get(targets, null);
+        ArtifactCache.Artifact artifact2 = cache.get(targets, null);
+        
+        assertEquals(artifact.getSha256(), sha256);
+        assertEquals(artifact.getFile(), new File(dir, sha256));
+        assertEquals(Files.toString(artifact.getFile(), Charsets.UTF_8), CONTENTS);
+        assertEquals(artifact2.getFile(), artifact.getFile());
+        assertEquals(server.getRequestCount(), 1);
+    }
+
+    @Test
+    public void testSkipsLocalTargetsAndTriesNext() throws Exception {
+        ArtifactCache.Artifact artifact = cache.get(ImmutableList.of("file://$HOME/.brooklyn/repository/myartifact.tar.gz", url.toString()), null);
+        
+        assertEquals(artifact.getSourceUrl(), url.toString());
+    }
+
+    @Test
+    public void testRejectsChecksumMismatch() throws Exception {
+        ArtifactCache.Artifact artifact = cache.get(ImmutableList.of(url.toString()), "0123456789abcdef");
+        
+        assertNull(artifact);
+    }
+}
@@ -19,7 +19,11 @@ import brooklyn.entity.basic.ApplicationBuilder
 import brooklyn.entity.basic.Entities
 import brooklyn.entity.proxying.EntitySpecs
 import brooklyn.entity.trait.Changeable
+import brooklyn.entity.trait.MachineProvisioned
+import brooklyn.location.BulkMachineProvisioningLocation
 import brooklyn.location.Location
+import brooklyn.location.MachineLocation
+import brooklyn.location.MachineProvisioningLocation
 import brooklyn.location.basic.SimulatedLocation
 import brooklyn.management.Task
 import brooklyn.test.TestUtils
@@ -590,6 +594,112 @@ class DynamicClusterTest {
         assertEquals(cluster.members.size(), 1);
     }
     
+    @Test
+    public void testGrowObtainsMachinesInBulkWhenEnabled() {
+        BulkSimulatedLocation bulkLoc = new BulkSimulatedLocation()
+        DynamicCluster cluster = app.createAndManageChild(EntitySpecs.spec(DynamicCluster.class)
+                .configure("initialSize", 0)
+                .configure("bulkProvisioning", true)
+                .configure("factory", { properties -> return new TestEntityImpl(properties) }));
+        
+        cluster.start([bulkLoc])
+        cluster.resize(5)
+        
+        assertEquals(bulkLoc.bulkRequests, [5])
+        assertEquals(bulkLoc.obtained.size(), 5)
+        Set<Location> memberLocations = cluster.members.collect { Iterables.getOnlyElement(it.locations) } as Set
+        assertEquals(memberLocations, bulkLoc.obtained as Set)
+        
+        cluster.resize(0)
+        assertEquals(bulkLoc.released as Set, bulkLoc.obtained as Set)
+    }
+    
+    @Test
+    public void testQuarantineReleasesBulkProvisionedMachines() {
+        final AtomicInteger counter = new AtomicInteger(0)
+        BulkSimulatedLocation bulkLoc = new BulkSimulatedLocation()
+        DynamicCluster cluster = app.createAndManageChild(EntitySpecs.spec(DynamicCluster.class)
+                .configure("initialSize", 0)
+                .configure("bulkProvisioning", true)
+                .configure("quarantineFailedEntities", true)
+                .configure("factory", { properties -> return new FailingEntity(properties, (counter.incrementAndGet()==2)) }));
+        
+        cluster.start([bulkLoc])
+        cluster.resize(3)
+        
+        assertEquals(cluster.currentSize, 2)
+        assertEquals(bulkLoc.obtained.size(), 3)
+        assertEquals(bulkLoc.released.size(), 1)
+        Entity quarantined = Iterables.getOnlyElement(cluster.getAttribute(DynamicCluster.QUARANTINE_GROUP).members)
+        assertTrue(((FailingEntity)quarantined).failOnStart)
+        
+        cluster.resize(0)
+        assertEquals(bulkLoc.released as Set, bulkLoc.obtained as Set)
+    }
+    
+    @Test
+    public void testGrowMergesMemberProvisioningFlagsIntoBulkRequest() {
+        BulkSimulatedLocation bulkLoc = new BulkSimulatedLocation()
+        DynamicCluster cluster = app.createAndManageChild(EntitySpecs.spec(DynamicCluster.class)
+                .configure("initialSize", 0)
+                .configure("bulkProvisioning", true)
+                .configure("bulkProvisioningFlags", [minRam:1024])
+                .configure("factory", { properties -> return new ProvisionedTestEntity(properties, [inboundPorts:[8080]]) }));
+        
+        cluster.start([bulkLoc])
+        cluster.resize(3)
+        
+        assertEquals(bulkLoc.bulkRequests, [3])
+        assertEquals(bulkLoc.bulkFlags, [[inboundPorts:[8080], minRam:1024]])
+    }
+    
+    @Test
+    public void testGrowProvisionsIndividuallyWhenMembersNeedDifferentFlags() {
+        final AtomicInteger port = new AtomicInteger(8080)
+        BulkSimulatedLocation bulkLoc = new BulkSimulatedLocation()
+        DynamicCluster cluster = app.createAndManageChild(EntitySpecs.spec(DynamicCluster.class)
+                .configure("initialSize", 0)
+                .configure("bulkProvisioning", true)
+                .configure("factory", { properties -> return new ProvisionedTestEntity(properties, [inboundPorts:[port.getAndIncrement()]]) }));
+        
+        cluster.start([bulkLoc])
+        cluster.resize(3)
+        
+        assertEquals(bulkLoc.bulkRequests, [])
+        assertEquals(cluster.currentSize, 3)
+    }
+    
+    @Test
+    public void testGrowStartsAtMostMaxConcurrentChildStarts() {
+        final AtomicInteger concurrentStarts = new AtomicInteger(0)
+        final AtomicInteger maxConcurrentStarts = new AtomicInteger(0)
+        DynamicCluster cluster = app.createAndManageChild(EntitySpecs.spec(DynamicCluster.class)
+                .configure("initialSize", 0)
+                .configure("maxConcurrentChildStarts", 2)
+                .configure("factory", { properties -> 
+                    return new TestEntityImpl(properties) {
+                        @Override public void start(Collection<? extends Location> locs) {
+                            int now = concurrentStarts.incrementAndGet()
+                            synchronized (maxConcurrentStarts) {
+                                maxConcurrentStarts.set(Math.max(now, maxConcurrentStarts.get()))
+                            }
+                            try {
+                                Thread.sleep(50)
+                                super.start(locs)
+                            } finally {
+                                concurrentStarts.decrementAndGet()
+                            }
+                        }
+                    }
+                }));
+        
+        cluster.start([loc])
+        cluster.resize(6)
+        
+        assertEquals(cluster.currentSize, 6)
+        assertTrue(maxConcurrentStarts.get() <= 2, "max="+maxConcurrentStarts.get())
+    }
+    
     private Throwable unwrapException(Throwable e) {
         if (e instanceof ExecutionException) {
             return unwrapException(e.cause)
@@ -637,3 +747,41 @@ class FailingEntity extends TestEntityImpl {
         }
     }
 }
+
+class BulkSimulatedLocation extends SimulatedLocation implements BulkMachineProvisioningLocation<MachineLocation> {
+    final List<Integer> bulkRequests = new CopyOnWriteArrayList<Integer>();
+    final List<Map<?,?>> bulkFlags = new CopyOnWriteArrayList<Map<?,?>>();
+    final List<MachineLocation> obtained = new CopyOnWriteArrayList<MachineLocation>();
+    final List<MachineLocation> released = new CopyOnWriteArrayList<MachineLocation>();
+    
+    @Override
+    public Collection<MachineLocation> obtain(int count, Map<?,?> flags) {
+        bulkRequests.add(count)
+        bulkFlags.add(flags)
+        List<MachineLocation> result = []
+        for (int i = 0; i < count; i++) {
+            result.add(new SimulatedLocation())
+        }
+        obtained.addAll(result)
+        return result
+    }
+    
+    @Override
+    public void release(MachineLocation machine) {
+        released.add(machine)
+    }
+}
+
+class ProvisionedTestEntity extends TestEntityImpl implements MachineProvisioned {
+    final Map<String,Object> provisioningFlags;
+    
+    public ProvisionedTestEntity(Map flags, Map<String,Object> provisioningFlags) {
+        super(flags)
+        this.provisioningFlags = provisioningFlags;
+    }
+    
+    @Override
+    public Map<String,Object> getProvisioningFlagsFor(MachineProvisioningLocation<?> location) {
+        return provisioningFlags + [callerContext:this]
+    }
+}
@@ -2,6 +2,11 @@ package brooklyn.location.basic
 
 import static org.testng.Assert.*
 
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
 import org.testng.annotations.AfterMethod
 import org.testng.annotations.BeforeMethod
 import org.testng.annotations.Test
@@ -200,6 +205,81 @@ public class FixedListMachineProvisioningLocationTest {
         assertEquals(provisioner.getAllMachines(), ImmutableSet.of(machine));
     }
     
+    @Test
+    public void testObtainMultipleMachines() {
+        SshMachineLocation machine2 = new SshMachineLocation(address:'192.168.144.201');
+        SshMachineLocation machine3 = new SshMachineLocation(address:'192.168.144.202');
+        provisioner.addMachine(machine2);
+        provisioner.addMachine(machine3);
+        
+        Collection<SshMachineLocation> obtained = provisioner.obtain(2, [:]);
+        assertEquals(obtained as List, [machine, machine2]);
+        assertEquals(provisioner.getAvailableCount(), 1);
+        
+        // Only one left, so only get one
+        Collection<SshMachineLocation> obtained2 = provisioner.obtain(2, [:]);
+        assertEquals(obtained2 as List, [machine3]);
+        assertEquals(provisioner.getAvailableCount(), 0);
+        assertEquals(provisioner.getObtainCount(), 3);
+        
+        try {
+            provisioner.obtain(2, [:]);
+            fail();
+        } catch (NoMachinesAvailableException e) {
+            // success
+        }
+    }
+
+    @Test
+    public void testObtainMachineMatchingConstraints() {
+        SshMachineLocation small = new SshMachineLocation(address:'192.168.144.201', size:'small', tags:['db', 'ssd']);
+        SshMachineLocation large = new SshMachineLocation(address:'192.168.144.202', size:'large', tags:['db']);
+        provisioner.addMachine(small);
+        provisioner.addMachine(large);
+        
+        assertEquals(provisioner.obtain(constraints:[size:'large']), large);
+        assertEquals(provisioner.obtain(constraints:[tags:'ssd', size:'small']), small);
+        try {
+            SshMachineLocation obtained = provisioner.obtain(constraints:[tags:'db']);
+            fail("obtained="+obtained);
+        } catch (NoMachinesAvailableException e) {
+            // success
+        }
+        
+        // Released (and added) machines are found by their constraints
+        provisioner.release(large);
+        SshMachineLocation large2 = new SshMachineLocation(address:'192.168.144.203', size:'large');
+        provisioner.addMachine(large2);
+        assertEquals(provisioner.obtain(2, [constraints:[size:'large']]) as Set, [large, large2] as Set);
+        
+        // Machines claimed by constraints leave the free-list, so each is there once when released
+        [small, large, large2].each { provisioner.release(it) }
+        assertEquals(provisioner.getAvailableCount(), 3);
+        assertEquals(provisioner.@freeList.size(), 3);
+        assertEquals([provisioner.obtain(), provisioner.obtain(), provisioner.obtain()] as Set, [small, large, large2] as Set);
+        assertEquals(provisioner.@freeList.size(), 0);
+    }
+
+    @Test
+    public void testConcurrentObtainsClaimDistinctMachines() {
+        provisioner2 = new FixedListMachineProvisioningLocation<SshMachineLocation>(machines:[]);
+        for (int i = 0; i < 100; i++) {
+            provisioner2.addMachine(new SshMachineLocation(address:'192.168.145.'+i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<SshMachineLocation>> futures = [];
+            for (int i = 0; i < 100; i++) {
+                futures.add(executor.submit({ provisioner2.obtain() } as Callable));
+            }
+            Set<SshMachineLocation> obtained = futures.collect { it.get() } as Set;
+            assertEquals(obtained.size(), 100);
+            assertEquals(provisioner2.getAvailableCount(), 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
     private static void assertUserAndHost(SshMachineLocation l, String user, String host) {
         assertEquals(l.getUser(), user);
         assertEquals(l.getAddress().getHostAddress(), host);
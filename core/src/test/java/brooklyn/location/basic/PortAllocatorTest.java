@@ -0,0 +1,106 @@
+package brooklyn.location.basic;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import brooklyn.location.PortRange;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class PortAllocatorTest {
+
+    @Test
+    public void testClaimAndRelease() {
+        PortAllocator ports = new PortAllocator();
+        assertTrue(ports.claim(8080));
+        assertFalse(ports.claim(8080));
+        assertTrue(ports.isInUse(8080));
+        assertEquals(ports.size(), 1);
+
+        assertTrue(ports.release(8080));
+        assertFalse(ports.release(8080));
+        assertFalse(ports.isInUse(8080));
+        assertEquals(ports.size(), 0);
+    }
+
+    @Test
+    public void testSetView() {
+        PortAllocator ports = new PortAllocator(ImmutableList.of(65535, 0, 8000, 63, 64));
+        assertEquals(ImmutableList.copyOf(ports), ImmutableList.of(0, 63, 64, 8000, 65535));
+        assertEquals(ports, ImmutableSet.of(0, 63, 64, 8000, 65535));
+        assertTrue(ports.contains(8000));
+        assertTrue(ports.remove(8000));
+        assertFalse(ports.contains(8000));
+    }
+
+    @Test
+    public void testClaimFirstSkipsPortsInUseAcrossWords() {
+        PortAllocator ports = new PortAllocator();
+        for (int p = 8000; p < 8200; p++) {
+            ports.claim(p);
+        }
+        assertEquals(ports.claimFirst(PortRanges.fromString("8000+")), 8200);
+        assertEquals(ports.claimFirst(PortRanges.fromString("8000-8200")), -1);
+        assertEquals(ports.claimFirst(PortRanges.fromString("7990-8200")), 7990);
+    }
+
+    @Test
+    public void testClaimFirstFollowsRangeOrder() {
+        PortAllocator ports = new PortAllocator();
+        ports.claim(80);
+        PortRange range = PortRanges.fromString("80,8080,8000-8099");
+        assertEquals(ports.claimFirst(range), 8080);
+        assertEquals(ports.claimFirst(range), 8000);
+        assertEquals(ports.claimFirst(PortRanges.fromString("9010-9000")), 9010);
+    }
+
+    @Test
+    public void testClaimFirstReleasesPortsFailingCheck() {
+        PortAllocator ports = new PortAllocator();
+        int port = ports.claimFirst(PortRanges.fromString("9000-9010"), new Predicate<Integer>() {
+            @Override public boolean apply(Integer input) {
+                return input >= 9005;
+            }});
+        assertEquals(port, 9005);
+        assertEquals(ports, ImmutableSet.of(9005));
+    }
+
+    @Test
+    public void testConcurrentClaimsAreDistinct() throws Exception {
+        final PortAllocator ports = new PortAllocator();
+        final PortRange range = PortRanges.fromString("10000-10999");
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<Integer>> futures = Lists.newArrayList();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        return ports.claimFirst(range);
+                    }}));
+            }
+            Set<Integer> claimed = Sets.newHashSet();
+            for (Future<Integer> future : futures) {
+                int port = future.get();
+                assertTrue(port >= 10000 && port <= 10999, "port="+port);
+                assertTrue(claimed.add(port), "port "+port+" claimed twice");
+            }
+            assertEquals(ports.claimFirst(range), -1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -177,4 +177,24 @@ public class SshMachineLocationTest {
         assertEquals(host.obtainPort(PortRanges.fromString("8000")), -1);
         assertEquals(host.obtainPort(PortRanges.fromString("8000+")), 8001);
     }
+    
+    @Test
+    public void testConfigureUsedPortsAfterConstruction() {
+        host.configure(MutableMap.of("usedPorts", ImmutableList.of(8000, "8001")));
+        assertEquals(host.obtainPort(PortRanges.fromString("8000+")), 8002);
+    }
+    
+    @Test
+    public void testUsedPortsNotSharedWithOtherMachine() {
+        SshMachineLocation other = new SshMachineLocation(MutableMap.of("address", InetAddress.getLocalHost()));
+        assertEquals(other.obtainPort(PortRanges.fromString("8000")), 8000);
+        host.configure(MutableMap.of("usedPorts", other.usedPorts));
+        assertEquals(host.obtainPort(PortRanges.fromString("8000+")), 8001);
+        assertEquals(other.obtainPort(PortRanges.fromString("8000+")), 8001);
+    }
+    
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testConfigureRejectsInvalidUsedPorts() {
+        host.configure(MutableMap.of("usedPorts", "8000"));
+    }
 }
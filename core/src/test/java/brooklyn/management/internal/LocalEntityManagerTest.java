@@ -0,0 +1,65 @@
+package brooklyn.management.internal;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.config.BrooklynProperties;
+import brooklyn.entity.Entity;
+import brooklyn.entity.basic.ApplicationBuilder;
+import brooklyn.entity.basic.Entities;
+import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.test.entity.TestApplication;
+import brooklyn.test.entity.TestEntity;
+
+import com.google.common.collect.Lists;
+
+public class LocalEntityManagerTest {
+
+    private LocalManagementContext managementContext;
+    private TestApplication app;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(LocalEntityManager.MANAGEMENT_PARALLELISM, 4);
+        managementContext = new LocalManagementContext(brooklynProperties);
+        app = ApplicationBuilder.newManagedApp(TestApplication.class, managementContext);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (app != null) Entities.destroyAll(app);
+        if (managementContext != null) managementContext.terminate();
+    }
+
+    @Test
+    public void testManagesAndUnmanagesTreeInParallel() throws Exception {
+        List<Entity> descendants = Lists.newArrayList();
+        TestEntity root = app.addChild(EntitySpecs.spec(TestEntity.class));
+        descendants.add(root);
+        for (int i = 0; i < 10; i++) {
+            TestEntity child = root.addChild(EntitySpecs.spec(TestEntity.class));
+            descendants.add(child);
+            for (int j = 0; j < 5; j++) {
+                descendants.add(child.addChild(EntitySpecs.spec(TestEntity.class)));
+            }
+        }
+
+        Entities.manage(root);
+        for (Entity e : descendants) {
+            assertTrue(Entities.isManaged(e), "entity="+e);
+            assertTrue(managementContext.getEntityManager().getEntities().contains(e), "entity="+e);
+        }
+
+        Entities.unmanage(root);
+        for (Entity e : descendants) {
+            assertFalse(managementContext.getEntityManager().isManaged(e), "entity="+e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package brooklyn.qa.performance;
+
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.entity.Entity;
+import brooklyn.entity.basic.ApplicationBuilder;
+import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.management.EntityManager;
+import brooklyn.test.entity.TestApplication;
+import brooklyn.test.entity.TestEntity;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class EntityManagerPerformanceTest extends AbstractPerformanceTest {
+
+    private static final int NUM_READER_THREADS = 100;
+
+    private EntityManager entityManager;
+    private List<String> entityIds;
+    private ExecutorService executor;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() {
+        super.setUp();
+
+        entityManager = app.getManagementContext().getEntityManager();
+        entityIds = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            entityIds.add(app.createAndManageChild(EntitySpecs.spec(TestEntity.class)).getId());
+        }
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() {
+        if (executor != null) executor.shutdownNow();
+        super.tearDown();
+    }
+
+    protected int numIterations() {
+        return 100;
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testGetEntityWhileDeployingApplications() throws Exception {
+        int numIterations = numIterations();
+        double minRatePerSec = 100 * PERFORMANCE_EXPECTATION;
+        final List<String> ids = ImmutableList.copyOf(entityIds);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicLong numLookups = new AtomicLong();
+
+        for (int t = 0; t < NUM_READER_THREADS; t++) {
+            executor.submit(new Runnable() {
+                public void run() {
+                    int i = 0;
+                    while (!done.get()) {
+                        Entity entity = entityManager.getEntity(ids.get(i++ % ids.size()));
+                        assertTrue(entity != null);
+                        numLookups.incrementAndGet();
+                    }
+                }});
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            // Each iteration deploys an application of 10 entities, while the readers call getEntity
+            measureAndAssert("deployApplicationWhileGetEntity", numIterations, minRatePerSec, new Runnable() {
+                public void run() {
+                    TestApplication other = ApplicationBuilder.newManagedApp(TestApplication.class, app.getManagementContext());
+                    for (int i = 0; i < 10; i++) {
+                        other.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+                    }
+                }});
+        } finally {
+            done.set(true);
+            executor.shutdown();
+            executor.awaitTermination(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        long durationMillis = System.currentTimeMillis() - startTime;
+
+        double lookupsPerSec = ((double)numLookups.get()/durationMillis * 1000);
+        String msg = "getEntityWhileDeploying: "+numLookups+" lookups by "+NUM_READER_THREADS+" threads in "+durationMillis+"ms: numPerSec="+lookupsPerSec;
+        LOG.info(msg);
+        System.out.println("\n"+msg+"\n");
+        assertTrue(lookupsPerSec >= 10000 * PERFORMANCE_EXPECTATION, msg);
+    }
+}
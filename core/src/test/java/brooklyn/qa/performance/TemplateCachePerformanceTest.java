@@ -0,0 +1,66 @@
+package brooklyn.qa.performance;
+
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.entity.drivers.TemplateCache;
+import brooklyn.entity.drivers.downloads.DownloadSubstituters;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Compares rendering a config file template for many entities (as when starting a large cluster)
+ * with and without the {@link TemplateCache}.
+ */
+public class TemplateCachePerformanceTest extends AbstractPerformanceTest {
+
+    private String templateContents;
+    private Map<String, Object> substitutions;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() {
+        super.setUp();
+        
+        // a template of similar size to e.g. cassandra.yaml
+        List<String> lines = Lists.newArrayList();
+        for (int i = 0; i < 200; i++) {
+            lines.add("# comment line "+i+" describing the setting below, as found in typical config files");
+            lines.add("setting_"+i+": ${entity.id}<#if driver??>-${driver}</#if>");
+        }
+        templateContents = Joiner.on("\n").join(lines);
+        substitutions = ImmutableMap.<String, Object>of("entity", app, "driver", "mydriver");
+    }
+
+    protected int numIterations() {
+        return 300;
+    }
+    
+    @Test(groups={"Integration", "Acceptance"})
+    public void testRenderTemplateUncached() {
+        int numIterations = numIterations();
+        double minRatePerSec = 100 * PERFORMANCE_EXPECTATION;
+        
+        measureAndAssert("renderTemplateUncached", numIterations, minRatePerSec, new Runnable() {
+            public void run() {
+                DownloadSubstituters.substitute(templateContents, substitutions);
+            }});
+    }
+    
+    @Test(groups={"Integration", "Acceptance"})
+    public void testRenderTemplateCached() {
+        int numIterations = numIterations();
+        double minRatePerSec = 1000 * PERFORMANCE_EXPECTATION;
+        final TemplateCache cache = new TemplateCache();
+        
+        measureAndAssert("renderTemplateCached", numIterations, minRatePerSec, new Runnable() {
+            public void run() {
+                cache.process("classpath://brooklyn/qa/performance/template.conf", templateContents, substitutions);
+            }});
+    }
+}
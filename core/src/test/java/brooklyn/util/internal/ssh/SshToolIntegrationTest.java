@@ -342,6 +342,32 @@ public abstract class SshToolIntegrationTest {
         assertTrue(lsout.contains("-rwxr-xr--"), lsout);
     }
 
+    @Test(groups = {"Integration"})
+    public void testCopyFilesToServer() throws Exception {
+        runCopyFilesToServer(ImmutableMap.of("permissions", "0754"));
+    }
+
+    @Test(groups = {"Integration"})
+    public void testCopyFilesToServerCompressed() throws Exception {
+        runCopyFilesToServer(ImmutableMap.of("permissions", "0754", "compress", true));
+    }
+
+    private void runCopyFilesToServer(Map<String,?> props) throws Exception {
+        String remoteFilePath2 = remoteFilePath+"-2";
+        String localFilePath2 = localFilePath+"-2";
+        filesCreated.add(remoteFilePath2);
+        filesCreated.add(localFilePath2);
+        Files.write("echo hello world!\n", new File(localFilePath), Charsets.UTF_8);
+        Files.write("echo goodbye world!\n", new File(localFilePath2), Charsets.UTF_8);
+        
+        tool.copyFilesToServer(props, ImmutableMap.of(remoteFilePath, new File(localFilePath), remoteFilePath2, new File(localFilePath2)));
+
+        assertRemoteFileContents(remoteFilePath, "echo hello world!\n");
+        assertRemoteFileContents(remoteFilePath2, "echo goodbye world!\n");
+        assertRemoteFilePermissions(remoteFilePath, "-rwxr-xr--");
+        assertRemoteFilePermissions(remoteFilePath2, "-rwxr-xr--");
+    }
+
     @Test(groups = {"Integration"})
     public void testCopyFromServer() throws Exception {
         String contentsWithoutLineBreak = "echo hello world!";
@@ -198,6 +198,30 @@ public class BasicTaskExecutionTest {
         assertEquals(em.getTasksWithAllTags(["B"]), [t]);
     }
 
+    @Test
+    public void testRetrievingTasksWithTagBySubmitTime() {
+        List<Task> tasks = []
+        for (int i = 0; i < 3; i++) {
+            Task t = new BasicTask({ /*no-op*/ })
+            em.submit tag:"A", t
+            t.get()
+            tasks.add(t)
+            Thread.sleep(5)
+        }
+        long all = Long.MAX_VALUE
+
+        assertEquals(em.getTasksWithTagBySubmitTime("A", 0, all, false) as List, tasks);
+        assertEquals(em.getTasksWithTagBySubmitTime("A", 0, all, true) as List, tasks.reverse());
+        assertEquals(em.getTasksWithTagBySubmitTime("A", tasks[1].submitTimeUtc, tasks[1].submitTimeUtc, false) as List, [tasks[1]]);
+        assertEquals(em.getTasksWithTagBySubmitTime("A", tasks[1].submitTimeUtc, all, false) as List, tasks[1..2]);
+        assertEquals(em.getTasksWithTagBySubmitTime("B", 0, all, false) as List, []);
+
+        em.deleteTask(tasks[0])
+        assertEquals(em.getTasksWithTagBySubmitTime("A", 0, all, false) as List, tasks[1..2]);
+        em.deleteTag("A")
+        assertEquals(em.getTasksWithTagBySubmitTime("A", 0, all, false) as List, []);
+    }
+
     // ENGR-1796: if nothing matched first tag, then returned whatever matched second tag!
     @Test
     public void testRetrievingTasksWithAllTagsWhenFirstNotMatched() {
@@ -2,6 +2,7 @@ package brooklyn.location.jclouds;
 
 import static brooklyn.util.GroovyJavaMethods.elvis;
 import static brooklyn.util.GroovyJavaMethods.truth;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -9,6 +10,7 @@ import static org.jclouds.compute.options.RunScriptOptions.Builder.overrideLogin
 import static org.jclouds.scriptbuilder.domain.Statements.exec;
 
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -19,6 +21,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -50,14 +58,20 @@ import brooklyn.config.ConfigKey;
 import brooklyn.config.ConfigKey.HasConfigKey;
 import brooklyn.config.ConfigUtils;
 import brooklyn.entity.basic.Entities;
+import brooklyn.entity.rebind.BasicLocationRebindSupport;
+import brooklyn.entity.rebind.RebindContext;
+import brooklyn.entity.rebind.RebindSupport;
+import brooklyn.location.BulkMachineProvisioningLocation;
 import brooklyn.location.NoMachinesAvailableException;
 import brooklyn.location.basic.LocationConfigUtils;
 import brooklyn.location.basic.LocationCreationUtils;
 import brooklyn.location.basic.SshMachineLocation;
 import brooklyn.location.cloud.AbstractCloudMachineProvisioningLocation;
 import brooklyn.location.jclouds.templates.PortableTemplateBuilder;
+import brooklyn.mementos.LocationMemento;
 import brooklyn.util.collections.MutableMap;
 import brooklyn.util.config.ConfigBag;
+import brooklyn.util.exceptions.Exceptions;
 import brooklyn.util.flags.TypeCoercions;
 import brooklyn.util.internal.Repeater;
 import brooklyn.util.internal.ssh.SshTool;
@@ -89,7 +103,8 @@ import com.google.common.io.Files;
  * For provisioning and managing VMs in a particular provider/region, using jclouds.
  * Configuration flags are defined in {@link JcloudsLocationConfig}.
  */
-public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation implements JcloudsLocationConfig {
+public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation implements JcloudsLocationConfig, 
+        BulkMachineProvisioningLocation<SshMachineLocation>, Closeable {
 
     // TODO After converting from Groovy to Java, this is now very bad code! It relies entirely on putting 
     // things into and taking them out of maps; it's not type-safe, and it's thus very error-prone.
@@ -113,8 +128,14 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
     public static final List<String> ROOT_ALIASES = ImmutableList.of("ubuntu", "ec2-user");
     public static final List<String> NON_ADDABLE_USERS = ImmutableList.<String>builder().add(ROOT_USERNAME).addAll(ROOT_ALIASES).build();
     
+    /** memento field with the jclouds ids of machines ready in the warm pool, which are destroyed on rebind */
+    private static final String WARM_POOL_INSTANCE_IDS = "warmPoolInstanceIds";
+    
     private final Map<String,Map<String, ? extends Object>> tagMapping = Maps.newLinkedHashMap();
-    private final Map<JcloudsSshMachineLocation,String> vmInstanceIds = Maps.newLinkedHashMap();
+    private final Map<JcloudsSshMachineLocation,String> vmInstanceIds = Collections.synchronizedMap(Maps.<JcloudsSshMachineLocation,String>newLinkedHashMap());
+    
+    private transient JcloudsWarmPool warmPool;
+    private transient JcloudsTemplateCache templateCache;
 
     /** typically wants at least ACCESS_IDENTITY and ACCESS_CREDENTIAL */
     public JcloudsLocation(Map<?,?> conf) {
@@ -311,6 +332,25 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
      * plus any further properties to specify e.g. images, hardware profiles, accessing user
      * (for initial login, and a user potentially to create for subsequent ie normal access) */
     public JcloudsSshMachineLocation obtain(Map<?,?> flags) throws NoMachinesAvailableException {
+        ConfigBag setup = ConfigBag.newInstanceExtending(getConfigBag(), flags);
+        int warmPoolSize = elvis(setup.get(WARM_POOL_SIZE), 0);
+        String warmPoolKey = (warmPoolSize > 0) ? JcloudsWarmPool.getKey(flags) : null;
+        if (warmPoolKey == null) {
+            return provisionMachine(flags);
+        }
+        
+        long startTime = System.nanoTime();
+        JcloudsWarmPool pool = getWarmPool();
+        JcloudsSshMachineLocation result = pool.take(warmPoolKey, flags, warmPoolSize, setup.get(WARM_POOL_SCRUB_COMMANDS));
+        if (result == null) {
+            result = provisionMachine(flags);
+            pool.recordMiss(result, warmPoolKey, startTime);
+        }
+        return result;
+    }
+    
+    /** Provisions a new VM (ignoring any warm pool), as described for {@link #obtain(Map)}. */
+    protected JcloudsSshMachineLocation provisionMachine(Map<?,?> flags) throws NoMachinesAvailableException {
         ConfigBag setup = ConfigBag.newInstanceExtending(getConfigBag(), flags);
         setCreationString(setup);
         
@@ -332,39 +372,7 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
             if (node == null)
                 throw new IllegalStateException("No nodes returned by jclouds create-nodes in " + setup.getDescription());
 
-            LoginCredentials initialCredentials = extractVmCredentials(setup, node);
-            if (initialCredentials != null)
-                node = NodeMetadataBuilder.fromNodeMetadata(node).credentials(initialCredentials).build();
-            else
-                // only happens if something broke above...
-                initialCredentials = LoginCredentials.fromCredentials(node.getCredentials());
-            
-            // Wait for the VM to be reachable over SSH
-            waitForReachable(computeService, node, initialCredentials, setup);
-            
-            String vmHostname = getPublicHostname(node, setup);
-            JcloudsSshMachineLocation sshLocByHostname = registerJcloudsSshMachineLocation(node, vmHostname, setup);
-            
-            // Apply same securityGroups rules to iptables, if iptables is running on the node
-            String waitForSshable = setup.get(WAIT_FOR_SSHABLE);
-            if (!(waitForSshable!=null && "false".equalsIgnoreCase(waitForSshable))) {
-                if (setup.get(JcloudsLocationConfig.MAP_DEV_RANDOM_TO_DEV_URANDOM))
-                    sshLocByHostname.execCommands("using urandom instead of random", 
-                        Arrays.asList("sudo mv /dev/random /dev/random-real", "sudo ln -s /dev/urandom /dev/random"));
-                
-                mapSecurityGroupRuleToIpTables(computeService, node, initialCredentials, "eth0", 
-                        (Iterable<Integer>) setup.get(INBOUND_PORTS));
-            } else {
-                // Otherwise would break CloudStack, where port-forwarding means that jclouds opinion 
-                // of using port 22 is wrong.
-            }
-            
-            // Apply any optional app-specific customization.
-            for (JcloudsLocationCustomizer customizer : getCustomizers(setup)) {
-                customizer.customize(computeService, sshLocByHostname);
-            }
-            
-            return sshLocByHostname;
+            return prepareNode(computeService, node, setup);
         } catch (RunNodesException e) {
             if (e.getNodeErrors().size() > 0) {
                 node = Iterables.get(e.getNodeErrors().keySet(), 0);
@@ -382,6 +390,172 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
 
     }
 
+    /**
+     * Waits for a newly created node to be reachable, then registers and customizes it (as for {@link #obtain(Map)}).
+     */
+    protected JcloudsSshMachineLocation prepareNode(ComputeService computeService, NodeMetadata node, ConfigBag setup) throws Exception {
+        LoginCredentials initialCredentials = extractVmCredentials(setup, node);
+        if (initialCredentials != null)
+            node = NodeMetadataBuilder.fromNodeMetadata(node).credentials(initialCredentials).build();
+        else
+            // only happens if something broke above...
+            initialCredentials = LoginCredentials.fromCredentials(node.getCredentials());
+        
+        // Wait for the VM to be reachable over SSH
+        waitForReachable(computeService, node, initialCredentials, setup);
+        
+        String vmHostname = getPublicHostname(node, setup);
+        JcloudsSshMachineLocation sshLocByHostname = registerJcloudsSshMachineLocation(node, vmHostname, setup);
+        
+        // Apply same securityGroups rules to iptables, if iptables is running on the node
+        String waitForSshable = setup.get(WAIT_FOR_SSHABLE);
+        if (!(waitForSshable!=null && "false".equalsIgnoreCase(waitForSshable))) {
+            if (setup.get(JcloudsLocationConfig.MAP_DEV_RANDOM_TO_DEV_URANDOM))
+                sshLocByHostname.execCommands("using urandom instead of random", 
+                    Arrays.asList("sudo mv /dev/random /dev/random-real", "sudo ln -s /dev/urandom /dev/random"));
+            
+            mapSecurityGroupRuleToIpTables(computeService, node, initialCredentials, "eth0", 
+                    (Iterable<Integer>) setup.get(INBOUND_PORTS));
+        } else {
+            // Otherwise would break CloudStack, where port-forwarding means that jclouds opinion 
+            // of using port 22 is wrong.
+        }
+        
+        // Apply any optional app-specific customization.
+        for (JcloudsLocationCustomizer customizer : getCustomizers(setup)) {
+            customizer.customize(computeService, sshLocByHostname);
+        }
+        
+        return sshLocByHostname;
+    }
+
+    /**
+     * Obtains several VMs with a single jclouds create-nodes call, all in the same group; each node is then
+     * waited for, registered and customized concurrently, as for {@link #obtain(Map)}.
+     * <p>
+     * Nodes which jclouds fails to create, or which subsequently fail to become usable, are destroyed;
+     * the others are returned. If interrupted while waiting for the nodes (or on any unexpected failure),
+     * all the nodes created are destroyed.
+     */
+    @Override
+    public Collection<SshMachineLocation> obtain(int count, Map<?,?> flags) throws NoMachinesAvailableException {
+        checkArgument(count > 0, "count must be positive, but was %s", count);
+        final ConfigBag setup = ConfigBag.newInstanceExtending(getConfigBag(), flags);
+        setCreationString(setup);
+        
+        final ComputeService computeService = JcloudsUtil.findComputeService(setup);
+        String groupId = elvis(setup.get(GROUP_ID), new CloudMachineNamer(setup).generateNewGroupId());
+        Set<NodeMetadata> nodes = Sets.newLinkedHashSet();
+        try {
+            LOG.info("Creating "+count+" VMs in "+setup.getDescription()+" for "+this);
+            
+            Template template = buildTemplate(computeService, setup);
+            nodes.addAll(computeService.createNodesInGroup(groupId, count, template));
+            LOG.debug("jclouds created {} for {}", nodes, setup.getDescription());
+        } catch (RunNodesException e) {
+            LOG.warn("Failed to start {} of {} VMs for {} (destroying those): {}", 
+                    new Object[] {e.getNodeErrors().size(), count, setup.getDescription(), e.getMessage()});
+            nodes.addAll(e.getSuccessfulNodes());
+            for (NodeMetadata failed : e.getNodeErrors().keySet()) {
+                destroyNodeQuietly(computeService, failed.getId());
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to start VMs for {}: {}", setup.getDescription(), e.getMessage());
+            LOG.debug(Throwables.getStackTraceAsString(e));
+            throw Throwables.propagate(e);
+        }
+
+        List<SshMachineLocation> result = Lists.newArrayList();
+        if (!nodes.isEmpty()) {
+            Integer maxConcurrent = setup.get(MAX_CONCURRENT_NODE_PREPARATIONS);
+            int maxThreads = (maxConcurrent == null || maxConcurrent < 1) ? 1 : maxConcurrent;
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(nodes.size(), maxThreads));
+            Map<Future<JcloudsSshMachineLocation>, NodeMetadata> futures = Maps.newLinkedHashMap();
+            boolean completed = false;
+            try {
+                CompletionService<JcloudsSshMachineLocation> completionService = new ExecutorCompletionService<JcloudsSshMachineLocation>(executor);
+                for (final NodeMetadata node : nodes) {
+                    futures.put(completionService.submit(new Callable<JcloudsSshMachineLocation>() {
+                        public JcloudsSshMachineLocation call() throws Exception {
+                            return prepareNode(computeService, node, setup);
+                        }}), node);
+                }
+                // take each node as it completes, so a slow node does not delay dealing with the others
+                for (int i = 0; i < futures.size(); i++) {
+                    Future<JcloudsSshMachineLocation> future;
+                    try {
+                        future = completionService.take();
+                    } catch (InterruptedException e) {
+                        throw Exceptions.propagate(e);
+                    }
+                    try {
+                        result.add(future.get());
+                    } catch (InterruptedException e) {
+                        throw Exceptions.propagate(e);
+                    } catch (ExecutionException e) {
+                        NodeMetadata node = futures.get(future);
+                        LOG.warn("Failed to prepare VM "+node.getId()+" for "+setup.getDescription()+" (destroying): "+e.getCause());
+                        LOG.debug(Throwables.getStackTraceAsString(e.getCause()));
+                        releaseNodeQuietly(computeService, node);
+                    }
+                }
+                completed = true;
+            } finally {
+                if (!completed) {
+                    // interrupted, or failed unexpectedly: the caller gets none of the VMs, so none must be left running
+                    LOG.warn("Failed to obtain VMs for {} (destroying all {} created)", setup.getDescription(), nodes.size());
+                    for (Future<?> future : futures.keySet()) {
+                        future.cancel(true);
+                    }
+                }
+                executor.shutdownNow();
+                if (!completed) {
+                    // clear any interrupt while destroying, so the calls to the cloud are not abandoned
+                    boolean interrupted = Thread.interrupted();
+                    try {
+                        for (NodeMetadata node : nodes) {
+                            releaseNodeQuietly(computeService, node);
+                        }
+                    } finally {
+                        if (interrupted) Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+        
+        if (result.isEmpty()) {
+            throw new NoMachinesAvailableException("Failed to obtain any of "+count+" VMs in "+setup.getDescription());
+        }
+        return result;
+    }
+
+    /** Destroys the node, removing any machine registered for it; logs rather than throws on failure. */
+    private void releaseNodeQuietly(ComputeService computeService, NodeMetadata node) {
+        JcloudsSshMachineLocation machine = null;
+        synchronized (vmInstanceIds) {
+            for (Map.Entry<JcloudsSshMachineLocation, String> entry : vmInstanceIds.entrySet()) {
+                if (node.getId().equals(entry.getValue())) machine = entry.getKey();
+            }
+        }
+        if (machine != null) {
+            try {
+                release(machine);
+            } catch (Exception e) {
+                LOG.warn("Problem releasing machine "+machine+" in "+this+"; continuing", e);
+            }
+        } else {
+            destroyNodeQuietly(computeService, node.getId());
+        }
+    }
+    
+    private void destroyNodeQuietly(ComputeService computeService, String nodeId) {
+        try {
+            computeService.destroyNode(nodeId);
+        } catch (Exception e) {
+            LOG.warn("Problem destroying VM "+nodeId+" in "+this+"; continuing", e);
+        }
+    }
+
     private void mapSecurityGroupRuleToIpTables(ComputeService computeService, NodeMetadata node,
             LoginCredentials credentials, String networkInterface, Iterable<Integer> ports) {
         for (Integer port : ports) {
@@ -528,8 +702,27 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
 
     private static boolean listedAvailableTemplatesOnNoSuchTemplate = false;
 
-    /** returns the jclouds Template which describes the image to be built */
+    /** 
+     * returns the jclouds Template which describes the image to be built; the image and hardware are
+     * taken from the {@link #getTemplateCache() template cache} where possible
+     */
     protected Template buildTemplate(ComputeService computeService, ConfigBag config) {
+        long templateCacheTtl = Time.parseTimeString(elvis(config.get(TEMPLATE_CACHE_TTL), "0"));
+        String templateCacheKey = (templateCacheTtl > 0) ? JcloudsTemplateCache.getKey(config) : null;
+        Template template;
+        if (templateCacheKey != null) {
+            template = getTemplateCache().getTemplate(templateCacheKey, computeService, config, templateCacheTtl);
+        } else {
+            template = resolveTemplate(computeService, config);
+        }
+        return customizeTemplateOptions(template, config);
+    }
+
+    /** 
+     * resolves the jclouds Template (i.e. the image and hardware) matching the template builder properties in the config,
+     * listing the cloud's images and hardware profiles as required
+     */
+    protected Template resolveTemplate(ComputeService computeService, ConfigBag config) {
         TemplateBuilder templateBuilder = (TemplateBuilder) config.get(TEMPLATE_BUILDER);
         if (templateBuilder==null)
             templateBuilder = new PortableTemplateBuilder();
@@ -616,6 +809,11 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
             }
             throw new IllegalStateException("Unable to match required VM template constraints "+templateBuilder+" when trying to provision VM in "+this+". See list of images in log.", e);
         }
+        return template;
+    }
+    
+    /** applies the template options properties and user setup in the config to the given template */
+    protected Template customizeTemplateOptions(Template template, ConfigBag config) {
         TemplateOptions options = template.getOptions();
         
         for (Map.Entry<ConfigKey<?>, CustomizeTemplateOptions> entry : SUPPORTED_TEMPLATE_OPTIONS_PROPERTIES.entrySet()) {
@@ -794,7 +992,30 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
         return extractSshConfig(setup, nodeConfig).getAllConfigRaw();
     }
 
+    /** 
+     * Releases the machine: returning it to the warm pool if it came from there and can be reused 
+     * (see {@link #WARM_POOL_SCRUB_COMMANDS}), otherwise destroying it.
+     */
     public void release(SshMachineLocation machine) {
+        if (!vmInstanceIds.containsKey(machine)) {
+            throw new IllegalArgumentException("Unknown machine "+machine);
+        }
+        JcloudsWarmPool pool;
+        synchronized (this) {
+            pool = warmPool;
+        }
+        if (pool != null) {
+            if (pool.recycle((JcloudsSshMachineLocation) machine)) {
+                LOG.info("Returning machine {} in {} to warm pool", machine, this);
+                return;
+            }
+            pool.forget((JcloudsSshMachineLocation) machine);
+        }
+        destroyMachine(machine);
+    }
+    
+    /** Destroys the VM, regardless of any warm pool. */
+    protected void destroyMachine(SshMachineLocation machine) {
         String instanceId = vmInstanceIds.remove(machine);
         if (!truth(instanceId)) {
             throw new IllegalArgumentException("Unknown machine "+machine);
@@ -803,25 +1024,99 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
         LOG.info("Releasing machine {} in {}, instance id {}", new Object[] {machine, this, instanceId});
         
         removeChildLocation(machine);
-        ComputeService computeService = null;
         try {
-            computeService = JcloudsUtil.findComputeService(getConfigBag());
-            computeService.destroyNode(instanceId);
+            destroyNode(instanceId);
         } catch (Exception e) {
             LOG.error("Problem releasing machine "+machine+" in "+this+", instance id "+instanceId+
                     "; discarding instance and continuing...", e);
             Throwables.propagate(e);
-        } finally {
-        /*
-         //don't close
-            if (computeService != null) {
-                try {
-                    computeService.getContext().close();
-                } catch (Exception e) {
-                    LOG.error "Problem closing compute-service's context; continuing...", e
+        }
+    }
+    
+    /** Destroys the VM with the given jclouds id. */
+    protected void destroyNode(String instanceId) {
+        // don't close the compute service's context, leave it open for reuse
+        ComputeService computeService = JcloudsUtil.findComputeService(getConfigBag());
+        computeService.destroyNode(instanceId);
+    }
+
+    /** 
+     * Runs the given commands on a released machine before it is reused from the warm pool,
+     * returning whether they succeeded.
+     */
+    protected boolean scrubMachine(JcloudsSshMachineLocation machine, List<String> commands) {
+        return machine.execCommands("scrubbing for reuse", commands) == 0;
+    }
+    
+    /** The warm pool of this location (creating it if necessary); see {@link #WARM_POOL_SIZE}. */
+    public synchronized JcloudsWarmPool getWarmPool() {
+        if (warmPool == null) warmPool = new JcloudsWarmPool(this);
+        return warmPool;
+    }
+    
+    /** The cache of templates resolved by this location (creating it if necessary); see {@link #TEMPLATE_CACHE_TTL}. */
+    public synchronized JcloudsTemplateCache getTemplateCache() {
+        if (templateCache == null) templateCache = new JcloudsTemplateCache(this);
+        return templateCache;
+    }
+    
+    /** Destroys any machines ready in the warm pool, and stops replenishing it. */
+    public void closeWarmPool() {
+        JcloudsWarmPool pool;
+        synchronized (this) {
+            pool = warmPool;
+            warmPool = null;
+        }
+        if (pool != null) pool.close();
+    }
+
+    /** 
+     * Destroys any machines ready in the warm pool, and stops all background activity; called when this location
+     * is removed from its parent, or when the management context which resolved it terminates.
+     * Machines obtained from this location are unaffected.
+     */
+    @Override
+    public void close() {
+        closeWarmPool();
+        JcloudsTemplateCache cache;
+        synchronized (this) {
+            cache = templateCache;
+            templateCache = null;
+        }
+        if (cache != null) cache.close();
+    }
+    
+    @Override
+    public RebindSupport<LocationMemento> getRebindSupport() {
+        return new BasicLocationRebindSupport(this) {
+            @Override public LocationMemento getMemento() {
+                JcloudsWarmPool pool;
+                synchronized (JcloudsLocation.this) {
+                    pool = warmPool;
                 }
+                List<String> readyInstanceIds = (pool != null) ? pool.getReadyInstanceIds() : ImmutableList.<String>of();
+                return getMementoWithProperties(MutableMap.<String,Object>of(WARM_POOL_INSTANCE_IDS, readyInstanceIds));
+            }
+            @Override protected void doReconsruct(RebindContext rebindContext, LocationMemento memento) {
+                super.doReconsruct(rebindContext, memento);
+                destroyWarmPoolInstances((List<?>) memento.getCustomField(WARM_POOL_INSTANCE_IDS));
+            }
+        };
+    }
+    
+    /** 
+     * Destroys the VMs which were ready in the warm pool when this location was persisted: the pool is not restored 
+     * on rebind, so nothing else will use or release them.
+     */
+    protected void destroyWarmPoolInstances(@Nullable List<?> instanceIds) {
+        if (instanceIds == null) return;
+        for (Object instanceId : instanceIds) {
+            LOG.info("Destroying warm pool machine {} in {}, as not restored on rebind", instanceId, this);
+            try {
+                destroyNode(instanceId.toString());
+            } catch (Exception e) {
+                LOG.warn("Problem destroying warm pool machine "+instanceId+" in "+this+" on rebind; continuing", e);
             }
-         */
         }
     }
 
@@ -2,6 +2,7 @@ package brooklyn.location.jclouds;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
 
 import org.jclouds.Constants;
 import org.jclouds.compute.domain.TemplateBuilder;
@@ -108,6 +109,22 @@ public interface JcloudsLocationConfig extends CloudLocationConfig {
 
     public static final ConfigKey<File> LOCAL_TEMP_DIR = SshTool.PROP_LOCAL_TEMP_DIR;
 
+    public static final ConfigKey<Integer> MAX_CONCURRENT_NODE_PREPARATIONS = ConfigKeys.newIntegerConfigKey("bulk.maxConcurrentPreparations", 
+            "When obtaining several machines in one request, the maximum number being waited for and customized at once", 10);
+
+    public static final ConfigKey<Integer> WARM_POOL_SIZE = ConfigKeys.newIntegerConfigKey("warmPool.size", 
+            "Number of pre-provisioned machines to keep ready for each distinct set of provisioning flags (0 to disable)", 0);
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static final ConfigKey<List<String>> WARM_POOL_SCRUB_COMMANDS = new BasicConfigKey<List<String>>(
+            (Class<List<String>>) (Class) List.class,
+            "warmPool.scrubCommands", "Commands to run on a released machine before returning it to the warm pool; " +
+            "if not set (or they fail), released machines are destroyed", null);
+
+    public static final ConfigKey<String> TEMPLATE_CACHE_TTL = ConfigKeys.newStringConfigKey("templateCache.ttl", 
+            "How long a resolved image and hardware profile can be reused for further machines with the same template constraints, " +
+            "as a time string e.g. '30m' (the default) or a number of milliseconds; '0' to resolve the template for every machine", "30m");
+
     // TODO
     
 //  "noDefaultSshKeys" - hints that local ssh keys should not be read as defaults
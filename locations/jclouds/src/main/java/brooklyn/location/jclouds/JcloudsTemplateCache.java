@@ -0,0 +1,247 @@
+package brooklyn.location.jclouds;
+
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.domain.Hardware;
+import org.jclouds.compute.domain.Image;
+import org.jclouds.compute.domain.Template;
+import org.jclouds.compute.domain.internal.TemplateImpl;
+import org.jclouds.domain.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import brooklyn.config.ConfigKey;
+import brooklyn.util.config.ConfigBag;
+import brooklyn.util.exceptions.Exceptions;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Resolved templates for a {@link JcloudsLocation}, so that the image, hardware and location chosen for a set
+ * of template constraints are looked up in the cloud's catalogs once, rather than on every provisioning request.
+ * <p>
+ * Templates are cached by the subset of the configuration which determines them (the cloud account, region and
+ * the {@link JcloudsLocation#SUPPORTED_TEMPLATE_BUILDER_PROPERTIES template builder properties}). Concurrent
+ * requests for the same key share a single resolution. Entries expire after a time-to-live (see
+ * {@link JcloudsLocationConfig#TEMPLATE_CACHE_TTL}); once an entry is half way to expiry, the next request for it
+ * re-resolves in the background while continuing to use the cached value, so the catalogs are kept fresh without
+ * provisioning waiting on them.
+ * <p>
+ * Background refreshes for all caches share a small pool of daemon threads, which exit when idle, so a cache
+ * holds no threads of its own and need not be closed.
+ * <p>
+ * Only the image, hardware and location are cached: each request gets new {@link org.jclouds.compute.options.TemplateOptions}
+ * from the compute service, as the options are customized per machine.
+ * Configuration with a template builder or customizers cannot be compared, so is never cached.
+ */
+public class JcloudsTemplateCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JcloudsTemplateCache.class);
+
+    /** Configuration (other than the template builder properties) which affects the template resolved */
+    private static final Set<ConfigKey<?>> KEY_CONFIG = ImmutableSet.<ConfigKey<?>>of(
+            JcloudsLocationConfig.CLOUD_PROVIDER,
+            JcloudsLocationConfig.CLOUD_ENDPOINT,
+            JcloudsLocationConfig.CLOUD_REGION_ID,
+            JcloudsLocationConfig.ACCESS_IDENTITY);
+
+    /** Configuration whose values cannot be compared, so is never cached */
+    private static final Set<ConfigKey<?>> UNCACHEABLE_CONFIG = ImmutableSet.<ConfigKey<?>>of(
+            JcloudsLocationConfig.TEMPLATE_BUILDER,
+            JcloudsLocationConfig.JCLOUDS_LOCATION_CUSTOMIZER,
+            JcloudsLocationConfig.JCLOUDS_LOCATION_CUSTOMIZERS);
+
+    /** String config (without keys) which affects the images listed, see {@link JcloudsUtil#findComputeService(ConfigBag)} */
+    private static final Set<String> KEY_STRING_CONFIG = ImmutableSet.of("imageOwner", "anyOwner");
+
+    /** Shared by all caches; threads time out when idle, so nothing needs shutting down */
+    private static final ThreadPoolExecutor REFRESH_EXECUTOR;
+    static {
+        REFRESH_EXECUTOR = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("brooklyn-jclouds-templates-%d")
+                        .build());
+        REFRESH_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static class Resolved {
+        final Image image;
+        final Hardware hardware;
+        final Location location;
+        final long resolvedTime = System.nanoTime();
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Resolved(Template template) {
+            this.image = template.getImage();
+            this.hardware = template.getHardware();
+            this.location = template.getLocation();
+        }
+    }
+
+    private final JcloudsLocation location;
+    private final ConcurrentMap<String, FutureTask<Resolved>> entries = Maps.newConcurrentMap();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private volatile boolean closed;
+
+    public JcloudsTemplateCache(JcloudsLocation location) {
+        this.location = location;
+    }
+
+    /**
+     * Returns the key under which the template for the given configuration is cached, or null if it cannot be cached.
+     */
+    @Nullable
+    public static String getKey(ConfigBag config) {
+        for (ConfigKey<?> key : UNCACHEABLE_CONFIG) {
+            if (config.containsKey(key) && config.get(key) != null) return null;
+        }
+        SortedMap<String, String> result = new TreeMap<String, String>();
+        for (ConfigKey<?> key : KEY_CONFIG) {
+            if (config.containsKey(key)) result.put(key.getName(), String.valueOf(config.get(key)));
+        }
+        for (ConfigKey<?> key : JcloudsLocation.SUPPORTED_TEMPLATE_BUILDER_PROPERTIES.keySet()) {
+            if (config.containsKey(key)) result.put(key.getName(), String.valueOf(config.get(key)));
+        }
+        for (String key : KEY_STRING_CONFIG) {
+            Object value = config.getStringKey(key);
+            if (value != null) result.put(key, String.valueOf(value));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns a template for the given key, resolving it with {@link JcloudsLocation#resolveTemplate(ComputeService, ConfigBag)}
+     * if it is not cached or has expired.
+     *
+     * @param ttlMillis how long a resolved template can be used for
+     */
+    public Template getTemplate(String key, final ComputeService computeService, final ConfigBag config, long ttlMillis) {
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        while (true) {
+            FutureTask<Resolved> task = entries.get(key);
+            boolean resolveHere = false;
+            if (task == null) {
+                task = newResolveTask(computeService, config);
+                FutureTask<Resolved> existing = entries.putIfAbsent(key, task);
+                if (existing == null) {
+                    resolveHere = true;
+                    misses.incrementAndGet();
+                } else {
+                    task = existing;
+                }
+            }
+            if (resolveHere) task.run();
+
+            Resolved resolved;
+            try {
+                resolved = task.get();
+            } catch (InterruptedException e) {
+                throw Exceptions.propagate(e);
+            } catch (ExecutionException e) {
+                // don't cache failures; next request will try again
+                entries.remove(key, task);
+                throw Exceptions.propagate(e.getCause());
+            }
+
+            long age = System.nanoTime() - resolved.resolvedTime;
+            if (!resolveHere && age > ttlNanos) {
+                entries.remove(key, task);
+                continue;
+            }
+            if (!resolveHere) {
+                hits.incrementAndGet();
+                if (age > ttlNanos / 2) refreshInBackground(key, task, resolved, computeService, config);
+            }
+            return newTemplate(computeService, resolved);
+        }
+    }
+
+    private FutureTask<Resolved> newResolveTask(final ComputeService computeService, final ConfigBag config) {
+        return new FutureTask<Resolved>(new Callable<Resolved>() {
+            public Resolved call() {
+                return new Resolved(location.resolveTemplate(computeService, config));
+            }});
+    }
+
+    private void refreshInBackground(final String key, final FutureTask<Resolved> current, Resolved resolved,
+            ComputeService computeService, ConfigBag config) {
+        if (closed || !resolved.refreshing.compareAndSet(false, true)) return;
+        final FutureTask<Resolved> task = newResolveTask(computeService, config);
+        try {
+            REFRESH_EXECUTOR.execute(new Runnable() {
+                public void run() {
+                    if (closed) return;
+                    task.run();
+                    try {
+                        task.get();
+                        entries.replace(key, current, task);
+                        refreshes.incrementAndGet();
+                    } catch (Exception e) {
+                        // keep the current entry until it expires
+                        LOG.debug("Failed to refresh template for "+key+" in "+location+": "+e);
+                    }
+                }});
+        } catch (Exception e) {
+            LOG.debug("Unable to refresh template for "+key+" in "+location+" (continuing): "+e);
+        }
+    }
+
+    private Template newTemplate(ComputeService computeService, Resolved resolved) {
+        return new TemplateImpl(resolved.image, resolved.hardware, resolved.location, computeService.templateOptions());
+    }
+
+    /** Discards all cached templates. */
+    public void clear() {
+        entries.clear();
+    }
+
+    /** Stops refreshing templates in the background, and discards all cached templates. */
+    public void close() {
+        closed = true;
+        clear();
+    }
+
+    /** The number of requests satisfied from the cache. */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** The number of requests which had to resolve a template. */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** The number of templates re-resolved in the background. */
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    /** The number of cached templates (including any being resolved). */
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "JcloudsTemplateCache["+location+"; size="+size()+"; hits="+getHitCount()+"; misses="+getMissCount()+"]";
+    }
+}
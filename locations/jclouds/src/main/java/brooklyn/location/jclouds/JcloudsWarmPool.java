@@ -0,0 +1,335 @@
+package brooklyn.location.jclouds;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import brooklyn.config.ConfigKey;
+import brooklyn.config.ConfigKey.HasConfigKey;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Pre-provisioned machines for a {@link JcloudsLocation}, enabled with {@link JcloudsLocationConfig#WARM_POOL_SIZE}.
+ * <p>
+ * Machines are pooled by the provisioning flags they were requested with (other than the caller context and group),
+ * so that a machine is only handed to a caller asking for the same kind of machine. The first request for a given
+ * set of flags provisions synchronously (a miss), and fills the pool for those flags in the background; later requests
+ * take a ready machine (a hit) and the pool is topped up again. Released machines are returned to the pool if
+ * {@link JcloudsLocationConfig#WARM_POOL_SCRUB_COMMANDS scrub commands} are configured and succeed, and the pool
+ * has room; otherwise they are destroyed.
+ * <p>
+ * Requests with flags that cannot be compared (such as a template builder or customizers) are not pooled.
+ */
+public class JcloudsWarmPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JcloudsWarmPool.class);
+
+    /** Flags which do not affect the kind of machine, so are ignored when pooling */
+    private static final Set<String> IGNORED_FLAGS = ImmutableSet.of(
+            JcloudsLocationConfig.CALLER_CONTEXT.getName(),
+            JcloudsLocationConfig.GROUP_ID.getName());
+
+    /** Flags whose values cannot be compared, so requests using them are not pooled */
+    private static final Set<String> UNPOOLABLE_FLAGS = ImmutableSet.of(
+            JcloudsLocationConfig.TEMPLATE_BUILDER.getName(),
+            JcloudsLocationConfig.CUSTOM_CREDENTIALS.getName(),
+            JcloudsLocationConfig.JCLOUDS_LOCATION_CUSTOMIZER.getName(),
+            JcloudsLocationConfig.JCLOUDS_LOCATION_CUSTOMIZERS.getName());
+
+    private static class Entry {
+        final String key;
+        final Map<?,?> flags;
+        final BlockingQueue<JcloudsSshMachineLocation> ready = new LinkedBlockingQueue<JcloudsSshMachineLocation>();
+        final AtomicInteger pending = new AtomicInteger();
+        volatile int size;
+        volatile List<String> scrubCommands;
+
+        Entry(String key, Map<?,?> flags) {
+            this.key = key;
+            this.flags = flags;
+        }
+    }
+
+    private final JcloudsLocation location;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, Entry> entries = Maps.newConcurrentMap();
+    /** The pool key of each machine obtained through the pool, so it can be returned on release */
+    private final ConcurrentMap<JcloudsSshMachineLocation, String> machineKeys = Maps.newConcurrentMap();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong timeToMachineNanos = new AtomicLong();
+    private volatile boolean closed;
+
+    public JcloudsWarmPool(JcloudsLocation location) {
+        this.location = location;
+        this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("brooklyn-jclouds-warmpool-%d")
+                .build());
+    }
+
+    /**
+     * Returns the key under which machines for the given flags are pooled, or null if they cannot be pooled.
+     */
+    @Nullable
+    public static String getKey(Map<?,?> flags) {
+        SortedMap<String, String> result = new TreeMap<String, String>();
+        for (Map.Entry<?,?> entry : flags.entrySet()) {
+            String name = getFlagName(entry.getKey());
+            if (UNPOOLABLE_FLAGS.contains(name)) return null;
+            if (IGNORED_FLAGS.contains(name)) continue;
+            result.put(name, toKeyString(entry.getValue()));
+        }
+        return result.toString();
+    }
+
+    private static String getFlagName(Object key) {
+        return (key instanceof HasConfigKey) ? ((HasConfigKey<?>)key).getConfigKey().getName() :
+                (key instanceof ConfigKey) ? ((ConfigKey<?>)key).getName() : String.valueOf(key);
+    }
+
+    /** Returns the flags to provision pooled machines with: those given, other than those identifying the caller. */
+    private static Map<?,?> getPoolFlags(Map<?,?> flags) {
+        Map<Object,Object> result = new LinkedHashMap<Object,Object>();
+        for (Map.Entry<?,?> entry : flags.entrySet()) {
+            if (!IGNORED_FLAGS.contains(getFlagName(entry.getKey()))) result.put(entry.getKey(), entry.getValue());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /** Describes a flag value, including the contents of arrays (whose own toString is only their identity). */
+    private static String toKeyString(Object value) {
+        if (value == null || !value.getClass().isArray()) return String.valueOf(value);
+        // wrapped, as deepToString handles primitive arrays only as elements
+        String result = Arrays.deepToString(new Object[] {value});
+        return result.substring(1, result.length()-1);
+    }
+
+    /**
+     * Takes a ready machine for the given key, if there is one, and tops up the pool for that key
+     * (creating it if necessary) in the background.
+     *
+     * @param flags The provisioning flags for machines in this pool (used to create the pool for the key)
+     * @param size The number of machines to keep ready for this key
+     * @param scrubCommands The commands to run on released machines before reuse, or null
+     * @return a ready machine, or null if none is available (in which case the caller should provision one
+     *         itself, and report it with {@link #recordMiss(JcloudsSshMachineLocation, String, long)})
+     */
+    @Nullable
+    public JcloudsSshMachineLocation take(String key, Map<?,?> flags, int size, @Nullable List<String> scrubCommands) {
+        long startTime = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entries.putIfAbsent(key, new Entry(key, getPoolFlags(flags)));
+            entry = entries.get(key);
+        }
+        entry.size = size;
+        entry.scrubCommands = scrubCommands;
+
+        JcloudsSshMachineLocation result = entry.ready.poll();
+        replenish(entry);
+        if (result != null) {
+            hits.incrementAndGet();
+            timeToMachineNanos.addAndGet(System.nanoTime() - startTime);
+            if (LOG.isDebugEnabled()) LOG.debug("Warm pool for {} supplied {} (pool {})", new Object[] {location, result, key});
+        }
+        return result;
+    }
+
+    /** Records a machine provisioned by the caller because the pool had none ready for the key. */
+    public void recordMiss(JcloudsSshMachineLocation machine, String key, long startTimeNanos) {
+        machineKeys.put(machine, key);
+        misses.incrementAndGet();
+        timeToMachineNanos.addAndGet(System.nanoTime() - startTimeNanos);
+    }
+
+    /**
+     * Returns the given released machine to the pool (asynchronously scrubbing it first), if it was obtained
+     * through the pool and the pool for its key has room; returns false if the caller should destroy it.
+     */
+    public boolean recycle(final JcloudsSshMachineLocation machine) {
+        String key = machineKeys.get(machine);
+        final Entry entry = (key != null) ? entries.get(key) : null;
+        if (closed || entry == null) return false;
+        final List<String> scrubCommands = entry.scrubCommands;
+        if (scrubCommands == null || scrubCommands.isEmpty()) return false;
+        if (!reserve(entry)) return false;
+
+        try {
+            executor.submit(new Runnable() {
+                public void run() {
+                    try {
+                        if (location.scrubMachine(machine, scrubCommands)) {
+                            addReady(entry, machine);
+                        } else {
+                            LOG.info("Scrub of released machine {} in {} failed; destroying", machine, location);
+                            destroy(machine);
+                        }
+                    } catch (Exception e) {
+                        LOG.warn("Problem scrubbing released machine "+machine+" in "+location+"; destroying", e);
+                        destroy(machine);
+                    } finally {
+                        entry.pending.decrementAndGet();
+                    }
+                }});
+        } catch (RejectedExecutionException e) {
+            // closed since checking, so the caller destroys the machine
+            entry.pending.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /** Forgets the given machine, e.g. because it is being destroyed. */
+    public void forget(JcloudsSshMachineLocation machine) {
+        machineKeys.remove(machine);
+    }
+
+    /** Starts provisioning machines in the background, so that the pool for the given key is full. */
+    protected void replenish(final Entry entry) {
+        while (!closed && reserve(entry)) {
+            try {
+                executor.submit(new Runnable() {
+                    public void run() {
+                        try {
+                            JcloudsSshMachineLocation machine = location.provisionMachine(entry.flags);
+                            machineKeys.put(machine, entry.key);
+                            addReady(entry, machine);
+                        } catch (Exception e) {
+                            // next take will try again
+                            LOG.warn("Failed to provision machine for warm pool in "+location+" (pool "+entry.key+"): "+e);
+                        } finally {
+                            entry.pending.decrementAndGet();
+                        }
+                    }});
+            } catch (RejectedExecutionException e) {
+                // closed since checking, so no more machines are wanted
+                entry.pending.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /** Reserves space in the pool for a machine that is being prepared, returning false if the pool is full. */
+    private boolean reserve(Entry entry) {
+        while (true) {
+            int pending = entry.pending.get();
+            if (entry.ready.size() + pending >= entry.size) return false;
+            if (entry.pending.compareAndSet(pending, pending+1)) return true;
+        }
+    }
+
+    private void addReady(Entry entry, JcloudsSshMachineLocation machine) {
+        if (closed) {
+            destroy(machine);
+        } else {
+            entry.ready.add(machine);
+        }
+    }
+
+    private void destroy(JcloudsSshMachineLocation machine) {
+        forget(machine);
+        try {
+            location.destroyMachine(machine);
+        } catch (Exception e) {
+            LOG.warn("Problem destroying warm pool machine "+machine+" in "+location+"; continuing", e);
+        }
+    }
+
+    /** Stops replenishing, and destroys all ready machines. */
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        for (Entry entry : entries.values()) {
+            JcloudsSshMachineLocation machine;
+            while ((machine = entry.ready.poll()) != null) {
+                destroy(machine);
+            }
+        }
+    }
+
+    /** Waits for machines being prepared in the background (e.g. for testing). */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        while (getPendingCount() > 0) {
+            if (System.nanoTime() > end) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /** The number of requests satisfied by a ready machine. */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** The number of requests for which no machine was ready. */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** The mean time from request to machine, across hits and misses, in milliseconds. */
+    public long getMeanTimeToMachineMillis() {
+        long count = hits.get() + misses.get();
+        return (count == 0) ? 0 : TimeUnit.NANOSECONDS.toMillis(timeToMachineNanos.get() / count);
+    }
+
+    /** The number of machines ready to be handed out, across all keys. */
+    public int getReadyCount() {
+        int result = 0;
+        for (Entry entry : entries.values()) result += entry.ready.size();
+        return result;
+    }
+
+    /** The number of machines being provisioned or scrubbed in the background, across all keys. */
+    public int getPendingCount() {
+        int result = 0;
+        for (Entry entry : entries.values()) result += entry.pending.get();
+        return result;
+    }
+
+    /** The jclouds ids of the machines ready to be handed out, across all keys (e.g. for persisting). */
+    public List<String> getReadyInstanceIds() {
+        ImmutableList.Builder<String> result = ImmutableList.builder();
+        for (Entry entry : entries.values()) {
+            for (JcloudsSshMachineLocation machine : entry.ready) {
+                result.add(machine.getJcloudsId());
+            }
+        }
+        return result.build();
+    }
+
+    /** The keys of the pools, i.e. the distinct provisioning flags seen. */
+    public List<String> getKeys() {
+        return ImmutableList.copyOf(entries.keySet());
+    }
+
+    @Override
+    public String toString() {
+        return "JcloudsWarmPool["+location+"; ready="+getReadyCount()+"; pending="+getPendingCount()+
+                "; hits="+getHitCount()+"; misses="+getMissCount()+"]";
+    }
+}
@@ -0,0 +1,171 @@
+package brooklyn.location.jclouds;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.domain.Template;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.util.collections.MutableMap;
+import brooklyn.util.config.ConfigBag;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Uses the jclouds "stub" provider, an in-memory compute service, so no cloud is contacted.
+ */
+public class JcloudsTemplateCacheTest implements JcloudsLocationConfig {
+
+    public static class CountingJcloudsLocation extends JcloudsLocation {
+        final AtomicInteger resolutions = new AtomicInteger();
+
+        public CountingJcloudsLocation(Map<?, ?> conf) {
+            super(conf);
+        }
+
+        @Override
+        protected Template resolveTemplate(ComputeService computeService, ConfigBag config) {
+            resolutions.incrementAndGet();
+            return super.resolveTemplate(computeService, config);
+        }
+
+        public Template buildTemplate(Map<?,?> flags) {
+            ConfigBag setup = ConfigBag.newInstanceExtending(getConfigBag(), flags);
+            return buildTemplate(JcloudsUtil.findComputeService(setup), setup);
+        }
+    }
+
+    private CountingJcloudsLocation loc;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        loc = newLocation(MutableMap.of());
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (loc != null) loc.close();
+    }
+
+    private CountingJcloudsLocation newLocation(Map<?,?> extraConfig) {
+        return new CountingJcloudsLocation(MutableMap.builder()
+                .put(CLOUD_PROVIDER, "stub")
+                .put(ACCESS_IDENTITY, "bogus")
+                .put(ACCESS_CREDENTIAL, "bogus")
+                .put(USER, "root")
+                .putAll(extraConfig)
+                .build());
+    }
+
+    @Test
+    public void testSameConstraintsResolvedOnce() throws Exception {
+        Template t1 = loc.buildTemplate(MutableMap.of(MIN_RAM, 512));
+        Template t2 = loc.buildTemplate(MutableMap.of(MIN_RAM, 512));
+
+        assertEquals(loc.resolutions.get(), 1);
+        assertEquals(t2.getImage(), t1.getImage());
+        assertEquals(t2.getHardware(), t1.getHardware());
+        assertEquals(loc.getTemplateCache().getHitCount(), 1);
+        assertEquals(loc.getTemplateCache().getMissCount(), 1);
+    }
+
+    @Test
+    public void testOptionsAreNotShared() throws Exception {
+        Template t1 = loc.buildTemplate(MutableMap.of(MIN_RAM, 512, INBOUND_PORTS, new int[] {22, 80}));
+        Template t2 = loc.buildTemplate(MutableMap.of(MIN_RAM, 512));
+
+        assertNotSame(t2.getOptions(), t1.getOptions());
+        assertEquals(t2.getOptions().getInboundPorts().length, 1);
+    }
+
+    @Test
+    public void testDifferentConstraintsResolvedSeparately() throws Exception {
+        loc.buildTemplate(MutableMap.of(MIN_RAM, 512));
+        loc.buildTemplate(MutableMap.of(MIN_RAM, 4096));
+
+        assertEquals(loc.resolutions.get(), 2);
+        assertEquals(loc.getTemplateCache().size(), 2);
+    }
+
+    @Test
+    public void testConcurrentRequestsShareResolution() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<Template>> futures = Lists.newArrayList();
+            for (int i = 0; i < 10; i++) {
+                futures.add(executor.submit(new Callable<Template>() {
+                    public Template call() {
+                        return loc.buildTemplate(MutableMap.of(MIN_RAM, 512));
+                    }}));
+            }
+            for (Future<Template> future : futures) {
+                assertNotNull(future.get().getImage());
+            }
+            assertEquals(loc.resolutions.get(), 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExpiredTemplateResolvedAgain() throws Exception {
+        loc.close();
+        loc = newLocation(MutableMap.of(TEMPLATE_CACHE_TTL, "1"));
+
+        loc.buildTemplate(MutableMap.of(MIN_RAM, 512));
+        Thread.sleep(10);
+        loc.buildTemplate(MutableMap.of(MIN_RAM, 512));
+
+        assertEquals(loc.resolutions.get(), 2);
+    }
+
+    @Test
+    public void testCacheDisabledWithZeroTtl() throws Exception {
+        loc.close();
+        loc = newLocation(MutableMap.of(TEMPLATE_CACHE_TTL, "0"));
+
+        loc.buildTemplate(MutableMap.of(MIN_RAM, 512));
+        loc.buildTemplate(MutableMap.of(MIN_RAM, 512));
+
+        assertEquals(loc.resolutions.get(), 2);
+        assertEquals(loc.getTemplateCache().size(), 0);
+    }
+
+    @Test
+    public void testCloseDiscardsTemplates() throws Exception {
+        JcloudsTemplateCache cache = loc.getTemplateCache();
+        loc.buildTemplate(MutableMap.of(MIN_RAM, 512));
+        assertEquals(cache.size(), 1);
+
+        loc.close();
+        assertEquals(cache.size(), 0);
+        loc.buildTemplate(MutableMap.of(MIN_RAM, 512));
+        assertEquals(loc.resolutions.get(), 2);
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        ConfigBag config = ConfigBag.newInstance(MutableMap.of(CLOUD_PROVIDER, "stub", MIN_RAM, 512, USER, "fred"));
+        ConfigBag otherUser = ConfigBag.newInstance(MutableMap.of(CLOUD_PROVIDER, "stub", MIN_RAM, 512, USER, "jon"));
+        ConfigBag otherRegion = ConfigBag.newInstance(MutableMap.of(CLOUD_PROVIDER, "stub", MIN_RAM, 512, CLOUD_REGION_ID, "r2"));
+        ConfigBag withCustomizer = ConfigBag.newInstance(MutableMap.of(CLOUD_PROVIDER, "stub", JCLOUDS_LOCATION_CUSTOMIZER, new BasicJcloudsLocationCustomizer()));
+
+        assertEquals(JcloudsTemplateCache.getKey(otherUser), JcloudsTemplateCache.getKey(config));
+        assertFalse(JcloudsTemplateCache.getKey(otherRegion).equals(JcloudsTemplateCache.getKey(config)));
+        assertNull(JcloudsTemplateCache.getKey(withCustomizer));
+    }
+}
@@ -0,0 +1,261 @@
+package brooklyn.location.jclouds;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.domain.NodeMetadataBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.location.basic.SshMachineLocation;
+import brooklyn.mementos.LocationMemento;
+import brooklyn.util.collections.MutableMap;
+import brooklyn.util.config.ConfigBag;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class JcloudsWarmPoolTest implements JcloudsLocationConfig {
+
+    /** Creates machines without contacting a cloud, counting provisions, scrubs and destroys */
+    public static class FakeProvisioningJcloudsLocation extends JcloudsLocation {
+        final AtomicInteger provisioned = new AtomicInteger();
+        final AtomicInteger scrubbed = new AtomicInteger();
+        final AtomicInteger destroyed = new AtomicInteger();
+        final List<String> destroyedNodes = Collections.synchronizedList(new ArrayList<String>());
+        final List<Map<?,?>> provisionFlags = Collections.synchronizedList(new ArrayList<Map<?,?>>());
+        volatile boolean scrubSucceeds = true;
+        volatile boolean provisionFails = false;
+
+        public FakeProvisioningJcloudsLocation(Map<?, ?> conf) {
+            super(conf);
+        }
+
+        @Override
+        protected JcloudsSshMachineLocation provisionMachine(Map<?,?> flags) {
+            if (provisionFails) throw new IllegalStateException("simulated failure for test");
+            provisionFlags.add(flags);
+            String id = "node-"+provisioned.incrementAndGet();
+            NodeMetadata node = new NodeMetadataBuilder().id(id).providerId(id).status(NodeMetadata.Status.RUNNING).build();
+            try {
+                return registerJcloudsSshMachineLocation(node, "localhost", ConfigBag.newInstanceExtending(getConfigBag(), flags));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        protected JcloudsSshMachineLocation createJcloudsSshMachineLocation(NodeMetadata node, String vmHostname, ConfigBag setup) {
+            return new JcloudsSshMachineLocation(MutableMap.of("address", vmHostname), this, node);
+        }
+
+        @Override
+        protected boolean scrubMachine(JcloudsSshMachineLocation machine, List<String> commands) {
+            scrubbed.incrementAndGet();
+            return scrubSucceeds;
+        }
+
+        @Override
+        protected void destroyMachine(SshMachineLocation machine) {
+            destroyed.incrementAndGet();
+        }
+
+        @Override
+        protected void destroyNode(String instanceId) {
+            destroyedNodes.add(instanceId);
+        }
+    }
+
+    private FakeProvisioningJcloudsLocation loc;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        loc = new FakeProvisioningJcloudsLocation(MutableMap.of(
+                CLOUD_PROVIDER, "stub",
+                ACCESS_IDENTITY, "bogus",
+                ACCESS_CREDENTIAL, "bogus",
+                WARM_POOL_SIZE, 2,
+                WARM_POOL_SCRUB_COMMANDS, ImmutableList.of("true")));
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (loc != null) loc.close();
+    }
+
+    @Test
+    public void testFirstObtainIsMissAndFillsPool() throws Exception {
+        JcloudsSshMachineLocation machine = loc.obtain(MutableMap.of(MIN_RAM, 1024));
+        assertNotNull(machine);
+        assertEquals(loc.getWarmPool().getMissCount(), 1);
+        assertEquals(loc.getWarmPool().getHitCount(), 0);
+
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(loc.getWarmPool().getReadyCount(), 2);
+        assertEquals(loc.provisioned.get(), 3);
+    }
+
+    @Test
+    public void testSubsequentObtainIsHit() throws Exception {
+        loc.obtain(MutableMap.of(MIN_RAM, 1024));
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+
+        loc.obtain(MutableMap.of(MIN_RAM, 1024));
+        assertEquals(loc.getWarmPool().getHitCount(), 1);
+
+        // topped up again in the background
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(loc.getWarmPool().getReadyCount(), 2);
+        assertEquals(loc.provisioned.get(), 4);
+    }
+
+    @Test
+    public void testDifferentFlagsUseDifferentPools() throws Exception {
+        loc.obtain(MutableMap.of(MIN_RAM, 1024));
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+
+        loc.obtain(MutableMap.of(MIN_RAM, 2048));
+        assertEquals(loc.getWarmPool().getMissCount(), 2);
+        assertEquals(loc.getWarmPool().getKeys().size(), 2);
+    }
+
+    @Test
+    public void testReleaseDestroysMachineWhenPoolFull() throws Exception {
+        JcloudsSshMachineLocation machine = loc.obtain(MutableMap.of(MIN_RAM, 1024));
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+
+        loc.release(machine);
+        assertEquals(loc.scrubbed.get(), 0);
+        assertEquals(loc.destroyed.get(), 1);
+    }
+
+    @Test
+    public void testReleaseReturnsScrubbedMachineToPool() throws Exception {
+        JcloudsSshMachineLocation machine = emptyPoolAfterObtain();
+
+        loc.release(machine);
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(loc.scrubbed.get(), 1);
+        assertEquals(loc.destroyed.get(), 0);
+        assertEquals(loc.getWarmPool().getReadyCount(), 1);
+
+        assertEquals(loc.obtain(MutableMap.of(MIN_RAM, 1024)), machine);
+    }
+
+    @Test
+    public void testFailedScrubDestroysMachine() throws Exception {
+        JcloudsSshMachineLocation machine = emptyPoolAfterObtain();
+        loc.scrubSucceeds = false;
+
+        loc.release(machine);
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(loc.scrubbed.get(), 1);
+        assertEquals(loc.destroyed.get(), 1);
+        assertEquals(loc.getWarmPool().getReadyCount(), 0);
+    }
+
+    /** Obtains a machine, then takes everything from the pool without it being topped up again */
+    private JcloudsSshMachineLocation emptyPoolAfterObtain() throws Exception {
+        JcloudsSshMachineLocation result = loc.obtain(MutableMap.of(MIN_RAM, 1024));
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+        loc.provisionFails = true;
+        loc.obtain(MutableMap.of(MIN_RAM, 1024));
+        loc.obtain(MutableMap.of(MIN_RAM, 1024));
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(loc.getWarmPool().getHitCount(), 2);
+        assertEquals(loc.getWarmPool().getReadyCount(), 0);
+        return result;
+    }
+
+    @Test
+    public void testPoolProvisionsWithoutFirstCallersContext() throws Exception {
+        loc.obtain(MutableMap.of(MIN_RAM, 1024, CALLER_CONTEXT, "first caller"));
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+
+        // the caller's own machine, and the pool's two (in any order)
+        assertEquals(loc.provisionFlags.size(), 3);
+        int pooled = 0;
+        for (Map<?,?> flags : loc.provisionFlags) {
+            if (!flags.containsKey(CALLER_CONTEXT)) {
+                assertEquals(flags, ImmutableMap.of(MIN_RAM, 1024));
+                pooled++;
+            }
+        }
+        assertEquals(pooled, 2);
+    }
+
+    @Test
+    public void testCloseDestroysReadyMachines() throws Exception {
+        loc.obtain(MutableMap.of(MIN_RAM, 1024));
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+
+        loc.close();
+        assertEquals(loc.destroyed.get(), 2);
+    }
+
+    @Test
+    public void testReadyMachinesPersistedAndDestroyedOnRebind() throws Exception {
+        JcloudsSshMachineLocation machine = loc.obtain(MutableMap.of(MIN_RAM, 1024));
+        assertTrue(loc.getWarmPool().awaitIdle(10, TimeUnit.SECONDS));
+
+        LocationMemento memento = loc.getRebindSupport().getMemento();
+        List<?> readyIds = (List<?>) memento.getCustomField("warmPoolInstanceIds");
+        assertEquals(readyIds.size(), 2);
+        assertFalse(readyIds.contains(machine.getJcloudsId()));
+
+        FakeProvisioningJcloudsLocation rebound = new FakeProvisioningJcloudsLocation(MutableMap.of(
+                CLOUD_PROVIDER, "stub",
+                ACCESS_IDENTITY, "bogus",
+                ACCESS_CREDENTIAL, "bogus"));
+        rebound.destroyWarmPoolInstances(readyIds);
+        assertEquals(rebound.destroyedNodes, readyIds);
+    }
+
+    @Test
+    public void testPoolDisabledByDefault() throws Exception {
+        FakeProvisioningJcloudsLocation plain = new FakeProvisioningJcloudsLocation(MutableMap.of(
+                CLOUD_PROVIDER, "stub",
+                ACCESS_IDENTITY, "bogus",
+                ACCESS_CREDENTIAL, "bogus"));
+        try {
+            JcloudsSshMachineLocation machine = plain.obtain(MutableMap.of());
+            plain.release(machine);
+            assertEquals(plain.provisioned.get(), 1);
+            assertEquals(plain.destroyed.get(), 1);
+            assertEquals(plain.getWarmPool().getKeys().size(), 0);
+        } finally {
+            plain.closeWarmPool();
+        }
+    }
+
+    @Test
+    public void testKeyIgnoresCallerContextAndRejectsTemplateBuilder() throws Exception {
+        assertEquals(JcloudsWarmPool.getKey(ImmutableMap.of(MIN_RAM, 1024, CALLER_CONTEXT, "a")),
+                JcloudsWarmPool.getKey(ImmutableMap.of(MIN_RAM, 1024, CALLER_CONTEXT, "b")));
+        assertEquals(JcloudsWarmPool.getKey(ImmutableMap.of("minRam", 1024)),
+                JcloudsWarmPool.getKey(ImmutableMap.of(MIN_RAM, 1024)));
+        assertNull(JcloudsWarmPool.getKey(ImmutableMap.of(MIN_RAM, 1024, TEMPLATE_BUILDER, "any")));
+    }
+
+    @Test
+    public void testKeyComparesArrayContents() throws Exception {
+        assertEquals(JcloudsWarmPool.getKey(ImmutableMap.of("inboundPorts", new int[] {22, 80})),
+                JcloudsWarmPool.getKey(ImmutableMap.of("inboundPorts", new int[] {22, 80})));
+        assertEquals(JcloudsWarmPool.getKey(ImmutableMap.of("securityGroups", new String[] {"a", "b"})),
+                JcloudsWarmPool.getKey(ImmutableMap.of("securityGroups", new String[] {"a", "b"})));
+        assertFalse(JcloudsWarmPool.getKey(ImmutableMap.of("inboundPorts", new int[] {22, 80})).equals(
+                JcloudsWarmPool.getKey(ImmutableMap.of("inboundPorts", new int[] {22, 443}))));
+    }
+}
@@ -1,6 +1,7 @@
 package brooklyn.policy.ha;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +42,9 @@ import com.google.common.collect.Maps;
  * These criteria can be further configured using "onlyReportIfPreviouslyUp" and
  * "useServiceStateRunning".
  * 
+ * State is held per member, and each event only locks (and re-checks) the member it 
+ * concerns, so events for different members of a large group are handled concurrently.
+ * 
  * @author aled
  */
 public class MemberFailureDetectionPolicy extends AbstractPolicy {
@@ -56,10 +60,17 @@ public class MemberFailureDetectionPolicy extends AbstractPolicy {
     @SetFromFlag
     private Predicate<? super Entity> memberFilter;
     
-    private final Map<Entity, Long> memberFailures = Maps.newLinkedHashMap();
-    private final Map<Entity, Long> memberLastUps = Maps.newLinkedHashMap();
-    private final Map<Entity, Boolean> memberIsUps = Maps.newLinkedHashMap();
-    private final Map<Entity, Lifecycle> memberStates = Maps.newLinkedHashMap();
+    private final ConcurrentMap<Entity, MemberState> memberStates = Maps.newConcurrentMap();
+
+    /**
+     * The last-known health of a single member; access is guarded by synchronizing on the instance.
+     */
+    private static class MemberState {
+        Long failedTime;
+        Long lastUpTime;
+        Boolean isUp;
+        Lifecycle status;
+    }
 
     public MemberFailureDetectionPolicy() {
         this(MutableMap.<String,Object>of());
@@ -110,28 +121,46 @@ public class MemberFailureDetectionPolicy extends AbstractPolicy {
         }
     }
     
-    private synchronized void onMemberIsUp(Entity member, Boolean isUp) {
+    private MemberState getMemberState(Entity member) {
+        MemberState result = memberStates.get(member);
+        if (result == null) {
+            MemberState contender = new MemberState();
+            result = memberStates.putIfAbsent(member, contender);
+            if (result == null) result = contender;
+        }
+        return result;
+    }
+    
+    private void onMemberIsUp(Entity member, Boolean isUp) {
         if (isUp != null) {
-            Boolean old = memberIsUps.put(member, isUp);
-            if (isUp) {
-                memberLastUps.put(member, System.currentTimeMillis());
-            }
-            if (!Objects.equal(old, isUp)) {
-                checkMemberHealth(member);
+            MemberState state = getMemberState(member);
+            synchronized (state) {
+                Boolean old = state.isUp;
+                state.isUp = isUp;
+                if (isUp) {
+                    state.lastUpTime = System.currentTimeMillis();
+                }
+                if (!Objects.equal(old, isUp)) {
+                    checkMemberHealth(member, state);
+                }
             }
         }
     }
     
-    private synchronized void onMemberStatus(Entity member, Lifecycle status) {
+    private void onMemberStatus(Entity member, Lifecycle status) {
         if (status != null) {
-            Lifecycle old = memberStates.put(member, status);
-            if (!Objects.equal(old, status)) {
-                checkMemberHealth(member);
+            MemberState state = getMemberState(member);
+            synchronized (state) {
+                Lifecycle old = state.status;
+                state.status = status;
+                if (!Objects.equal(old, status)) {
+                    checkMemberHealth(member, state);
+                }
             }
         }
     }
     
-    private synchronized void onMemberAdded(Entity member) {
+    private void onMemberAdded(Entity member) {
         if (useServiceStateRunning) {
             Lifecycle status = member.getAttribute(Attributes.SERVICE_STATE);
             onMemberStatus(member, status);
@@ -141,17 +170,15 @@ public class MemberFailureDetectionPolicy extends AbstractPolicy {
         onMemberIsUp(member, isUp);
     }
     
-    private synchronized void onMemberRemoved(Entity member) {
+    private void onMemberRemoved(Entity member) {
         memberStates.remove(member);
-        memberIsUps.remove(member);
-        memberLastUps.remove(member);
-        memberFailures.remove(member);
     }
     
-    private synchronized void checkMemberHealth(Entity member) {
-        Long lastUpTime = memberLastUps.get(member);
-        Boolean isUp = memberIsUps.get(member);
-        Lifecycle status = memberStates.get(member);
+    /** Must be called while holding the lock on the given state. */
+    private void checkMemberHealth(Entity member, MemberState state) {
+        Long lastUpTime = state.lastUpTime;
+        Boolean isUp = state.isUp;
+        Lifecycle status = state.status;
         boolean failed = 
                 (useServiceStateRunning && status == Lifecycle.ON_FIRE) ||
                 (Boolean.FALSE.equals(isUp) &&
@@ -168,12 +195,12 @@ public class MemberFailureDetectionPolicy extends AbstractPolicy {
                 (lastUpTime != null ? Time.makeDateString(lastUpTime) : "<never>"),
                 Time.makeDateString(System.currentTimeMillis()));
 
-        if (memberFailures.containsKey(member)) {
+        if (state.failedTime != null) {
             if (recovered) {
                 LOG.info("{} health-check for {}, component recovered (from failure at {}): {}", 
-                        new Object[] {this, member, Time.makeDateString(memberFailures.get(member)), description});
+                        new Object[] {this, member, Time.makeDateString(state.failedTime), description});
                 entity.emit(HASensors.ENTITY_RECOVERED, new HASensors.FailureDescriptor(member, description));
-                memberFailures.remove(member);
+                state.failedTime = null;
             } else if (failed) {
                 if (LOG.isTraceEnabled()) LOG.trace("{} health-check for {}, confirmed still failed: {}", new Object[] {this, member, description});
             } else {
@@ -181,7 +208,7 @@ public class MemberFailureDetectionPolicy extends AbstractPolicy {
             }
         } else if (failed) {
             LOG.info("{} health-check for {}, component failed: {}", new Object[] {this, member, description});
-            memberFailures.put(member, System.currentTimeMillis());
+            state.failedTime = System.currentTimeMillis();
             entity.emit(HASensors.ENTITY_FAILED, new HASensors.FailureDescriptor(member, description));
         } else {
             if (LOG.isTraceEnabled()) LOG.trace("{} health-check for {}, either healthy or insufficient data: {}", new Object[] {this, member, description});
@@ -2,11 +2,8 @@ package brooklyn.entity.basic;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.util.Collections;
 import java.util.Map;
 
@@ -14,16 +11,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import brooklyn.config.ConfigKey;
+import brooklyn.entity.drivers.TemplateCache;
 import brooklyn.location.Location;
+import brooklyn.management.internal.ManagementContextInternal;
 import brooklyn.util.ResourceUtils;
+import brooklyn.util.collections.MutableMap;
 import brooklyn.util.exceptions.Exceptions;
 
 import com.google.common.collect.ImmutableMap;
 
-import freemarker.cache.StringTemplateLoader;
-import freemarker.template.Configuration;
-import freemarker.template.Template;
-
 /**
  * An abstract implementation of the {@link SoftwareProcessDriver}.
  */
@@ -33,6 +29,7 @@ public abstract class AbstractSoftwareProcessDriver implements SoftwareProcessDr
 	
     protected final EntityLocal entity;
     private final Location location;
+    private volatile Map<String, Object> templateSubstitutions;
     
     public AbstractSoftwareProcessDriver(EntityLocal entity, Location location) {
         this.entity = checkNotNull(entity, "entity");
@@ -134,35 +131,45 @@ public abstract class AbstractSoftwareProcessDriver implements SoftwareProcessDr
     }
 
     public String processTemplate(String templateConfigUrl, Map<String,? extends Object> extraSubstitutions) {
-        Map<String, Object> config = getEntity().getApplication().getManagementContext().getConfig().asMapWithStringKeys();
-        Map<String, Object> substitutions = ImmutableMap.<String, Object>builder()
-                .putAll(config)
-                .put("entity", entity)
-                .put("driver", this)
-                .put("location", getLocation())
-                .putAll(extraSubstitutions)
-                .build();
+        Map<String, Object> substitutions;
+        if (extraSubstitutions.isEmpty()) {
+            substitutions = getTemplateSubstitutions();
+        } else {
+            substitutions = MutableMap.<String, Object>builder()
+                    .putAll(getTemplateSubstitutions())
+                    .putAll(extraSubstitutions)
+                    .build();
+        }
 
         try {
-            String templateConfigFile = getResourceAsString(templateConfigUrl);
-
-            Configuration cfg = new Configuration();
-            StringTemplateLoader templateLoader = new StringTemplateLoader();
-            templateLoader.putTemplate("config", templateConfigFile);
-            cfg.setTemplateLoader(templateLoader);
-            Template template = cfg.getTemplate("config");
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            Writer out = new OutputStreamWriter(baos);
-            template.process(substitutions, out);
-            out.flush();
-
-            return new String(baos.toByteArray());
+            String templateContents = getResourceAsString(templateConfigUrl);
+            // the parsed template is shared by all entities using the same template (e.g. a large cluster)
+            TemplateCache cache = ((ManagementContextInternal) getEntity().getApplication().getManagementContext()).getTemplateCache();
+            return cache.process(templateConfigUrl, templateContents, substitutions);
         } catch (Exception e) {
             log.warn("Error creating configuration file for "+entity, e);
             throw Exceptions.propagate(e);
         }
     }
+
+    /**
+     * The substitutions available to every template processed by this driver: the brooklyn properties,
+     * plus the entity, driver and location. Built on first use and then reused.
+     */
+    protected Map<String, Object> getTemplateSubstitutions() {
+        Map<String, Object> result = templateSubstitutions;
+        if (result == null) {
+            Map<String, Object> config = getEntity().getApplication().getManagementContext().getConfig().asMapWithStringKeys();
+            result = ImmutableMap.<String, Object>builder()
+                    .putAll(config)
+                    .put("entity", entity)
+                    .put("driver", this)
+                    .put("location", getLocation())
+                    .build();
+            templateSubstitutions = result;
+        }
+        return result;
+    }
 		
     protected void waitForConfigKey(ConfigKey<?> configKey) {
         Object val = entity.getConfig(configKey);
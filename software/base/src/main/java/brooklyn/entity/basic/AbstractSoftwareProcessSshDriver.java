@@ -2,7 +2,9 @@ package brooklyn.entity.basic;
 
 import static brooklyn.util.GroovyJavaMethods.elvis;
 import static brooklyn.util.GroovyJavaMethods.truth;
+import static java.lang.String.format;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.StringReader;
 import java.util.Collections;
@@ -18,11 +20,15 @@ import brooklyn.config.BrooklynLogging;
 import brooklyn.config.ConfigKey;
 import brooklyn.config.ConfigUtils;
 import brooklyn.config.StringConfigMap;
+import brooklyn.entity.basic.lifecycle.BatchedScript;
 import brooklyn.entity.basic.lifecycle.CommonCommands;
 import brooklyn.entity.basic.lifecycle.ScriptHelper;
 import brooklyn.entity.basic.lifecycle.ScriptRunner;
+import brooklyn.entity.drivers.downloads.ArtifactCache;
 import brooklyn.entity.drivers.downloads.DownloadResolverManager;
 import brooklyn.location.basic.SshMachineLocation;
+import brooklyn.management.internal.ManagementContextInternal;
+import brooklyn.util.ResourceUtils;
 import brooklyn.util.collections.MutableMap;
 import brooklyn.util.internal.ssh.SshTool;
 
@@ -241,30 +247,71 @@ public abstract class AbstractSoftwareProcessSshDriver extends AbstractSoftwareP
         return result;
     }
 
+    /**
+     * Processes the given templates (map from target to template url) and copies them all to the machine
+     * in one batch (see {@link SshMachineLocation#copyFilesTo(Map, Map)}); relative targets are in the run dir.
+     */
     public void copyTemplates(Map<String, String> templates) {
         if (templates != null && templates.size() > 0) {
             log.info("Customising {} with templates: {}", entity, templates);
 
-            for (Map.Entry<String, String> entry : templates.entrySet()) {
-                String source = entry.getValue();
-                String dest = entry.getKey();
-                copyTemplate(source, dest);
+            Map<String, File> files = Maps.newLinkedHashMap();
+            try {
+                for (Map.Entry<String, String> entry : templates.entrySet()) {
+                    String data = processTemplate(entry.getValue());
+                    files.put(getRunDirPath(entry.getKey()), ResourceUtils.writeToTempFile(new ByteArrayInputStream(data.getBytes()), "brooklyn-template", ".tmp"));
+                }
+                int result = getMachine().copyFilesTo(MutableMap.<String,Object>of(), files);
+                if (log.isDebugEnabled())
+                    log.debug("Copied filtered templates for {}: {} - result {}", new Object[] { entity, templates, result });
+            } finally {
+                deleteAll(files.values());
             }
         }
     }
 
+    /**
+     * Copies the given resources (map from target to resource url) to the machine. Remote http resources 
+     * are fetched by the machine itself where possible (see {@link #copyResource(Map, String, String)}); 
+     * the rest are copied in one batch (see {@link SshMachineLocation#copyFilesTo(Map, Map)}).
+     */
     public void copyResources(Map<String, String> resources) {
         if (resources != null && resources.size() > 0) {
             log.info("Customising {} with resources: {}", entity, resources);
 
-            for (Map.Entry<String, String> entry : resources.entrySet()) {
-                String source = entry.getValue();
-                String dest = entry.getKey();
-                copyResource(source, dest);
+            Map<String, File> files = Maps.newLinkedHashMap();
+            try {
+                for (Map.Entry<String, String> entry : resources.entrySet()) {
+                    String source = entry.getValue();
+                    String dest = entry.getKey();
+                    if (source.toLowerCase().matches("^https?://.*")) {
+                        copyResource(source, dest);
+                    } else {
+                        files.put(getRunDirPath(dest), ResourceUtils.writeToTempFile(getResource(source), "brooklyn-resource", ".tmp"));
+                    }
+                }
+                if (files.size() > 0) {
+                    int result = getMachine().copyFilesTo(getSshFlags(), files);
+                    if (log.isDebugEnabled())
+                        log.debug("Copied files for {}: {} - result {}", new Object[] { entity, files.keySet(), result });
+                }
+            } finally {
+                deleteAll(files.values());
             }
         }
     }
 
+    /** returns the target, prefixed with the run dir if it is relative */
+    private String getRunDirPath(String target) {
+        return new File(target).isAbsolute() ? target : getRunDir() + "/" + target;
+    }
+
+    private void deleteAll(Iterable<File> files) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
     public int copyResource(File file, String target) {
         return copyResource(file.toURI().toASCIIString(), target);
     }
@@ -303,6 +350,74 @@ public abstract class AbstractSoftwareProcessSshDriver extends AbstractSoftwareP
         return result;
     }
 
+    /**
+     * Returns the commands (for the install script, which runs in the install dir) to download the artifact
+     * from the first of the given urls that works, saving it as the given file.
+     * <p>
+     * If the management context's {@link ArtifactCache} is enabled, the artifact is instead fetched once by 
+     * the management node and copied to this machine over ssh, in which case no commands are needed. 
+     * If that fails, the machine downloads it as usual.
+     */
+    protected List<String> downloadCommands(List<String> urls, String saveAs) {
+        return downloadCommands(urls, saveAs, getInstallDir());
+    }
+
+    /**
+     * As {@link #downloadCommands(List, String)}, for commands which run in the given directory
+     * (rather than the install dir), so that a relative {@code saveAs} is relative to that directory.
+     */
+    protected List<String> downloadCommands(List<String> urls, String saveAs, String dir) {
+        ArtifactCache cache = ((ManagementContextInternal)((EntityInternal)entity).getManagementContext()).getArtifactCache();
+        if (cache.isEnabled() && copyFromArtifactCache(cache, urls, saveAs, dir)) {
+            return ImmutableList.of();
+        }
+        return CommonCommands.downloadUrlAs(urls, saveAs);
+    }
+
+    /**
+     * Copies the artifact from the given cache to this machine, as {@code saveAs} (if relative, in the given directory), 
+     * unless already installed or the artifact is already there, verifying its checksum; returns false if that could not be done.
+     */
+    protected boolean copyFromArtifactCache(ArtifactCache cache, List<String> urls, String saveAs, String dir) {
+        ArtifactCache.Artifact artifact = cache.get(urls, null);
+        if (artifact == null) return false;
+        
+        String dest = new File(saveAs).isAbsolute() ? saveAs : dir+"/"+saveAs;
+        String verify = format("(sha256sum %s 2>/dev/null || shasum -a 256 %s 2>/dev/null) | grep -q %s", dest, dest, artifact.getSha256());
+        Map<String, Object> flags = getSshFlags();
+        
+        // check and prepare in one round-trip
+        BatchedScript.Result check = newBatchedScript("check artifact")
+                .sectionUnless("prepare", format("test -f %s/BROOKLYN || %s", getInstallDir(), verify),
+                        format("mkdir -p %s", new File(dest).getParent()))
+                .execute();
+        if (check.isSkipped("prepare")) {
+            if (log.isDebugEnabled()) log.debug("Not copying {} to {} for {}: already present", new Object[] {artifact, dest, entity});
+            return true;
+        }
+        
+        // copy to a temporary name, so a concurrent install on this machine never sees a partial file 
+        String tmp = dest+".tmp-"+entity.getId();
+        int result = check.getExitCode();
+        if (result == 0) result = getMachine().copyTo(flags, artifact.getFile(), tmp);
+        if (result == 0) result = getMachine().execCommands(flags, "verify artifact", ImmutableList.of(
+                format("mv %s %s", tmp, dest), verify));
+        if (result != 0) {
+            log.warn("Failed to copy cached {} to {} for {} (result {}); will download on machine instead", new Object[] {artifact, dest, entity, result});
+            return false;
+        }
+        if (log.isDebugEnabled()) log.debug("Copied cached {} to {} for {}", new Object[] {artifact, dest, entity});
+        return true;
+    }
+
+    /**
+     * Returns a script for composing several scripts (e.g. checks and phases) into a single round-trip
+     * to this machine; see {@link BatchedScript}.
+     */
+    protected BatchedScript newBatchedScript(String summary) {
+        return new BatchedScript(this, summary+" "+elvis(entity,this));
+    }
+
     protected final static String INSTALLING = "installing";
     protected final static String CUSTOMIZING = "customizing";
     protected final static String LAUNCHING = "launching";
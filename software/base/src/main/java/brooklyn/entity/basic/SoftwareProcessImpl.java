@@ -310,6 +310,11 @@ public abstract class SoftwareProcessImpl extends AbstractEntity implements Soft
         return result;
     }
     
+    @Override
+    public Map<String,Object> getProvisioningFlagsFor(MachineProvisioningLocation<?> location) {
+        return obtainProvisioningFlags(location);
+    }
+    
     /** @deprecated in 0.4.0. use obtainProvisioningFlags. 
      * introduced in a branch which duplicates changes in master where it is called "obtainPF".
      * will remove as soon as those uses are updated. */
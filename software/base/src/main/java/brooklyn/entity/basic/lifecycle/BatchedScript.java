@@ -0,0 +1,387 @@
+package brooklyn.entity.basic.lifecycle;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import brooklyn.util.exceptions.RuntimeInterruptedException;
+import brooklyn.util.mutex.WithMutexes;
+import brooklyn.util.task.Tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Composes several scripts (e.g. the checks and phases of a lifecycle step) into a single remote
+ * script, so they cost one round-trip rather than one each, and reports the result of each of them.
+ * <p>
+ * Each section runs in its own sub-shell, with {@code set -e}, so an {@code exit} in one section
+ * (such as the {@code test -f BROOKLYN && exit 0} in an install script) ends only that section.
+ * Environment set in a section is therefore not seen by later sections; use {@link #header(String...)}
+ * for that. A section can be made conditional on a check command failing, for idempotence, in which
+ * case it is skipped (and reported as such) when the check succeeds.
+ * <p>
+ * The script writes marker lines to stdout around each section, from which {@link Result} gives the
+ * result code and output of each section. By default the script stops at the first section (other
+ * than a {@link #check(String, String) check}) that fails.
+ * <p>
+ * For example:
+ * <pre>
+ * BatchedScript.Result result = new BatchedScript(driver, "starting "+entity)
+ *         .check("running", "ps -p `cat pid.txt`")
+ *         .sectionUnless("install", "test -f BROOKLYN", installCommands)
+ *         .section("launch", launchCommands)
+ *         .execute();
+ * </pre>
+ */
+public class BatchedScript {
+
+    public static final Logger log = LoggerFactory.getLogger(BatchedScript.class);
+
+    /** Prefix of the marker lines written to stdout by the script. */
+    public static final String MARKER = "BROOKLYN-BATCH:";
+
+    protected static class Section {
+        final String name;
+        final List<String> lines;
+        final String unless;
+        final boolean check;
+
+        Section(String name, List<String> lines, @Nullable String unless, boolean check) {
+            this.name = name;
+            this.lines = lines;
+            this.unless = unless;
+            this.check = check;
+        }
+    }
+
+    /** The outcome of executing a {@link BatchedScript}. */
+    public static class Result {
+        private final int exitCode;
+        private final Map<String, Integer> resultCodes;
+        private final Set<String> skipped;
+        private final Map<String, String> outputs;
+        private final String stdout;
+        private final String stderr;
+
+        protected Result(int exitCode, Map<String, Integer> resultCodes, Set<String> skipped, Map<String, String> outputs,
+                String stdout, String stderr) {
+            this.exitCode = exitCode;
+            this.resultCodes = Collections.unmodifiableMap(resultCodes);
+            this.skipped = Collections.unmodifiableSet(skipped);
+            this.outputs = Collections.unmodifiableMap(outputs);
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        /** The result code of the whole script: that of the first failed section (other than checks), otherwise 0. */
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        /** The result code of each section that ran to completion, in order. */
+        public Map<String, Integer> getResultCodes() {
+            return resultCodes;
+        }
+
+        /** The result code of the given section, or null if it did not run (or did not complete). */
+        @Nullable
+        public Integer getResultCode(String section) {
+            return resultCodes.get(section);
+        }
+
+        /** Whether the given section ran to completion with result code 0. */
+        public boolean isSuccess(String section) {
+            Integer code = resultCodes.get(section);
+            return code != null && code == 0;
+        }
+
+        /** Whether the given section was skipped because its check succeeded. */
+        public boolean isSkipped(String section) {
+            return skipped.contains(section);
+        }
+
+        /** Whether the given section ran to completion. */
+        public boolean wasRun(String section) {
+            return resultCodes.containsKey(section);
+        }
+
+        /** The stdout written by the given section, or null if it did not run. */
+        @Nullable
+        public String getStdout(String section) {
+            return outputs.get(section);
+        }
+
+        /** The stdout of the whole script, including markers. */
+        public String getStdout() {
+            return stdout;
+        }
+
+        /** The stderr of the whole script (not split by section, as it is not ordered with respect to stdout). */
+        public String getStderr() {
+            return stderr;
+        }
+
+        @Override
+        public String toString() {
+            return "BatchedScript.Result[exit="+exitCode+"; results="+resultCodes+"; skipped="+skipped+"]";
+        }
+    }
+
+    protected final ScriptRunner runner;
+    public final String summary;
+
+    protected final List<String> header = new LinkedList<String>();
+    protected final Map<String, Section> sections = new LinkedHashMap<String, Section>();
+    protected final Map flags = new LinkedHashMap();
+    protected boolean stopOnFailure = true;
+    protected boolean failOnNonZeroResultCode = false;
+
+    protected Runnable mutexAcquire = new Runnable() {
+        public void run() {
+        }
+    };
+
+    protected Runnable mutexRelease = new Runnable() {
+        public void run() {
+        }
+    };
+
+    public BatchedScript(ScriptRunner runner, String summary) {
+        this.runner = checkNotNull(runner, "runner");
+        this.summary = summary;
+    }
+
+    /** Lines run before any section, in the outer shell (e.g. to export environment used by all sections). */
+    public BatchedScript header(String... lines) {
+        return header(Arrays.asList(lines));
+    }
+
+    public BatchedScript header(List<String> lines) {
+        header.addAll(lines);
+        return this;
+    }
+
+    /** Adds a section, which runs the given commands. */
+    public BatchedScript section(String name, String... lines) {
+        return section(name, Arrays.asList(lines));
+    }
+
+    public BatchedScript section(String name, List<String> lines) {
+        return addSection(new Section(name, ImmutableList.copyOf(lines), null, false));
+    }
+
+    /** Adds a section for the given script (e.g. from {@code newScript(phase)}), including its header and footer. */
+    public BatchedScript section(String name, ScriptHelper script) {
+        return section(name, script.getLines());
+    }
+
+    /** Adds a section which is skipped if the given check command succeeds. */
+    public BatchedScript sectionUnless(String name, String check, String... lines) {
+        return sectionUnless(name, check, Arrays.asList(lines));
+    }
+
+    public BatchedScript sectionUnless(String name, String check, List<String> lines) {
+        return addSection(new Section(name, ImmutableList.copyOf(lines), checkNotNull(check, "check"), false));
+    }
+
+    public BatchedScript sectionUnless(String name, String check, ScriptHelper script) {
+        return sectionUnless(name, check, script.getLines());
+    }
+
+    /**
+     * Adds a check, i.e. a section whose result code is reported but which does not count as failure
+     * (e.g. whether a process is running).
+     */
+    public BatchedScript check(String name, String... lines) {
+        return addSection(new Section(name, ImmutableList.copyOf(lines), null, true));
+    }
+
+    protected BatchedScript addSection(Section section) {
+        checkArgument(section.name.matches("[A-Za-z0-9_.-]+"), "Invalid section name '%s' in %s", section.name, summary);
+        checkArgument(!sections.containsKey(section.name), "Duplicate section '%s' in %s", section.name, summary);
+        sections.put(section.name, section);
+        return this;
+    }
+
+    /** Whether to stop at the first section (other than checks) that fails; defaults to true. */
+    public BatchedScript stopOnFailure(boolean val) {
+        stopOnFailure = val;
+        return this;
+    }
+
+    /** Throws an exception from {@link #execute()} if any section (other than checks) fails. */
+    public BatchedScript failOnNonZeroResultCode() {
+        failOnNonZeroResultCode = true;
+        return this;
+    }
+
+    /** As {@link ScriptHelper#useMutex(WithMutexes, String, String)}, held for the duration of the script. */
+    public BatchedScript useMutex(final WithMutexes mutexSupport, final String mutexId, final String description) {
+        mutexAcquire = new Runnable() {
+            public void run() {
+                try {
+                    mutexSupport.acquireMutex(mutexId, description);
+                } catch (InterruptedException e) {
+                    throw new RuntimeInterruptedException(e);
+                }
+            }
+        };
+        mutexRelease = new Runnable() {
+            public void run() {
+                mutexSupport.releaseMutex(mutexId);
+            }
+        };
+        return this;
+    }
+
+    public BatchedScript setFlag(String flag, Object value) {
+        flags.put(flag, value);
+        return this;
+    }
+
+    public Map getFlags() {
+        return flags;
+    }
+
+    public boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    public List<String> getLines() {
+        List<String> result = new LinkedList<String>();
+        result.addAll(header);
+        // sections report their own failures, rather than aborting the script
+        result.add("set +e");
+        result.add("BATCH_RESULT=0");
+        for (Section section : sections.values()) {
+            String begin = "echo \""+MARKER+"BEGIN:"+section.name+"\"";
+            String end = "echo \""+MARKER+"END:"+section.name+":$RESULT\"";
+            String indent = "";
+            if (section.unless != null) {
+                result.add("if ( "+section.unless+" ) > /dev/null 2>&1 ; then");
+                result.add("  echo \""+MARKER+"SKIPPED:"+section.name+"\"");
+                result.add("else");
+                indent = "  ";
+            }
+            result.add(indent+begin);
+            result.add(indent+"(");
+            result.add(indent+"set -e");
+            for (String line : section.lines) {
+                result.add(indent+line);
+            }
+            result.add(indent+")");
+            result.add(indent+"RESULT=$?");
+            result.add(indent+end);
+            if (!section.check) {
+                result.add(indent+"if [ $RESULT -ne 0 ] ; then");
+                result.add(indent+"  [ $BATCH_RESULT -eq 0 ] && BATCH_RESULT=$RESULT");
+                if (stopOnFailure) result.add(indent+"  exit $BATCH_RESULT");
+                result.add(indent+"fi");
+            }
+            if (section.unless != null) {
+                result.add("fi");
+            }
+        }
+        result.add("exit $BATCH_RESULT");
+        return result;
+    }
+
+    public Result execute() {
+        List<String> lines = getLines();
+        if (log.isTraceEnabled()) log.trace("executing batch: {} - {}", summary, lines);
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        int exitCode;
+        try {
+            mutexAcquire.run();
+            Map flags = new LinkedHashMap(getFlags());
+            flags.put("out", stdout);
+            flags.put("err", stderr);
+            exitCode = runner.execute(flags, lines, summary);
+        } catch (RuntimeInterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(format("Execution failed, invocation error for %s: %s", summary, e.getMessage()), e);
+        } finally {
+            mutexRelease.run();
+        }
+
+        Result result = parse(exitCode, stdout.toString(), stderr.toString());
+        if (log.isDebugEnabled()) log.debug("finished executing batch: {} - {}", summary, result);
+
+        if (failOnNonZeroResultCode && exitCode != 0) {
+            String failed = null;
+            for (Map.Entry<String, Integer> entry : result.getResultCodes().entrySet()) {
+                if (entry.getValue() != 0 && !sections.get(entry.getKey()).check) {
+                    failed = entry.getKey();
+                    break;
+                }
+            }
+            try {
+                String notes = "";
+                if (!result.getStderr().isEmpty())
+                    notes += "STDERR\n" + result.getStderr()+"\n";
+                if (!result.getStdout().isEmpty())
+                    notes += "\n" + "STDOUT\n" + result.getStdout()+"\n";
+                Tasks.setExtraStatusDetails(notes.trim());
+            } catch (Exception e) {
+                log.warn("Unable to collect additional metadata on failure of "+summary+": "+e);
+            }
+            throw new IllegalStateException(format("Execution failed, invalid result %s for %s%s", exitCode, summary,
+                    (failed != null ? " (in "+failed+")" : "")));
+        }
+        return result;
+    }
+
+    /** Parses the marker lines in the script's output. */
+    protected static Result parse(int exitCode, String stdout, String stderr) {
+        Map<String, Integer> resultCodes = new LinkedHashMap<String, Integer>();
+        Set<String> skipped = Sets.newLinkedHashSet();
+        Map<String, String> outputs = Maps.newLinkedHashMap();
+
+        String current = null;
+        StringBuilder output = new StringBuilder();
+        for (String line : stdout.split("\r?\n")) {
+            if (!line.startsWith(MARKER)) {
+                if (current != null) output.append(line).append("\n");
+                continue;
+            }
+            String[] parts = line.substring(MARKER.length()).split(":");
+            if (parts.length == 2 && parts[0].equals("BEGIN")) {
+                current = parts[1];
+                output.setLength(0);
+            } else if (parts.length == 2 && parts[0].equals("SKIPPED")) {
+                skipped.add(parts[1]);
+            } else if (parts.length == 3 && parts[0].equals("END") && parts[1].equals(current)) {
+                try {
+                    resultCodes.put(current, Integer.parseInt(parts[2].trim()));
+                    outputs.put(current, output.toString());
+                } catch (NumberFormatException e) {
+                    log.warn("Invalid result in batch script output line: "+line);
+                }
+                current = null;
+            } else {
+                log.debug("Ignoring unexpected batch script output line: {}", line);
+            }
+        }
+        return new Result(exitCode, resultCodes, skipped, ImmutableMap.copyOf(outputs), stdout, stderr);
+    }
+}
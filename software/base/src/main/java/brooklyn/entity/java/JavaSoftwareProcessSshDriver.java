@@ -3,7 +3,6 @@ package brooklyn.entity.java;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -17,6 +16,7 @@ import brooklyn.entity.basic.AbstractSoftwareProcessSshDriver;
 import brooklyn.entity.basic.Attributes;
 import brooklyn.entity.basic.EntityInternal;
 import brooklyn.entity.basic.EntityLocal;
+import brooklyn.entity.basic.lifecycle.BatchedScript;
 import brooklyn.entity.basic.lifecycle.CommonCommands;
 import brooklyn.location.basic.SshMachineLocation;
 import brooklyn.util.GroovyJavaMethods;
@@ -269,11 +269,15 @@ public abstract class JavaSoftwareProcessSshDriver extends AbstractSoftwareProce
         try {
             getLocation().acquireMutex("install:" + getLocation().getDisplayName(), "installing Java at " + getLocation());
             log.debug("checking for java at " + entity + " @ " + getLocation());
-            int result = getLocation().execCommands("check java", Arrays.asList("which java"));
-            if (result == 0) {
+            // check and (if needed) install in one round-trip
+            BatchedScript.Result result = newBatchedScript("install java")
+                    .sectionUnless("install-openjdk", "which java", CommonCommands.installJava6())
+                    .execute();
+            if (result.isSkipped("install-openjdk")) {
                 log.debug("java detected at " + entity + " @ " + getLocation());
+            } else if (result.getExitCode() == 0) {
+                log.debug("java not detected at " + entity + " @ " + getLocation() + ", installed using CommonCommands.installJava6");
             } else {
-                log.debug("java not detected at " + entity + " @ " + getLocation() + ", installing");
                 // TODO support script-builder access?
 //                if (getLocation() instanceof JcloudsSshMachineLocation) {
 //                    log.debug("installing java at " + entity + " @ " + getLocation() + ", using jclouds");
@@ -283,20 +287,8 @@ public abstract class JavaSoftwareProcessSshDriver extends AbstractSoftwareProce
 //                    log.debug("invalid result code " + result2.getExitStatus() + " installing java using Jclouds routines, at " + entity + " @ "
 //                            + getLocation() + ":\n" + result2.getOutput() + "\n" + result2.getError());
 //                }
-                
-                log.debug("installing java at " + entity + " @ " + getLocation() + ", using CommonCommands.installJava6");
-                result = newScript("INSTALL_OPENJDK").body.append(
-                        CommonCommands.installJava6()
-                        // TODO the following complains about yum-install not defined
-                        // even though it is set as an alias (at the start of the first file)
-                        //                            new ResourceUtils(this).getResourceAsString("classpath:///functions/setupPublicCurl.sh"),
-                        //                            new ResourceUtils(this).getResourceAsString("classpath:///functions/installOpenJDK.sh"),
-                        //                            "installOpenJDK"
-                        ).execute();
-                if (result==0)
-                    return;
                 log.warn("Unable to install Java at " + getLocation() + " for " + entity +
-                        " (and Java not detected); invalid result "+result+". " + 
+                        " (and Java not detected); invalid result "+result.getExitCode()+". " + 
                         "Processes may fail to start.");
             }
         } catch (Exception e) {
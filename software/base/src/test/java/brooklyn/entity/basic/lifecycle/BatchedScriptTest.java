@@ -0,0 +1,175 @@
+package brooklyn.entity.basic.lifecycle;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.util.collections.MutableMap;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+@Test
+public class BatchedScriptTest {
+
+    List<String> commands = new ArrayList<String>();
+    int executions;
+
+    @BeforeMethod
+    private void setup() {
+        commands.clear();
+        executions = 0;
+    }
+
+    private ScriptRunner newMockRunner(final int result, final String stdout) {
+        return new ScriptRunner() {
+            @Override
+            public int execute(List<String> script, String summaryForLogging) {
+                return execute(new MutableMap(), script, summaryForLogging);
+            }
+            @Override
+            public int execute(Map flags, List<String> script, String summaryForLogging) {
+                executions++;
+                commands.addAll(script);
+                try {
+                    ((OutputStream) flags.get("out")).write(stdout.getBytes());
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+                return result;
+            }
+        };
+    }
+
+    public void testSingleExecutionContainsAllSections() {
+        new BatchedScript(newMockRunner(0, ""), "mock")
+                .header("h1")
+                .check("c", "c1")
+                .section("s", "s1", "s2")
+                .sectionUnless("u", "u0", "u1")
+                .execute();
+        assertEquals(executions, 1);
+        assertEquals(commands.get(0), "h1");
+        for (String line : ImmutableList.of("c1", "s1", "s2", "u1")) {
+            assertTrue(commands.contains(line), "missing "+line+" in "+commands);
+        }
+        assertTrue(commands.contains("if ( u0 ) > /dev/null 2>&1 ; then"), "commands="+commands);
+    }
+
+    public void testParsesResultsAndOutput() {
+        String stdout =
+                "BROOKLYN-BATCH:BEGIN:c\n" +
+                "BROOKLYN-BATCH:END:c:1\n" +
+                "BROOKLYN-BATCH:SKIPPED:u\n" +
+                "BROOKLYN-BATCH:BEGIN:s\n" +
+                "hello\n" +
+                "world\n" +
+                "BROOKLYN-BATCH:END:s:0\n";
+        BatchedScript.Result result = new BatchedScript(newMockRunner(0, stdout), "mock")
+                .check("c", "c1")
+                .sectionUnless("u", "u0", "u1")
+                .section("s", "s1")
+                .execute();
+
+        assertEquals(result.getExitCode(), 0);
+        assertEquals(result.getResultCodes(), ImmutableMap.of("c", 1, "s", 0));
+        assertFalse(result.isSuccess("c"));
+        assertTrue(result.isSuccess("s"));
+        assertTrue(result.isSkipped("u"));
+        assertFalse(result.wasRun("u"));
+        assertNull(result.getResultCode("u"));
+        assertEquals(result.getStdout("s"), "hello\nworld\n");
+    }
+
+    public void testIncompleteSectionHasNoResult() {
+        String stdout =
+                "BROOKLYN-BATCH:BEGIN:s\n" +
+                "partial\n";
+        BatchedScript.Result result = new BatchedScript(newMockRunner(255, stdout), "mock")
+                .section("s", "s1")
+                .execute();
+        assertEquals(result.getExitCode(), 255);
+        assertFalse(result.wasRun("s"));
+        assertNull(result.getStdout("s"));
+    }
+
+    public void testFailOnNonZero() {
+        String stdout =
+                "BROOKLYN-BATCH:BEGIN:s\n" +
+                "BROOKLYN-BATCH:END:s:3\n";
+        try {
+            new BatchedScript(newMockRunner(3, stdout), "mock")
+                    .section("s", "s1")
+                    .failOnNonZeroResultCode()
+                    .execute();
+            fail("should have failed");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("(in s)"), "message="+e.getMessage());
+        }
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void testRejectsDuplicateSection() {
+        new BatchedScript(newMockRunner(0, ""), "mock").section("s", "s1").section("s", "s2");
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void testRejectsInvalidSectionName() {
+        new BatchedScript(newMockRunner(0, ""), "mock").section("a b", "s1");
+    }
+
+    @Test(groups = "Integration")
+    public void testSectionsOnLocalhost() {
+        BatchedScript.Result result = new BatchedScript(ScriptHelperTest.newLocalhostRunner(), "mock")
+                .header("export GREETING=hello")
+                .check("not-running", "exit 1")
+                .section("greet", "echo $GREETING", "exit 0", "echo never")
+                .sectionUnless("skipped", "true", "echo never")
+                .sectionUnless("not-skipped", "false", "echo ran")
+                .execute();
+
+        assertEquals(result.getExitCode(), 0, "result="+result);
+        assertEquals(result.getResultCode("not-running"), (Integer)1);
+        assertEquals(result.getResultCode("greet"), (Integer)0);
+        assertEquals(result.getStdout("greet").trim(), "hello");
+        assertTrue(result.isSkipped("skipped"));
+        assertEquals(result.getStdout("not-skipped").trim(), "ran");
+    }
+
+    @Test(groups = "Integration")
+    public void testStopsOnFirstFailureOnLocalhost() {
+        BatchedScript.Result result = new BatchedScript(ScriptHelperTest.newLocalhostRunner(), "mock")
+                .section("first", "false", "echo never")
+                .section("second", "echo never")
+                .execute();
+
+        assertEquals(result.getExitCode(), 1, "result="+result);
+        assertEquals(result.getResultCode("first"), (Integer)1);
+        assertEquals(result.getStdout("first").trim(), "");
+        assertFalse(result.wasRun("second"));
+    }
+
+    @Test(groups = "Integration")
+    public void testContinuesAfterFailureOnLocalhost() {
+        BatchedScript.Result result = new BatchedScript(ScriptHelperTest.newLocalhostRunner(), "mock")
+                .stopOnFailure(false)
+                .section("first", "exit 4")
+                .section("second", "exit 5")
+                .execute();
+
+        assertEquals(result.getExitCode(), 4, "result="+result);
+        assertEquals(result.getResultCodes(), ImmutableMap.of("first", 4, "second", 5));
+    }
+}
@@ -51,7 +51,7 @@ public class ActiveMQSshDriver extends JavaSoftwareProcessSshDriver implements A
         expandedInstallDir = getInstallDir()+"/"+resolver.getUnpackedDirectoryName(format("apache-activemq-%s", getVersion()));
 
         List<String> commands = new LinkedList<String>();
-        commands.addAll(CommonCommands.downloadUrlAs(urls, saveAs));
+        commands.addAll(downloadCommands(urls, saveAs));
         commands.add(CommonCommands.INSTALL_TAR);
         commands.add("tar xzfv "+saveAs);
 
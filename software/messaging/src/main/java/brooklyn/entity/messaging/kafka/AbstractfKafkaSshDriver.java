@@ -76,7 +76,7 @@ public abstract class AbstractfKafkaSshDriver extends JavaSoftwareProcessSshDriv
         expandedInstallDir = getInstallDir()+"/"+resolver.getUnpackedDirectoryName(format("kafka-%s-src", getVersion()));
 
         List<String> commands = new LinkedList<String>();
-        commands.addAll(CommonCommands.downloadUrlAs(urls, saveAs));
+        commands.addAll(downloadCommands(urls, saveAs));
         commands.add(CommonCommands.INSTALL_TAR);
         commands.add("tar xzfv "+saveAs);
         commands.add("cd "+expandedInstallDir);
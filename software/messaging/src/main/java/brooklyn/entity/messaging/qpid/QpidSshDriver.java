@@ -57,7 +57,7 @@ public class QpidSshDriver extends JavaSoftwareProcessSshDriver implements QpidD
         expandedInstallDir = getInstallDir()+"/"+resolver.getUnpackedDirectoryName(format("qpid-broker-%s", getVersion()));
         
         List<String> commands = new LinkedList<String>();
-        commands.addAll( CommonCommands.downloadUrlAs(urls, saveAs));
+        commands.addAll( downloadCommands(urls, saveAs));
         commands.add(CommonCommands.INSTALL_TAR);
         commands.add("tar xzfv "+saveAs);
 
@@ -64,7 +64,7 @@ public class RabbitSshDriver extends AbstractSoftwareProcessSshDriver implements
                                 "apt", "erlang-nox erlang-dev",
                                 "port", "erlang@"+getErlangVersion()+"+ssl"),
                         "erlang"))
-                .addAll(CommonCommands.downloadUrlAs(urls, saveAs))
+                .addAll(downloadCommands(urls, saveAs))
                 .add(CommonCommands.installExecutable("tar"))
                 .add(format("tar xvzf %s",saveAs))
                 .build();
@@ -77,7 +77,7 @@ public class CassandraNodeSshDriver extends JavaSoftwareProcessSshDriver impleme
         expandedInstallDir = getInstallDir()+"/"+resolver.getUnpackedDirectoryName(format("apache-cassandra-%s", getVersion()));
         
         List<String> commands = ImmutableList.<String>builder()
-                .addAll(CommonCommands.downloadUrlAs(urls, saveAs))
+                .addAll(downloadCommands(urls, saveAs))
                 .add(CommonCommands.INSTALL_TAR)
                 .add("tar xzfv " + saveAs)
                 .build();
@@ -48,7 +48,7 @@ public class MongoDBSshDriver extends AbstractSoftwareProcessSshDriver implement
         expandedInstallDir = getInstallDir()+"/"+resolver.getUnpackedDirectoryName(getBaseName());
 
         List<String> commands = new LinkedList<String>();
-        commands.addAll(CommonCommands.downloadUrlAs(urls, saveAs));
+        commands.addAll(downloadCommands(urls, saveAs));
         commands.add(CommonCommands.INSTALL_TAR);
         commands.add("tar xzfv " + saveAs);
 
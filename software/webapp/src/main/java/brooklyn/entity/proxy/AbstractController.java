@@ -47,8 +47,19 @@ public interface AbstractController extends SoftwareProcess, LoadBalancer {
     public static final BasicConfigKey<ProxySslConfig> SSL_CONFIG = 
         new BasicConfigKey<ProxySslConfig>(ProxySslConfig.class, "proxy.ssl.config", "configuration (e.g. certificates) for SSL; will use SSL if set, not use SSL if not set");
 
+    @SetFromFlag("updateCoalescePeriod")
+    public static final BasicConfigKey<Long> UPDATE_COALESCE_PERIOD = new BasicConfigKey<Long>(
+            Long.class, "proxy.update.coalescePeriod", "Time (in milliseconds) to wait after a change to the server pool before updating " +
+            "the configuration, so that further changes in that time are applied by the same update (0 to update immediately)", 0L);
+
     public static final AttributeSensor<String> ROOT_URL = WebAppService.ROOT_URL;
     
+    public static final BasicAttributeSensor<Long> RELOAD_COUNT = new BasicAttributeSensor<Long>(
+            Long.class, "proxy.reload.count", "Number of times the configuration has been updated and reloaded in response to changes");
+    
+    public static final BasicAttributeSensor<Long> UPDATE_LATENCY = new BasicAttributeSensor<Long>(
+            Long.class, "proxy.update.latency", "Time (in milliseconds) from the first change to the server pool until the resulting update completed");
+    
     public static final BasicAttributeSensor<Set<String>> SERVER_POOL_TARGETS = new BasicAttributeSensor(
             Set.class, "proxy.serverpool.targets", "The downstream targets in the server pool");
     
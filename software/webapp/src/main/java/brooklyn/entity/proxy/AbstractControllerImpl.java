@@ -6,6 +6,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nullable;
 
@@ -28,6 +29,7 @@ import brooklyn.event.AttributeSensor;
 import brooklyn.location.access.BrooklynAccessUtils;
 import brooklyn.mementos.EntityMemento;
 import brooklyn.util.collections.MutableMap;
+import brooklyn.util.time.Time;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Maps;
@@ -50,6 +52,12 @@ public abstract class AbstractControllerImpl extends SoftwareProcessImpl impleme
 
     protected volatile boolean isActive;
     protected volatile boolean updateNeeded = true;
+    
+    /** Whether an update has been scheduled by {@link #scheduleUpdate()}, but not yet started */
+    protected final AtomicBoolean updatePending = new AtomicBoolean(false);
+    
+    /** When the first change not yet applied by an update was seen, or -1 if none */
+    protected volatile long firstPendingChangeTime = -1;
 
     protected AbstractMembershipTrackingPolicy serverPoolMemberTrackerPolicy;
     protected Set<String> serverPoolAddresses = Sets.newLinkedHashSet();
@@ -232,10 +240,20 @@ public abstract class AbstractControllerImpl extends SoftwareProcessImpl impleme
 
     /** 
      * Implementations should update the configuration so that 'serverPoolAddresses' are targeted.
-     * The caller will subsequently call reload to apply the new configuration.
+     * The caller will subsequently call reload to apply the new configuration, 
+     * unless {@link #isReloadNeeded()} says otherwise.
      */
     protected abstract void reconfigureService();
     
+    /**
+     * Whether the last call to {@link #reconfigureService()} changed the configuration, so that it needs 
+     * to be reloaded. Defaults to true; implementations that can tell when the configuration is unchanged
+     * should override this, to avoid needless reloads.
+     */
+    protected boolean isReloadNeeded() {
+        return true;
+    }
+    
     @Override
     public synchronized void update() {
         if (!isActive()) updateNeeded = true;
@@ -243,11 +261,58 @@ public abstract class AbstractControllerImpl extends SoftwareProcessImpl impleme
             updateNeeded = false;
             LOG.debug("Updating {} in response to changes", this);
             reconfigureService();
-            LOG.debug("Reloading {} in response to changes", this);
-            invoke(RELOAD);
+            if (isReloadNeeded()) {
+                LOG.debug("Reloading {} in response to changes", this);
+                invoke(RELOAD);
+                Long count = getAttribute(RELOAD_COUNT);
+                setAttribute(RELOAD_COUNT, (count != null ? count : 0L) + 1);
+            } else {
+                LOG.debug("Not reloading {}: configuration unchanged", this);
+            }
+            long changeTime = firstPendingChangeTime;
+            if (changeTime >= 0) {
+                firstPendingChangeTime = -1;
+                setAttribute(UPDATE_LATENCY, currentTimeMillis() - changeTime);
+            }
         }
         setAttribute(SERVER_POOL_TARGETS, serverPoolAddresses);
     }
+    
+    /**
+     * Updates in response to a change of the server pool. If {@link #UPDATE_COALESCE_PERIOD} is positive then 
+     * the update is done in the background after that delay, so that any further changes in the meantime 
+     * are applied by the same update; otherwise it is done immediately.
+     */
+    protected void scheduleUpdate() {
+        if (firstPendingChangeTime < 0) firstPendingChangeTime = currentTimeMillis();
+        
+        Long period = getConfig(UPDATE_COALESCE_PERIOD);
+        if (period == null || period <= 0 || !isActive()) {
+            update();
+        } else if (updatePending.compareAndSet(false, true)) {
+            final long delay = period;
+            getExecutionContext().submit(MutableMap.of("displayName", "Coalesced update of "+this), new Runnable() {
+                public void run() {
+                    try {
+                        waitForCoalescePeriod(delay);
+                    } finally {
+                        // changes from now on need another update
+                        updatePending.set(false);
+                    }
+                    update();
+                }});
+        }
+    }
+
+    /** Waits before a coalesced update (see {@link #scheduleUpdate()}); overridden in tests. */
+    protected void waitForCoalescePeriod(long period) {
+        Time.sleep(period);
+    }
+    
+    /** The time used to measure {@link #UPDATE_LATENCY}; overridden in tests. */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
 
     protected synchronized void resetServerPoolMemberTrackerPolicy() {
         serverPoolMemberTrackerPolicy.reset();
@@ -313,7 +378,7 @@ public abstract class AbstractControllerImpl extends SoftwareProcessImpl impleme
 
         LOG.info("Adding to {}, new member {} with address {}", new Object[] {this, member, address});
         
-        update();
+        scheduleUpdate();
         serverPoolTargets.put(member, address);
     }
     
@@ -330,7 +395,7 @@ public abstract class AbstractControllerImpl extends SoftwareProcessImpl impleme
         
         LOG.info("Removing from {}, member {} with address {}", new Object[] {this, member, address});
         
-        update();
+        scheduleUpdate();
         serverPoolTargets.remove(member);
     }
     
@@ -81,6 +81,11 @@ public interface NginxController extends AbstractController, HasShortName {
     ConfigKey<String> WITH_CC_OPT = new BasicConfigKey<String>(
             String.class, "nginx.install.withCcOpt", "String to pass in with --with-cc-opt=\"<val>\"", "-I /usr/local/include");
 
+    @SetFromFlag("separateUpstreams")
+    ConfigKey<Boolean> SEPARATE_UPSTREAMS = new BasicConfigKey<Boolean>(
+            Boolean.class, "nginx.config.separateUpstreams", "Whether to write the upstream (server pool) blocks to a separate file " +
+            "included by the main config file, so that a change of pool members only needs that small file re-uploaded", false);
+
     boolean isSticky();
 
     @Effector(description="Gets the current server configuration (by brooklyn recalculating what the config should be); does not affect the server")
@@ -88,6 +93,12 @@ public interface NginxController extends AbstractController, HasShortName {
 
     String getConfigFile();
 
+    /**
+     * The upstream blocks, to be included by the main config file;
+     * or null if not using {@link #SEPARATE_UPSTREAMS} (in which case they are part of {@link #getConfigFile()}).
+     */
+    String getUpstreamsConfigFile();
+
     boolean appendSslConfig(String id, StringBuilder out, String prefix, ProxySslConfig ssl,
             boolean sslBlock, boolean certificateBlock);
 }
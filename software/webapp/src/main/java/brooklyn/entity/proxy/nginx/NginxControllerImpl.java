@@ -3,11 +3,13 @@ package brooklyn.entity.proxy.nginx;
 import static java.lang.String.format;
 
 import java.io.ByteArrayInputStream;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,11 +35,16 @@ import brooklyn.util.text.Strings;
 import com.google.common.base.Predicates;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 
 /**
  * An entity that represents an Nginx proxy (e.g. for routing requests to servers in a cluster).
@@ -88,7 +95,12 @@ public class NginxControllerImpl extends AbstractControllerImpl implements Nginx
             throw new IllegalStateException("Cannot reload (no driver instance; stopped? (state="+state+")");
         }
         
+        long version = configVersion.get();
         driver.reload();
+        // only now are the config files up to that version applied; if the reload failed then they still need reloading
+        for (long reloaded = reloadedConfigVersion.get(); reloaded < version; reloaded = reloadedConfigVersion.get()) {
+            if (reloadedConfigVersion.compareAndSet(reloaded, version)) break;
+        }
     }
  
     public boolean isSticky() {
@@ -128,14 +140,14 @@ public class NginxControllerImpl extends AbstractControllerImpl implements Nginx
             // Listen to the targets of each url-mapping changing
             subscribeToMembers(urlMappings, UrlMapping.TARGET_ADDRESSES, new SensorEventListener<Collection<String>>() {
                     @Override public void onEvent(SensorEvent<Collection<String>> event) {
-                        update(); 
+                        scheduleUpdate(); 
                     }});
             
             // Listen to url-mappings being added and removed
             AbstractMembershipTrackingPolicy policy = new AbstractMembershipTrackingPolicy() {
-                @Override protected void onEntityChange(Entity member) { update(); }
-                @Override protected void onEntityAdded(Entity member) { update(); }
-                @Override protected void onEntityRemoved(Entity member) { update(); }
+                @Override protected void onEntityChange(Entity member) { scheduleUpdate(); }
+                @Override protected void onEntityAdded(Entity member) { scheduleUpdate(); }
+                @Override protected void onEntityRemoved(Entity member) { scheduleUpdate(); }
             };
             addPolicy(policy);
             policy.setGroup(urlMappings);
@@ -171,22 +183,37 @@ public class NginxControllerImpl extends AbstractControllerImpl implements Nginx
         return getConfigFile();
     }
     
+    /** Hashes of the files last copied to the server (keyed by destination path), and the driver they were copied with */
+    private final Map<String, HashCode> uploadedConfigHashes = Maps.newConcurrentMap();
+    private volatile NginxSshDriver uploadedConfigDriver;
+    
+    /** Incremented whenever a config file on the server is changed, and the value when nginx last successfully reloaded them;
+     * initially differing, so that the first update always reloads */
+    private final AtomicLong configVersion = new AtomicLong(0);
+    private final AtomicLong reloadedConfigVersion = new AtomicLong(-1);
+    
     @Override
     protected void reconfigureService() {
-
         String cfg = getConfigFile();
         if (cfg==null) return;
+        String upstreams = getUpstreamsConfigFile();
         
         if (LOG.isDebugEnabled()) LOG.debug("Reconfiguring {}, targetting {} and {}", new Object[] {this, serverPoolAddresses, findUrlMappings()});
         if (LOG.isTraceEnabled()) LOG.trace("Reconfiguring {}, config file:\n{}", this, cfg);
         
         NginxSshDriver driver = (NginxSshDriver)getDriver();
-        if (!driver.isCustomizationCompleted()) {
-            if (LOG.isDebugEnabled()) LOG.debug("Reconfiguring {}, but driver's customization not yet complete so aborting");
+        if (driver==null || !driver.isCustomizationCompleted()) {
+            if (LOG.isDebugEnabled()) LOG.debug("Reconfiguring {}, but driver's customization not yet complete so aborting", this);
             return;
         }
         
-        driver.getMachine().copyTo(new ByteArrayInputStream(cfg.getBytes()), driver.getRunDir()+"/conf/server.conf");
+        // upstreams first, so that the main config file never includes a missing file
+        if (upstreams != null && uploadIfChanged(driver, upstreams, getUpstreamsConfigFilePath(driver))) {
+            configVersion.incrementAndGet();
+        }
+        if (uploadIfChanged(driver, cfg, driver.getRunDir()+"/conf/server.conf")) {
+            configVersion.incrementAndGet();
+        }
         
         installSslKeys("global", getConfig(SSL_CONFIG));
         
@@ -196,6 +223,32 @@ public class NginxControllerImpl extends AbstractControllerImpl implements Nginx
         }
     }
     
+    /**
+     * Copies the given contents to the server, unless the server already has exactly those contents
+     * (as last uploaded by this entity); returns whether the file was copied.
+     */
+    private boolean uploadIfChanged(NginxSshDriver driver, String contents, String destination) {
+        if (driver != uploadedConfigDriver) {
+            uploadedConfigHashes.clear();
+            uploadedConfigDriver = driver;
+        }
+        byte[] bytes = contents.getBytes();
+        HashCode hash = Hashing.md5().hashBytes(bytes);
+        if (hash.equals(uploadedConfigHashes.get(destination))) {
+            if (LOG.isDebugEnabled()) LOG.debug("Reconfiguring {}, but {} unchanged so not uploading", this, destination);
+            return false;
+        }
+        driver.getMachine().copyTo(new ByteArrayInputStream(bytes), destination);
+        uploadedConfigHashes.put(destination, hash);
+        return true;
+    }
+    
+    /** Whether any config file has changed on the server since nginx last successfully reloaded */
+    @Override
+    protected boolean isReloadNeeded() {
+        return reloadedConfigVersion.get() < configVersion.get();
+    }
+    
     private final Set<String> installedKeysCache = Sets.newLinkedHashSet();
 
     /** installs SSL keys named as  ID.{crt,key}  where nginx can find them;
@@ -226,14 +279,13 @@ public class NginxControllerImpl extends AbstractControllerImpl implements Nginx
     }
 
     public String getConfigFile() {
-        // TODO should refactor this method to a new class with methods e.g. NginxConfigFileGenerator...
-        
         NginxSshDriver driver = (NginxSshDriver)getDriver();
         if (driver==null) {
             if (LOG.isDebugEnabled()) LOG.debug("No driver for {}, so not generating config file (is entity stopping? state={})", 
                 this, getAttribute(NginxController.SERVICE_STATE));
             return null;
         }
+        boolean separateUpstreams = isSeparateUpstreams();
         
         StringBuilder config = new StringBuilder();
         config.append("\n");
@@ -243,6 +295,10 @@ public class NginxControllerImpl extends AbstractControllerImpl implements Nginx
         config.append("}\n");
         config.append("http {\n");
         
+        if (separateUpstreams) {
+            config.append("  include "+getUpstreamsConfigFilePath(driver)+";\n");
+        }
+        
         ProxySslConfig globalSslConfig = getConfig(SSL_CONFIG);
         boolean ssl = globalSslConfig != null;
 
@@ -263,14 +319,9 @@ public class NginxControllerImpl extends AbstractControllerImpl implements Nginx
         
         // For basic round-robin across the server-pool
         if (serverPoolAddresses != null && serverPoolAddresses.size() > 0) {
-            config.append(format("  upstream "+getId()+" {\n"));
-            if (isSticky()){
-                config.append("    sticky;\n");
-            }
-            for (String address: serverPoolAddresses){
-                config.append("    server "+address+";\n");
+            if (!separateUpstreams) {
+                config.append(getUpstreamSection(getId(), serverPoolAddresses));
             }
-            config.append("  }\n");
             config.append("  server {\n");
             config.append(getCodeForServerConfig());
             config.append("    listen "+getPort()+";\n");
@@ -292,98 +343,192 @@ public class NginxControllerImpl extends AbstractControllerImpl implements Nginx
             }
         }
         
+        if (!separateUpstreams) {
+            appendUrlMappingUpstreams(config, mappings);
+        }
+        
+        Set<String> usedSections = Sets.newHashSet();
+        for (String domain : mappingsByDomain.keySet()) {
+            config.append(getDomainServerSection(domain, mappingsByDomain.get(domain), globalSslConfig, usedSections));
+        }
+        
+        config.append("}\n");
+
+        // forget sections for domains and upstreams that are no longer used
+        usedSections.addAll(getUpstreamSectionKeys(mappings));
+        sectionCache.keySet().retainAll(usedSections);
+        
+        return config.toString();
+    }
+
+    @Override
+    public String getUpstreamsConfigFile() {
+        NginxSshDriver driver = (NginxSshDriver)getDriver();
+        if (driver==null || !isSeparateUpstreams()) return null;
+        
+        StringBuilder config = new StringBuilder();
+        if (serverPoolAddresses != null && serverPoolAddresses.size() > 0) {
+            config.append(getUpstreamSection(getId(), serverPoolAddresses));
+        }
+        appendUrlMappingUpstreams(config, findUrlMappings());
+        return config.toString();
+    }
+    
+    protected boolean isSeparateUpstreams() {
+        return Boolean.TRUE.equals(getConfig(SEPARATE_UPSTREAMS));
+    }
+    
+    protected String getUpstreamsConfigFilePath(NginxSshDriver driver) {
+        return driver.getRunDir()+"/conf/upstreams.conf";
+    }
+    
+    /** A rendered section of the config file, along with the inputs it was rendered from */
+    private static class RenderedSection {
+        final List<?> inputs;
+        final String text;
+        RenderedSection(List<?> inputs, String text) {
+            this.inputs = inputs;
+            this.text = text;
+        }
+    }
+    
+    /**
+     * Sections (upstream and per-domain server blocks) rendered by the last config generation, keyed by section;
+     * a section is only re-rendered when its inputs change.
+     */
+    private final Map<String, RenderedSection> sectionCache = Maps.newConcurrentMap();
+    
+    private String getCachedSection(String key, List<?> inputs) {
+        RenderedSection section = sectionCache.get(key);
+        return (section != null && section.inputs.equals(inputs)) ? section.text : null;
+    }
+    
+    private String putCachedSection(String key, List<?> inputs, String text) {
+        sectionCache.put(key, new RenderedSection(inputs, text));
+        return text;
+    }
+    
+    private Set<String> getUpstreamSectionKeys(Iterable<UrlMapping> mappings) {
+        Set<String> result = Sets.newHashSet();
+        result.add("upstream:"+getId());
+        for (UrlMapping um : mappings) {
+            result.add("upstream:"+um.getUniqueLabel());
+        }
+        return result;
+    }
+    
+    private void appendUrlMappingUpstreams(StringBuilder config, Iterable<UrlMapping> mappings) {
         for (UrlMapping um : mappings) {
             Collection<String> addrs = um.getAttribute(UrlMapping.TARGET_ADDRESSES);
             if (addrs != null && addrs.size() > 0) {
-                String location = um.getPath() != null ? um.getPath() : "/";
-                config.append(format("  upstream "+um.getUniqueLabel()+" {\n"));
-                if (isSticky()){
-                    config.append("    sticky;\n");
-                }
-                for (String address: addrs) {
-                    config.append("    server "+address+";\n");
-                }
-                config.append("  }\n");
+                config.append(getUpstreamSection(um.getUniqueLabel(), addrs));
             }
         }
+    }
+    
+    protected String getUpstreamSection(String name, Collection<String> addresses) {
+        String key = "upstream:"+name;
+        List<?> inputs = Arrays.asList(isSticky(), ImmutableList.copyOf(addresses));
+        String result = getCachedSection(key, inputs);
+        if (result != null) return result;
         
-        for (String domain : mappingsByDomain.keySet()) {
-            config.append("  server {\n");
-            config.append(getCodeForServerConfig());
-            config.append("    listen "+getPort()+";\n");
-            config.append("    server_name "+domain+";\n");
-            boolean hasRoot = false;
-
-            // set up SSL
-            ProxySslConfig localSslConfig = null;
-            for (UrlMapping mappingInDomain : mappingsByDomain.get(domain)) {
-                ProxySslConfig sslConfig = mappingInDomain.getConfig(UrlMapping.SSL_CONFIG);
-                if (sslConfig!=null) {
-                    verifyConfig(sslConfig);
-                    if (localSslConfig!=null) {
-                        if (localSslConfig.equals(sslConfig)) {
-                            //ignore identical config specified on multiple mappings
-                        } else {
-                            LOG.warn("{} mapping {} provides SSL config for {} when a different config had already been provided by another mapping, ignoring this one",
-                                    new Object[] {this, mappingInDomain, domain});
-                        }
-                    } else if (globalSslConfig!=null) {
-                        if (globalSslConfig.equals(sslConfig)) {
-                            //ignore identical config specified on multiple mappings
-                        } else {
-                            LOG.warn("{} mapping {} provides SSL config for {} when a different config had been provided at root nginx scope, ignoring this one",
-                                    new Object[] {this, mappingInDomain, domain});
-                        }
+        StringBuilder config = new StringBuilder();
+        config.append(format("  upstream "+name+" {\n"));
+        if (isSticky()){
+            config.append("    sticky;\n");
+        }
+        for (String address: addresses){
+            config.append("    server "+address+";\n");
+        }
+        config.append("  }\n");
+        return putCachedSection(key, inputs, config.toString());
+    }
+    
+    protected String getDomainServerSection(String domain, Collection<UrlMapping> mappingsInDomain, ProxySslConfig globalSslConfig, Set<String> usedSections) {
+        String key = "server:"+domain;
+        usedSections.add(key);
+        List<Object> inputs = Lists.<Object>newArrayList(getPort(), getCodeForServerConfig(), getCodeFor404(), globalSslConfig);
+        for (UrlMapping mapping : mappingsInDomain) {
+            Collection<UrlRewriteRule> rewrites = mapping.getConfig(UrlMapping.REWRITES);
+            inputs.add(Arrays.asList(mapping.getUniqueLabel(), mapping.getPath(), mapping.getConfig(UrlMapping.SSL_CONFIG),
+                    rewrites != null ? ImmutableList.copyOf(rewrites) : null));
+        }
+        String result = getCachedSection(key, inputs);
+        if (result != null) return result;
+        
+        StringBuilder config = new StringBuilder();
+        config.append("  server {\n");
+        config.append(getCodeForServerConfig());
+        config.append("    listen "+getPort()+";\n");
+        config.append("    server_name "+domain+";\n");
+        boolean hasRoot = false;
+
+        // set up SSL
+        ProxySslConfig localSslConfig = null;
+        for (UrlMapping mappingInDomain : mappingsInDomain) {
+            ProxySslConfig sslConfig = mappingInDomain.getConfig(UrlMapping.SSL_CONFIG);
+            if (sslConfig!=null) {
+                verifyConfig(sslConfig);
+                if (localSslConfig!=null) {
+                    if (localSslConfig.equals(sslConfig)) {
+                        //ignore identical config specified on multiple mappings
+                    } else {
+                        LOG.warn("{} mapping {} provides SSL config for {} when a different config had already been provided by another mapping, ignoring this one",
+                                new Object[] {this, mappingInDomain, domain});
+                    }
+                } else if (globalSslConfig!=null) {
+                    if (globalSslConfig.equals(sslConfig)) {
+                        //ignore identical config specified on multiple mappings
                     } else {
-                        //new config, is okay
-                        localSslConfig = sslConfig;
+                        LOG.warn("{} mapping {} provides SSL config for {} when a different config had been provided at root nginx scope, ignoring this one",
+                                new Object[] {this, mappingInDomain, domain});
                     }
+                } else {
+                    //new config, is okay
+                    localSslConfig = sslConfig;
                 }
             }
-            boolean serverSsl;
-            if (localSslConfig!=null) {
-                serverSsl = appendSslConfig(""+domain, config, "    ", localSslConfig, true, true);
-            } else if (globalSslConfig!=null) {
-                // can't set ssl_certificate globally, so do it per server
-                serverSsl = true; 
-            }
+        }
+        boolean serverSsl;
+        if (localSslConfig!=null) {
+            serverSsl = appendSslConfig(""+domain, config, "    ", localSslConfig, true, true);
+        } else if (globalSslConfig!=null) {
+            // can't set ssl_certificate globally, so do it per server
+            serverSsl = true; 
+        }
 
-            for (UrlMapping mappingInDomain : mappingsByDomain.get(domain)) {
-                // TODO Currently only supports "~" for regex. Could add support for other options,
-                // such as "~*", "^~", literals, etc.
-                boolean isRoot = mappingInDomain.getPath()==null || mappingInDomain.getPath().length()==0 || mappingInDomain.getPath().equals("/");
-                if (isRoot && hasRoot) {
-                    LOG.warn(""+this+" mapping "+mappingInDomain+" provides a duplicate / proxy, ignoring");
-                } else {
-                    hasRoot |= isRoot;
-                    String location = isRoot ? "/" : "~ " + mappingInDomain.getPath();
-                    config.append("    location "+location+" {\n");
-                    Collection<UrlRewriteRule> rewrites = mappingInDomain.getConfig(UrlMapping.REWRITES);
-                    if (rewrites != null && rewrites.size() > 0) {
-                        for (UrlRewriteRule rule: rewrites) {
-                            config.append("      rewrite \"^"+rule.getFrom()+"$\" \""+rule.getTo()+"\"");
-                            if (rule.isBreak()) config.append(" break");
-                            config.append(" ;\n");
-                        }
+        for (UrlMapping mappingInDomain : mappingsInDomain) {
+            // TODO Currently only supports "~" for regex. Could add support for other options,
+            // such as "~*", "^~", literals, etc.
+            boolean isRoot = mappingInDomain.getPath()==null || mappingInDomain.getPath().length()==0 || mappingInDomain.getPath().equals("/");
+            if (isRoot && hasRoot) {
+                LOG.warn(""+this+" mapping "+mappingInDomain+" provides a duplicate / proxy, ignoring");
+            } else {
+                hasRoot |= isRoot;
+                String location = isRoot ? "/" : "~ " + mappingInDomain.getPath();
+                config.append("    location "+location+" {\n");
+                Collection<UrlRewriteRule> rewrites = mappingInDomain.getConfig(UrlMapping.REWRITES);
+                if (rewrites != null && rewrites.size() > 0) {
+                    for (UrlRewriteRule rule: rewrites) {
+                        config.append("      rewrite \"^"+rule.getFrom()+"$\" \""+rule.getTo()+"\"");
+                        if (rule.isBreak()) config.append(" break");
+                        config.append(" ;\n");
                     }
-                    config.append("      proxy_pass "+
-                        (localSslConfig != null && localSslConfig.getTargetIsSsl() ? "https" :
-                         (localSslConfig == null && globalSslConfig != null && globalSslConfig.getTargetIsSsl()) ? "https" :
-                         "http")+
-                        "://"+mappingInDomain.getUniqueLabel()+" ;\n");
-                    config.append("    }\n");
                 }
+                config.append("      proxy_pass "+
+                    (localSslConfig != null && localSslConfig.getTargetIsSsl() ? "https" :
+                     (localSslConfig == null && globalSslConfig != null && globalSslConfig.getTargetIsSsl()) ? "https" :
+                     "http")+
+                    "://"+mappingInDomain.getUniqueLabel()+" ;\n");
+                config.append("    }\n");
             }
-            if (!hasRoot) {
-                //provide a root block giving 404 if there isn't one for this server
-                config.append("    location / { \n"+getCodeFor404()+"    }\n");
-            }
-            config.append("  }\n");
         }
-        
-        config.append("}\n");
-
-        return config.toString();
+        if (!hasRoot) {
+            //provide a root block giving 404 if there isn't one for this server
+            config.append("    location / { \n"+getCodeFor404()+"    }\n");
+        }
+        config.append("  }\n");
+        return putCachedSection(key, inputs, config.toString());
     }
 
     protected String getCodeForServerConfig() {
@@ -120,7 +120,7 @@ public class NginxSshDriver extends AbstractSoftwareProcessSshDriver implements
         cmds.add(CommonCommands.installPackage(installGccPackageFlags, "nginx-prerequisites-gcc"));
         cmds.add(CommonCommands.installPackage(installMakePackageFlags, "nginx-prerequisites-make"));
         cmds.add(CommonCommands.installPackage(installPackageFlags, "nginx-prerequisites"));
-        cmds.addAll(CommonCommands.downloadUrlAs(nginxUrls, nginxSaveAs));
+        cmds.addAll(downloadCommands(nginxUrls, nginxSaveAs));
         
         if (isMac) {
             String pcreVersion = entity.getConfig(NginxController.PCRE_VERSION);
@@ -131,7 +131,7 @@ public class NginxSshDriver extends AbstractSoftwareProcessSshDriver implements
             String pcreExpandedInstallDirname = pcreResolver.getUnpackedDirectoryName("pcre-"+pcreVersion);
 
             // Install PCRE
-            cmds.addAll(CommonCommands.downloadUrlAs(pcreUrls, pcreSaveAs));
+            cmds.addAll(downloadCommands(pcreUrls, pcreSaveAs));
             cmds.add(format("mkdir -p %s/pcre-dist", getInstallDir()));
             cmds.add(format("tar xvzf %s", pcreSaveAs));
             cmds.add(format("cd %s", pcreExpandedInstallDirname));
@@ -146,7 +146,7 @@ public class NginxSshDriver extends AbstractSoftwareProcessSshDriver implements
 
         if (sticky) {
             cmds.add("cd src");
-            cmds.addAll(CommonCommands.downloadUrlAs(stickyModuleUrls, stickyModuleSaveAs));
+            cmds.addAll(downloadCommands(stickyModuleUrls, stickyModuleSaveAs, getExpandedInstallDir()+"/src"));
             cmds.add(format("tar xvzf %s", stickyModuleSaveAs));
             cmds.add("cd ..");
         }
@@ -2,6 +2,8 @@ package brooklyn.entity.proxy.nginx;
 
 import java.io.Serializable;
 
+import com.google.common.base.Objects;
+
 /** records a rewrite rule for use in URL rewriting such as by nginx;
  * from and to are expected to be usual regex replacement strings,
  * with the convention here (for portability) that:
@@ -53,4 +55,21 @@ public class UrlRewriteRule implements Serializable {
 
     public UrlRewriteRule setBreak() { setBreak(true); return this; }
     
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(from, to, isBreak);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        UrlRewriteRule other = (UrlRewriteRule) obj;
+
+        return Objects.equal(from, other.from) &&
+                Objects.equal(to, other.to) &&
+                isBreak == other.isBreak;
+    }
 }
@@ -79,7 +79,7 @@ public class JBoss6SshDriver extends JavaWebAppSshDriver implements JBoss6Driver
         // overwrite interrupts the installer.
 
         List<String> commands = new LinkedList<String>();
-        commands.addAll(CommonCommands.downloadUrlAs(urls, saveAs));
+        commands.addAll(downloadCommands(urls, saveAs));
         commands.add(CommonCommands.installExecutable("unzip"));
         commands.add(format("unzip -o %s",saveAs));
 
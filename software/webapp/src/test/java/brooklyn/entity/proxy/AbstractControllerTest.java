@@ -12,7 +12,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +22,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import brooklyn.entity.Entity;
+import brooklyn.entity.basic.AbstractEntity;
 import brooklyn.entity.basic.ApplicationBuilder;
 import brooklyn.entity.basic.Attributes;
 import brooklyn.entity.basic.Entities;
@@ -60,6 +63,11 @@ public class AbstractControllerTest {
     
     FixedListMachineProvisioningLocation loc;
     List<Collection<String>> updates;
+    
+    /** if set, coalesced updates wait for this rather than for their period */
+    volatile CountDownLatch coalescePeriodElapsed;
+    /** if non-negative, the controller's time */
+    final AtomicLong clock = new AtomicLong(-1);
 
     @BeforeMethod(alwaysRun = true)
     public void setUp() {
@@ -107,6 +115,25 @@ public class AbstractControllerTest {
             public void reload() {
                 // no-op
             }
+            
+            @Override
+            protected void waitForCoalescePeriod(long period) {
+                CountDownLatch latch = coalescePeriodElapsed;
+                if (latch == null) {
+                    super.waitForCoalescePeriod(period);
+                } else {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        throw Exceptions.propagate(e);
+                    }
+                }
+            }
+            
+            @Override
+            protected long currentTimeMillis() {
+                return clock.get() >= 0 ? clock.get() : super.currentTimeMillis();
+            }
         };
         Entities.manage(controller);
         app.start(Arrays.asList(loc));
@@ -184,6 +211,42 @@ public class AbstractControllerTest {
         assertEventuallyAddressesMatch(ImmutableList.<Entity>of());
     }
 
+    @Test
+    public void testUpdatesCoalescedWithinPeriod() throws Exception {
+        ((AbstractEntity)controller).setConfigEvenIfOwned(AbstractController.UPDATE_COALESCE_PERIOD, 1000L);
+        coalescePeriodElapsed = new CountDownLatch(1);
+        clock.set(1000);
+        final long reloadsBefore = reloadCount();
+        
+        cluster.resize(3);
+        for (Entity it: cluster.getChildren()) { 
+            ((EntityLocal)it).setAttribute(ClusteredEntity.HTTP_PORT, 1234);
+            ((EntityLocal)it).setAttribute(Startable.SERVICE_UP, true);
+        }
+        // all three members are seen (and their updates scheduled) while the coalesce period is still running
+        Asserts.succeedsEventually(new Runnable() {
+                @Override public void run() {
+                    synchronized (controller) {
+                        assertEquals(((AbstractControllerImpl)controller).serverPoolTargets.size(), 3);
+                    }
+                }});
+        assertEquals(reloadCount(), reloadsBefore);
+        
+        clock.set(6000);
+        coalescePeriodElapsed.countDown();
+        assertEventuallyAddressesMatchCluster();
+        Asserts.succeedsEventually(new Runnable() {
+                @Override public void run() {
+                    assertEquals(reloadCount(), reloadsBefore+1);
+                }});
+        assertEquals(controller.getAttribute(AbstractController.UPDATE_LATENCY), (Long)5000L);
+    }
+
+    private long reloadCount() {
+        Long count = controller.getAttribute(AbstractController.RELOAD_COUNT);
+        return count != null ? count : 0;
+    }
+
     private void assertEventuallyAddressesMatchCluster() {
         assertEventuallyAddressesMatch(cluster.getChildren());
     }
@@ -0,0 +1,140 @@
+package brooklyn.entity.proxy.nginx;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.entity.Group;
+import brooklyn.entity.basic.ApplicationBuilder;
+import brooklyn.entity.basic.BasicGroup;
+import brooklyn.entity.basic.Entities;
+import brooklyn.entity.basic.EntityLocal;
+import brooklyn.entity.basic.SoftwareProcessDriver;
+import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.location.basic.SshMachineLocation;
+import brooklyn.test.entity.TestApplication;
+import brooklyn.util.collections.MutableMap;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests generation of the nginx config files (without installing nginx): the caching of their sections,
+ * and {@link NginxController#SEPARATE_UPSTREAMS}.
+ */
+public class NginxConfigFileTest {
+
+    private TestApplication app;
+    private Group urlMappingsGroup;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() {
+        app = ApplicationBuilder.newManagedApp(TestApplication.class);
+        urlMappingsGroup = app.createAndManageChild(EntitySpecs.spec(BasicGroup.class)
+                .configure("childrenAsMembers", true));
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() {
+        if (app != null) Entities.destroyAll(app);
+    }
+
+    @Test
+    public void testUnchangedUpstreamSectionReusedAndChangedOneRegenerated() {
+        NginxControllerImpl nginx = newController(false);
+
+        String section = nginx.getUpstreamSection("pool", ImmutableList.of("1.1.1.1:80", "1.1.1.2:80"));
+        assertSame(nginx.getUpstreamSection("pool", ImmutableList.of("1.1.1.1:80", "1.1.1.2:80")), section);
+
+        String changed = nginx.getUpstreamSection("pool", ImmutableList.of("1.1.1.1:80", "1.1.1.2:80", "1.1.1.3:80"));
+        assertNotSame(changed, section);
+        assertTrue(changed.contains("server 1.1.1.3:80;"), changed);
+    }
+
+    @Test
+    public void testUnchangedServerSectionReusedAndChangedOneRegenerated() {
+        NginxControllerImpl nginx = newController(false);
+        UrlMapping mappingA = newUrlMapping("www.example.com", "/a", "1.1.1.1:80");
+        UrlMapping mappingB = newUrlMapping("www.example.com", "/b", "1.1.1.2:80");
+
+        String section = nginx.getDomainServerSection("www.example.com", ImmutableList.of(mappingA), null, new HashSet<String>());
+        assertSame(nginx.getDomainServerSection("www.example.com", ImmutableList.of(mappingA), null, new HashSet<String>()), section);
+
+        String changed = nginx.getDomainServerSection("www.example.com", ImmutableList.of(mappingA, mappingB), null, new HashSet<String>());
+        assertNotSame(changed, section);
+        assertTrue(changed.contains("location ~ /b {"), changed);
+        assertTrue(changed.contains("proxy_pass http://"+mappingB.getUniqueLabel()+" ;"), changed);
+    }
+
+    @Test
+    public void testConfigFileIncludesUpstreamsByDefault() {
+        NginxControllerImpl nginx = newController(false);
+        newUrlMapping("a.example.com", "/", "1.1.1.1:80");
+        newUrlMapping("b.example.com", "/", "1.1.1.2:80");
+
+        assertNull(nginx.getUpstreamsConfigFile());
+        assertEquals(count("upstream ", nginx.getConfigFile()), 2);
+    }
+
+    @Test
+    public void testSeparateUpstreamsHasOneUpstreamBlockPerMapping() {
+        NginxControllerImpl nginx = newController(true);
+        UrlMapping mappingA = newUrlMapping("a.example.com", "/", "1.1.1.1:80", "1.1.1.2:80");
+        UrlMapping mappingB = newUrlMapping("b.example.com", "/", "1.1.1.3:80");
+
+        String upstreams = nginx.getUpstreamsConfigFile();
+        assertEquals(count("upstream ", upstreams), 2, upstreams);
+        assertEquals(count("upstream "+mappingA.getUniqueLabel()+" \\{", upstreams), 1, upstreams);
+        assertEquals(count("upstream "+mappingB.getUniqueLabel()+" \\{", upstreams), 1, upstreams);
+        assertEquals(count("server 1.1.1.\\d:80;", upstreams), 3, upstreams);
+
+        String config = nginx.getConfigFile();
+        assertFalse(config.contains("upstream "), config);
+        assertTrue(config.contains("include "+nginx.getUpstreamsConfigFilePath((NginxSshDriver)nginx.getDriver())+";"), config);
+    }
+
+    private NginxControllerImpl newController(boolean separateUpstreams) {
+        NginxControllerImpl nginx = new NginxControllerImpl(MutableMap.builder()
+                .put("parent", app)
+                .put("urlMappings", urlMappingsGroup)
+                .put("separateUpstreams", separateUpstreams)
+                .build()) {
+            private NginxSshDriver driver;
+
+            // a driver to generate the config for, without nginx ever being installed
+            @Override
+            public synchronized SoftwareProcessDriver getDriver() {
+                if (driver == null) driver = new NginxSshDriver(this, new SshMachineLocation(MutableMap.of("address", "localhost")));
+                return driver;
+            }
+        };
+        Entities.manage(nginx);
+        return nginx;
+    }
+
+    private UrlMapping newUrlMapping(String domain, String path, String... targetAddresses) {
+        UrlMapping result = app.getManagementContext().getEntityManager().createEntity(EntitySpecs.spec(UrlMapping.class)
+                .configure("domain", domain)
+                .configure("path", path)
+                .parent(urlMappingsGroup));
+        Entities.manage(result);
+        ((EntityLocal)result).setAttribute(UrlMapping.TARGET_ADDRESSES, ImmutableList.copyOf(targetAddresses));
+        return result;
+    }
+
+    private static int count(String regex, String text) {
+        int result = 0;
+        for (Matcher m = Pattern.compile(regex).matcher(text); m.find(); ) result++;
+        return result;
+    }
+}
@@ -11,19 +11,24 @@ import org.testng.annotations.AfterMethod
 import org.testng.annotations.BeforeMethod
 import org.testng.annotations.Test
 
+import brooklyn.config.BrooklynProperties
 import brooklyn.entity.basic.ApplicationBuilder
 import brooklyn.entity.basic.Entities
 import brooklyn.entity.basic.SoftwareProcess
+import brooklyn.entity.drivers.downloads.ArtifactCache
 import brooklyn.entity.group.DynamicCluster
 import brooklyn.entity.proxying.EntitySpecs
 import brooklyn.entity.webapp.JavaWebAppService
 import brooklyn.entity.webapp.WebAppService
 import brooklyn.entity.webapp.jboss.JBoss7Server
 import brooklyn.location.basic.LocalhostMachineProvisioningLocation
+import brooklyn.management.internal.LocalManagementContext
 import brooklyn.test.HttpTestUtils
 import brooklyn.test.WebAppMonitor
 import brooklyn.test.entity.TestApplication
 import brooklyn.util.internal.TimeExtras
+
+import com.google.common.io.Files
 /**
  * Test the operation of the {@link NginxController} class.
  */
@@ -181,6 +186,43 @@ public class NginxIntegrationTest {
         assertUrlStatusCodeEventually(url2, 404);
     }
     
+    /**
+     * Test that nginx builds with the sticky module when install artifacts are copied from the artifact cache:
+     * the sticky module must be copied to the source directory, where the install script unpacks it.
+     */
+    @Test(groups = "Integration")
+    public void testStickyInstallWithArtifactCache() {
+        File installDir = Files.createTempDir()
+        File cacheDir = Files.createTempDir()
+        try {
+            BrooklynProperties props = BrooklynProperties.Factory.newDefault()
+            props.put(ArtifactCache.ENABLED, true)
+            props.put(ArtifactCache.DIR, cacheDir.absolutePath)
+            Entities.destroyAll(app)
+            app = ApplicationBuilder.newManagedApp(TestApplication.class, new LocalManagementContext(props))
+            
+            serverPool = app.createAndManageChild(EntitySpecs.spec(DynamicCluster.class)
+                    .configure(DynamicCluster.FACTORY, { throw new UnsupportedOperationException(); })
+                    .configure("initialSize", 0));
+            
+            nginx = app.createAndManageChild(EntitySpecs.spec(NginxController.class)
+                    .configure("serverPool", serverPool)
+                    .configure("domain", "localhost")
+                    .configure("sticky", true)
+                    .configure(SoftwareProcess.SUGGESTED_INSTALL_DIR, installDir.absolutePath));
+            
+            app.start([ new LocalhostMachineProvisioningLocation() ])
+            
+            assertAttributeEventually(nginx, SoftwareProcess.SERVICE_UP, true);
+            List<File> stickyModules = []
+            installDir.eachFileRecurse { if (it.name.startsWith("nginx-sticky-module") && it.name.endsWith(".tar.gz")) stickyModules.add(it) }
+            assertEquals(stickyModules.collect { it.parentFile.name }, ["src"], "sticky module tarballs: "+stickyModules)
+        } finally {
+            installDir.deleteDir()
+            cacheDir.deleteDir()
+        }
+    }
+    
     /** Test that site access does not fail even while nginx is reloaded */
     // FIXME test disabled -- reload isn't a problem, but #365 is
     @Test(enabled = false, groups = "Integration")
@@ -26,6 +26,9 @@ define(["underscore", "backbone"], function (_, Backbone) {
         getSensorUpdateUrl:function () {
             return this.getLinkByName("self") + "/sensors/current-state"
         },
+        getSensorStreamUrl:function () {
+            return this.getLinkByName("self") + "/sensors/stream"
+        },
         getConfigUpdateUrl:function () {
             return this.getLinkByName("self") + "/config/current-state"
         }
@@ -13,6 +13,8 @@ define([
         refreshActive:true,
         selectedId:null,
         selectedRow:null,
+        // only the most recent activities are fetched, as busy entities can have thousands
+        maxActivities:500,
         events:{
             "click #activities-table tr":"rowClick",
             'click .refresh':'refreshNow',
@@ -24,7 +26,7 @@ define([
             $.ajaxSetup({ async:false });
             var that = this,
                 $table = that.$('#activities-table');
-            that.collection.url = that.model.getLinkByName("activities");
+            that.collection.url = that.model.getLinkByName("activities") + "?order=desc&limit=" + that.maxActivities;
             that.table = ViewUtils.myDataTable($table, {
                 "fnRowCallback": function( nRow, aData, iDisplayIndex, iDisplayIndexFull ) {
                     $(nRow).attr('id', aData[0])
@@ -12,6 +12,9 @@ define([
     var EntitySensorsView = Backbone.View.extend({
         template:_.template(SensorsHtml),
         sensorMetadata:{},
+        sensorValues:{},
+        // id of our client for the sensor stream, so that only changed sensors are sent
+        streamClient:null,
         refreshActive:true,
         events:{
             'click .refresh':'refreshSensors',
@@ -100,6 +103,8 @@ define([
             this.refreshActive = isEnabled
         },
         refreshSensors:function () {
+            // get all values afresh
+            this.streamClient = null;
             this.updateSensorsNow(this);  
         },
         updateSensorsPeriodically:function (that) {
@@ -132,10 +137,16 @@ define([
             });
         },
         updateSensorsNow:function (that) {
-            var url = that.model.getSensorUpdateUrl(),
-                $table = that.$('#sensors-table');
-            $.get(url, function (data) {
-                ViewUtils.updateMyDataTable($table, data, function(value, name) {
+            var url = that.model.getSensorStreamUrl(),
+                $table = that.$('#sensors-table'),
+                params = { timeout:0 };
+            if (that.streamClient) params.client = that.streamClient;
+            // only the sensors which have changed since our last call are returned (or all of them, when reset)
+            $.get(url, params, function (data) {
+                that.streamClient = data.client;
+                if (data.reset) that.sensorValues = {};
+                _.extend(that.sensorValues, data.sensors);
+                ViewUtils.updateMyDataTable($table, that.sensorValues, function(value, name) {
                     var metadata = that.sensorMetadata[name]
                     if (metadata==null) {                        
                         // TODO should reload metadata when this happens (new sensor for which no metadata known)
@@ -4,9 +4,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.Closeable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,11 +34,14 @@ import brooklyn.management.internal.LocalManagementContext;
 import brooklyn.management.internal.ManagementContextInternal;
 import brooklyn.rest.security.BrooklynPropertiesSecurityFilter;
 import brooklyn.util.exceptions.CompoundRuntimeException;
+import brooklyn.util.exceptions.Exceptions;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Example usage is:
@@ -75,6 +84,10 @@ public class BrooklynLauncher {
     
     private volatile BrooklynWebServer webServer;
 
+    private boolean parallelStartup = false;
+    private final Map<String, Long> startupTimeline = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+    private final AtomicBoolean startupComplete = new AtomicBoolean(false);
+
     private boolean started;
 
     public List<Application> getApplications() {
@@ -82,6 +95,16 @@ public class BrooklynLauncher {
         return ImmutableList.copyOf(apps);
     }
     
+    /** 
+     * Returns how long (in milliseconds) each phase of the launch took, in the order they completed
+     * (with {@link #parallelStartup(boolean)} some phases overlap, so the total is less than the sum).
+     */
+    public Map<String, Long> getStartupTimeline() {
+        synchronized (startupTimeline) {
+            return ImmutableMap.copyOf(startupTimeline);
+        }
+    }
+    
     public BrooklynServerDetails getServerDetails() {
         if (!started) throw new IllegalStateException("Cannot retrieve server details until started");
         return new BrooklynServerDetails(webServer, managementContext);
@@ -206,6 +229,18 @@ public class BrooklynLauncher {
         return this;
     }
 
+    /** 
+     * Specifies whether the launcher should start the web console, load the catalog and resolve locations
+     * concurrently, rather than one after the other; default false.
+     * The web console then comes up before the rest, reporting at <code>/v1/server/up</code> when the launch is complete,
+     * and (unless configured otherwise) the results of scanning the classpath for the catalog are remembered 
+     * between launches (see {@link ManagementContextInternal#BROOKLYN_CATALOG_SCAN_CACHE}).
+     */
+    public BrooklynLauncher parallelStartup(boolean val) {
+        this.parallelStartup = val;
+        return this;
+    }
+
     public BrooklynLauncher installSecurityFilter(boolean val) {
         this.installSecurityFilter = val;
         return this;
@@ -294,8 +329,63 @@ public class BrooklynLauncher {
     protected BrooklynLauncher doLaunch() {
         if (started) throw new IllegalStateException("Cannot start() or launch() multiple times");
         started = true;
+        long startTime = System.currentTimeMillis();
+        
+        runPhase("management-context", new Runnable() {
+            public void run() { createManagementContext(); }
+        });
         
-        // Create the management context
+        if (!parallelStartup) {
+            runPhase("locations", new Runnable() {
+                public void run() { resolveLocations(); }
+            });
+            if (startWebApps) {
+                runPhase("web-console", new Runnable() {
+                    public void run() { startWebConsole(); }
+                });
+            }
+            runPhase("applications", new Runnable() {
+                public void run() { manageApplications(); }
+            });
+            
+        } else {
+            // created up front, as the registry shares the management context's lock with catalog loading
+            managementContext.getLocationRegistry();
+            
+            ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                    .setNameFormat("brooklyn-launcher-%d")
+                    .setDaemon(true)
+                    .build());
+            try {
+                // the web console comes up first (reporting not-ready), and the catalog is warmed while we continue
+                Future<?> webConsole = startWebApps ? submitPhase(executor, "web-console", new Runnable() {
+                    public void run() { startWebConsole(); }
+                }) : null;
+                Future<?> catalog = submitPhase(executor, "catalog", new Runnable() {
+                    public void run() { loadCatalog(); }
+                });
+                Future<?> locations = submitPhase(executor, "locations", new Runnable() {
+                    public void run() { resolveLocations(); }
+                });
+                
+                getPhase(locations);
+                runPhase("applications", new Runnable() {
+                    public void run() { manageApplications(); }
+                });
+                if (webConsole != null) getPhase(webConsole);
+                getPhase(catalog);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        
+        startupComplete.set(true);
+        LOG.info("Brooklyn launch complete in {}ms{}; phase timings (ms): {}", new Object[] { 
+                System.currentTimeMillis()-startTime, parallelStartup ? " (parallel)" : "", getStartupTimeline() });
+        return this;
+    }
+    
+    protected void createManagementContext() {
         if (managementContext == null) {
             if (brooklynProperties == null) {
                 brooklynProperties = BrooklynProperties.Factory.newDefault();
@@ -305,31 +395,46 @@ public class BrooklynLauncher {
         for (Map.Entry<String, Object> entry : brooklynAdditionalProperties.entrySet()) {
             brooklynProperties.put(entry.getKey(), entry.getValue());
         }
-
-        // Create the locations
+        if (parallelStartup && brooklynProperties != null 
+                && !brooklynProperties.containsKey(ManagementContextInternal.BROOKLYN_CATALOG_SCAN_CACHE.getName())) {
+            brooklynProperties.put(ManagementContextInternal.BROOKLYN_CATALOG_SCAN_CACHE.getName(), true);
+        }
+    }
+    
+    protected void resolveLocations() {
         locations.addAll(managementContext.getLocationRegistry().resolve(locationSpecs));
-        
-        // Start the web-console
-        if (startWebApps) {
-            try {
-                webServer = new BrooklynWebServer(webconsoleFlags, managementContext);
-                webServer.setPort(port);
-                webServer.putAttributes(brooklynProperties);
-                if (installSecurityFilter) {
-                    webServer.setSecurityFilter(BrooklynPropertiesSecurityFilter.class);
-                }
-                
-                for (Map.Entry<String, String> webapp : webApps.entrySet())
-                    webServer.deploy(webapp.getKey(), webapp.getValue());
-                
-                webServer.start();
-                
-            } catch (Exception e) {
-                LOG.warn("Failed to start Brooklyn web-console: "+e, e);
+    }
+    
+    protected void loadCatalog() {
+        try {
+            managementContext.getCatalog();
+        } catch (Exception e) {
+            // as for the web-console, not fatal; it is loaded again on first use
+            LOG.warn("Failed to load Brooklyn catalog: "+e, e);
+        }
+    }
+    
+    protected void startWebConsole() {
+        try {
+            webServer = new BrooklynWebServer(webconsoleFlags, managementContext);
+            webServer.setPort(port);
+            webServer.putAttributes(brooklynProperties);
+            webServer.setAttribute(BrooklynServiceAttributes.BROOKLYN_STARTUP_COMPLETE, startupComplete);
+            if (installSecurityFilter) {
+                webServer.setSecurityFilter(BrooklynPropertiesSecurityFilter.class);
             }
+            
+            for (Map.Entry<String, String> webapp : webApps.entrySet())
+                webServer.deploy(webapp.getKey(), webapp.getValue());
+            
+            webServer.start();
+            
+        } catch (Exception e) {
+            LOG.warn("Failed to start Brooklyn web-console: "+e, e);
         }
-        
-        // Create the apps
+    }
+    
+    protected void manageApplications() {
         for (ApplicationBuilder appBuilder : appBuildersToManage) {
             StartableApplication app = appBuilder.manage(managementContext);
             apps.add(app);
@@ -338,8 +443,32 @@ public class BrooklynLauncher {
             Entities.startManagement(app, managementContext);
             apps.add(app);
         }
-        
-        return this;
+    }
+    
+    /** runs the given startup phase, recording how long it took in the {@link #getStartupTimeline() timeline} */
+    private void runPhase(String phase, Runnable body) {
+        long start = System.currentTimeMillis();
+        try {
+            body.run();
+        } finally {
+            startupTimeline.put(phase, System.currentTimeMillis()-start);
+        }
+    }
+    
+    private Future<?> submitPhase(ExecutorService executor, final String phase, final Runnable body) {
+        return executor.submit(new Runnable() {
+            public void run() { runPhase(phase, body); }
+        });
+    }
+    
+    private static void getPhase(Future<?> phase) {
+        try {
+            phase.get();
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause());
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
     }
     
     /**
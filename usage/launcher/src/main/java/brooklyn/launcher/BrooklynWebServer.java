@@ -15,9 +15,13 @@ import javax.servlet.DispatcherType;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ssl.SslSocketConnector;
+import org.eclipse.jetty.servlet.DefaultServlet;
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.servlets.GzipFilter;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.webapp.WebAppContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +58,11 @@ public class BrooklynWebServer {
 
     public static final String BROOKLYN_WAR_URL = "classpath://brooklyn.war";
 
+    public static final int DEFAULT_ASSET_MAX_AGE_SECONDS = 60*60;
+    /** content types of static assets worth compressing */
+    public static final String ASSET_GZIP_MIME_TYPES = "text/html,text/plain,text/css,text/javascript,application/javascript," +
+            "application/x-javascript,application/json,image/svg+xml";
+
     protected Server server;
 
     private WebAppContext rootContext;
@@ -93,6 +102,22 @@ public class BrooklynWebServer {
     @SetFromFlag
     private String trustStorePassword;
 
+    /** minimum number of request-handling threads kept in the pool */
+    @SetFromFlag(defaultVal = "8")
+    private int minThreads;
+
+    /** maximum number of request-handling threads; further requests are queued */
+    @SetFromFlag(defaultVal = "200")
+    private int maxThreads;
+
+    /** maximum number of requests queued waiting for a thread, beyond which connections are refused; -1 for unbounded */
+    @SetFromFlag(defaultVal = "1000")
+    private int maxQueued;
+
+    /** how long clients may cache static assets (under /assets/) before revalidating; -1 to leave assets to the webapp */
+    @SetFromFlag(defaultVal = ""+DEFAULT_ASSET_MAX_AGE_SECONDS)
+    private int assetMaxAgeSeconds;
+
     private File webappTempDir;
     
     private Class<BrooklynPropertiesSecurityFilter> securityFilterClazz;
@@ -197,14 +222,18 @@ public class BrooklynWebServer {
         // load all our REST API modules, JSON, and Swagger
         for (Object r: BrooklynRestApi.getAllResources())
             config.getSingletons().add(r);
+        // and gzip the responses
+        BrooklynRestApi.addContainerFilters(config);
         
         // configure to match empty path, or any thing which looks like a file path with /assets/ and extension html, css, js, or png
         // and treat that as static content
-        config.getProperties().put(ServletContainer.PROPERTY_WEB_PAGE_CONTENT_REGEX, "(/?|[^?]*/asserts/[^?]+\\.[A-Za-z0-9_]+)");
+        config.getProperties().put(ServletContainer.PROPERTY_WEB_PAGE_CONTENT_REGEX, "(/?|[^?]*/assets/[^?]+\\.[A-Za-z0-9_]+)");
         // and anything which is not matched as a servlet also falls through (but more expensive than a regex check?)
         config.getFeatures().put(ServletContainer.FEATURE_FILTER_FORWARD_ON_404, true);
         // finally create this as a _filter_ which falls through to a web app or something (optionally)
         FilterHolder filterHolder = new FilterHolder(new ServletContainer(config));
+        // allow anything further down the chain to handle requests asynchronously
+        filterHolder.setAsyncSupported(true);
         
         context.addFilter(filterHolder, "/*", EnumSet.allOf(DispatcherType.class));
     }
@@ -227,6 +256,7 @@ public class BrooklynWebServer {
             log.debug("Starting Brooklyn console at "+getRootUrl()+", running " + war + (wars != null ? " and " + wars.values() : ""));
 
         server = new Server(actualPort);
+        server.setThreadPool(newThreadPool());
 
         if(httpsEnabled){
             //by default the server is configured with a http connector, this needs to be removed since we are going
@@ -261,7 +291,10 @@ public class BrooklynWebServer {
         rootContext.setTempDirectory(ResourceUtils.mkdirs(new File(webappTempDir, "war-root")));
 
         if (securityFilterClazz != null) {
-            rootContext.addFilter(securityFilterClazz, "/*", EnumSet.allOf(DispatcherType.class));
+            rootContext.addFilter(securityFilterClazz, "/*", EnumSet.allOf(DispatcherType.class)).setAsyncSupported(true);
+        }
+        if (assetMaxAgeSeconds >= 0) {
+            addAssetServlet(rootContext);
         }
         installAsServletFilter(rootContext);
 
@@ -273,6 +306,33 @@ public class BrooklynWebServer {
         log.info("Started Brooklyn console at "+getRootUrl()+", running " + war + (wars != null ? " and " + wars.values() : ""));
     }
 
+    /**
+     * Serves /assets/* from the given webapp with Jetty's default servlet, cached in memory, with Cache-Control set
+     * and revalidated by Last-Modified, and gzip-compressed: precompressed <code>.gz</code> siblings are served as is,
+     * other text compressed on the fly. (The filter comes after security, so assets still require a login.)
+     */
+    protected void addAssetServlet(WebAppContext context) {
+        ServletHolder assets = new ServletHolder("brooklyn-assets", DefaultServlet.class);
+        assets.setInitParameter("cacheControl", "max-age="+assetMaxAgeSeconds);
+        assets.setInitParameter("gzip", "true");
+        assets.setInitParameter("dirAllowed", "false");
+        context.addServlet(assets, "/assets/*");
+
+        FilterHolder gzip = new FilterHolder(GzipFilter.class);
+        gzip.setInitParameter("mimeTypes", ASSET_GZIP_MIME_TYPES);
+        gzip.setAsyncSupported(true);
+        context.addFilter(gzip, "/assets/*", EnumSet.of(DispatcherType.REQUEST));
+    }
+
+    protected QueuedThreadPool newThreadPool() {
+        QueuedThreadPool pool = new QueuedThreadPool();
+        pool.setName("brooklyn-jetty");
+        pool.setMinThreads(minThreads);
+        pool.setMaxThreads(Math.max(minThreads, maxThreads));
+        pool.setMaxQueued(maxQueued);
+        return pool;
+    }
+
     private String newTimestampedDirName(String prefix, int randomSuffixLength) {
         return prefix + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-" + Identifiers.makeRandomId(randomSuffixLength);
     }
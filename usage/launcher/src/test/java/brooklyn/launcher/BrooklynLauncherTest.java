@@ -139,6 +139,21 @@ public class BrooklynLauncherTest {
         assertEquals(launcher.getServerDetails().getManagementContext().getConfig().getFirst("mykey"), "myval");
     }
 
+    @Test
+    public void testParallelStartupRecordsEachPhase() throws Exception {
+        launcher = BrooklynLauncher.newInstance()
+                .webconsole(false)
+                .parallelStartup(true)
+                .location("localhost")
+                .application(EntitySpecs.appSpec(TestApplication.class))
+                .start();
+        
+        Application app = Iterables.find(launcher.getApplications(), Predicates.instanceOf(TestApplication.class));
+        assertOnlyLocation(app, LocalhostMachineProvisioningLocation.class);
+        assertTrue(launcher.getStartupTimeline().keySet().containsAll(
+                ImmutableList.of("management-context", "catalog", "locations", "applications")), "timeline="+launcher.getStartupTimeline());
+    }
+
     private void assertOnlyApp(BrooklynLauncher launcher, Class<? extends Application> expectedType) {
         assertEquals(launcher.getApplications().size(), 1, "apps="+launcher.getApplications());
         assertNotNull(Iterables.find(launcher.getApplications(), Predicates.instanceOf(TestApplication.class), null), "apps="+launcher.getApplications());
@@ -1,10 +1,13 @@
 package brooklyn.launcher;
 
+import static org.testng.Assert.assertEquals;
+
 import brooklyn.config.BrooklynProperties;
 import brooklyn.management.internal.LocalManagementContext;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.ssl.AllowAllHostnameVerifier;
 import org.apache.http.conn.ssl.SSLSocketFactory;
@@ -64,6 +67,33 @@ public class BrooklynWebServerTest {
         }
     }
 
+    @Test
+    public void verifyAssetsCompressedAndCacheable() throws Exception {
+        BrooklynWebServer webServer = new BrooklynWebServer(new LocalManagementContext(brooklynProperties));
+        try {
+            webServer.start();
+            DefaultHttpClient httpclient = new DefaultHttpClient();
+            String assetUrl = webServer.getRootUrl()+"assets/js/libs/require.js";
+
+            HttpGet httpget = new HttpGet(assetUrl);
+            httpget.setHeader("Accept-Encoding", "gzip");
+            HttpResponse response = httpclient.execute(httpget);
+            EntityUtils.consume(response.getEntity());
+            assertEquals(response.getStatusLine().getStatusCode(), 200);
+            assertEquals(response.getFirstHeader("Content-Encoding").getValue(), "gzip");
+            assertEquals(response.getFirstHeader("Cache-Control").getValue(), "max-age="+BrooklynWebServer.DEFAULT_ASSET_MAX_AGE_SECONDS);
+            String lastModified = response.getFirstHeader("Last-Modified").getValue();
+
+            HttpGet revalidate = new HttpGet(assetUrl);
+            revalidate.setHeader("If-Modified-Since", lastModified);
+            response = httpclient.execute(revalidate);
+            EntityUtils.consume(response.getEntity());
+            assertEquals(response.getStatusLine().getStatusCode(), 304);
+        } finally {
+            webServer.stop();
+        }
+    }
+
     private BrooklynWebServer buildWebServer() throws Exception {
         Map flags = new HashMap();
         flags.put("httpsEnabled", true);
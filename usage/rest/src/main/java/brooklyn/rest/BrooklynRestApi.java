@@ -3,14 +3,13 @@ package brooklyn.rest;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.codehaus.jackson.jaxrs.JacksonJsonProvider;
-
 import brooklyn.rest.apidoc.ApidocHelpMessageBodyWriter;
 import brooklyn.rest.resources.AbstractBrooklynRestResource;
 import brooklyn.rest.resources.ActivityResource;
 import brooklyn.rest.resources.ApidocResource;
 import brooklyn.rest.resources.ApplicationResource;
 import brooklyn.rest.resources.CatalogResource;
+import brooklyn.rest.resources.EffectorInvocationResource;
 import brooklyn.rest.resources.EffectorResource;
 import brooklyn.rest.resources.EntityConfigResource;
 import brooklyn.rest.resources.EntityResource;
@@ -18,10 +17,15 @@ import brooklyn.rest.resources.LocationResource;
 import brooklyn.rest.resources.PolicyConfigResource;
 import brooklyn.rest.resources.PolicyResource;
 import brooklyn.rest.resources.ScriptResource;
+import brooklyn.rest.resources.ServerResource;
+import brooklyn.rest.resources.SensorQueryResource;
 import brooklyn.rest.resources.SensorResource;
 import brooklyn.rest.resources.VersionResource;
+import brooklyn.rest.util.BrooklynGzipContentEncodingFilter;
+import brooklyn.rest.util.BrooklynJacksonJsonProvider;
 
 import com.google.common.collect.Iterables;
+import com.sun.jersey.api.core.ResourceConfig;
 
 public class BrooklynRestApi {
 
@@ -33,12 +37,15 @@ public class BrooklynRestApi {
         resources.add(new EntityResource());
         resources.add(new EntityConfigResource());
         resources.add(new SensorResource());
+        resources.add(new SensorQueryResource());
         resources.add(new EffectorResource());
+        resources.add(new EffectorInvocationResource());
         resources.add(new PolicyResource());
         resources.add(new PolicyConfigResource());
         resources.add(new ActivityResource());
         resources.add(new ScriptResource());
         resources.add(new VersionResource());
+        resources.add(new ServerResource());
         return resources;
     }
 
@@ -51,11 +58,19 @@ public class BrooklynRestApi {
 
     public static Iterable<Object> getMiscResources() {
         List<Object> resources = new ArrayList<Object>();
-        resources.add(new JacksonJsonProvider());
+        resources.add(new BrooklynJacksonJsonProvider());
         return resources;
     }
 
     public static Iterable<Object> getAllResources() {
         return Iterables.concat(getBrooklynRestResources(), getApidocResources(), getMiscResources());
     }
+
+    /** Adds the request and response filters for the REST API (currently just gzip content encoding) to the given config */
+    @SuppressWarnings("unchecked")
+    public static void addContainerFilters(ResourceConfig config) {
+        BrooklynGzipContentEncodingFilter gzip = new BrooklynGzipContentEncodingFilter();
+        config.getContainerRequestFilters().add(gzip);
+        config.getContainerResponseFilters().add(gzip);
+    }
 }
@@ -22,12 +22,31 @@ public class BrooklynWebConfig {
     public final static ConfigKey<String> SECURITY_PROVIDER_EXPLICIT__USERS = new BasicConfigKey<String>(String.class,
             BASE_NAME+".security.explicit.users");
 
+    /** how long a successful login (by credentials sent with a request) is remembered, e.g. 5m; 
+     * 'off' (or 0) checks with the security provider on every request which does not have an authenticated session */
+    public final static ConfigKey<String> SECURITY_PROVIDER_CACHE_TTL = new BasicConfigKey<String>(String.class,
+            BASE_NAME+".security.cache.ttl", "how long successful logins are remembered", "5m");
+
+    /** how long a failed login is remembered, so repeated bad requests do not each go to the security provider */
+    public final static ConfigKey<String> SECURITY_PROVIDER_CACHE_NEGATIVE_TTL = new BasicConfigKey<String>(String.class,
+            BASE_NAME+".security.cache.negativeTtl", "how long failed logins are remembered", "10s");
+
+    public final static ConfigKey<Integer> SECURITY_PROVIDER_CACHE_MAX_SIZE = new BasicConfigKey<Integer>(Integer.class,
+            BASE_NAME+".security.cache.maxSize", "the most logins (successful and failed) remembered", 1000);
+
     public final static ConfigKey<String> LDAP_URL = new BasicConfigKey<String>(String.class,
             BASE_NAME+".security.ldap.url");
 
     public final static ConfigKey<String> LDAP_REALM = new BasicConfigKey<String>(String.class,
             BASE_NAME+".security.ldap.realm");
 
+    /** hosts which REST clients may ask to be called back at, e.g. when an effector completes, as a comma-separated list
+     * such as <code>ci.example.com,*.internal.example.com</code>; if not set, any host is allowed except loopback and
+     * link-local addresses (which would let clients reach services on the Brooklyn server or cloud metadata services) */
+    public final static ConfigKey<String> CALLBACK_ALLOWED_HOSTS = new BasicConfigKey<String>(String.class,
+            BASE_NAME+".callback.allowedHosts", "hosts which callback URLs may refer to (wildcards allowed, e.g. *.example.com); "+
+            "if not set, any host except loopback and link-local addresses");
+
     public final static ConfigKey<String> SECURITY_PROVIDER_EXPLICIT__PASSWORD(String user) {
         return new BasicConfigKey<String>(String.class, BASE_NAME+".security.explicit.user."+user);
     }
@@ -37,7 +37,9 @@ public class TaskSummary {
   private final String startTimeUtc;
   private final String endTimeUtc;
   private final String currentStatus;
-  private final String detailedStatus;
+  // computed when first needed, as it can include the thread's stack trace
+  private String detailedStatus;
+  private transient Task<?> task;
 
   
   public TaskSummary(
@@ -89,7 +91,7 @@ public TaskSummary(Task task) {
     this.startTimeUtc = (task.getStartTimeUtc() == -1) ? "" : formatter.get().format(new Date(task.getStartTimeUtc()));
     this.endTimeUtc = (task.getEndTimeUtc() == -1) ? "" : formatter.get().format(new Date(task.getEndTimeUtc()));
     this.currentStatus = task.getStatusSummary();
-    this.detailedStatus = task.getStatusDetail(true);
+    this.task = task;
   }
 
   public static final TaskSummary fromTask(Task<?> task) { return new TaskSummary(task); }
@@ -161,7 +163,11 @@ public TaskSummary(Task task) {
     return currentStatus;
   }
 
-  public String getDetailedStatus() {
+  public synchronized String getDetailedStatus() {
+    if (detailedStatus == null && task != null) {
+      detailedStatus = task.getStatusDetail(true);
+      task = null;
+    }
     return detailedStatus;
   }
 
@@ -1,20 +1,32 @@
 package brooklyn.rest.resources;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 
 import brooklyn.entity.Entity;
+import brooklyn.management.ExecutionManager;
 import brooklyn.management.Task;
 import brooklyn.rest.apidoc.Apidoc;
 import brooklyn.rest.domain.TaskSummary;
 import brooklyn.rest.util.WebResourceUtils;
+import brooklyn.util.task.BasicExecutionManager;
 
-import com.google.common.collect.Collections2;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
 import com.wordnik.swagger.core.ApiError;
 import com.wordnik.swagger.core.ApiErrors;
 import com.wordnik.swagger.core.ApiOperation;
@@ -25,15 +37,103 @@ import com.wordnik.swagger.core.ApiParam;
 @Produces(MediaType.APPLICATION_JSON)
 public class ActivityResource extends AbstractBrooklynRestResource {
 
+  /** statuses by which activities can be filtered */
+  public static final List<String> STATUSES = ImmutableList.of("queued", "active", "done", "failed", "cancelled");
+
   @GET
   @ApiOperation(
-      value = "Fetch list of activities for this application"
+      value = "Fetch list of activities for this application",
+      notes = "Activities are ordered by submit time, and can be filtered by status (queued, active, done, failed or cancelled), "+
+          "submit time and tags; the filters are applied before paging."
   )
-  public Iterable<TaskSummary> list(@PathParam("application") String applicationId,
-                                    @PathParam("entity") String entityId) {
+  @ApiErrors(value = {
+      @ApiError(code = 404, reason = "Could not find application or entity"),
+      @ApiError(code = 412, reason = "Unknown status or order")
+  })
+  public Iterable<TaskSummary> list(
+          @ApiParam(value = "Application ID or name", required = true)
+          @PathParam("application") String applicationId,
+          @ApiParam(value = "Entity ID or name", required = true)
+          @PathParam("entity") String entityId,
+          @ApiParam(value = "Statuses of activities to return (any of)", required = false)
+          @QueryParam("status") List<String> statuses,
+          @ApiParam(value = "Tags which activities must have (all of)", required = false)
+          @QueryParam("tag") List<String> tags,
+          @ApiParam(value = "Earliest submit time, in milliseconds since the epoch", required = false)
+          @QueryParam("from") @DefaultValue("0") long fromTime,
+          @ApiParam(value = "Latest submit time, in milliseconds since the epoch", required = false)
+          @QueryParam("to") @DefaultValue(""+Long.MAX_VALUE) long toTime,
+          @ApiParam(value = "Order by submit time: asc (oldest first) or desc (newest first)", required = false)
+          @QueryParam("order") @DefaultValue("asc") String order,
+          @ApiParam(value = "Number of matching activities to skip", required = false)
+          @QueryParam("offset") @DefaultValue("0") int offset,
+          @ApiParam(value = "Maximum number of activities to return; by default all", required = false)
+          @QueryParam("limit") @DefaultValue("-1") int limit) {
       Entity entity = brooklyn().getEntity(applicationId, entityId);
-      Set<Task<?>> tasks = mgmt().getExecutionManager().getTasksWithTag(entity);
-      return Collections2.transform(tasks, TaskSummary.FROM_TASK);
+      if (!"asc".equals(order) && !"desc".equals(order))
+          throw WebResourceUtils.preconditionFailed("Unknown order '%s'; must be asc or desc", order);
+      for (String status : statuses) {
+          if (!STATUSES.contains(status))
+              throw WebResourceUtils.preconditionFailed("Unknown status '%s'; must be one of %s", status, STATUSES);
+      }
+
+      Iterable<Task<?>> tasks = tasksBySubmitTime(entity, fromTime, toTime, "desc".equals(order));
+      if (!statuses.isEmpty()) tasks = Iterables.filter(tasks, hasStatus(statuses));
+      if (!tags.isEmpty()) tasks = Iterables.filter(tasks, hasTags(tags));
+      if (offset > 0) tasks = Iterables.skip(tasks, offset);
+      if (limit >= 0) tasks = Iterables.limit(tasks, limit);
+      // summarise only the page of tasks returned
+      return Lists.newArrayList(Iterables.transform(tasks, TaskSummary.FROM_TASK));
+  }
+
+  /** The entity's tasks submitted in the given time range, using the execution manager's index where available */
+  private Iterable<Task<?>> tasksBySubmitTime(Entity entity, final long fromTime, final long toTime, boolean newestFirst) {
+      ExecutionManager executionManager = mgmt().getExecutionManager();
+      if (executionManager instanceof BasicExecutionManager) {
+          return ((BasicExecutionManager) executionManager).getTasksWithTagBySubmitTime(entity, fromTime, toTime, newestFirst);
+      }
+      List<Task<?>> result = Lists.newArrayList(Iterables.filter(executionManager.getTasksWithTag(entity), new Predicate<Task<?>>() {
+          @Override
+          public boolean apply(Task<?> input) {
+              return input.getSubmitTimeUtc() >= fromTime && input.getSubmitTimeUtc() <= toTime;
+          }
+      }));
+      Ordering<Task<?>> bySubmitTime = new Ordering<Task<?>>() {
+          @Override
+          public int compare(Task<?> left, Task<?> right) {
+              return Longs.compare(left.getSubmitTimeUtc(), right.getSubmitTimeUtc());
+          }
+      };
+      return (newestFirst ? bySubmitTime.reverse() : bySubmitTime).sortedCopy(result);
+  }
+
+  private static Predicate<Task<?>> hasStatus(final Collection<String> statuses) {
+      return new Predicate<Task<?>>() {
+          @Override
+          public boolean apply(Task<?> input) {
+              return statuses.contains(statusOf(input));
+          }
+      };
+  }
+
+  private static String statusOf(Task<?> task) {
+      if (task.isCancelled()) return "cancelled";
+      if (task.isDone()) return task.isError() ? "failed" : "done";
+      return task.isBegun() ? "active" : "queued";
+  }
+
+  /** Matches tasks having all the given tags, compared by their string form (or, for entities, their id) */
+  private static Predicate<Task<?>> hasTags(final Collection<String> tags) {
+      return new Predicate<Task<?>>() {
+          @Override
+          public boolean apply(Task<?> input) {
+              Set<String> taskTags = Sets.newHashSet();
+              for (Object tag : input.getTags()) {
+                  taskTags.add(tag instanceof Entity ? ((Entity) tag).getId() : String.valueOf(tag));
+              }
+              return taskTags.containsAll(tags);
+          }
+      };
   }
 
   @GET
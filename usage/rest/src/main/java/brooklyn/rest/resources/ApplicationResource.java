@@ -14,24 +14,26 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
-import org.codehaus.jackson.JsonNode;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.node.ArrayNode;
-import org.codehaus.jackson.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import brooklyn.entity.Application;
-import brooklyn.entity.Entity;
 import brooklyn.management.Task;
 import brooklyn.rest.apidoc.Apidoc;
 import brooklyn.rest.domain.ApplicationSpec;
 import brooklyn.rest.domain.ApplicationSummary;
 import brooklyn.rest.domain.EntitySpec;
 import brooklyn.rest.domain.TaskSummary;
+import brooklyn.rest.util.ApplicationTreeModel;
 import brooklyn.rest.util.BrooklynRestResourceUtils;
 import brooklyn.rest.util.WebResourceUtils;
 
@@ -48,35 +50,44 @@ public class ApplicationResource extends AbstractBrooklynRestResource {
 
   private static final Logger log = LoggerFactory.getLogger(ApplicationResource.class);
   
-  private final ObjectMapper mapper = new ObjectMapper();
+  private ApplicationTreeModel tree;
+
+  protected synchronized ApplicationTreeModel tree() {
+    if (tree == null) tree = new ApplicationTreeModel(mgmt());
+    return tree;
+  }
 
   @GET
   @Path("/tree")
   @ApiOperation(
-      value = "Fetch applications and entities tree hierarchy"
+      value = "Fetch applications and entities tree hierarchy",
+      notes = "The response has an ETag, the version of the tree, so can be revalidated cheaply with If-None-Match. "+
+          "With a version (since), returns only the entities changed since that version, or the whole tree (reset=true) if "+
+          "the version is too old."
   )
-  public JsonNode applicationTree() {
-    ArrayNode apps = mapper.createArrayNode();
-    for (Application application : mgmt().getApplications())
-      apps.add(recursiveTreeFromEntity(application));
-    return apps;
-  }
-  private JsonNode recursiveTreeFromEntity(Entity entity) {
-    ObjectNode aRoot = mapper.createObjectNode();
-    aRoot.put("name", entity.getDisplayName());
-    aRoot.put("id", entity.getId());
-    aRoot.put("type", entity.getEntityType().getName());
-    if (entity.getChildren().size() != 0) {
-      aRoot.put("children", childEntitiesAsArray(entity));
+  public Response applicationTree(
+          @Context Request request,
+          @ApiParam(value = "Version of the tree the client already has, to return only the changes since then", required = false)
+          @QueryParam("since") Long since) {
+    if (since != null) {
+      return Response.ok(tree().getChangesSince(since)).cacheControl(revalidate()).build();
     }
-    return aRoot;
+    EntityTag etag = new EntityTag(Long.toString(tree().getVersion()));
+    ResponseBuilder notModified = request.evaluatePreconditions(etag);
+    if (notModified != null) return notModified.cacheControl(revalidate()).build();
+
+    ApplicationTreeModel.Snapshot snapshot = tree().getSnapshot();
+    return Response.ok(snapshot.getTree())
+        .tag(new EntityTag(Long.toString(snapshot.getVersion())))
+        .cacheControl(revalidate())
+        .build();
   }
-  private ArrayNode childEntitiesAsArray(Entity entity) {
-    ArrayNode node = mapper.createArrayNode();
-    for (Entity e : entity.getChildren()) {
-      node.add(recursiveTreeFromEntity(e));
-    }
-    return node;
+
+  /** Lets clients keep the tree, but makes them check it is current (with its ETag) each time */
+  private static CacheControl revalidate() {
+    CacheControl result = new CacheControl();
+    result.setNoCache(true);
+    return result;
   }
 
   @GET
@@ -4,7 +4,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 import javax.validation.Valid;
@@ -56,6 +58,22 @@ public class CatalogResource extends AbstractBrooklynRestResource {
         }
     };
 
+    /** the most listings cached; distinct regexes and fragments each take an entry */
+    private static final int MAX_CACHED_LISTINGS = 100;
+
+    /**
+     * Listings by (type, regex, fragment), as the regex and fragment filters render every item to XML;
+     * valid only while the catalog holds the same items, i.e. while {@link #listingsFingerprint} is current.
+     */
+    @SuppressWarnings("serial")
+    private final Map<List<Object>, List<CatalogItemSummary>> listingsCache = new LinkedHashMap<List<Object>, List<CatalogItemSummary>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, List<CatalogItemSummary>> eldest) {
+            return size() > MAX_CACHED_LISTINGS;
+        }
+    };
+    private String listingsFingerprint;
+
     @POST
     @ApiOperation(value = "Add a new entity or policy type to the catalog by uploading a Groovy script from browser using multipart/form-data",
         responseClass = "String")
@@ -148,8 +166,38 @@ public class CatalogResource extends AbstractBrooklynRestResource {
         return CatalogItemSummary.from( result );
     }
 
-    @SuppressWarnings({ "unchecked", "rawtypes" })
     private <T> List<CatalogItemSummary> getCatalogItemSummariesMatchingRegexFragment(Predicate<CatalogItem<T>> type, String regex, String fragment) {
+        String fingerprint = catalogFingerprint();
+        List<Object> key = ImmutableList.<Object>of(type, regex, fragment);
+        synchronized (listingsCache) {
+            if (!fingerprint.equals(listingsFingerprint)) {
+                listingsCache.clear();
+                listingsFingerprint = fingerprint;
+            }
+            List<CatalogItemSummary> result = listingsCache.get(key);
+            if (result!=null) return result;
+        }
+        List<CatalogItemSummary> result = findCatalogItemSummariesMatchingRegexFragment(type, regex, fragment);
+        synchronized (listingsCache) {
+            // don't cache if the catalog changed while we were looking
+            if (fingerprint.equals(listingsFingerprint)) listingsCache.put(key, result);
+        }
+        return result;
+    }
+
+    /** Identifies the items currently in the catalog, cheaply; items are replaced rather than changed in place. */
+    private String catalogFingerprint() {
+        int count = 0;
+        long hash = 0;
+        for (Object item : brooklyn().getCatalog().getCatalogItems()) {
+            count++;
+            hash = 31*hash + System.identityHashCode(item);
+        }
+        return count+":"+hash;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private <T> List<CatalogItemSummary> findCatalogItemSummariesMatchingRegexFragment(Predicate<CatalogItem<T>> type, String regex, String fragment) {
         List filters = new ArrayList();
         filters.add(type);
         if (Strings.isNonEmpty(regex))
@@ -160,6 +208,5 @@ public class CatalogResource extends AbstractBrooklynRestResource {
                 brooklyn().getCatalog().getCatalogItems(Predicates.and(filters)),
                 TO_CATALOG_ITEM_SUMMARY));        
     }
-    
 
 }
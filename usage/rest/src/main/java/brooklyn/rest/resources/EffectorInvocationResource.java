@@ -0,0 +1,117 @@
+package brooklyn.rest.resources;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.Valid;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+
+import brooklyn.entity.Entity;
+import brooklyn.management.Task;
+import brooklyn.rest.apidoc.Apidoc;
+import brooklyn.rest.domain.TaskSummary;
+import brooklyn.rest.util.BulkEffectorInvocation;
+import brooklyn.rest.util.TaskCompletionCallbacks;
+import brooklyn.rest.util.WebResourceUtils;
+
+import com.wordnik.swagger.core.ApiError;
+import com.wordnik.swagger.core.ApiErrors;
+import com.wordnik.swagger.core.ApiOperation;
+import com.wordnik.swagger.core.ApiParam;
+
+@Path("/v1/effectors")
+@Apidoc("Effector invocations")
+@Produces("application/json")
+public class EffectorInvocationResource extends AbstractBrooklynRestResource {
+
+  public static final int DEFAULT_PARALLELISM = 10;
+  public static final int MAX_PARALLELISM = 100;
+
+  protected TaskCompletionCallbacks callbacks() {
+    return TaskCompletionCallbacks.forManagementContext(mgmt());
+  }
+
+  @POST
+  @Path("/{effector}")
+  @ApiOperation(value = "Trigger an effector on many entities",
+      notes = "Invokes the effector on each of the entities matching all the kinds of selector given " +
+          "(at least one of application, type and group is required) " +
+          "and any of the values given for each, with at most the given number of invocations in progress at once. " +
+          "Returns immediately (status 202) with the activity task making the invocations, " +
+          "whose result is the list of invocation results; " +
+          "if a callback URL is given, the task details are POSTed to it as JSON when all invocations complete.",
+      responseClass = "brooklyn.rest.domain.TaskSummary")
+  @ApiErrors(value = {
+      @ApiError(code = 404, reason = "Could not find application or group"),
+      @ApiError(code = 412, reason = "No selector given, no entities selected, an entity has no such effector, or invalid callback URL")
+  })
+  public Response invoke(
+      @ApiParam(name = "effector", value = "Name of the effector to trigger", required = true)
+      @PathParam("effector") String effectorName,
+      @ApiParam(value = "Application IDs or names", required = false)
+      @QueryParam("application") List<String> applications,
+      @ApiParam(value = "Entity types (interface or class names) to select", required = false)
+      @QueryParam("type") List<String> types,
+      @ApiParam(value = "IDs of groups whose members to select", required = false)
+      @QueryParam("group") List<String> groups,
+      @ApiParam(value = "Maximum number of invocations in progress at once (at most "+MAX_PARALLELISM+")", required = false)
+      @QueryParam("parallelism") @DefaultValue(""+DEFAULT_PARALLELISM) int parallelism,
+      @ApiParam(value = "URL to POST the activity task details to when all invocations complete", required = false)
+      @QueryParam("callback") String callback,
+      @ApiParam(name = "parameters", value = "Effector parameters (as key value pairs)", required = false)
+      @Valid Map<String, String> parameters
+  ) {
+    if (isEmpty(applications) && isEmpty(types) && isEmpty(groups)) {
+      throw WebResourceUtils.preconditionFailed("At least one application, type or group must be given to select entities to invoke '%s' on", effectorName);
+    }
+    List<Entity> entities = brooklyn().getEntitySelector(applications, types, groups).selectEntities();
+    if (entities.isEmpty()) {
+      throw WebResourceUtils.preconditionFailed("No entities selected to invoke '%s' on", effectorName);
+    }
+
+    BulkEffectorInvocation invocation;
+    try {
+      if (callback != null) callbacks().toCallbackUrl(callback);
+      invocation = new BulkEffectorInvocation(entities, effectorName, parameters);
+    } catch (IllegalArgumentException e) {
+      throw WebResourceUtils.preconditionFailed("%s", e.getMessage());
+    }
+
+    Task<List<Object>> task = invocation.submit(mgmt(), callbacks(), Math.max(1, Math.min(parallelism, MAX_PARALLELISM)));
+    if (callback != null) callbacks().postWhenDone(task, callback);
+
+    return Response.status(Response.Status.ACCEPTED)
+        .location(URI.create("/v1/effectors/tasks/" + task.getId()))
+        .entity(TaskSummary.fromTask(task))
+        .build();
+  }
+
+  private static boolean isEmpty(List<String> values) {
+    return values == null || values.isEmpty();
+  }
+
+  @GET
+  @Path("/tasks/{task}")
+  @ApiOperation(value = "Fetch the details of a task triggering an effector on many entities",
+      responseClass = "brooklyn.rest.domain.TaskSummary")
+  @ApiErrors(value = {
+      @ApiError(code = 404, reason = "Could not find task")
+  })
+  public TaskSummary getTask(
+      @ApiParam(value = "Task ID", required = true)
+      @PathParam("task") String taskId
+  ) {
+    Task<?> task = mgmt().getExecutionManager().getTask(taskId);
+    if (task == null) throw WebResourceUtils.notFound("Cannot find task '%s'", taskId);
+    return TaskSummary.fromTask(task);
+  }
+
+}
@@ -26,6 +26,7 @@ import brooklyn.management.internal.EffectorUtils;
 import brooklyn.rest.apidoc.Apidoc;
 import brooklyn.rest.domain.EffectorSummary;
 import brooklyn.rest.domain.TaskSummary;
+import brooklyn.rest.util.TaskCompletionCallbacks;
 import brooklyn.rest.util.WebResourceUtils;
 import brooklyn.util.exceptions.Exceptions;
 import brooklyn.util.time.Time;
@@ -44,6 +45,10 @@ public class EffectorResource extends AbstractBrooklynRestResource {
 
     private static final Logger log = LoggerFactory.getLogger(EffectorResource.class);
     
+  protected TaskCompletionCallbacks callbacks() {
+    return TaskCompletionCallbacks.forManagementContext(mgmt());
+  }
+
   @GET
   @ApiOperation(value = "Fetch the list of effectors",
       responseClass = "brooklyn.rest.domain.EffectorSummary",
@@ -71,9 +76,11 @@ public class EffectorResource extends AbstractBrooklynRestResource {
   @POST
   @Path("/{effector}")
   @ApiOperation(value = "Trigger an effector",
-    notes="Returns the return value (status 200) if it completes, or an activity task ID (status 202) if it times out")
+    notes="Returns the return value (status 200) if it completes, or an activity task ID (status 202) if it times out; " +
+        "if a callback URL is given, the activity task details are POSTed to it as JSON when the effector completes")
   @ApiErrors(value = {
-      @ApiError(code = 404, reason = "Could not find application, entity or effector")
+      @ApiError(code = 404, reason = "Could not find application, entity or effector"),
+      @ApiError(code = 412, reason = "Invalid callback URL")
   })
   public Response invoke(
       @ApiParam(name = "application", value = "Application ID or name", required = true)
@@ -94,6 +101,11 @@ public class EffectorResource extends AbstractBrooklynRestResource {
       @QueryParam("timeout")
       String timeout,
       
+      @ApiParam(name = "callback", value = "URL to POST the activity task details to when the effector completes, " +
+          "e.g. with timeout '0' to return immediately and be told of completion rather than polling", required = false)
+      @QueryParam("callback")
+      String callback,
+      
       @ApiParam(name = "parameters", value = "Effector parameters (as key value pairs)", required = false)
       @Valid 
       Map<String, String> parameters
@@ -105,8 +117,17 @@ public class EffectorResource extends AbstractBrooklynRestResource {
       throw WebResourceUtils.notFound("Entity '%s' has no effector with name '%s'", entityToken, effectorName);
     }
 
+    if (callback != null) {
+      try {
+        callbacks().toCallbackUrl(callback);
+      } catch (IllegalArgumentException e) {
+        throw WebResourceUtils.preconditionFailed("%s", e.getMessage());
+      }
+    }
+
     log.info("REST invocation of "+entity+"."+effector+" "+parameters);
     Task<?> t = entity.invoke(effector, parameters);
+    if (callback != null) callbacks().postWhenDone(t, callback);
     
     try {
         Object result = null;
@@ -0,0 +1,103 @@
+package brooklyn.rest.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import brooklyn.entity.Entity;
+import brooklyn.rest.apidoc.Apidoc;
+import brooklyn.rest.util.SensorQuery;
+import brooklyn.rest.util.WebResourceUtils;
+
+import com.wordnik.swagger.core.ApiError;
+import com.wordnik.swagger.core.ApiErrors;
+import com.wordnik.swagger.core.ApiOperation;
+import com.wordnik.swagger.core.ApiParam;
+
+@Path("/v1/sensors")
+@Apidoc("Sensor queries")
+@Produces(SensorQueryResource.APPLICATION_JSON_LINES)
+public class SensorQueryResource extends AbstractBrooklynRestResource {
+
+  /** one JSON object per line */
+  public static final String APPLICATION_JSON_LINES = "application/x-ndjson";
+  /** header giving the number of entities matched, before paging */
+  public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+  public static final int DEFAULT_LIMIT = 1000;
+  public static final int MAX_LIMIT = 10000;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @GET
+  @ApiOperation(value = "Fetch sensor values from many entities",
+      notes = "Returns one line per entity, each a JSON object of the requested fields (by default id, name and sensors), "+
+          "for the entities matching all the kinds of selector given (and any of the values given for each). "+
+          "Lists can be given as repeated parameters or comma-separated. "+
+          "The number of matching entities is returned in the "+TOTAL_COUNT_HEADER+" header.")
+  @ApiErrors(value = {
+      @ApiError(code = 404, reason = "Could not find application or group"),
+      @ApiError(code = 412, reason = "Unknown field")
+  })
+  public Response query(
+          @ApiParam(value = "Application IDs or names; defaults to all applications", required = false)
+          @QueryParam("application") List<String> applications,
+          @ApiParam(value = "Entity types (interface or class names) to select", required = false)
+          @QueryParam("type") List<String> types,
+          @ApiParam(value = "IDs of groups whose members to select", required = false)
+          @QueryParam("group") List<String> groups,
+          @ApiParam(value = "Sensor names to read; defaults to all sensors", required = false)
+          @QueryParam("sensor") List<String> sensors,
+          @ApiParam(value = "Fields to return for each entity: id, name, type, applicationId, parentId, sensors", required = false)
+          @QueryParam("fields") List<String> fields,
+          @ApiParam(value = "Number of matching entities to skip", required = false)
+          @QueryParam("offset") @DefaultValue("0") int offset,
+          @ApiParam(value = "Maximum number of entities to return (at most "+MAX_LIMIT+")", required = false)
+          @QueryParam("limit") @DefaultValue(""+DEFAULT_LIMIT) int limit
+      ) {
+    final SensorQuery query = new SensorQuery(brooklyn().getEntitySelector(applications, types, groups))
+        .sensors(WebResourceUtils.splitCommaSeparated(sensors));
+
+    List<String> fieldNames = WebResourceUtils.splitCommaSeparated(fields);
+    if (!fieldNames.isEmpty()) {
+      try {
+        query.fields(fieldNames);
+      } catch (IllegalArgumentException e) {
+        throw WebResourceUtils.preconditionFailed("%s", e.getMessage());
+      }
+    }
+
+    List<Entity> matched = query.selectEntities();
+    int from = Math.min(Math.max(0, offset), matched.size());
+    int to = Math.min(from + Math.max(0, Math.min(limit, MAX_LIMIT)), matched.size());
+    final List<Entity> page = matched.subList(from, to);
+
+    // read the sensors as each line is written, so nothing is held for the whole response
+    StreamingOutput output = new StreamingOutput() {
+      @Override
+      public void write(OutputStream out) throws IOException, WebApplicationException {
+        Writer writer = new OutputStreamWriter(out, "UTF-8");
+        for (Entity entity : page) {
+          writer.write(mapper.writeValueAsString(query.row(entity)));
+          writer.write("\n");
+        }
+        writer.flush();
+      }
+    };
+    return Response.ok(output, APPLICATION_JSON_LINES).header(TOTAL_COUNT_HEADER, matched.size()).build();
+  }
+
+}
@@ -3,14 +3,27 @@ package brooklyn.rest.resources;
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Iterables.transform;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.map.ObjectMapper;
 
 import brooklyn.entity.basic.EntityLocal;
 import brooklyn.event.AttributeSensor;
@@ -19,6 +32,9 @@ import brooklyn.event.basic.BasicAttributeSensor;
 import brooklyn.rest.apidoc.Apidoc;
 import brooklyn.rest.domain.SensorSummary;
 import brooklyn.rest.util.JsonUtils;
+import brooklyn.rest.util.SensorStreams;
+import brooklyn.rest.util.WebResourceUtils;
+import brooklyn.util.exceptions.Exceptions;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
@@ -34,6 +50,23 @@ import com.wordnik.swagger.core.ApiParam;
 @Produces("application/json")
 public class SensorResource extends AbstractBrooklynRestResource {
 
+  /** longest a poll of the sensor stream waits for changes, in milliseconds */
+  public static final long MAX_STREAM_POLL_TIMEOUT = 60*1000;
+  /** how often an event stream sends a comment when there are no changes, to detect closed connections */
+  public static final long STREAM_KEEPALIVE_PERIOD = 15*1000;
+  /** longest an event stream is kept open before the client must reconnect, in milliseconds */
+  public static final long MAX_EVENT_STREAM_DURATION = 5*60*1000;
+  /** most event streams open at once; each holds a request thread, so further clients are refused (and can poll instead) */
+  public static final int MAX_CONCURRENT_EVENT_STREAMS = 20;
+
+  private final Semaphore eventStreamPermits = new Semaphore(MAX_CONCURRENT_EVENT_STREAMS);
+  private SensorStreams streams;
+
+  protected synchronized SensorStreams streams() {
+    if (streams == null) streams = new SensorStreams(mgmt());
+    return streams;
+  }
+
   @GET
   @ApiOperation(value = "Fetch the sensor list for a specific application entity",
       responseClass = "brooklyn.rest.domain.SensorSummary",
@@ -92,6 +125,101 @@ public class SensorResource extends AbstractBrooklynRestResource {
     return sensorMap;
   }
 
+  @GET
+  @Path("/stream")
+  @ApiOperation(value = "Poll for changes to sensor values",
+      notes = "Without a client ID (or if the client has expired), returns a new client ID with all sensor values (reset=true); "+
+          "with a client ID, waits until sensors have changed (or the timeout) and returns only the sensors changed since the last poll. "+
+          "Clients which do not poll for a minute expire.")
+  @ApiErrors(value = {
+      @ApiError(code = 404, reason = "Could not find application or entity")
+  })
+  public Map<String, Object> pollStream(
+          @ApiParam(value = "Application ID or name", required = true)
+          @PathParam("application") final String application,
+          @ApiParam(value = "Entity ID or name", required = true)
+          @PathParam("entity") final String entityToken,
+          @ApiParam(value = "Client ID, as returned by a previous poll", required = false)
+          @QueryParam("client") final String clientId,
+          @ApiParam(value = "Maximum time to wait for changes, in milliseconds", required = false)
+          @QueryParam("timeout") @DefaultValue("30000") final long timeout
+      ) {
+    final EntityLocal entity = brooklyn().getEntity(application, entityToken);
+    SensorStreams.Client client = (clientId != null) ? streams().getClient(clientId, entity) : null;
+    try {
+      if (client == null) return streams().newClient(entity).poll(0);
+      return client.poll(Math.max(0, Math.min(timeout, MAX_STREAM_POLL_TIMEOUT)));
+    } catch (InterruptedException e) {
+      throw Exceptions.propagate(e);
+    }
+  }
+
+  @GET
+  @Path("/stream")
+  @ApiOperation(value = "Stream changes to sensor values as server-sent events",
+      notes = "Each event is as for a poll of the stream: the first has all sensor values, subsequent ones only the changed sensors. "+
+          "The stream is closed after the given duration (at most 5 minutes), at which point the (EventSource) client should reconnect. "+
+          "Each stream holds a server thread, so only a limited number can be open at once; beyond that, clients should poll instead.")
+  @ApiErrors(value = {
+      @ApiError(code = 404, reason = "Could not find application or entity"),
+      @ApiError(code = 503, reason = "Too many event streams open")
+  })
+  @Produces("text/event-stream")
+  public Response eventStream(
+          @ApiParam(value = "Application ID or name", required = true)
+          @PathParam("application") final String application,
+          @ApiParam(value = "Entity ID or name", required = true)
+          @PathParam("entity") final String entityToken,
+          @ApiParam(value = "How long to stream for before closing, in milliseconds", required = false)
+          @QueryParam("duration") @DefaultValue("60000") final long duration
+      ) {
+    final EntityLocal entity = brooklyn().getEntity(application, entityToken);
+    if (!eventStreamPermits.tryAcquire()) {
+      throw WebResourceUtils.serviceUnavailable((int) (STREAM_KEEPALIVE_PERIOD/1000),
+          "Too many sensor event streams open (%s); poll the stream instead", MAX_CONCURRENT_EVENT_STREAMS);
+    }
+    final SensorStreams.Client client;
+    try {
+      client = streams().newClient(entity);
+    } catch (RuntimeException e) {
+      eventStreamPermits.release();
+      throw e;
+    }
+    StreamingOutput output = new StreamingOutput() {
+      @Override
+      public void write(OutputStream out) throws IOException, WebApplicationException {
+        ObjectMapper mapper = new ObjectMapper();
+        Writer writer = new OutputStreamWriter(out, "UTF-8");
+        long end = System.currentTimeMillis() + Math.min(duration, MAX_EVENT_STREAM_DURATION);
+        int eventId = 0;
+        try {
+          writer.write("retry: 1000\n\n");
+          Map<String, Object> update = client.poll(0);
+          while (true) {
+            if (update.get("reset") == Boolean.TRUE || !((Map<?,?>) update.get("sensors")).isEmpty()) {
+              writer.write("id: "+(eventId++)+"\n");
+              writer.write("data: "+mapper.writeValueAsString(update)+"\n\n");
+            } else {
+              writer.write(": keepalive\n\n");
+            }
+            writer.flush();
+            long remaining = end - System.currentTimeMillis();
+            if (remaining <= 0 || client.isClosed()) break;
+            update = client.poll(Math.min(remaining, STREAM_KEEPALIVE_PERIOD));
+          }
+        } catch (InterruptedException e) {
+          throw Exceptions.propagate(e);
+        } finally {
+          streams().close(client);
+          eventStreamPermits.release();
+        }
+      }
+    };
+    CacheControl noCache = new CacheControl();
+    noCache.setNoCache(true);
+    return Response.ok(output, "text/event-stream").cacheControl(noCache).build();
+  }
+
   @GET
   @Path("/{sensor}")
   @ApiOperation(value = "Fetch sensor value", responseClass = "String")
@@ -0,0 +1,44 @@
+package brooklyn.rest.resources;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import brooklyn.config.BrooklynServiceAttributes;
+import brooklyn.rest.apidoc.Apidoc;
+
+import com.wordnik.swagger.core.ApiError;
+import com.wordnik.swagger.core.ApiErrors;
+import com.wordnik.swagger.core.ApiOperation;
+
+@Path("/v1/server")
+@Apidoc("Server")
+@Produces(MediaType.APPLICATION_JSON)
+public class ServerResource extends AbstractBrooklynRestResource {
+
+  @GET
+  @Path("/up")
+  @ApiOperation(value = "Return whether this Brooklyn instance has finished starting and is ready for use",
+      notes = "The web console can be started before the catalog, locations and applications are loaded; " +
+          "until they are, this returns false with status 503, so it can be used as a readiness check",
+      responseClass = "Boolean", multiValueResponse = false)
+  @ApiErrors(value = {
+      @ApiError(code = 503, reason = "Still starting, or shutting down")
+  })
+  public Response isUp() {
+    boolean up = mgmt().isRunning() && isStartupComplete();
+    return Response.status(up ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE).entity(up).build();
+  }
+
+  protected boolean isStartupComplete() {
+    // absent when not started by the launcher (e.g. deployed as a WAR), in which case we are up if we are here
+    Object complete = servletContext != null ? servletContext.getAttribute(BrooklynServiceAttributes.BROOKLYN_STARTUP_COMPLETE) : null;
+    if (complete instanceof AtomicBoolean) return ((AtomicBoolean) complete).get();
+    return complete == null || Boolean.TRUE.equals(complete);
+  }
+
+}
@@ -88,6 +88,7 @@ public class BrooklynPropertiesSecurityFilter implements Filter {
     
     @Override
     public void destroy() {
+        if (provider!=null) provider.close();
     }
 
     protected boolean handleLogout(HttpServletRequest request) {
@@ -0,0 +1,221 @@
+package brooklyn.rest.security.provider;
+
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpSession;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import brooklyn.util.exceptions.Exceptions;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Remembers the outcome of authenticating credentials with another provider, so that clients which send
+ * credentials with every request (rather than keeping a session) do not cause e.g. an LDAP bind per request.
+ * <p>
+ * Successful authentications are remembered for a time-to-live, and failures for a (usually shorter)
+ * negative time-to-live, each in a bounded LRU cache. Credentials are only held as a salted hash.
+ * Once a remembered success is half way to expiry, the next use of it re-authenticates in the background,
+ * so active users are rechecked without waiting on the target provider.
+ */
+public class CachingSecurityProvider implements SecurityProvider, CachingSecurityProviderMXBean {
+
+    public static final Logger log = LoggerFactory.getLogger(CachingSecurityProvider.class);
+
+    private final SecurityProvider delegate;
+    private final long ttlNanos;
+    private final Ticker ticker;
+
+    /** time authenticated (per the ticker), by hash of the credentials */
+    private final Cache<HashCode, Long> authenticated;
+    private final Cache<HashCode, Boolean> rejected;
+    private final Set<HashCode> refreshing = Collections.newSetFromMap(new ConcurrentHashMap<HashCode, Boolean>());
+    private final ExecutorService refresher;
+    private final byte[] salt = new byte[16];
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong delegateCalls = new AtomicLong();
+    private final AtomicLong delegateNanos = new AtomicLong();
+    private final AtomicLong maxDelegateNanos = new AtomicLong();
+
+    public CachingSecurityProvider(SecurityProvider delegate, long ttlMillis, long negativeTtlMillis, int maxSize) {
+        this(delegate, ttlMillis, negativeTtlMillis, maxSize, Ticker.systemTicker());
+    }
+
+    public CachingSecurityProvider(SecurityProvider delegate, long ttlMillis, long negativeTtlMillis, int maxSize, Ticker ticker) {
+        Preconditions.checkArgument(ttlMillis > 0, "ttl must be positive");
+        this.delegate = Preconditions.checkNotNull(delegate, "delegate");
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.ticker = ticker;
+        this.authenticated = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .build();
+        this.rejected = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Math.max(negativeTtlMillis, 0), TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .build();
+        this.refresher = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("brooklyn-security-refresh-%d")
+                .setDaemon(true)
+                .build());
+        new SecureRandom().nextBytes(salt);
+    }
+
+    public SecurityProvider getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public boolean isAuthenticated(HttpSession session) {
+        return delegate.isAuthenticated(session);
+    }
+
+    @Override
+    public boolean authenticate(final HttpSession session, final String user, final String password) {
+        // nothing to remember when no credentials are given; the delegate decides whether that is allowed
+        if (user == null) return delegate.authenticate(session, user, password);
+
+        final HashCode key = hash(user, password);
+        Long authenticatedAt = authenticated.getIfPresent(key);
+        if (authenticatedAt != null) {
+            hits.incrementAndGet();
+            if (ticker.read() - authenticatedAt > ttlNanos/2 && refreshing.add(key)) {
+                refresher.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            refreshes.incrementAndGet();
+                            authenticateWithDelegate(key, session, user, password);
+                        } catch (Exception e) {
+                            Exceptions.propagateIfFatal(e);
+                            // e.g. session invalidated in the meantime; the entry will expire normally
+                            log.debug("Unable to refresh authentication of user "+user+": "+e);
+                        } finally {
+                            refreshing.remove(key);
+                        }
+                    }
+                });
+            }
+            return true;
+        }
+        if (rejected.getIfPresent(key) != null) {
+            negativeHits.incrementAndGet();
+            return false;
+        }
+        misses.incrementAndGet();
+        return authenticateWithDelegate(key, session, user, password);
+    }
+
+    private boolean authenticateWithDelegate(HashCode key, HttpSession session, String user, String password) {
+        long start = ticker.read();
+        boolean result = delegate.authenticate(session, user, password);
+        long duration = ticker.read() - start;
+        delegateCalls.incrementAndGet();
+        delegateNanos.addAndGet(duration);
+        long max;
+        do {
+            max = maxDelegateNanos.get();
+        } while (duration > max && !maxDelegateNanos.compareAndSet(max, duration));
+
+        if (result) {
+            rejected.invalidate(key);
+            authenticated.put(key, ticker.read());
+        } else {
+            authenticated.invalidate(key);
+            rejected.put(key, Boolean.TRUE);
+        }
+        return result;
+    }
+
+    private HashCode hash(String user, String password) {
+        return Hashing.sha256().newHasher()
+                .putBytes(salt)
+                .putString(user, Charsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(password != null ? password : "", Charsets.UTF_8)
+                .hash();
+    }
+
+    @Override
+    public boolean logout(HttpSession session) {
+        return delegate.logout(session);
+    }
+
+    /** Forgets all remembered authentications, e.g. after users or passwords are changed. */
+    public void invalidateAll() {
+        authenticated.invalidateAll();
+        rejected.invalidateAll();
+    }
+
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getNegativeHits() {
+        return negativeHits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    @Override
+    public long getDelegateCalls() {
+        return delegateCalls.get();
+    }
+
+    @Override
+    public double getMeanDelegateMillis() {
+        long calls = delegateCalls.get();
+        return calls == 0 ? 0 : (double) delegateNanos.get() / calls / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public double getMaxDelegateMillis() {
+        return (double) maxDelegateNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public long getCachedCount() {
+        return authenticated.size() + rejected.size();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"["+delegate+"]";
+    }
+}
@@ -0,0 +1,30 @@
+package brooklyn.rest.security.provider;
+
+/**
+ * Metrics of a {@link CachingSecurityProvider}, registered with the platform MBean server
+ * by the {@link DelegatingSecurityProvider} which uses it.
+ */
+public interface CachingSecurityProviderMXBean {
+
+    /** authentications answered from remembered successes */
+    public long getHits();
+
+    /** authentications answered from remembered failures */
+    public long getNegativeHits();
+
+    /** authentications passed to the target provider */
+    public long getMisses();
+
+    /** remembered successes re-authenticated in the background */
+    public long getRefreshes();
+
+    /** calls to the target provider, for misses and refreshes */
+    public long getDelegateCalls();
+
+    public double getMeanDelegateMillis();
+
+    public double getMaxDelegateMillis();
+
+    /** remembered successes and failures */
+    public long getCachedCount();
+}
@@ -1,7 +1,10 @@
 package brooklyn.rest.security.provider;
 
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Constructor;
 
+import javax.management.ObjectName;
+
 import javax.servlet.http.HttpSession;
 
 import org.slf4j.Logger;
@@ -10,7 +13,9 @@ import org.slf4j.LoggerFactory;
 import brooklyn.config.StringConfigMap;
 import brooklyn.management.ManagementContext;
 import brooklyn.rest.BrooklynWebConfig;
+import brooklyn.util.exceptions.Exceptions;
 import brooklyn.util.text.Strings;
+import brooklyn.util.time.Time;
 
 public class DelegatingSecurityProvider implements SecurityProvider {
 
@@ -22,6 +27,7 @@ public class DelegatingSecurityProvider implements SecurityProvider {
     }
     
     private SecurityProvider targetProvider;
+    private ObjectName cacheMBeanName;
 
     @SuppressWarnings("unchecked")
     public synchronized SecurityProvider getTargetProvider() {
@@ -60,8 +66,48 @@ public class DelegatingSecurityProvider implements SecurityProvider {
             log.warn("Web console unable to instantiate security provider "+className+"; all logins are being disallowed",e);
             targetProvider = new BlackholeSecurityProvider();
         }
+        targetProvider = cached(targetProvider, brooklynProperties);
         return targetProvider;
     }
+
+    /** wraps the provider in a {@link CachingSecurityProvider}, unless caching is turned off */
+    protected SecurityProvider cached(SecurityProvider provider, StringConfigMap brooklynProperties) {
+        if (provider instanceof AnyoneSecurityProvider || provider instanceof BlackholeSecurityProvider) return provider;
+        
+        long ttl = Time.parseTimeString(brooklynProperties.getConfig(BrooklynWebConfig.SECURITY_PROVIDER_CACHE_TTL));
+        if (ttl <= 0) return provider;
+        long negativeTtl = Time.parseTimeString(brooklynProperties.getConfig(BrooklynWebConfig.SECURITY_PROVIDER_CACHE_NEGATIVE_TTL));
+        int maxSize = brooklynProperties.getConfig(BrooklynWebConfig.SECURITY_PROVIDER_CACHE_MAX_SIZE);
+        log.debug("Web console remembering logins for "+Time.makeTimeStringRounded(ttl)+" (failures for "+
+                (negativeTtl > 0 ? Time.makeTimeStringRounded(negativeTtl) : "no time")+"), up to "+maxSize);
+        
+        CachingSecurityProvider result = new CachingSecurityProvider(provider, ttl, negativeTtl, maxSize);
+        try {
+            cacheMBeanName = new ObjectName("brooklyn.rest:type=SecurityProviderCache,id="+Integer.toHexString(System.identityHashCode(result)));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(result, cacheMBeanName);
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            log.warn("Unable to register security provider cache metrics: "+e);
+            cacheMBeanName = null;
+        }
+        return result;
+    }
+    
+    /** stops any caching of the target provider, and unregisters its metrics */
+    public synchronized void close() {
+        if (targetProvider instanceof CachingSecurityProvider) {
+            ((CachingSecurityProvider) targetProvider).close();
+        }
+        if (cacheMBeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(cacheMBeanName);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                log.debug("Unable to unregister security provider cache metrics: "+e);
+            }
+            cacheMBeanName = null;
+        }
+    }
     
     @Override
     public boolean isAuthenticated(HttpSession session) {
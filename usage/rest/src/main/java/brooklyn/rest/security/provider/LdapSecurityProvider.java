@@ -44,33 +44,46 @@ public class LdapSecurityProvider implements SecurityProvider {
         this.ldapRealm = ldapRealm;
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
     @Override
     public boolean authenticate(HttpSession session, String user, String password) {
         if (session==null || user==null) return false;
+
+        boolean authenticated = bind(getUserDN(user), password);
+        if (!authenticated) LOG.warn("Failed to authenticate user: " + user);
+
+        if (session != null)
+            session.setAttribute(AUTHENTICATED_SESSION_TOKEN_NAME, authenticated);
+        return authenticated;
+    }
+
+    /** binds to the directory as the given user, returning whether the password was accepted */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected boolean bind(String userDN, String password) {
         checkCanLoad();
         
         Hashtable env = new Hashtable();
         env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
         env.put(Context.PROVIDER_URL, ldapUrl);
         env.put(Context.SECURITY_AUTHENTICATION, "simple");
-        env.put(Context.SECURITY_PRINCIPAL, getUserDN(user));
+        env.put(Context.SECURITY_PRINCIPAL, userDN);
         env.put(Context.SECURITY_CREDENTIALS, password);
 
-        boolean authenticated = false;
+        InitialDirContext context;
         try {
-            new InitialDirContext(env);
-            authenticated = true;
+            context = new InitialDirContext(env);
         } catch (NamingException e) {
-            LOG.warn("Failed to authenticate user: " + user);
+            return false;
         }
-
-        if (session != null)
-            session.setAttribute(AUTHENTICATED_SESSION_TOKEN_NAME, authenticated);
-        return authenticated;
+        // close straight away; we only wanted to know whether the bind succeeds
+        try {
+            context.close();
+        } catch (NamingException e) {
+            LOG.debug("Error closing LDAP context for "+userDN+": "+e);
+        }
+        return true;
     }
 
-    private String getUserDN(String user) {
+    protected String getUserDN(String user) {
         return "cn=" + user + "," + ldapRealm;
     }
 
@@ -0,0 +1,216 @@
+package brooklyn.rest.util;
+
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+import brooklyn.entity.Application;
+import brooklyn.entity.Entity;
+import brooklyn.entity.basic.Entities;
+import brooklyn.management.EntityManager;
+import brooklyn.management.ManagementContext;
+import brooklyn.management.internal.EntityManagementListener;
+import brooklyn.management.internal.LocalEntityManager;
+
+import com.google.common.collect.Sets;
+
+/**
+ * A versioned model of the tree of applications and entities, for clients which repeatedly fetch the tree.
+ * <p>
+ * The version changes whenever an entity is managed, unmanaged or renamed, as notified by the
+ * {@link LocalEntityManager}, so clients can cheaply tell whether their copy of the tree is current
+ * (e.g. using the version as an ETag). The full tree is only rebuilt when it is requested after a change,
+ * and clients holding an earlier version can instead ask for just the entities changed since that version.
+ * A bounded log of changes is kept for this; clients too far behind are sent the full tree.
+ * <p>
+ * If the entity manager does not support notifications, every request builds the tree afresh.
+ */
+public class ApplicationTreeModel implements EntityManagementListener {
+
+    public static final int DEFAULT_MAX_CHANGES = 1000;
+
+    /** A tree of applications and entities, as JSON, along with the version it reflects. */
+    public static class Snapshot {
+        private final long version;
+        private final JsonNode tree;
+
+        Snapshot(long version, JsonNode tree) {
+            this.version = version;
+            this.tree = tree;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public JsonNode getTree() {
+            return tree;
+        }
+    }
+
+    private final ManagementContext mgmt;
+    private final int maxChanges;
+    private final boolean incremental;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // guarded by this
+    private long version = System.currentTimeMillis();
+    private long earliestVersion = version;
+    private final TreeMap<Long, String> changes = new TreeMap<Long, String>();
+    private Snapshot snapshot;
+
+    public ApplicationTreeModel(ManagementContext mgmt) {
+        this(mgmt, DEFAULT_MAX_CHANGES);
+    }
+
+    public ApplicationTreeModel(ManagementContext mgmt, int maxChanges) {
+        this.mgmt = mgmt;
+        this.maxChanges = maxChanges;
+        EntityManager entityManager = mgmt.getEntityManager();
+        if (entityManager instanceof LocalEntityManager) {
+            ((LocalEntityManager) entityManager).addEntityManagementListener(this);
+            incremental = true;
+        } else {
+            incremental = false;
+        }
+    }
+
+    /** Stops tracking changes to entities. */
+    public void close() {
+        EntityManager entityManager = mgmt.getEntityManager();
+        if (entityManager instanceof LocalEntityManager) {
+            ((LocalEntityManager) entityManager).removeEntityManagementListener(this);
+        }
+    }
+
+    @Override
+    public void onManaged(Entity entity) {
+        onChanged(entity);
+    }
+
+    @Override
+    public void onUnmanaged(Entity entity) {
+        onChanged(entity);
+    }
+
+    @Override
+    public void onRenamed(Entity entity) {
+        onChanged(entity);
+    }
+
+    private synchronized void onChanged(Entity entity) {
+        version++;
+        changes.put(version, entity.getId());
+        while (changes.size() > maxChanges) {
+            earliestVersion = changes.firstKey();
+            changes.remove(earliestVersion);
+        }
+    }
+
+    /** The current version of the tree; without change notifications, this is different every time. */
+    public synchronized long getVersion() {
+        if (!incremental) version++;
+        return version;
+    }
+
+    /** Returns the tree of all applications and their descendants, rebuilding it only if it has changed. */
+    public Snapshot getSnapshot() {
+        long currentVersion;
+        synchronized (this) {
+            currentVersion = getVersion();
+            if (snapshot != null && snapshot.getVersion() == currentVersion) return snapshot;
+        }
+        // build outside the lock, as notifications arrive while the entity manager is locked;
+        // anything changed during the build is in a later version, so is sent again in the next delta
+        Snapshot result = new Snapshot(currentVersion, buildTree());
+        synchronized (this) {
+            if (version == currentVersion) snapshot = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entities changed since the given version, as an object with the current {@code version},
+     * whether the tree is being sent instead ({@code reset}), and either the {@code tree} or the entities which are
+     * {@code changed} (i.e. managed or renamed, with their id, name, type, parentId and applicationId) and the ids of
+     * those {@code removed}.
+     */
+    public ObjectNode getChangesSince(long since) {
+        long currentVersion;
+        Set<String> changedIds;
+        synchronized (this) {
+            if (!incremental || since < earliestVersion || since > version) {
+                changedIds = null;
+                currentVersion = -1;
+            } else {
+                changedIds = Sets.newLinkedHashSet(changes.tailMap(since, false).values());
+                currentVersion = version;
+            }
+        }
+
+        ObjectNode result = mapper.createObjectNode();
+        if (changedIds == null) {
+            Snapshot tree = getSnapshot();
+            result.put("version", tree.getVersion());
+            result.put("reset", true);
+            result.put("tree", tree.getTree());
+            return result;
+        }
+
+        ArrayNode changed = mapper.createArrayNode();
+        ArrayNode removed = mapper.createArrayNode();
+        // report the current state of each changed entity, as it may have changed several times
+        for (String id : changedIds) {
+            Entity entity = mgmt.getEntityManager().getEntity(id);
+            if (entity == null || !Entities.isManaged(entity)) {
+                removed.add(id);
+            } else {
+                ObjectNode node = entityNode(entity);
+                node.put("parentId", entity.getParent() != null ? entity.getParent().getId() : null);
+                node.put("applicationId", entity.getApplicationId());
+                changed.add(node);
+            }
+        }
+        result.put("version", currentVersion);
+        result.put("reset", false);
+        result.put("changed", changed);
+        result.put("removed", removed);
+        return result;
+    }
+
+    private JsonNode buildTree() {
+        ArrayNode apps = mapper.createArrayNode();
+        for (Application application : mgmt.getApplications())
+            apps.add(recursiveTreeFromEntity(application));
+        return apps;
+    }
+
+    private ObjectNode entityNode(Entity entity) {
+        ObjectNode result = mapper.createObjectNode();
+        result.put("name", entity.getDisplayName());
+        result.put("id", entity.getId());
+        result.put("type", entity.getEntityType().getName());
+        return result;
+    }
+
+    private JsonNode recursiveTreeFromEntity(Entity entity) {
+        ObjectNode aRoot = entityNode(entity);
+        if (entity.getChildren().size() != 0) {
+            ArrayNode children = mapper.createArrayNode();
+            for (Entity e : entity.getChildren()) {
+                children.add(recursiveTreeFromEntity(e));
+            }
+            aRoot.put("children", children);
+        }
+        return aRoot;
+    }
+
+    @Override
+    public String toString() {
+        return "ApplicationTreeModel[version="+version+"]";
+    }
+}
@@ -0,0 +1,26 @@
+package brooklyn.rest.util;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import com.sun.jersey.api.container.filter.GZIPContentEncodingFilter;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+
+/**
+ * Gzips responses for clients which accept it (and accepts gzipped request bodies),
+ * except for server-sent event streams, which must be flushed to the client as each event is written.
+ */
+public class BrooklynGzipContentEncodingFilter extends GZIPContentEncodingFilter {
+
+    public static final String EVENT_STREAM = "text/event-stream";
+
+    @Override
+    public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+        Object contentType = response.getHttpHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
+        if (contentType != null && contentType.toString().startsWith(EVENT_STREAM)) {
+            return response;
+        }
+        return super.filter(request, response);
+    }
+
+}
@@ -0,0 +1,106 @@
+package brooklyn.rest.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.Version;
+import org.codehaus.jackson.jaxrs.JacksonJsonProvider;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.codehaus.jackson.map.module.SimpleModule;
+
+import brooklyn.rest.domain.EntitySummary;
+import brooklyn.rest.domain.SensorSummary;
+import brooklyn.rest.domain.TaskSummary;
+
+/**
+ * Jackson provider for the REST API which writes the most frequently returned domain objects
+ * (entity, sensor and task summaries, which the GUI polls for constantly) with hand-written
+ * serializers, straight to the response stream.
+ * <p>
+ * The JSON written is the same as the bean serializers give, it just avoids the per-property
+ * reflection. Other types, and all deserialization, are handled as by {@link JacksonJsonProvider}.
+ */
+@Provider
+@Consumes({MediaType.APPLICATION_JSON, "text/json"})
+@Produces({MediaType.APPLICATION_JSON, "text/json"})
+public class BrooklynJacksonJsonProvider extends JacksonJsonProvider {
+
+    public BrooklynJacksonJsonProvider() {
+        super(newObjectMapper());
+    }
+
+    /** Returns a new mapper with the fast-path serializers registered. */
+    public static ObjectMapper newObjectMapper() {
+        SimpleModule module = new SimpleModule("brooklyn-rest", new Version(1, 0, 0, null));
+        module.addSerializer(EntitySummary.class, new EntitySummarySerializer());
+        module.addSerializer(SensorSummary.class, new SensorSummarySerializer());
+        module.addSerializer(TaskSummary.class, new TaskSummarySerializer());
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(module);
+        return mapper;
+    }
+
+    static void writeLinks(String fieldName, Map<String, URI> links, JsonGenerator jgen) throws IOException {
+        jgen.writeObjectFieldStart(fieldName);
+        for (Map.Entry<String, URI> link : links.entrySet()) {
+            jgen.writeStringField(link.getKey(), link.getValue() != null ? link.getValue().toString() : null);
+        }
+        jgen.writeEndObject();
+    }
+
+    static class EntitySummarySerializer extends JsonSerializer<EntitySummary> {
+        @Override
+        public void serialize(EntitySummary value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeStartObject();
+            jgen.writeStringField("id", value.getId());
+            jgen.writeStringField("name", value.getName());
+            jgen.writeStringField("type", value.getType());
+            writeLinks("links", value.getLinks(), jgen);
+            jgen.writeEndObject();
+        }
+    }
+
+    static class SensorSummarySerializer extends JsonSerializer<SensorSummary> {
+        @Override
+        public void serialize(SensorSummary value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeStartObject();
+            jgen.writeStringField("name", value.getName());
+            jgen.writeStringField("type", value.getType());
+            // description and links are omitted when null, as annotated on SensorSummary
+            if (value.getDescription() != null) jgen.writeStringField("description", value.getDescription());
+            if (value.getLinks() != null) writeLinks("links", value.getLinks(), jgen);
+            jgen.writeEndObject();
+        }
+    }
+
+    static class TaskSummarySerializer extends JsonSerializer<TaskSummary> {
+        @Override
+        public void serialize(TaskSummary value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeStartObject();
+            jgen.writeStringField("entityId", value.getEntityId());
+            jgen.writeStringField("entityDisplayName", value.getEntityDisplayName());
+            jgen.writeStringField("displayName", value.getDisplayName());
+            jgen.writeStringField("description", value.getDescription());
+            jgen.writeStringField("id", value.getId());
+            // tags are already converted to jsonable values by the summary
+            provider.defaultSerializeField("tags", value.getTags(), jgen);
+            jgen.writeNumberField("rawSubmitTimeUtc", value.getRawSubmitTimeUtc());
+            jgen.writeStringField("submitTimeUtc", value.getSubmitTimeUtc());
+            jgen.writeStringField("startTimeUtc", value.getStartTimeUtc());
+            jgen.writeStringField("endTimeUtc", value.getEndTimeUtc());
+            jgen.writeStringField("currentStatus", value.getCurrentStatus());
+            jgen.writeStringField("detailedStatus", value.getDetailedStatus());
+            jgen.writeEndObject();
+        }
+    }
+
+}
@@ -8,6 +8,7 @@ import java.lang.reflect.Constructor;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -22,6 +23,7 @@ import brooklyn.catalog.CatalogItem;
 import brooklyn.config.ConfigKey;
 import brooklyn.entity.Application;
 import brooklyn.entity.Entity;
+import brooklyn.entity.Group;
 import brooklyn.entity.basic.AbstractEntity;
 import brooklyn.entity.basic.ApplicationBuilder;
 import brooklyn.entity.basic.BasicApplication;
@@ -97,6 +99,27 @@ public class BrooklynRestResourceUtils {
         throw WebResourceUtils.notFound("Cannot find policy '%s' in entity '%s'", policy, entity);
     }
 
+    /** builds a selector for entities in the given applications (IDs or names), of the given types,
+     * and in the given groups (IDs); each list may be empty, and may contain comma-separated values.
+     * 
+     * @throws 404 if an application or group is not found */
+    public EntitySelector getEntitySelector(List<String> applications, List<String> types, List<String> groups) {
+        List<Application> apps = Lists.newArrayList();
+        for (String application : WebResourceUtils.splitCommaSeparated(applications)) {
+            apps.add(getApplication(application));
+        }
+        List<Group> groupEntities = Lists.newArrayList();
+        for (String group : WebResourceUtils.splitCommaSeparated(groups)) {
+            Entity entity = mgmt.getEntityManager().getEntity(group);
+            if (!(entity instanceof Group)) throw WebResourceUtils.notFound("Group '%s' not found", group);
+            groupEntities.add((Group) entity);
+        }
+        return new EntitySelector(mgmt)
+                .applications(apps)
+                .types(WebResourceUtils.splitCommaSeparated(types))
+                .groups(groupEntities);
+    }
+
     /** finds the entity indicated by the given ID or name
      * <p>
      * prefers ID based lookup in which case appId is optional, and if supplied will be enforced.
@@ -0,0 +1,156 @@
+package brooklyn.rest.util;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import brooklyn.entity.Effector;
+import brooklyn.entity.Entity;
+import brooklyn.management.ManagementContext;
+import brooklyn.management.Task;
+import brooklyn.management.internal.EffectorUtils;
+import brooklyn.util.collections.MutableMap;
+import brooklyn.util.exceptions.CompoundRuntimeException;
+import brooklyn.util.exceptions.Exceptions;
+import brooklyn.util.task.BasicTask;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Invokes an effector on many entities, with at most a given number of invocations in progress at once.
+ * <p>
+ * The invocations are made by a single task, whose result is the list of (jsonable) results in the order
+ * of the entities, and which fails if any invocation fails (after all have completed). Each invocation is
+ * an ordinary effector task on its entity, so shows in that entity's activities. Cancelling the task stops
+ * any further invocations being made.
+ */
+public class BulkEffectorInvocation {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkEffectorInvocation.class);
+
+    /** how long to wait for a permit before checking for invocations done without being reported */
+    private static final long PERMIT_CHECK_PERIOD_MILLIS = 1000;
+
+    private final String effectorName;
+    private final Map<String, String> parameters;
+    /** the effector to invoke on each entity, in order */
+    private final Map<Entity, Effector<?>> targets;
+
+    /**
+     * @throws IllegalArgumentException if any of the entities has no matching effector
+     */
+    public BulkEffectorInvocation(List<Entity> entities, String effectorName, Map<String, String> parameters) {
+        this.effectorName = Preconditions.checkNotNull(effectorName, "effectorName");
+        this.parameters = parameters != null ? ImmutableMap.copyOf(parameters) : ImmutableMap.<String, String>of();
+        this.targets = Maps.newLinkedHashMap();
+        for (Entity entity : entities) {
+            Effector<?> effector = EffectorUtils.findEffectorMatching(entity.getEntityType().getEffectors(), effectorName, this.parameters);
+            if (effector == null) {
+                throw new IllegalArgumentException("Entity '"+entity.getId()+"' ("+entity.getDisplayName()+") has no effector '"+effectorName+"'");
+            }
+            targets.put(entity, effector);
+        }
+    }
+
+    public List<Entity> getEntities() {
+        return ImmutableList.copyOf(targets.keySet());
+    }
+
+    /** Submits the task making the invocations, with at most the given number in progress at once. */
+    public Task<List<Object>> submit(ManagementContext mgmt, final TaskCompletionCallbacks callbacks, final int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+        final String description = "Invoking "+effectorName+" on "+targets.size()+" entities, at most "+parallelism+" at a time";
+        log.info("REST bulk invocation: "+description+" "+parameters);
+
+        Task<List<Object>> task = new BasicTask<List<Object>>(
+                MutableMap.of("displayName", "Invoking "+effectorName, "description", description),
+                new Callable<List<Object>>() {
+                    @Override
+                    public List<Object> call() throws Exception {
+                        return invokeAll(callbacks, parallelism);
+                    }
+                });
+        return mgmt.getExecutionManager().submit(task);
+    }
+
+    private List<Object> invokeAll(TaskCompletionCallbacks callbacks, int parallelism) throws InterruptedException {
+        final Semaphore permits = new Semaphore(parallelism);
+        // the task of each invocation, or the exception if the invocation could not be made
+        List<Object> invocations = Lists.newArrayListWithCapacity(targets.size());
+        List<PermitRelease> inProgress = Lists.newArrayList();
+        for (Map.Entry<Entity, Effector<?>> target : targets.entrySet()) {
+            while (!permits.tryAcquire(PERMIT_CHECK_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) {
+                // the callback may never come, e.g. if a task was cancelled before it started
+                for (Iterator<PermitRelease> i = inProgress.iterator(); i.hasNext(); ) {
+                    PermitRelease release = i.next();
+                    if (release.task.isDone()) {
+                        release.run();
+                        i.remove();
+                    }
+                }
+            }
+            Task<?> task;
+            try {
+                task = target.getKey().invoke(target.getValue(), parameters);
+            } catch (RuntimeException e) {
+                // no task will complete to release the permit
+                permits.release();
+                invocations.add(e);
+                continue;
+            }
+            invocations.add(task);
+            PermitRelease release = new PermitRelease(task, permits);
+            inProgress.add(release);
+            callbacks.whenDone(task, release);
+        }
+
+        List<Object> results = Lists.newArrayListWithCapacity(invocations.size());
+        List<Throwable> errors = Lists.newArrayList();
+        for (Object invocation : invocations) {
+            if (invocation instanceof Throwable) {
+                results.add(null);
+                errors.add((Throwable) invocation);
+                continue;
+            }
+            try {
+                results.add(JsonUtils.toJsonable(((Task<?>) invocation).get()));
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                results.add(null);
+                errors.add(e);
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new CompoundRuntimeException(errors.size()+" of "+invocations.size()+" invocations of "+effectorName+" failed", errors);
+        }
+        return results;
+    }
+
+    /** releases the permit of an invocation once only, however often it is reported done */
+    private static class PermitRelease implements Runnable {
+        private final Task<?> task;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitRelease(Task<?> task, Semaphore permits) {
+            this.task = task;
+            this.permits = permits;
+        }
+
+        @Override
+        public void run() {
+            if (released.compareAndSet(false, true)) permits.release();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package brooklyn.rest.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import brooklyn.entity.Application;
+import brooklyn.entity.Entity;
+import brooklyn.entity.Group;
+import brooklyn.management.ManagementContext;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Selects many entities at once, by application, type and group membership,
+ * for operations (such as reading sensors or invoking effectors) across all of them.
+ * <p>
+ * Selectors of the same kind are alternatives (e.g. entities of either type), and selectors of
+ * different kinds must all match (e.g. entities of that type which are also members of that group).
+ */
+public class EntitySelector {
+
+    private final ManagementContext mgmt;
+    private List<Application> applications = Collections.emptyList();
+    private Set<String> types = Collections.emptySet();
+    private List<Group> groups = Collections.emptyList();
+
+    /** Names of all the supertypes of an entity class */
+    private final Map<Class<?>, Set<String>> typeNamesByClass = Maps.newHashMap();
+
+    public EntitySelector(ManagementContext mgmt) {
+        this.mgmt = mgmt;
+    }
+
+    /** Selects entities in the given applications (or, if empty, in all applications). */
+    public EntitySelector applications(Collection<? extends Application> val) {
+        this.applications = ImmutableList.copyOf(val);
+        return this;
+    }
+
+    /** Selects entities which are instances of any of the given types (interface or class names). */
+    public EntitySelector types(Collection<String> val) {
+        this.types = ImmutableSet.copyOf(val);
+        return this;
+    }
+
+    /** Selects entities which are members of any of the given groups. */
+    public EntitySelector groups(Collection<? extends Group> val) {
+        this.groups = ImmutableList.copyOf(val);
+        return this;
+    }
+
+    /** Returns the selected entities, depth-first through each application in turn. */
+    public List<Entity> selectEntities() {
+        Set<Entity> members = null;
+        if (!groups.isEmpty()) {
+            members = Sets.newHashSet();
+            for (Group group : groups) {
+                members.addAll(group.getMembers());
+            }
+        }
+        Set<Entity> result = Sets.newLinkedHashSet();
+        Collection<? extends Application> roots = applications.isEmpty() ? mgmt.getApplications() : applications;
+        for (Application app : roots) {
+            addMatching(app, members, result);
+        }
+        return Lists.newArrayList(result);
+    }
+
+    private void addMatching(Entity entity, Set<Entity> members, Set<Entity> result) {
+        if ((members == null || members.contains(entity)) && isOfType(entity)) {
+            result.add(entity);
+        }
+        for (Entity child : entity.getChildren()) {
+            addMatching(child, members, result);
+        }
+    }
+
+    private boolean isOfType(Entity entity) {
+        if (types.isEmpty()) return true;
+        if (types.contains(entity.getEntityType().getName())) return true;
+        return !Collections.disjoint(types, getTypeNames(entity.getClass()));
+    }
+
+    private Set<String> getTypeNames(Class<?> type) {
+        Set<String> result = typeNamesByClass.get(type);
+        if (result == null) {
+            result = Sets.newHashSet();
+            addTypeNames(type, result);
+            typeNamesByClass.put(type, result);
+        }
+        return result;
+    }
+
+    private static void addTypeNames(Class<?> type, Set<String> result) {
+        if (type == null || !result.add(type.getName())) return;
+        addTypeNames(type.getSuperclass(), result);
+        for (Class<?> iface : type.getInterfaces()) {
+            addTypeNames(iface, result);
+        }
+    }
+}
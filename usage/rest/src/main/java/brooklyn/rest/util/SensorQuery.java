@@ -0,0 +1,146 @@
+package brooklyn.rest.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import brooklyn.entity.Application;
+import brooklyn.entity.Entity;
+import brooklyn.entity.Group;
+import brooklyn.entity.basic.EntityLocal;
+import brooklyn.event.AttributeSensor;
+import brooklyn.event.Sensor;
+import brooklyn.event.basic.BasicAttributeSensor;
+import brooklyn.management.ManagementContext;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Reads sensors from many entities at once, selected by application, type and group membership
+ * (see {@link EntitySelector}).
+ * <p>
+ * A query is made for a single request: the sensors named are resolved once per entity type
+ * (rather than looked up by name for every entity), and each entity becomes a row of the requested
+ * fields, which the caller can write out as it goes.
+ */
+public class SensorQuery {
+
+    public static final String FIELD_ID = "id";
+    public static final String FIELD_NAME = "name";
+    public static final String FIELD_TYPE = "type";
+    public static final String FIELD_APPLICATION_ID = "applicationId";
+    public static final String FIELD_PARENT_ID = "parentId";
+    public static final String FIELD_SENSORS = "sensors";
+
+    public static final Set<String> FIELDS = ImmutableSet.of(
+            FIELD_ID, FIELD_NAME, FIELD_TYPE, FIELD_APPLICATION_ID, FIELD_PARENT_ID, FIELD_SENSORS);
+    public static final List<String> DEFAULT_FIELDS = ImmutableList.of(FIELD_ID, FIELD_NAME, FIELD_SENSORS);
+
+    private final EntitySelector selector;
+    private List<String> sensorNames = Collections.emptyList();
+    private List<String> fields = DEFAULT_FIELDS;
+
+    /** Resolved sensors, by entity type name */
+    private final Map<String, List<AttributeSensor<?>>> sensorsByType = Maps.newHashMap();
+
+    public SensorQuery(ManagementContext mgmt) {
+        this(new EntitySelector(mgmt));
+    }
+
+    /** Creates a query reading from the entities the given selector selects. */
+    public SensorQuery(EntitySelector selector) {
+        this.selector = selector;
+    }
+
+    /** Selects entities in the given applications (or, if empty, in all applications). */
+    public SensorQuery applications(Collection<? extends Application> val) {
+        selector.applications(val);
+        return this;
+    }
+
+    /** Selects entities which are instances of any of the given types (interface or class names). */
+    public SensorQuery types(Collection<String> val) {
+        selector.types(val);
+        return this;
+    }
+
+    /** Selects entities which are members of any of the given groups. */
+    public SensorQuery groups(Collection<? extends Group> val) {
+        selector.groups(val);
+        return this;
+    }
+
+    /** The sensors to read; if empty, all the attribute sensors of each entity are read. */
+    public SensorQuery sensors(Collection<String> val) {
+        this.sensorNames = ImmutableList.copyOf(val);
+        return this;
+    }
+
+    /**
+     * The fields to include for each entity, in order, from {@link #FIELDS}.
+     *
+     * @throws IllegalArgumentException if a field is not known
+     */
+    public SensorQuery fields(Collection<String> val) {
+        for (String field : val) {
+            if (!FIELDS.contains(field)) throw new IllegalArgumentException("Unknown field '"+field+"'; must be one of "+FIELDS);
+        }
+        this.fields = ImmutableList.copyOf(val);
+        return this;
+    }
+
+    /** Returns the selected entities, depth-first through each application in turn. */
+    public List<Entity> selectEntities() {
+        return selector.selectEntities();
+    }
+
+    /** Returns the requested fields of the given entity, as jsonable values. */
+    public Map<String, Object> row(Entity entity) {
+        Map<String, Object> result = Maps.newLinkedHashMap();
+        for (String field : fields) {
+            if (FIELD_ID.equals(field)) {
+                result.put(field, entity.getId());
+            } else if (FIELD_NAME.equals(field)) {
+                result.put(field, entity.getDisplayName());
+            } else if (FIELD_TYPE.equals(field)) {
+                result.put(field, entity.getEntityType().getName());
+            } else if (FIELD_APPLICATION_ID.equals(field)) {
+                result.put(field, entity.getApplicationId());
+            } else if (FIELD_PARENT_ID.equals(field)) {
+                result.put(field, entity.getParent() != null ? entity.getParent().getId() : null);
+            } else if (FIELD_SENSORS.equals(field)) {
+                result.put(field, readSensors(entity));
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Object> readSensors(Entity entity) {
+        if (sensorNames.isEmpty()) return SensorStreams.snapshot((EntityLocal) entity);
+        Map<String, Object> result = Maps.newLinkedHashMap();
+        for (AttributeSensor<?> sensor : getSensors(entity)) {
+            result.put(sensor.getName(), JsonUtils.toJsonable(entity.getAttribute(sensor)));
+        }
+        return result;
+    }
+
+    private List<AttributeSensor<?>> getSensors(Entity entity) {
+        String type = entity.getEntityType().getName();
+        List<AttributeSensor<?>> result = sensorsByType.get(type);
+        if (result == null) {
+            result = Lists.newArrayListWithCapacity(sensorNames.size());
+            for (String name : sensorNames) {
+                Sensor<?> sensor = entity.getEntityType().getSensor(name);
+                // attributes are stored by name, so an undeclared sensor still finds any value set dynamically
+                result.add(sensor instanceof AttributeSensor ? (AttributeSensor<?>) sensor : new BasicAttributeSensor<Object>(Object.class, name));
+            }
+            sensorsByType.put(type, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,258 @@
+package brooklyn.rest.util;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import brooklyn.entity.Entity;
+import brooklyn.entity.basic.EntityLocal;
+import brooklyn.event.AttributeSensor;
+import brooklyn.event.Sensor;
+import brooklyn.event.SensorEvent;
+import brooklyn.event.SensorEventListener;
+import brooklyn.management.ManagementContext;
+import brooklyn.management.SubscriptionHandle;
+import brooklyn.util.collections.MutableMap;
+import brooklyn.util.text.Identifiers;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Pushes changes to entities' sensor values to REST clients, so they need not poll for all sensors repeatedly.
+ * <p>
+ * Each streaming client gets a {@link Client}, which is first given a snapshot of all the entity's sensors and then
+ * only the sensors which have changed since it last {@link Client#poll(long) polled}. Changes are coalesced per
+ * client: if a sensor changes several times between polls, only its latest value is sent. The changes held for a
+ * client are bounded (by the number of distinct sensors); if a slow client falls further behind than that, its
+ * changes are discarded and it is sent a fresh snapshot instead, so a slow client never holds up delivery of events
+ * or causes unbounded memory use.
+ * <p>
+ * There is a single subscription per entity, shared by all its clients. Clients which have not polled for a while
+ * are expired, and the subscription is removed when an entity has no clients.
+ */
+public class SensorStreams {
+
+    private static final Logger log = LoggerFactory.getLogger(SensorStreams.class);
+
+    public static final long DEFAULT_CLIENT_EXPIRY_MILLIS = 60*1000;
+    public static final int DEFAULT_MAX_PENDING_CHANGES = 1000;
+
+    private final ManagementContext mgmt;
+    private final long clientExpiryMillis;
+    private final int maxPendingChanges;
+    private final ConcurrentMap<String, Client> clients = Maps.newConcurrentMap();
+    // guarded by this
+    private final Map<String, EntityFeed> feeds = Maps.newLinkedHashMap();
+
+    public SensorStreams(ManagementContext mgmt) {
+        this(mgmt, DEFAULT_CLIENT_EXPIRY_MILLIS, DEFAULT_MAX_PENDING_CHANGES);
+    }
+
+    public SensorStreams(ManagementContext mgmt, long clientExpiryMillis, int maxPendingChanges) {
+        this.mgmt = mgmt;
+        this.clientExpiryMillis = clientExpiryMillis;
+        this.maxPendingChanges = maxPendingChanges;
+    }
+
+    /** Returns a map of the given entity's attribute sensor names to their current (jsonable) values. */
+    public static Map<String, Object> snapshot(EntityLocal entity) {
+        Map<String, Object> result = Maps.newLinkedHashMap();
+        for (Sensor<?> sensor : entity.getEntityType().getSensors()) {
+            if (sensor instanceof AttributeSensor) {
+                result.put(sensor.getName(), JsonUtils.toJsonable(entity.getAttribute((AttributeSensor<?>) sensor)));
+            }
+        }
+        return result;
+    }
+
+    /** Creates a client streaming the sensors of the given entity; the first poll returns a snapshot. */
+    public Client newClient(EntityLocal entity) {
+        expireIdleClients();
+        Client client = new Client(Identifiers.makeRandomId(12), entity);
+        clients.put(client.getId(), client);
+        synchronized (this) {
+            EntityFeed feed = feeds.get(entity.getId());
+            if (feed == null) {
+                feed = new EntityFeed(entity);
+                feeds.put(entity.getId(), feed);
+                feed.subscribe();
+            }
+            feed.clients.add(client);
+        }
+        return client;
+    }
+
+    /** Returns the client with the given id streaming the given entity, or null if there is none (e.g. it has expired). */
+    public Client getClient(String id, Entity entity) {
+        Client result = clients.get(id);
+        if (result == null || !result.entity.getId().equals(entity.getId()) || result.closed) return null;
+        return result;
+    }
+
+    /** Stops streaming to the given client. */
+    public void close(Client client) {
+        client.close();
+        clients.remove(client.getId(), client);
+        synchronized (this) {
+            EntityFeed feed = feeds.get(client.entity.getId());
+            if (feed != null) {
+                feed.clients.remove(client);
+                if (feed.clients.isEmpty()) {
+                    feeds.remove(client.entity.getId());
+                    feed.unsubscribe();
+                }
+            }
+        }
+    }
+
+    /** Closes all clients which have not polled recently. */
+    public void expireIdleClients() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Client> iter = clients.values().iterator(); iter.hasNext();) {
+            Client client = iter.next();
+            if (client.isIdleSince(now - clientExpiryMillis)) {
+                if (log.isDebugEnabled()) log.debug("Expiring idle sensor stream client {}", client);
+                close(client);
+            }
+        }
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    public synchronized int getSubscriptionCount() {
+        return feeds.size();
+    }
+
+    private class EntityFeed implements SensorEventListener<Object> {
+        final EntityLocal entity;
+        final Set<Client> clients = Sets.newCopyOnWriteArraySet();
+        SubscriptionHandle subscription;
+
+        EntityFeed(EntityLocal entity) {
+            this.entity = entity;
+        }
+
+        void subscribe() {
+            subscription = mgmt.getSubscriptionManager().subscribe(
+                    MutableMap.<String, Object>of("subscriber", this), entity, null, this);
+        }
+
+        void unsubscribe() {
+            if (subscription != null) mgmt.getSubscriptionManager().unsubscribe(subscription);
+        }
+
+        @Override
+        public void onEvent(SensorEvent<Object> event) {
+            if (!(event.getSensor() instanceof AttributeSensor)) return;
+            Object value = JsonUtils.toJsonable(event.getValue());
+            for (Client client : clients) {
+                client.offer(event.getSensor().getName(), value);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "SensorStreams.EntityFeed["+entity+"]";
+        }
+    }
+
+    /**
+     * A client streaming the sensors of an entity, holding the changes not yet sent to it.
+     */
+    public class Client {
+        private final String id;
+        private final EntityLocal entity;
+        // guarded by this
+        private final Map<String, Object> pending = new LinkedHashMap<String, Object>();
+        private boolean resync = true;
+        private int polling;
+        private long lastActive = System.currentTimeMillis();
+        private volatile boolean closed;
+
+        Client(String id, EntityLocal entity) {
+            this.id = id;
+            this.entity = entity;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        synchronized void offer(String sensor, Object value) {
+            if (closed || resync) return;
+            if (!pending.containsKey(sensor) && pending.size() >= maxPendingChanges) {
+                // too far behind: drop the changes and send a snapshot next time
+                pending.clear();
+                resync = true;
+            } else {
+                pending.put(sensor, value);
+            }
+            notifyAll();
+        }
+
+        /**
+         * Waits up to the given time for sensor changes, returning a map containing the client id ({@code client}),
+         * whether the sensors are a complete snapshot ({@code reset}), and the sensors changed, as names to values
+         * ({@code sensors}); the sensors are empty if nothing changed in that time.
+         */
+        public Map<String, Object> poll(long timeoutMillis) throws InterruptedException {
+            Map<String, Object> sensors;
+            boolean reset;
+            synchronized (this) {
+                polling++;
+                try {
+                    long end = System.currentTimeMillis() + timeoutMillis;
+                    while (pending.isEmpty() && !resync && !closed) {
+                        long remaining = end - System.currentTimeMillis();
+                        if (remaining <= 0) break;
+                        wait(remaining);
+                    }
+                    reset = resync;
+                    if (reset) {
+                        sensors = null;
+                        pending.clear();
+                        resync = false;
+                    } else {
+                        sensors = Collections.unmodifiableMap(new LinkedHashMap<String, Object>(pending));
+                        pending.clear();
+                    }
+                } finally {
+                    polling--;
+                    lastActive = System.currentTimeMillis();
+                }
+            }
+            // take the snapshot outside the lock, so events are not blocked; any changes made meanwhile
+            // will be sent again next time, which is harmless
+            if (reset) sensors = snapshot(entity);
+            return ImmutableMap.<String, Object>of("client", id, "reset", reset, "sensors", sensors);
+        }
+
+        synchronized boolean isIdleSince(long time) {
+            return polling == 0 && lastActive < time;
+        }
+
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public String toString() {
+            return "SensorStreams.Client["+id+"; "+entity+"]";
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package brooklyn.rest.util;
+
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.SingleClientConnManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.util.EntityUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import brooklyn.management.ExecutionManager;
+import brooklyn.management.ManagementContext;
+import brooklyn.management.Task;
+import brooklyn.rest.BrooklynWebConfig;
+import brooklyn.rest.domain.TaskSummary;
+import brooklyn.util.exceptions.Exceptions;
+import brooklyn.util.task.BasicExecutionManager;
+import brooklyn.util.task.ExecutionListener;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs callbacks when tasks complete, without a thread per task waiting for it.
+ * <p>
+ * Listens for tasks ending in the {@link BasicExecutionManager}, and runs the callbacks registered
+ * for a task on its own threads once that task is done (falling back to waiting on a thread per task
+ * for other execution managers). Tasks cancelled before they start never end in the execution manager,
+ * so registered tasks are also checked periodically. Used to notify REST clients which have asked for
+ * a callback URL, and to pace invocations across many entities; one instance is shared by the REST resources
+ * of each management context (see {@link #forManagementContext(ManagementContext)}).
+ * <p>
+ * Callback URLs are only accepted for the hosts in {@link BrooklynWebConfig#CALLBACK_ALLOWED_HOSTS}, if set;
+ * otherwise for any host other than loopback, link-local and site-local (private) addresses.
+ * Callbacks are POSTed to the addresses checked, without following redirects.
+ */
+public class TaskCompletionCallbacks {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskCompletionCallbacks.class);
+
+    public static final int CALLBACK_CONNECT_TIMEOUT_MILLIS = 10*1000;
+    public static final int CALLBACK_READ_TIMEOUT_MILLIS = 30*1000;
+    /** how often registered tasks are checked for having been cancelled before they started */
+    public static final int CANCELLED_TASK_CHECK_PERIOD_MILLIS = 1000;
+
+    private static final Map<ManagementContext, TaskCompletionCallbacks> INSTANCES = new WeakHashMap<ManagementContext, TaskCompletionCallbacks>();
+
+    /** Returns the instance shared by everything using the given management context, creating it if necessary. */
+    public static synchronized TaskCompletionCallbacks forManagementContext(ManagementContext mgmt) {
+        TaskCompletionCallbacks result = INSTANCES.get(mgmt);
+        if (result == null || result.closed) {
+            result = new TaskCompletionCallbacks(mgmt);
+            INSTANCES.put(mgmt, result);
+        }
+        return result;
+    }
+
+    private final BasicExecutionManager executionManager;
+    private final ExecutorService executor;
+    /** checks for cancelled tasks while any are registered; its thread stops when idle */
+    private final ScheduledThreadPoolExecutor checker;
+    private final ObjectMapper mapper = BrooklynJacksonJsonProvider.newObjectMapper();
+    /** host names, or patterns starting <code>*.</code>, which callbacks may be sent to; empty to allow any non-local host */
+    private final List<String> allowedHosts;
+    /** callbacks by task ID, for tasks which had not ended when registered */
+    private final Multimap<String, Runnable> pending = ArrayListMultimap.create();
+    /** the tasks with pending callbacks, by ID */
+    private final Map<String, Task<?>> pendingTasks = Maps.newLinkedHashMap();
+    private boolean checkScheduled;
+    private volatile boolean closed;
+
+    private final ExecutionListener listener = new ExecutionListener() {
+        @Override
+        public void onTaskDone(Task<?> task) {
+            runCallbacks(task);
+        }
+    };
+
+    public TaskCompletionCallbacks(ManagementContext mgmt) {
+        ExecutionManager em = mgmt.getExecutionManager();
+        this.executionManager = (em instanceof BasicExecutionManager) ? (BasicExecutionManager) em : null;
+        this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("brooklyn-rest-task-callback-%d")
+                .setDaemon(true)
+                .build());
+        this.checker = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat("brooklyn-rest-task-callback-check-%d")
+                .setDaemon(true)
+                .build());
+        checker.setKeepAliveTime(60, TimeUnit.SECONDS);
+        checker.allowCoreThreadTimeOut(true);
+        String allowed = mgmt.getConfig().getConfig(BrooklynWebConfig.CALLBACK_ALLOWED_HOSTS);
+        this.allowedHosts = (allowed != null) ? ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(allowed.toLowerCase()))
+                : ImmutableList.<String>of();
+        if (executionManager != null) executionManager.addListener(listener);
+    }
+
+    /** Runs the given callback (on another thread) once the task is done, or straight away if it already is. */
+    public void whenDone(Task<?> task, Runnable callback) {
+        if (executionManager == null) {
+            executor.submit(waitThenRun(task, callback));
+            return;
+        }
+        synchronized (pending) {
+            pending.put(task.getId(), callback);
+            pendingTasks.put(task.getId(), task);
+            scheduleCheck();
+        }
+        // the end time is set before listeners are told, so if it is not yet set we will be told
+        if (task.getEndTimeUtc() > 0 || task.isDone()) runCallbacks(task);
+    }
+
+    /**
+     * POSTs the {@link TaskSummary} of the given task as JSON to the given URL once the task is done.
+     *
+     * @throws IllegalArgumentException if the URL is not an http or https URL, or not to an allowed host
+     */
+    public void postWhenDone(final Task<?> task, String callbackUrl) {
+        final URL url = toCallbackUrl(callbackUrl);
+        whenDone(task, new Runnable() {
+            @Override
+            public void run() {
+                post(url, TaskSummary.fromTask(task));
+            }
+        });
+    }
+
+    /** @throws IllegalArgumentException if the URL is not an http or https URL, or not to an allowed host */
+    public URL toCallbackUrl(String callbackUrl) {
+        URL url;
+        try {
+            url = new URL(callbackUrl);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid callback URL '"+callbackUrl+"': "+e.getMessage());
+        }
+        if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+            throw new IllegalArgumentException("Callback URL '"+callbackUrl+"' must be http or https");
+        }
+        checkHostAllowed(url);
+        return url;
+    }
+
+    /** @return the addresses of the URL's host, which callbacks may be sent to */
+    private InetAddress[] checkHostAllowed(URL url) {
+        String host = url.getHost().toLowerCase();
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Callback URL '"+url+"' has unknown host");
+        }
+        if (!allowedHosts.isEmpty()) {
+            for (String allowed : allowedHosts) {
+                if (allowed.equals(host) || (allowed.startsWith("*.") && host.endsWith(allowed.substring(1)))) return addresses;
+            }
+            throw new IllegalArgumentException("Callback URL '"+url+"' is not to an allowed host");
+        }
+        for (InetAddress address : addresses) {
+            if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress() || address.isAnyLocalAddress()) {
+                throw new IllegalArgumentException("Callback URL '"+url+"' must not be to a local address");
+            }
+        }
+        return addresses;
+    }
+
+    public void close() {
+        closed = true;
+        if (executionManager != null) executionManager.removeListener(listener);
+        checker.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void runCallbacks(Task<?> task) {
+        Collection<Runnable> callbacks;
+        synchronized (pending) {
+            if (!pending.containsKey(task.getId())) return;
+            callbacks = pending.removeAll(task.getId());
+            pendingTasks.remove(task.getId());
+        }
+        for (Runnable callback : callbacks) {
+            executor.submit(waitThenRun(task, callback));
+        }
+    }
+
+    /** schedules a check of the pending tasks, if there are any and one is not already scheduled; call holding the lock on pending */
+    private void scheduleCheck() {
+        if (checkScheduled || pendingTasks.isEmpty() || closed) return;
+        checker.schedule(new Runnable() {
+            @Override
+            public void run() {
+                checkPendingTasks();
+            }
+        }, CANCELLED_TASK_CHECK_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        checkScheduled = true;
+    }
+
+    /** runs the callbacks of tasks which are done without having been reported, i.e. were cancelled before they started */
+    private void checkPendingTasks() {
+        List<Task<?>> done = Lists.newArrayList();
+        synchronized (pending) {
+            checkScheduled = false;
+            for (Task<?> task : pendingTasks.values()) {
+                if (task.isDone()) done.add(task);
+            }
+        }
+        for (Task<?> task : done) {
+            runCallbacks(task);
+        }
+        synchronized (pending) {
+            scheduleCheck();
+        }
+    }
+
+    private static Runnable waitThenRun(final Task<?> task, final Runnable callback) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // listeners are told as the task ends, just before its result is available
+                    task.blockUntilEnded();
+                    callback.run();
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    log.warn("Error in callback for completion of "+task+": "+e, e);
+                }
+            }
+        };
+    }
+
+    private void post(URL url, TaskSummary summary) {
+        DefaultHttpClient client = null;
+        try {
+            // checked again, and only those addresses used, as the host may resolve differently by now
+            InetAddress[] addresses = checkHostAllowed(url);
+            byte[] body = mapper.writeValueAsBytes(summary);
+            client = newHttpClient(addresses);
+            HttpPost request = new HttpPost(url.toURI());
+            request.setHeader("Content-Type", "application/json");
+            request.setEntity(new ByteArrayEntity(body));
+            HttpResponse response = client.execute(request);
+            EntityUtils.consume(response.getEntity());
+            int code = response.getStatusLine().getStatusCode();
+            if (code < 200 || code >= 300) {
+                log.warn("Callback to "+url+" for completion of task "+summary.getId()+" returned "+code);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Callback to "+url+" for completion of task "+summary.getId()+" returned "+code);
+            }
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            log.warn("Failed callback to "+url+" for completion of task "+summary.getId()+": "+e);
+        } finally {
+            if (client != null) client.getConnectionManager().shutdown();
+        }
+    }
+
+    /** returns a client which connects only to the given addresses, whatever the host requested, and does not follow redirects */
+    private static DefaultHttpClient newHttpClient(final InetAddress[] addresses) {
+        DefaultHttpClient client = new DefaultHttpClient() {
+            @Override
+            protected ClientConnectionManager createClientConnectionManager() {
+                return new SingleClientConnManager(SchemeRegistryFactory.createDefault()) {
+                    @Override
+                    protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemes) {
+                        return new DefaultClientConnectionOperator(schemes) {
+                            @Override
+                            protected InetAddress[] resolveHostname(String host) {
+                                // the addresses keep the host name, so https still verifies the certificate against it
+                                return addresses;
+                            }
+                        };
+                    }
+                };
+            }
+        };
+        HttpConnectionParams.setConnectionTimeout(client.getParams(), CALLBACK_CONNECT_TIMEOUT_MILLIS);
+        HttpConnectionParams.setSoTimeout(client.getParams(), CALLBACK_READ_TIMEOUT_MILLIS);
+        HttpClientParams.setRedirecting(client.getParams(), false);
+        return client;
+    }
+}
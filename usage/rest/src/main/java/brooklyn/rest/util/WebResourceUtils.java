@@ -1,5 +1,7 @@
 package brooklyn.rest.util;
 
+import java.util.List;
+
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -9,6 +11,9 @@ import org.slf4j.LoggerFactory;
 
 import brooklyn.rest.domain.ApiError;
 
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
 public class WebResourceUtils {
 
     private static final Logger log = LoggerFactory.getLogger(WebResourceUtils.class);
@@ -29,4 +34,25 @@ public class WebResourceUtils {
                 .entity(new ApiError(msg)).build());
     }
 
+    public static WebApplicationException serviceUnavailable(int retryAfterSeconds, String format, Object... args) {
+        String msg = String.format(format, args);
+        if (log.isDebugEnabled()) log.debug("returning 503 serviceUnavailable("+msg+")");
+        throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", retryAfterSeconds)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ApiError(msg)).build());
+    }
+
+    /** Splits any comma-separated values, so lists of query parameters can be given either way */
+    public static List<String> splitCommaSeparated(List<String> values) {
+        List<String> result = Lists.newArrayList();
+        if (values == null) return result;
+        for (String value : values) {
+            for (String part : Splitter.on(',').trimResults().omitEmptyStrings().split(value)) {
+                result.add(part);
+            }
+        }
+        return result;
+    }
+
 }
@@ -0,0 +1,124 @@
+package brooklyn.qa.performance;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.codehaus.jackson.jaxrs.JacksonJsonProvider;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.config.BrooklynServiceAttributes;
+import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.rest.BrooklynRestApi;
+import brooklyn.rest.BrooklynRestApiLauncher;
+import brooklyn.rest.util.BrooklynJacksonJsonProvider;
+import brooklyn.test.entity.TestEntity;
+import brooklyn.util.exceptions.Exceptions;
+
+import com.google.common.io.ByteStreams;
+import com.sun.jersey.api.core.DefaultResourceConfig;
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.jersey.spi.container.servlet.ServletContainer;
+
+/**
+ * Measures requests per second against the REST API for the listings the GUI polls most,
+ * with plain Jackson bean serialization (as before), with the {@link BrooklynJacksonJsonProvider}
+ * fast path, and with the fast path and gzip as the server is normally configured.
+ */
+public class RestApiPerformanceTest extends AbstractPerformanceTest {
+
+    private static final int NUM_ENTITIES = 100;
+
+    private Server server;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() {
+        super.setUp();
+        for (int i = 0; i < NUM_ENTITIES; i++) {
+            TestEntity entity = app.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+            entity.setAttribute(TestEntity.SEQUENCE, i);
+        }
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() {
+        try {
+            if (server != null) server.stop();
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            server = null;
+            super.tearDown();
+        }
+    }
+
+    protected int numIterations() {
+        return 500;
+    }
+
+    private String startServer(Object jsonProvider, boolean gzip) {
+        ResourceConfig config = new DefaultResourceConfig();
+        for (Object r: BrooklynRestApi.getBrooklynRestResources())
+            config.getSingletons().add(r);
+        config.getSingletons().add(jsonProvider);
+        if (gzip) BrooklynRestApi.addContainerFilters(config);
+
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setAttribute(BrooklynServiceAttributes.BROOKLYN_MANAGEMENT_CONTEXT, app.getManagementContext());
+        context.addServlet(new ServletHolder(new ServletContainer(config)), "/*");
+        context.setContextPath("/");
+        server = BrooklynRestApiLauncher.startServer(context, "performance test");
+        return "http://localhost:"+server.getConnectors()[0].getLocalPort();
+    }
+
+    private Runnable newGet(final String url, final boolean acceptGzip) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                    if (acceptGzip) connection.setRequestProperty("Accept-Encoding", "gzip");
+                    InputStream in = connection.getInputStream();
+                    try {
+                        ByteStreams.toByteArray(in);
+                    } finally {
+                        in.close();
+                    }
+                    if (connection.getResponseCode() != 200) throw new IllegalStateException("GET "+url+" gave "+connection.getResponseCode());
+                } catch (Exception e) {
+                    throw Exceptions.propagate(e);
+                }
+            }};
+    }
+
+    private void measureEntitiesAndSensors(String prefix, Object jsonProvider, boolean gzip) {
+        String root = startServer(jsonProvider, gzip);
+        String entities = root+"/v1/applications/"+app.getId()+"/entities";
+        String sensors = entities+"/"+app.getChildren().iterator().next().getId()+"/sensors";
+        double minRatePerSec = 10 * PERFORMANCE_EXPECTATION;
+
+        measureAndAssert(prefix+"-listEntities", numIterations(), minRatePerSec, newGet(entities, gzip));
+        measureAndAssert(prefix+"-listSensors", numIterations(), minRatePerSec, newGet(sensors, gzip));
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testPlainJackson() {
+        measureEntitiesAndSensors("plainJackson", new JacksonJsonProvider(), false);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testFastPathSerializers() {
+        measureEntitiesAndSensors("fastPath", new BrooklynJacksonJsonProvider(), false);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testFastPathSerializersWithGzip() {
+        measureEntitiesAndSensors("fastPathGzip", new BrooklynJacksonJsonProvider(), true);
+    }
+}
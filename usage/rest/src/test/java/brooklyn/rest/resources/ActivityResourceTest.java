@@ -1,14 +1,111 @@
 package brooklyn.rest.resources;
 
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import javax.ws.rs.core.Response;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import brooklyn.entity.basic.ApplicationBuilder;
+import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.management.Task;
+import brooklyn.rest.domain.TaskSummary;
 import brooklyn.rest.testing.BrooklynRestResourceTest;
+import brooklyn.test.entity.TestApplication;
+import brooklyn.test.entity.TestEntity;
+import brooklyn.util.collections.MutableMap;
+import brooklyn.util.task.BasicTask;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.GenericType;
 
+@Test(singleThreaded = true)
 public class ActivityResourceTest extends BrooklynRestResourceTest {
 
-    
+  private static final String TAG = "activity-resource-test";
+
+  private TestEntity entity;
+  private final List<Task<?>> tasks = Lists.newArrayList();
+  private final CountDownLatch blockLatch = new CountDownLatch(1);
+
   @Override
   protected void setUpResources() throws Exception {
+    addResource(new ActivityResource());
+    TestApplication app = ApplicationBuilder.newManagedApp(TestApplication.class, getManagementContext());
+    entity = app.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+
+    for (int i = 0; i < 3; i++) {
+      tasks.add(submit(new BasicTask<Object>(new Callable<Object>() {
+        public Object call() { return null; }
+      })));
+      tasks.get(i).get();
+      Thread.sleep(5);
+    }
+    tasks.add(submit(new BasicTask<Object>(new Callable<Object>() {
+      public Object call() throws Exception { blockLatch.await(); return null; }
+    })));
+  }
+
+  private Task<?> submit(Task<?> task) {
+    return getManagementContext().getExecutionManager().submit(
+        MutableMap.of("tags", ImmutableList.of(entity, TAG)), task);
+  }
+
+  @AfterClass
+  @Override
+  public void tearDown() throws Exception {
+    blockLatch.countDown();
+    super.tearDown();
+    stopManager();
+  }
+
+  private List<String> listIds(String query) {
+    List<TaskSummary> result = client()
+        .resource("/v1/applications/"+entity.getApplicationId()+"/entities/"+entity.getId()+"/activities?tag="+TAG+query)
+        .get(new GenericType<List<TaskSummary>>() {});
+    List<String> ids = Lists.newArrayList();
+    for (TaskSummary summary : result) ids.add(summary.getId());
+    return ids;
+  }
+
+  private List<String> ids(int... indexes) {
+    List<String> result = Lists.newArrayList();
+    for (int i : indexes) result.add(tasks.get(i).getId());
+    return result;
+  }
+
+  @Test
+  public void testListsInSubmitOrder() {
+    assertEquals(listIds(""), ids(0, 1, 2, 3));
+    assertEquals(listIds("&order=desc"), ids(3, 2, 1, 0));
+  }
+
+  @Test
+  public void testListIsPaged() {
+    assertEquals(listIds("&order=desc&limit=2"), ids(3, 2));
+    assertEquals(listIds("&order=desc&offset=2&limit=2"), ids(1, 0));
   }
 
-  // TODO tests for activity resource
+  @Test
+  public void testListFiltersByStatusAndTime() {
+    assertEquals(listIds("&status=done"), ids(0, 1, 2));
+    assertEquals(listIds("&status=active&status=queued"), ids(3));
+    assertEquals(listIds("&from="+tasks.get(1).getSubmitTimeUtc()+"&to="+tasks.get(2).getSubmitTimeUtc()), ids(1, 2));
+  }
+
+  @Test
+  public void testUnknownStatusRejected() {
+    ClientResponse response = client()
+        .resource("/v1/applications/"+entity.getApplicationId()+"/entities/"+entity.getId()+"/activities?status=bogus")
+        .get(ClientResponse.class);
+    assertEquals(response.getStatus(), Response.Status.PRECONDITION_FAILED.getStatusCode());
+  }
 
 }
@@ -10,6 +10,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
 
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
 import org.slf4j.Logger;
@@ -211,6 +213,20 @@ public class ApplicationResourceTest extends BrooklynRestResourceTest {
     }
   }
 
+  @Test(dependsOnMethods = "testDeployApplication")
+  public void testApplicationTreeRevalidatedWithETag() {
+    ClientResponse response = client().resource("/v1/applications/tree").get(ClientResponse.class);
+    assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+    assertTrue(response.getEntity(String.class).contains("simple-app"));
+    EntityTag etag = response.getEntityTag();
+    Assert.assertNotNull(etag);
+
+    ClientResponse revalidated = client().resource("/v1/applications/tree")
+        .header(HttpHeaders.IF_NONE_MATCH, etag.toString())
+        .get(ClientResponse.class);
+    assertEquals(revalidated.getStatus(), Response.Status.NOT_MODIFIED.getStatusCode());
+  }
+
   @Test(dependsOnMethods = "testDeployApplication")
   public void testListApplications() {
     Set<ApplicationSummary> applications = client().resource("/v1/applications")
@@ -0,0 +1,222 @@
+package brooklyn.rest.resources;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Response;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import brooklyn.config.BrooklynProperties;
+import brooklyn.entity.Entity;
+import brooklyn.entity.basic.ApplicationBuilder;
+import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.management.Task;
+import brooklyn.management.internal.LocalManagementContext;
+import brooklyn.rest.BrooklynWebConfig;
+import brooklyn.rest.domain.TaskSummary;
+import brooklyn.rest.testing.BrooklynRestResourceTest;
+import brooklyn.rest.util.TaskCompletionCallbacks;
+import brooklyn.test.entity.TestApplication;
+import brooklyn.test.entity.TestEntity;
+import brooklyn.util.task.BasicTask;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+@Test(singleThreaded = true)
+public class EffectorInvocationResourceTest extends BrooklynRestResourceTest {
+
+  private TestApplication app;
+  private Entity entity;
+  private final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+  private HttpServer server;
+
+  @Override
+  protected void setUpResources() throws Exception {
+    // the callback server is on this (loopback) host, so must be explicitly allowed
+    ((BrooklynProperties) getManagementContext().getConfig()).put(BrooklynWebConfig.CALLBACK_ALLOWED_HOSTS, "localhost");
+    addResource(new EffectorInvocationResource());
+    addResource(new EffectorResource());
+    app = ApplicationBuilder.newManagedApp(TestApplication.class, getManagementContext());
+    for (int i = 0; i < 3; i++) {
+      entity = app.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+    }
+  }
+
+  @AfterClass
+  @Override
+  public void tearDown() throws Exception {
+    super.tearDown();
+    stopManager();
+  }
+
+  /** starts a server recording the bodies posted to /done, returning its URL */
+  private String startCallbackServer() throws Exception {
+    received.clear();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/done", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) {
+        try {
+          InputStream in = exchange.getRequestBody();
+          received.add(new String(ByteStreams.toByteArray(in), Charsets.UTF_8));
+          exchange.sendResponseHeaders(204, -1);
+        } catch (Exception e) {
+          received.add("error: "+e);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+    return "http://localhost:"+server.getAddress().getPort()+"/done";
+  }
+
+  private void stopCallbackServer() {
+    if (server != null) server.stop(0);
+    server = null;
+  }
+
+  private ClientResponse invokeIdentityEffector(String query) {
+    return client().resource("/v1/effectors/"+TestEntity.IDENTITY_EFFECTOR.getName()+"?type="+TestEntity.class.getName()+query)
+        .post(ClientResponse.class, ImmutableMap.of("arg", "hello"));
+  }
+
+  @Test
+  public void testInvokesOnAllSelectedEntities() throws Exception {
+    ClientResponse response = invokeIdentityEffector("&application="+app.getId()+"&parallelism=2");
+    assertEquals(response.getStatus(), Response.Status.ACCEPTED.getStatusCode());
+    TaskSummary summary = response.getEntity(TaskSummary.class);
+
+    Task<?> task = getManagementContext().getExecutionManager().getTask(summary.getId());
+    assertEquals(task.get(), ImmutableList.of("hello", "hello", "hello"));
+
+    TaskSummary fetched = client().resource(response.getLocation()).get(TaskSummary.class);
+    assertEquals(fetched.getId(), summary.getId());
+  }
+
+  @Test
+  public void testNoSelectorRejected() throws Exception {
+    ClientResponse response = client().resource("/v1/effectors/"+TestEntity.IDENTITY_EFFECTOR.getName())
+        .post(ClientResponse.class, ImmutableMap.of("arg", "hello"));
+    assertEquals(response.getStatus(), Response.Status.PRECONDITION_FAILED.getStatusCode());
+  }
+
+  @Test
+  public void testNoEntitiesSelectedRejected() throws Exception {
+    ClientResponse response = client().resource("/v1/effectors/"+TestEntity.MY_EFFECTOR.getName()+"?type=does.not.Exist")
+        .post(ClientResponse.class, ImmutableMap.of());
+    assertEquals(response.getStatus(), Response.Status.PRECONDITION_FAILED.getStatusCode());
+  }
+
+  @Test
+  public void testEntityWithoutEffectorRejected() throws Exception {
+    // the application itself is selected too, and has no such effector
+    ClientResponse response = client().resource("/v1/effectors/"+TestEntity.MY_EFFECTOR.getName()+"?application="+app.getId())
+        .post(ClientResponse.class, ImmutableMap.of());
+    assertEquals(response.getStatus(), Response.Status.PRECONDITION_FAILED.getStatusCode());
+  }
+
+  @Test
+  public void testInvalidCallbackRejected() throws Exception {
+    ClientResponse response = invokeIdentityEffector("&callback=ftp://example.com/");
+    assertEquals(response.getStatus(), Response.Status.PRECONDITION_FAILED.getStatusCode());
+  }
+
+  @Test
+  public void testCallbackPostedWhenDone() throws Exception {
+    try {
+      String callback = startCallbackServer();
+      ClientResponse response = invokeIdentityEffector("&callback="+callback);
+      assertEquals(response.getStatus(), Response.Status.ACCEPTED.getStatusCode());
+      TaskSummary summary = response.getEntity(TaskSummary.class);
+
+      String body = received.poll(30, TimeUnit.SECONDS);
+      assertTrue(body != null && body.contains(summary.getId()), "body="+body);
+    } finally {
+      stopCallbackServer();
+    }
+  }
+
+  @Test
+  public void testSingleEntityCallbackPostedWhenDone() throws Exception {
+    try {
+      String callback = startCallbackServer();
+      ClientResponse response = client().resource("/v1/applications/"+app.getId()+"/entities/"+entity.getId()+
+              "/effectors/"+TestEntity.IDENTITY_EFFECTOR.getName()+"?timeout=0&callback="+callback)
+          .post(ClientResponse.class, ImmutableMap.of("arg", "hello"));
+      assertEquals(response.getStatus(), Response.Status.ACCEPTED.getStatusCode());
+      TaskSummary summary = response.getEntity(TaskSummary.class);
+
+      String body = received.poll(30, TimeUnit.SECONDS);
+      assertTrue(body != null && body.contains(summary.getId()), "body="+body);
+    } finally {
+      stopCallbackServer();
+    }
+  }
+
+  @Test
+  public void testSingleEntityCallbackToDisallowedHostRejected() throws Exception {
+    ClientResponse response = client().resource("/v1/applications/"+app.getId()+"/entities/"+entity.getId()+
+            "/effectors/"+TestEntity.IDENTITY_EFFECTOR.getName()+"?timeout=0&callback=http://127.0.0.2:8080/done")
+        .post(ClientResponse.class, ImmutableMap.of("arg", "hello"));
+    assertEquals(response.getStatus(), Response.Status.PRECONDITION_FAILED.getStatusCode());
+  }
+
+  @Test
+  public void testCallbackToLocalAddressRejectedByDefault() throws Exception {
+    LocalManagementContext mgmt = new LocalManagementContext();
+    TaskCompletionCallbacks callbacks = new TaskCompletionCallbacks(mgmt);
+    try {
+      for (String url : ImmutableList.of("http://localhost:8080/", "http://127.0.0.1/", "http://169.254.169.254/latest/meta-data/",
+          "http://10.0.0.1/", "http://192.168.1.1:8080/")) {
+        try {
+          callbacks.toCallbackUrl(url);
+          fail("callback to "+url+" should be rejected");
+        } catch (IllegalArgumentException e) {
+          // expected
+        }
+      }
+    } finally {
+      callbacks.close();
+      mgmt.terminate();
+    }
+  }
+
+  @Test
+  public void testCallbackRunWhenTaskCancelledBeforeStarting() throws Exception {
+    // never submitted, so never reported as ending by the execution manager
+    Task<?> task = new BasicTask<Void>(new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+    final CountDownLatch called = new CountDownLatch(1);
+    TaskCompletionCallbacks.forManagementContext(getManagementContext()).whenDone(task, new Runnable() {
+      @Override
+      public void run() {
+        called.countDown();
+      }
+    });
+    task.cancel(true);
+    assertTrue(called.await(30, TimeUnit.SECONDS));
+  }
+
+}
@@ -0,0 +1,101 @@
+package brooklyn.rest.resources;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.Response;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import brooklyn.entity.basic.ApplicationBuilder;
+import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.rest.testing.BrooklynRestResourceTest;
+import brooklyn.test.entity.TestApplication;
+import brooklyn.test.entity.TestEntity;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.sun.jersey.api.client.ClientResponse;
+
+@Test(singleThreaded = true)
+public class SensorQueryResourceTest extends BrooklynRestResourceTest {
+
+  private TestApplication app;
+
+  @Override
+  protected void setUpResources() throws Exception {
+    addResource(new SensorQueryResource());
+    app = ApplicationBuilder.newManagedApp(TestApplication.class, getManagementContext());
+    for (int i = 0; i < 3; i++) {
+      TestEntity entity = app.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+      entity.setAttribute(TestEntity.SEQUENCE, i);
+    }
+  }
+
+  @AfterClass
+  @Override
+  public void tearDown() throws Exception {
+    super.tearDown();
+    stopManager();
+  }
+
+  private List<Map<?, ?>> readLines(ClientResponse response) throws Exception {
+    List<Map<?, ?>> result = Lists.newArrayList();
+    ObjectMapper mapper = new ObjectMapper();
+    for (String line : Splitter.on('\n').omitEmptyStrings().split(response.getEntity(String.class))) {
+      result.add(mapper.readValue(line, Map.class));
+    }
+    return result;
+  }
+
+  @Test
+  public void testQueryByTypeReturnsLinePerEntity() throws Exception {
+    ClientResponse response = client().resource("/v1/sensors")
+        .queryParam("type", TestEntity.class.getName())
+        .queryParam("sensor", TestEntity.SEQUENCE.getName())
+        .queryParam("fields", "id,sensors")
+        .get(ClientResponse.class);
+
+    assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+    assertEquals(response.getHeaders().getFirst(SensorQueryResource.TOTAL_COUNT_HEADER), "3");
+    List<Map<?, ?>> lines = readLines(response);
+    assertEquals(lines.size(), 3);
+    for (Map<?, ?> line : lines) {
+      assertEquals(line.keySet().size(), 2);
+      assertTrue(((Map<?, ?>) line.get("sensors")).containsKey(TestEntity.SEQUENCE.getName()), "line="+line);
+    }
+  }
+
+  @Test
+  public void testQueryIsPaged() throws Exception {
+    ClientResponse response = client().resource("/v1/sensors")
+        .queryParam("application", app.getId())
+        .queryParam("offset", "1")
+        .queryParam("limit", "2")
+        .get(ClientResponse.class);
+
+    assertEquals(response.getHeaders().getFirst(SensorQueryResource.TOTAL_COUNT_HEADER), "4");
+    assertEquals(readLines(response).size(), 2);
+  }
+
+  @Test
+  public void testUnknownFieldRejected() throws Exception {
+    ClientResponse response = client().resource("/v1/sensors")
+        .queryParam("fields", "bogus")
+        .get(ClientResponse.class);
+    assertEquals(response.getStatus(), Response.Status.PRECONDITION_FAILED.getStatusCode());
+  }
+
+  @Test
+  public void testUnknownGroupNotFound() throws Exception {
+    ClientResponse response = client().resource("/v1/sensors")
+        .queryParam("group", "does-not-exist")
+        .get(ClientResponse.class);
+    assertEquals(response.getStatus(), Response.Status.NOT_FOUND.getStatusCode());
+  }
+}
@@ -0,0 +1,37 @@
+package brooklyn.rest.resources;
+
+import static org.testng.Assert.assertEquals;
+
+import javax.ws.rs.core.Response;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import brooklyn.rest.testing.BrooklynRestResourceTest;
+
+import com.sun.jersey.api.client.ClientResponse;
+
+public class ServerResourceTest extends BrooklynRestResourceTest {
+
+  @Override
+  protected void setUpResources() throws Exception {
+    addResource(new ServerResource());
+  }
+
+  @AfterClass
+  @Override
+  public void tearDown() throws Exception {
+    super.tearDown();
+    stopManager();
+  }
+
+  @Test
+  public void testIsUp() {
+    ClientResponse response = client().resource("/v1/server/up")
+        .get(ClientResponse.class);
+
+    assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+    assertEquals(response.getEntity(Boolean.class), Boolean.TRUE);
+  }
+
+}
@@ -0,0 +1,166 @@
+package brooklyn.rest.security.provider;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpSession;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.test.Asserts;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Maps;
+
+public class CachingSecurityProviderTest {
+
+    private static final long TTL_MILLIS = 60*1000;
+    private static final long NEGATIVE_TTL_MILLIS = 10*1000;
+
+    /** stands in for an LDAP server: binds are checked against an in-memory directory, and counted */
+    static class StubLdapSecurityProvider extends LdapSecurityProvider {
+        final Map<String, String> passwordsByDN = new ConcurrentHashMap<String, String>();
+        final AtomicInteger binds = new AtomicInteger();
+
+        StubLdapSecurityProvider() {
+            super("ldap://localhost:389", "ou=people,dc=example,dc=com");
+        }
+
+        void addUser(String user, String password) {
+            passwordsByDN.put(getUserDN(user), password);
+        }
+
+        @Override
+        protected boolean bind(String userDN, String password) {
+            binds.incrementAndGet();
+            return password != null && password.equals(passwordsByDN.get(userDN));
+        }
+    }
+
+    static class ManualTicker extends Ticker {
+        final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(long millis) {
+            nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    static HttpSession newSession() {
+        final Map<String, Object> attributes = Maps.newConcurrentMap();
+        return (HttpSession) Proxy.newProxyInstance(HttpSession.class.getClassLoader(), new Class<?>[] { HttpSession.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getAttribute")) return attributes.get(args[0]);
+                        if (method.getName().equals("setAttribute")) {
+                            if (args[1] == null) attributes.remove(args[0]);
+                            else attributes.put((String) args[0], args[1]);
+                        }
+                        if (method.getName().equals("removeAttribute")) attributes.remove(args[0]);
+                        return null;
+                    }
+                });
+    }
+
+    private StubLdapSecurityProvider ldap;
+    private ManualTicker ticker;
+    private CachingSecurityProvider provider;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() {
+        ldap = new StubLdapSecurityProvider();
+        ldap.addUser("alice", "secret");
+        ticker = new ManualTicker();
+        provider = new CachingSecurityProvider(ldap, TTL_MILLIS, NEGATIVE_TTL_MILLIS, 100, ticker);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() {
+        if (provider != null) provider.close();
+    }
+
+    @Test
+    public void testRemembersSuccessfulLogin() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(provider.authenticate(newSession(), "alice", "secret"));
+        }
+        assertEquals(ldap.binds.get(), 1);
+        assertEquals(provider.getMisses(), 1);
+        assertEquals(provider.getHits(), 9);
+        assertEquals(provider.getDelegateCalls(), 1);
+        assertEquals(provider.getCachedCount(), 1);
+    }
+
+    @Test
+    public void testDifferentPasswordIsCheckedSeparately() {
+        assertTrue(provider.authenticate(newSession(), "alice", "secret"));
+        assertFalse(provider.authenticate(newSession(), "alice", "wrong"));
+        assertFalse(provider.authenticate(newSession(), "bob", "secret"));
+        assertEquals(ldap.binds.get(), 3);
+    }
+
+    @Test
+    public void testRemembersFailedLoginForNegativeTtl() {
+        assertFalse(provider.authenticate(newSession(), "alice", "wrong"));
+        assertFalse(provider.authenticate(newSession(), "alice", "wrong"));
+        assertEquals(ldap.binds.get(), 1);
+        assertEquals(provider.getNegativeHits(), 1);
+
+        ticker.advance(NEGATIVE_TTL_MILLIS + 1);
+        assertFalse(provider.authenticate(newSession(), "alice", "wrong"));
+        assertEquals(ldap.binds.get(), 2);
+    }
+
+    @Test
+    public void testForgetsSuccessfulLoginAfterTtl() {
+        assertTrue(provider.authenticate(newSession(), "alice", "secret"));
+        ticker.advance(TTL_MILLIS + 1);
+        ldap.addUser("alice", "changed");
+        assertFalse(provider.authenticate(newSession(), "alice", "secret"));
+        assertEquals(ldap.binds.get(), 2);
+    }
+
+    @Test
+    public void testRefreshesInBackgroundAfterHalfTtl() {
+        assertTrue(provider.authenticate(newSession(), "alice", "secret"));
+        ticker.advance(TTL_MILLIS/2 + 1);
+
+        // answered from the cache, with the bind done in the background
+        ldap.addUser("alice", "changed");
+        assertTrue(provider.authenticate(newSession(), "alice", "secret"));
+        Asserts.succeedsEventually(new Runnable() {
+            public void run() {
+                assertEquals(ldap.binds.get(), 2);
+                assertEquals(provider.getRefreshes(), 1);
+            }});
+
+        // and the refresh found the password no longer valid
+        Asserts.succeedsEventually(new Runnable() {
+            public void run() {
+                assertFalse(provider.authenticate(newSession(), "alice", "secret"));
+            }});
+    }
+
+    @Test
+    public void testLoginWithoutCredentialsGoesToTarget() {
+        assertFalse(provider.authenticate(newSession(), null, null));
+        assertEquals(provider.getCachedCount(), 0);
+    }
+}
@@ -0,0 +1,110 @@
+package brooklyn.rest.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.entity.basic.ApplicationBuilder;
+import brooklyn.entity.basic.Entities;
+import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.test.entity.TestApplication;
+import brooklyn.test.entity.TestEntity;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+public class ApplicationTreeModelTest {
+
+    private TestApplication app;
+    private TestEntity entity;
+    private ApplicationTreeModel model;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        app = ApplicationBuilder.newManagedApp(TestApplication.class);
+        entity = app.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+        model = new ApplicationTreeModel(app.getManagementContext());
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (model != null) model.close();
+        if (app != null) Entities.destroy(app);
+    }
+
+    private static Set<String> ids(JsonNode nodes) {
+        Set<String> result = Sets.newLinkedHashSet();
+        for (JsonNode node : nodes) {
+            result.add(node.has("id") ? node.get("id").getTextValue() : node.getTextValue());
+        }
+        return result;
+    }
+
+    @Test
+    public void testTreeContainsEntities() throws Exception {
+        JsonNode tree = model.getSnapshot().getTree();
+        JsonNode appNode = tree.get(0);
+        assertEquals(appNode.get("id").getTextValue(), app.getId());
+        assertEquals(ids(appNode.get("children")), ImmutableSet.of(entity.getId()));
+    }
+
+    @Test
+    public void testTreeReusedUntilChanged() throws Exception {
+        ApplicationTreeModel.Snapshot first = model.getSnapshot();
+        assertSame(model.getSnapshot(), first);
+
+        TestEntity child = entity.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+        ApplicationTreeModel.Snapshot second = model.getSnapshot();
+        assertTrue(second.getVersion() > first.getVersion());
+        assertTrue(second.getTree().toString().contains(child.getId()), "tree="+second.getTree());
+    }
+
+    @Test
+    public void testChangesSinceVersion() throws Exception {
+        long version = model.getVersion();
+        TestEntity child = entity.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+        entity.setDisplayName("renamed");
+
+        ObjectNode changes = model.getChangesSince(version);
+        assertEquals(changes.get("reset").getBooleanValue(), false);
+        assertEquals(changes.get("version").getLongValue(), model.getVersion());
+        assertEquals(ids(changes.get("changed")), ImmutableSet.of(child.getId(), entity.getId()));
+        assertEquals(changes.get("changed").get(0).get("parentId").getTextValue(), entity.getId());
+        assertEquals(changes.get("changed").get(1).get("name").getTextValue(), "renamed");
+
+        version = model.getVersion();
+        Entities.unmanage(child);
+        changes = model.getChangesSince(version);
+        assertEquals(ids(changes.get("changed")), ImmutableSet.of());
+        assertEquals(ids(changes.get("removed")), ImmutableSet.of(child.getId()));
+    }
+
+    @Test
+    public void testNoChangesSinceCurrentVersion() throws Exception {
+        ObjectNode changes = model.getChangesSince(model.getVersion());
+        assertEquals(changes.get("reset").getBooleanValue(), false);
+        assertEquals(changes.get("changed").size(), 0);
+        assertEquals(changes.get("removed").size(), 0);
+    }
+
+    @Test
+    public void testTreeSentWhenTooFarBehind() throws Exception {
+        model.close();
+        model = new ApplicationTreeModel(app.getManagementContext(), 1);
+        long version = model.getVersion();
+        entity.setDisplayName("first");
+        entity.setDisplayName("second");
+
+        ObjectNode changes = model.getChangesSince(version);
+        assertEquals(changes.get("reset").getBooleanValue(), true);
+        assertEquals(ids(changes.get("tree")), ImmutableSet.of(app.getId()));
+    }
+}
@@ -0,0 +1,81 @@
+package brooklyn.rest.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.Callable;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.entity.basic.ApplicationBuilder;
+import brooklyn.entity.basic.Entities;
+import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.management.Task;
+import brooklyn.rest.domain.EntitySummary;
+import brooklyn.rest.domain.SensorSummary;
+import brooklyn.rest.domain.TaskSummary;
+import brooklyn.test.entity.TestApplication;
+import brooklyn.test.entity.TestEntity;
+import brooklyn.util.collections.MutableMap;
+import brooklyn.util.task.BasicTask;
+
+import com.google.common.collect.ImmutableList;
+
+public class BrooklynJacksonJsonProviderTest {
+
+    private TestApplication app;
+    private TestEntity entity;
+    private ObjectMapper plainMapper;
+    private ObjectMapper fastMapper;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        app = ApplicationBuilder.newManagedApp(TestApplication.class);
+        entity = app.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+        plainMapper = new ObjectMapper();
+        fastMapper = BrooklynJacksonJsonProvider.newObjectMapper();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (app != null) Entities.destroyAll(app);
+    }
+
+    /** the fast path must write exactly what the bean serializer would (ignoring the order of fields) */
+    private void assertSameJson(Object value) throws Exception {
+        String expected = plainMapper.writeValueAsString(value);
+        String actual = fastMapper.writeValueAsString(value);
+        assertEquals(fastMapper.readTree(actual), plainMapper.readTree(expected), "expected="+expected+"; actual="+actual);
+    }
+
+    @Test
+    public void testEntitySummary() throws Exception {
+        assertSameJson(EntitySummary.fromEntity(app));
+        assertSameJson(EntitySummary.fromEntity(entity));
+    }
+
+    @Test
+    public void testSensorSummary() throws Exception {
+        assertSameJson(SensorSummary.fromEntity(entity, TestEntity.SEQUENCE));
+        // no description or links
+        assertSameJson(new SensorSummary("my.sensor", Integer.class.getName(), null, null));
+    }
+
+    @Test
+    public void testTaskSummary() throws Exception {
+        Task<?> task = app.getManagementContext().getExecutionManager().submit(
+                MutableMap.of("tags", ImmutableList.of(entity, "mytag", 3)),
+                new BasicTask<Object>(new Callable<Object>() {
+                    public Object call() { return null; }
+                }));
+        task.get();
+        assertSameJson(new TaskSummary(task));
+    }
+
+    @Test
+    public void testListOfSummaries() throws Exception {
+        assertSameJson(ImmutableList.of(EntitySummary.fromEntity(app), EntitySummary.fromEntity(entity)));
+    }
+}
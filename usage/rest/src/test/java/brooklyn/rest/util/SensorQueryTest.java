@@ -0,0 +1,114 @@
+package brooklyn.rest.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.entity.Entity;
+import brooklyn.entity.basic.ApplicationBuilder;
+import brooklyn.entity.basic.BasicGroup;
+import brooklyn.entity.basic.Entities;
+import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.test.entity.TestApplication;
+import brooklyn.test.entity.TestEntity;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class SensorQueryTest {
+
+    private TestApplication app;
+    private TestApplication otherApp;
+    private TestEntity entity;
+    private TestEntity child;
+    private BasicGroup group;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        app = ApplicationBuilder.newManagedApp(TestApplication.class);
+        entity = app.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+        child = entity.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+        group = app.createAndManageChild(EntitySpecs.spec(BasicGroup.class));
+        group.addMember(child);
+        otherApp = ApplicationBuilder.newManagedApp(TestApplication.class, app.getManagementContext());
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (app != null) Entities.destroyAll(app);
+    }
+
+    private SensorQuery newQuery() {
+        return new SensorQuery(app.getManagementContext());
+    }
+
+    @Test
+    public void testSelectsAllEntitiesDepthFirst() throws Exception {
+        List<Entity> result = newQuery().selectEntities();
+        assertEquals(ImmutableSet.copyOf(result), ImmutableSet.of(app, entity, child, group, otherApp));
+        assertEquals(result.size(), 5);
+        assertEquals(result.get(0), app);
+        assertTrue(result.indexOf(entity) < result.indexOf(child), "result="+result);
+        assertEquals(result.get(4), otherApp);
+    }
+
+    @Test
+    public void testSelectsByApplication() throws Exception {
+        assertEquals(newQuery().applications(ImmutableList.of(otherApp)).selectEntities(), ImmutableList.of(otherApp));
+    }
+
+    @Test
+    public void testSelectsByType() throws Exception {
+        List<Entity> result = newQuery().types(ImmutableList.of(TestEntity.class.getName())).selectEntities();
+        assertEquals(result, ImmutableList.of(entity, child));
+    }
+
+    @Test
+    public void testSelectsByGroupAndType() throws Exception {
+        List<Entity> result = newQuery()
+                .groups(ImmutableList.of(group))
+                .types(ImmutableList.of(TestEntity.class.getName()))
+                .selectEntities();
+        assertEquals(result, ImmutableList.of(child));
+
+        result = newQuery()
+                .groups(ImmutableList.of(group))
+                .types(ImmutableList.of(TestApplication.class.getName()))
+                .selectEntities();
+        assertTrue(result.isEmpty(), "result="+result);
+    }
+
+    @Test
+    public void testRowHasRequestedFieldsAndSensors() throws Exception {
+        child.setAttribute(TestEntity.SEQUENCE, 3);
+        Map<String, Object> row = newQuery()
+                .sensors(ImmutableList.of(TestEntity.SEQUENCE.getName(), "not.declared"))
+                .fields(ImmutableList.of(SensorQuery.FIELD_ID, SensorQuery.FIELD_PARENT_ID, SensorQuery.FIELD_SENSORS))
+                .row(child);
+
+        assertEquals(ImmutableList.copyOf(row.keySet()), ImmutableList.of("id", "parentId", "sensors"));
+        assertEquals(row.get("id"), child.getId());
+        assertEquals(row.get("parentId"), entity.getId());
+        Map<?, ?> sensors = (Map<?, ?>) row.get("sensors");
+        assertEquals(sensors.get(TestEntity.SEQUENCE.getName()), 3);
+        assertTrue(sensors.containsKey("not.declared"), "sensors="+sensors);
+    }
+
+    @Test
+    public void testRowHasAllSensorsByDefault() throws Exception {
+        entity.setAttribute(TestEntity.NAME, "myname");
+        Map<?, ?> sensors = (Map<?, ?>) newQuery().row(entity).get("sensors");
+        assertEquals(sensors.get(TestEntity.NAME.getName()), "myname");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsUnknownField() throws Exception {
+        newQuery().fields(ImmutableList.of("bogus"));
+    }
+}
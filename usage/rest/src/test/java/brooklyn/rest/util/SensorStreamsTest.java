@@ -0,0 +1,137 @@
+package brooklyn.rest.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brooklyn.entity.basic.ApplicationBuilder;
+import brooklyn.entity.basic.Entities;
+import brooklyn.entity.proxying.EntitySpecs;
+import brooklyn.test.entity.TestApplication;
+import brooklyn.test.entity.TestEntity;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+public class SensorStreamsTest {
+
+    private static final long TIMEOUT_MS = 10*1000;
+
+    private TestApplication app;
+    private TestEntity entity;
+    private SensorStreams streams;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        app = ApplicationBuilder.newManagedApp(TestApplication.class);
+        entity = app.createAndManageChild(EntitySpecs.spec(TestEntity.class));
+        streams = new SensorStreams(app.getManagementContext());
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (app != null) Entities.destroy(app);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> sensors(Map<String, Object> update) {
+        return (Map<String, Object>) update.get("sensors");
+    }
+
+    /** Polls until the given sensor has the given value, returning all the sensors changed meanwhile */
+    private Map<String, Object> pollUntil(SensorStreams.Client client, String sensor, Object value) throws Exception {
+        Map<String, Object> result = Maps.newLinkedHashMap();
+        long end = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!value.equals(result.get(sensor))) {
+            assertTrue(System.currentTimeMillis() < end, "timeout waiting for "+sensor+"="+value+"; got "+result);
+            result.putAll(sensors(client.poll(100)));
+        }
+        return result;
+    }
+
+    @Test
+    public void testFirstPollIsSnapshot() throws Exception {
+        entity.setAttribute(TestEntity.NAME, "first");
+        Map<String, Object> update = streams.newClient(entity).poll(0);
+
+        assertEquals(update.get("reset"), true);
+        assertEquals(sensors(update).get(TestEntity.NAME.getName()), "first");
+        assertTrue(sensors(update).containsKey(TestEntity.SEQUENCE.getName()), "update="+update);
+    }
+
+    @Test
+    public void testSubsequentPollsReturnOnlyChanges() throws Exception {
+        SensorStreams.Client client = streams.newClient(entity);
+        client.poll(0);
+
+        entity.setAttribute(TestEntity.SEQUENCE, 1);
+        entity.setAttribute(TestEntity.SEQUENCE, 2);
+        entity.setAttribute(TestEntity.SEQUENCE, 3);
+        Map<String, Object> changes = pollUntil(client, TestEntity.SEQUENCE.getName(), 3);
+
+        assertEquals(changes.keySet(), ImmutableSet.of(TestEntity.SEQUENCE.getName()));
+    }
+
+    @Test
+    public void testPollReturnsEmptyAfterTimeoutWithoutChanges() throws Exception {
+        SensorStreams.Client client = streams.newClient(entity);
+        client.poll(0);
+
+        Map<String, Object> update = client.poll(10);
+        assertEquals(update.get("reset"), false);
+        assertTrue(sensors(update).isEmpty(), "update="+update);
+    }
+
+    @Test
+    public void testSlowClientIsSentSnapshot() throws Exception {
+        streams = new SensorStreams(app.getManagementContext(), SensorStreams.DEFAULT_CLIENT_EXPIRY_MILLIS, 1);
+        SensorStreams.Client client = streams.newClient(entity);
+        client.poll(0);
+
+        // offer directly, rather than via attribute events, so the client certainly falls behind
+        entity.setAttribute(TestEntity.NAME, "changed");
+        client.offer(TestEntity.SEQUENCE.getName(), 1);
+        client.offer(TestEntity.NAME.getName(), "changed");
+
+        Map<String, Object> update = client.poll(0);
+        assertEquals(update.get("reset"), true);
+        assertEquals(sensors(update).get(TestEntity.NAME.getName()), "changed");
+    }
+
+    @Test
+    public void testClientsShareSubscriptionUntilClosed() throws Exception {
+        SensorStreams.Client client1 = streams.newClient(entity);
+        SensorStreams.Client client2 = streams.newClient(entity);
+        assertEquals(streams.getSubscriptionCount(), 1);
+
+        client1.poll(0);
+        client2.poll(0);
+        entity.setAttribute(TestEntity.SEQUENCE, 5);
+        pollUntil(client1, TestEntity.SEQUENCE.getName(), 5);
+        pollUntil(client2, TestEntity.SEQUENCE.getName(), 5);
+
+        streams.close(client1);
+        assertEquals(streams.getSubscriptionCount(), 1);
+        streams.close(client2);
+        assertEquals(streams.getSubscriptionCount(), 0);
+        assertNull(streams.getClient(client2.getId(), entity));
+    }
+
+    @Test
+    public void testIdleClientsExpire() throws Exception {
+        streams = new SensorStreams(app.getManagementContext(), 0, SensorStreams.DEFAULT_MAX_PENDING_CHANGES);
+        SensorStreams.Client client = streams.newClient(entity);
+        Thread.sleep(10);
+
+        streams.expireIdleClients();
+        assertNull(streams.getClient(client.getId(), entity));
+        assertEquals(streams.getClientCount(), 0);
+        assertEquals(streams.getSubscriptionCount(), 0);
+    }
+}
@@ -8,11 +8,13 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
@@ -81,6 +83,18 @@ abstract public class ApidocResource {
         return null;
     }
     
+    /** how long clients may cache the documentation for; it only changes when the server is restarted */
+    protected static final int CACHE_MAX_AGE_SECONDS = 300;
+
+    /** the listing of all endpoints, per config, as the resources of a running server do not change */
+    private final Map<ResourceConfig,Documentation> allApisCache = new WeakHashMap<ResourceConfig,Documentation>();
+
+    protected static CacheControl cacheControl() {
+        CacheControl result = new CacheControl();
+        result.setMaxAge(CACHE_MAX_AGE_SECONDS);
+        return result;
+    }
+
     @GET
     @ApiOperation(value = "Returns list of all available API resource endpoints", 
         responseClass = "DocumentationEndPoint", multiValueResponse = true)
@@ -88,7 +102,18 @@ abstract public class ApidocResource {
             @Context ResourceConfig rc,
             @Context HttpHeaders headers,
             @Context UriInfo uriInfo) {
+        Documentation allApiDoc;
+        synchronized (allApisCache) {
+            allApiDoc = allApisCache.get(rc);
+            if (allApiDoc==null) {
+                allApiDoc = readAllApis(rc);
+                allApisCache.put(rc, allApiDoc);
+            }
+        }
+        return Response.ok().entity(allApiDoc).cacheControl(cacheControl()).build();
+    }
 
+    protected Documentation readAllApis(ResourceConfig rc) {
         String apiVersion = getConfigReader().getApiVersion();
         String swaggerVersion = getConfigReader().getSwaggerVersion();
         String basePath = getConfigReader().getBasePath();
@@ -133,7 +158,7 @@ abstract public class ApidocResource {
         allApiDoc.setBasePath(basePath);
         allApiDoc.setApiVersion(apiVersion);
 
-        return Response.ok().entity(allApiDoc).build();
+        return allApiDoc;
     }
 
     protected Set<Class<?>> getResourceClasses(ResourceConfig rc) {
@@ -189,7 +214,7 @@ abstract public class ApidocResource {
         HelpApi helpApi = new HelpApi(apiFilterClassName);
         Documentation doc = read(target, apiVersion, swaggerVersion, basePath, apiPath);
         Documentation docs = helpApi.filterDocs(doc, headers, uriInfo, apiPath, apiPath);
-        return Response.ok().entity(docs).build();
+        return Response.ok().entity(docs).cacheControl(cacheControl()).build();
     }
 
 
@@ -202,7 +227,7 @@ abstract public class ApidocResource {
         return configReader;
     }
 
-    static protected Map<Class<?>,Documentation> endpointsCache = new LinkedHashMap<Class<?>, Documentation>();
+    static protected Map<Class<?>,Documentation> endpointsCache = Collections.synchronizedMap(new LinkedHashMap<Class<?>, Documentation>());
             
     protected Documentation read(Class<?> target, String apiVersion, String swaggerVersion, String basePath, String apiPath) {
         Documentation result = endpointsCache.get(target);